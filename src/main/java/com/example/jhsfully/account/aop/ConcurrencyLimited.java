@@ -0,0 +1,13 @@
+package com.example.jhsfully.account.aop;
+
+import com.example.jhsfully.account.type.AdmissionPriority;
+
+import java.lang.annotation.*;
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Inherited
+public @interface ConcurrencyLimited {
+    AdmissionPriority priority() default AdmissionPriority.HIGH;
+}
@@ -0,0 +1,15 @@
+package com.example.jhsfully.account.aop;
+
+import com.example.jhsfully.account.type.ShardKeyType;
+
+import java.lang.annotation.*;
+
+/**
+ * 서비스 메소드에서 샤드를 정하는 파라미터.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ShardKey {
+    ShardKeyType value() default ShardKeyType.ACCOUNT_NUMBER;
+}
@@ -0,0 +1,5 @@
+package com.example.jhsfully.account.aop;
+
+public interface TransactionIdInterface {
+    String getTransactionId();
+}
@@ -0,0 +1,17 @@
+package com.example.jhsfully.account.batch;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+@AllArgsConstructor
+public class BalanceBatchResult {
+    private String runId;
+    private long committedChunks;
+    private long skippedChunks;
+    private long failedChunks;
+    private long accounts;
+    private long elapsedMillis;
+}
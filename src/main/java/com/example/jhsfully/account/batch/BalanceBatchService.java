@@ -0,0 +1,360 @@
+package com.example.jhsfully.account.batch;
+
+import com.example.jhsfully.account.bloom.TransactionIdFilter;
+import com.example.jhsfully.account.domain.Account;
+import com.example.jhsfully.account.domain.BatchCheckpoint;
+import com.example.jhsfully.account.domain.Transaction;
+import com.example.jhsfully.account.dto.TransactionDto;
+import com.example.jhsfully.account.event.AccountChangedEvent;
+import com.example.jhsfully.account.event.BalanceChangedEvent;
+import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.repository.AccountRepository;
+import com.example.jhsfully.account.repository.BatchCheckpointRepository;
+import com.example.jhsfully.account.repository.TransactionRepository;
+import com.example.jhsfully.account.service.BalanceExecutor;
+import com.example.jhsfully.account.service.LockService;
+import com.example.jhsfully.account.shard.ShardRouter;
+import com.example.jhsfully.account.type.AccountStatus;
+import com.example.jhsfully.account.type.BalanceMode;
+import com.example.jhsfully.account.type.BatchType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.jhsfully.account.type.ErrorCode.ACCOUNT_TRANSACTION_LOCK;
+import static com.example.jhsfully.account.type.TransactionResultType.S;
+
+/**
+ * 이자/수수료 배치. IN_USE 계좌 전체에 같은 규칙으로 잔액을 반영한다.
+ *
+ * 계좌 id를 chunk-size 단위 구간(청크)으로 나누고, 워커들이 청크마다 트랜잭션 하나로
+ * 계좌 갱신과 거래 내역 저장을 묶어서 처리한다. 청크가 커밋되면 같은 트랜잭션에
+ * BatchCheckpoint를 남기므로, 같은 runId로 다시 실행하면 끝난 청크는 건너뛴다.
+ *
+ * 운영 요청과는 같은 계좌 락을 잡아서 공존한다. 청크의 계좌 락을 모두 잡은 뒤에 트랜잭션을 열고,
+ * 하나라도 lock-wait-ms 안에 못 잡으면 잡은 락을 모두 놓고 잠시 뒤 청크를 다시 시도한다.
+ * GROUP_COMMIT은 행 락으로 순서를 보장하므로 FOR UPDATE 조회만으로 충분하다.
+ * ENGINE/REDIS는 잔액을 DB 밖에 두므로 지원하지 않는다.
+ */
+@Slf4j
+@Service
+public class BalanceBatchService {
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final BatchCheckpointRepository batchCheckpointRepository;
+    private final TransactionIdFilter transactionIdFilter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LockService lockService;
+    private final BalanceExecutor balanceExecutor;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService workers;
+    private final int workerCount;
+    private final long chunkSize;
+    private final int maxAttempts;
+    private final long lockWaitMs;
+    private final long interestRateBps;
+    private final long feeAmount;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public BalanceBatchService(AccountRepository accountRepository,
+                               TransactionRepository transactionRepository,
+                               BatchCheckpointRepository batchCheckpointRepository,
+                               TransactionIdFilter transactionIdFilter,
+                               ApplicationEventPublisher eventPublisher,
+                               LockService lockService,
+                               BalanceExecutor balanceExecutor,
+                               ShardRouter shardRouter,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${account.batch.workers:4}") int workers,
+                               @Value("${account.batch.chunk-size:500}") long chunkSize,
+                               @Value("${account.batch.max-attempts:5}") int maxAttempts,
+                               @Value("${account.batch.lock-wait-ms:100}") long lockWaitMs,
+                               @Value("${account.batch.interest.rate-bps:0}") long interestRateBps,
+                               @Value("${account.batch.fee.amount:0}") long feeAmount) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.batchCheckpointRepository = batchCheckpointRepository;
+        this.transactionIdFilter = transactionIdFilter;
+        this.eventPublisher = eventPublisher;
+        this.lockService = lockService;
+        this.balanceExecutor = balanceExecutor;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.workers = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "balance-batch-" + count.incrementAndGet());
+            }
+        });
+        this.workerCount = workers;
+        this.chunkSize = chunkSize;
+        this.maxAttempts = maxAttempts;
+        this.lockWaitMs = lockWaitMs;
+        this.interestRateBps = interestRateBps;
+        this.feeAmount = feeAmount;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    @Scheduled(cron = "${account.batch.interest.cron:-}")
+    public void scheduledInterest() {
+        run(BatchType.INTEREST, LocalDate.now());
+    }
+
+    @Scheduled(cron = "${account.batch.fee.cron:-}")
+    public void scheduledFee() {
+        run(BatchType.FEE, LocalDate.now());
+    }
+
+    public BalanceBatchResult run(BatchType type, LocalDate businessDate) {
+        return run(type, type.name() + "-" + businessDate);
+    }
+
+    //같은 runId로 다시 실행하면 커밋되지 않은 청크만 처리한다. 이미 실행 중이면 null을 반환한다.
+    public BalanceBatchResult run(BatchType type, String runId) {
+        BalanceMode mode = balanceExecutor.getMode();
+        if (mode == BalanceMode.ENGINE || mode == BalanceMode.REDIS) {
+            throw new IllegalStateException("Balance batch is not supported in " + mode + " mode.");
+        }
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Balance batch is already running. runId={}", runId);
+            return null;
+        }
+        long startedAt = System.currentTimeMillis();
+        try {
+            Progress progress = new Progress();
+            for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+                runShard(type, runId, shard, progress);
+            }
+            BalanceBatchResult result = BalanceBatchResult.builder()
+                    .runId(runId)
+                    .committedChunks(progress.committed.get())
+                    .skippedChunks(progress.skipped.get())
+                    .failedChunks(progress.failed.get())
+                    .accounts(progress.accounts.get())
+                    .elapsedMillis(System.currentTimeMillis() - startedAt)
+                    .build();
+            log.info("Balance batch finished. runId={}, committed={}, skipped={}, failed={}, accounts={}, elapsed={}ms",
+                    runId, result.getCommittedChunks(), result.getSkippedChunks(), result.getFailedChunks(),
+                    result.getAccounts(), result.getElapsedMillis());
+            return result;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void runShard(BatchType type, String runId, int shard, Progress progress) {
+        Long[] range = shardRouter.call(shard, () -> new Long[]{
+                accountRepository.findFirstByOrderByIdAsc().map(Account::getId).orElse(null),
+                accountRepository.findFirstByOrderByIdDesc().map(Account::getId).orElse(null)});
+        if (range[0] == null) {
+            return;
+        }
+        Set<Long> done = new HashSet<>(shardRouter.call(shard,
+                () -> batchCheckpointRepository.findChunkIndexesByRunId(runId)));
+
+        //진행 중인 청크 수를 워커 수의 두 배로 묶어 두고 청크 번호를 순서대로 흘려보낸다.
+        Semaphore inFlight = new Semaphore(workerCount * 2);
+        List<Future<?>> futures = new ArrayList<>();
+        for (long chunk = range[0] / chunkSize; chunk <= range[1] / chunkSize; chunk++) {
+            if (done.contains(chunk)) {
+                progress.skipped.incrementAndGet();
+                continue;
+            }
+            long chunkIndex = chunk;
+            acquire(inFlight);
+            futures.add(workers.submit(() -> {
+                try {
+                    processChunk(type, runId, shard, chunkIndex, progress);
+                } finally {
+                    inFlight.release();
+                }
+            }));
+            futures.removeIf(Future::isDone);
+        }
+        for (Future<?> future : futures) {
+            await(future);
+        }
+    }
+
+    private void processChunk(BatchType type, String runId, int shard, long chunkIndex, Progress progress) {
+        long fromId = chunkIndex * chunkSize;
+        long toId = fromId + chunkSize - 1;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                Integer accounts = shardRouter.call(shard,
+                        () -> processChunk(type, runId, chunkIndex, fromId, toId));
+                if (accounts > 0) {
+                    progress.committed.incrementAndGet();
+                    progress.accounts.addAndGet(accounts);
+                }
+                return;
+            } catch (AccountException e) {
+                if (e.getErrorCode() != ACCOUNT_TRANSACTION_LOCK) {
+                    throw e;
+                }
+                log.debug("Batch chunk {} busy, attempt {}", chunkIndex, attempt);
+                sleep(lockWaitMs * attempt);
+            } catch (RuntimeException e) {
+                log.error("Batch chunk failed. runId={}, shard={}, chunk={}", runId, shard, chunkIndex, e);
+                break;
+            }
+        }
+        progress.failed.incrementAndGet();
+        log.warn("Batch chunk left for the next run. runId={}, shard={}, chunk={}", runId, shard, chunkIndex);
+    }
+
+    private int processChunk(BatchType type, String runId, long chunkIndex, long fromId, long toId) {
+        List<String> accountNumbers = accountRepository.findAccountNumbersByIdBetween(
+                fromId, toId, AccountStatus.IN_USE);
+        if (accountNumbers.isEmpty()) {
+            return 0;
+        }
+        List<String> locked = lockAll(accountNumbers);
+        try {
+            Set<String> targets = new HashSet<>(accountNumbers);
+            return transactionTemplate.execute(status ->
+                    applyChunk(type, runId, chunkIndex, fromId, toId, targets));
+        } finally {
+            unlockAll(locked);
+        }
+    }
+
+    private int applyChunk(BatchType type, String runId, long chunkIndex,
+                           long fromId, long toId, Set<String> targets) {
+        List<Transaction> transactions = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+        int accounts = 0;
+        for (Account account : accountRepository.findByIdBetweenForUpdate(fromId, toId, AccountStatus.IN_USE)) {
+            //락을 잡은 뒤에 열린 계좌는 이번 청크에서 다루지 않는다.
+            if (!targets.contains(account.getAccountNumber())) {
+                continue;
+            }
+            accounts++;
+            long amount = amountOf(type, account.getBalance());
+            if (amount <= 0) {
+                continue;
+            }
+            if (type == BatchType.INTEREST) {
+                account.depositBalance(amount);
+            } else {
+                account.useBalance(amount);
+            }
+            changed.add(account.getAccountNumber());
+            String transactionId = shardRouter.newTransactionId(account.getAccountNumber());
+            transactionIdFilter.put(transactionId);
+            transactions.add(Transaction.builder()
+                    .transactionType(type.getTransactionType())
+                    .transactionResultType(S)
+                    .account(account)
+                    .amount(amount)
+                    .balanceSnapshot(account.getBalance())
+                    .transactionId(transactionId)
+                    .transactedAt(LocalDateTime.now())
+                    .build());
+        }
+        for (Transaction transaction : transactionRepository.saveAll(transactions)) {
+            eventPublisher.publishEvent(new BalanceChangedEvent(TransactionDto.fromEntity(transaction),
+                    transaction.getAccount().getAccountUser().getId()));
+        }
+        if (!changed.isEmpty()) {
+            eventPublisher.publishEvent(new AccountChangedEvent(changed));
+        }
+        batchCheckpointRepository.save(BatchCheckpoint.builder()
+                .runId(runId)
+                .chunkIndex(chunkIndex)
+                .accounts(accounts)
+                .build());
+        return accounts;
+    }
+
+    private long amountOf(BatchType type, long balance) {
+        if (type == BatchType.INTEREST) {
+            return balance * interestRateBps / 10_000L;
+        }
+        return Math.min(feeAmount, balance);
+    }
+
+    //GROUP_COMMIT은 행 락만 쓰므로 계좌 락을 잡지 않는다.
+    private List<String> lockAll(List<String> accountNumbers) {
+        if (balanceExecutor.getMode() == BalanceMode.GROUP_COMMIT) {
+            return Collections.emptyList();
+        }
+        List<String> locked = new ArrayList<>(accountNumbers.size());
+        try {
+            for (String accountNumber : accountNumbers) {
+                lockService.lock(accountNumber, lockWaitMs);
+                locked.add(accountNumber);
+            }
+        } catch (RuntimeException e) {
+            unlockAll(locked);
+            throw e;
+        }
+        return locked;
+    }
+
+    private void unlockAll(List<String> locked) {
+        for (int i = locked.size() - 1; i >= 0; i--) {
+            lockService.unlock(locked.get(i));
+        }
+    }
+
+    private static void acquire(Semaphore semaphore) {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(Future<?> future) {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            log.error("Batch worker failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Progress {
+        private final AtomicLong committed = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong accounts = new AtomicLong();
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.jhsfully.account.bloom;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 키별 빈도를 고정된 메모리로 추정하는 Count-Min 스케치.
+ *
+ * depth개의 행마다 해시한 칸 하나를 올리고, 추정치는 그 칸들의 최솟값이다.
+ * 실제보다 작게 세지는 않으며, 많아야 총합 * e / width 만큼 크게 센다.
+ * halve로 모든 칸을 절반으로 줄여 오래된 빈도를 잊게 한다. 여러 스레드가 동시에 써도 안전하다.
+ */
+public class CountMinSketch {
+    private final int width;
+    private final int depth;
+    private final AtomicLongArray counters;
+
+    public CountMinSketch(int width, int depth) {
+        if (width <= 0 || Integer.bitCount(width) != 1 || depth <= 0) {
+            throw new IllegalArgumentException("width must be a power of two and depth positive");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counters = new AtomicLongArray(width * depth);
+    }
+
+    //더한 뒤의 추정치를 반환한다.
+    public long add(String key, long count) {
+        long[] hash = ScalableBloomFilter.hash(key);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.addAndGet(index(hash, row), count));
+        }
+        return estimate;
+    }
+
+    public long estimate(String key) {
+        long[] hash = ScalableBloomFilter.hash(key);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(hash, row)));
+        }
+        return estimate;
+    }
+
+    public void halve() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.getAndUpdate(i, value -> value >>> 1);
+        }
+    }
+
+    private int index(long[] hash, int row) {
+        return row * width + (int) ((hash[0] + row * hash[1]) & (width - 1));
+    }
+}
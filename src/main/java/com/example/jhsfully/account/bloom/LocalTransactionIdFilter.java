@@ -0,0 +1,134 @@
+package com.example.jhsfully.account.bloom;
+
+import com.example.jhsfully.account.repository.TransactionRepository;
+import com.example.jhsfully.account.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 노드 메모리에 두는 transactionId 필터. (단일 노드용)
+ *
+ * 기동 시 스냅샷 파일을 읽고, 스냅샷 이후 DB에 쌓인 거래만 이어서 넣는다.
+ * 스냅샷에는 기록 직전의 최대 거래 id를 같이 남기는데, put이 항상 저장보다 먼저이므로
+ * 그 id 이하의 거래는 모두 필터에 들어 있다. 다시 채우기가 끝나기 전에는 아무것도 거절하지 않는다.
+ * 노드가 여러 대면 다른 노드가 발급한 거래를 모르므로 REDIS 방식을 써야 한다.
+ * 그래서 명시적으로 LOCAL을 골라야 쓰이고, multi-node 프로필과 같이 쓰면 기동하지 않는다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "account.transaction-filter.store", havingValue = "LOCAL")
+public class LocalTransactionIdFilter implements TransactionIdFilter {
+    private static final String SNAPSHOT_FILE = "transaction-ids.bloom";
+    private static final String MULTI_NODE_PROFILE = "multi-node";
+
+    private final TransactionRepository transactionRepository;
+    private final ShardRouter shardRouter;
+    private final Path file;
+    private final long initialCapacity;
+    private final double falsePositiveRate;
+
+    private ScalableBloomFilter filter;
+    private long snapshotId;
+    private volatile boolean ready;
+
+    public LocalTransactionIdFilter(TransactionRepository transactionRepository,
+                                    ShardRouter shardRouter,
+                                    Environment environment,
+                                    @Value("${account.transaction-filter.directory:./filter}")
+                                    String directory,
+                                    @Value("${account.transaction-filter.initial-capacity:1000000}")
+                                    long initialCapacity,
+                                    @Value("${account.transaction-filter.false-positive-rate:0.01}")
+                                    double falsePositiveRate) {
+        if (environment.acceptsProfiles(Profiles.of(MULTI_NODE_PROFILE))) {
+            throw new IllegalStateException("account.transaction-filter.store=LOCAL can not be used with the "
+                    + MULTI_NODE_PROFILE + " profile. Use REDIS.");
+        }
+        this.transactionRepository = transactionRepository;
+        this.shardRouter = shardRouter;
+        this.file = Paths.get(directory).resolve(SNAPSHOT_FILE);
+        this.initialCapacity = initialCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    @PostConstruct
+    public void load() {
+        filter = new ScalableBloomFilter(initialCapacity, falsePositiveRate);
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            long id = in.readLong();
+            filter = ScalableBloomFilter.readFrom(in);
+            snapshotId = id;
+        } catch (IOException e) {
+            log.error("Failed to load transaction id filter. rebuilding : {}", file, e);
+        }
+    }
+
+    //엔진 복구 등 다른 빈의 기동이 끝난 뒤에 DB를 읽는다.
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        //DB가 스냅샷보다 뒤로 돌아갔으면 처음부터 다시 채운다. 남아 있는 번호는 오탐만 늘린다.
+        if (TransactionIdScanner.maxId(transactionRepository, shardRouter) < snapshotId) {
+            snapshotId = 0L;
+        }
+        long lastId = TransactionIdScanner.scan(transactionRepository, shardRouter, snapshotId, filter::put);
+        ready = true;
+        log.info("Transaction id filter ready. ids={}, layers={}, lastId={}",
+                filter.size(), filter.getLayerCount(), lastId);
+    }
+
+    @Override
+    public void put(String transactionId) {
+        filter.put(transactionId);
+    }
+
+    @Override
+    public boolean mightContain(String transactionId) {
+        return !ready || filter.mightContain(transactionId);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Scheduled(fixedDelayString = "${account.transaction-filter.snapshot-interval-ms:60000}")
+    @PreDestroy
+    public void snapshot() {
+        if (!ready) {
+            return;
+        }
+        long maxId = TransactionIdScanner.maxId(transactionRepository, shardRouter);
+        Path temp = file.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeLong(maxId);
+                filter.writeTo(out);
+            }
+            Files.move(temp, file,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to write transaction id filter snapshot : {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.jhsfully.account.bloom;
+
+import com.example.jhsfully.account.repository.TransactionRepository;
+import com.example.jhsfully.account.service.RedisCircuitBreaker;
+import com.example.jhsfully.account.shard.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RBloomFilter;
+import org.redisson.api.RBucket;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Redis에 두는 transactionId 필터. 노드가 여러 대여도 맞게 동작하므로 기본값이다.
+ *
+ * 층마다 Redisson 블룸 필터(ACTF:0, ACTF:1, ...)를 하나씩 두고,
+ * 넣은 개수가 누적 용량을 넘으면 용량은 두 배, 오탐률은 절반인 층을 추가한다.
+ * 처음 한 번은 한 노드가 DB에서 전체를 채우고 ACTF:READY를 남긴다. 그 전에는 아무것도 거절하지 않는다.
+ * account.redis.lazy-connect면 기동 중에 Redis에 닿지 않도록 처음 호출될 때 층을 읽고 채우기를 뒤에서 시작한다.
+ *
+ * 요청 경로의 Redis 호출은 락과 같은 서킷 브레이커 뒤에서 call-timeout-ms만 기다린다.
+ * Redis에 넣지 못한 번호는 노드 메모리에 두었다가 서킷이 닫히면 다시 넣고,
+ * 그동안 mightContain은 거절하지 않는다. (fail open)
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "account.transaction-filter.store", havingValue = "REDIS",
+        matchIfMissing = true)
+public class RedisTransactionIdFilter implements TransactionIdFilter {
+    private static final String LAYER_PREFIX = "ACTF:";
+    private static final String LAYERS_KEY = "ACTF:LAYERS";
+    private static final String SIZE_KEY = "ACTF:SIZE";
+    private static final String READY_KEY = "ACTF:READY";
+    private static final String REBUILD_LOCK_KEY = "ACTF:REBUILD";
+
+    private final RedissonClient redissonClient;
+    private final TransactionRepository transactionRepository;
+    private final ShardRouter shardRouter;
+    private final long initialCapacity;
+    private final double falsePositiveRate;
+    private final boolean lazyConnect;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final ExecutorService redisCalls;
+    //Redis에 아직 넣지 못한 거래 번호
+    private final Set<String> unsynced = ConcurrentHashMap.newKeySet();
+
+    private volatile int layerCount;
+    private volatile boolean initialized;
+    private volatile boolean ready;
+
+    public RedisTransactionIdFilter(RedissonClient redissonClient,
+                                    TransactionRepository transactionRepository,
+                                    ShardRouter shardRouter,
+                                    @Value("${account.transaction-filter.initial-capacity:1000000}")
+                                    long initialCapacity,
+                                    @Value("${account.transaction-filter.false-positive-rate:0.01}")
+                                    double falsePositiveRate,
+                                    @Value("${account.redis.lazy-connect:false}") boolean lazyConnect,
+                                    RedisCircuitBreaker circuitBreaker,
+                                    @Value("${account.transaction-filter.redis-threads:4}") int redisThreads) {
+        this.redissonClient = redissonClient;
+        this.transactionRepository = transactionRepository;
+        this.shardRouter = shardRouter;
+        this.initialCapacity = initialCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+        this.lazyConnect = lazyConnect;
+        this.circuitBreaker = circuitBreaker;
+        this.redisCalls = Executors.newFixedThreadPool(redisThreads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "transaction-filter-redis-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    //Redis가 내려가 있어도 기동은 한다. 층은 처음 호출될 때 다시 읽는다.
+    @PostConstruct
+    public void init() {
+        if (lazyConnect) {
+            return;
+        }
+        try {
+            ensureInitialized();
+        } catch (RuntimeException e) {
+            log.warn("Failed to initialize transaction id filter, accepting every id until Redis is back.", e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (lazyConnect) {
+            return;
+        }
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("Failed to rebuild transaction id filter, accepting every id until it is rebuilt.", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        redisCalls.shutdownNow();
+    }
+
+    private void ensureInitialized() {
+        if (initialized) {
+            return;
+        }
+        synchronized (this) {
+            if (initialized) {
+                return;
+            }
+            layer(0).tryInit(capacity(0), falsePositiveRate / 2);
+            RAtomicLong layers = redissonClient.getAtomicLong(LAYERS_KEY);
+            layers.compareAndSet(0, 1);
+            layerCount = (int) layers.get();
+            initialized = true;
+        }
+        if (lazyConnect) {
+            CompletableFuture.runAsync(this::rebuild).whenComplete((result, e) -> {
+                if (e != null) {
+                    log.error("Failed to rebuild transaction id filter.", e);
+                }
+            });
+        }
+    }
+
+    public void rebuild() {
+        ensureInitialized();
+        if (isReady()) {
+            return;
+        }
+        RLock lock = redissonClient.getLock(REBUILD_LOCK_KEY);
+        if (!lock.tryLock()) {
+            return; // 다른 노드가 채우는 중
+        }
+        try {
+            if (!isReady()) {
+                long lastId = TransactionIdScanner.scan(transactionRepository, shardRouter, 0L, this::add);
+                readyBucket().set("1");
+                log.info("Transaction id filter ready. layers={}, lastId={}", layerCount, lastId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //서킷이 열려 있거나 Redis가 실패하면 메모리에 남기고 요청은 그대로 진행한다.
+    @Override
+    public void put(String transactionId) {
+        if (!circuitBreaker.allowRequest() || !call(() -> {
+            add(transactionId);
+            return true;
+        }, false)) {
+            unsynced.add(transactionId);
+        }
+    }
+
+    @Override
+    public boolean mightContain(String transactionId) {
+        if (unsynced.contains(transactionId) || !circuitBreaker.allowRequest()) {
+            return true;
+        }
+        return call(() -> contains(transactionId), true);
+    }
+
+    //서킷이 닫히면 Redis에 넣지 못한 번호를 다시 넣는다.
+    @Scheduled(fixedDelayString = "${account.transaction-filter.sync-interval-ms:1000}")
+    public void syncUnsynced() {
+        for (String transactionId : unsynced) {
+            if (!circuitBreaker.allowRequest() || !call(() -> {
+                add(transactionId);
+                return true;
+            }, false)) {
+                return;
+            }
+            unsynced.remove(transactionId);
+        }
+    }
+
+    public int getUnsyncedCount() {
+        return unsynced.size();
+    }
+
+    //call-timeout-ms 안에 끝나지 않거나 실패하면 서킷에 실패로 세고 fallback을 돌려준다.
+    private boolean call(Callable<Boolean> task, boolean fallback) {
+        Future<Boolean> future;
+        try {
+            future = redisCalls.submit(task);
+        } catch (RuntimeException e) {
+            return fallback; // 종료 중
+        }
+        try {
+            boolean result = future.get(circuitBreaker.getCallTimeoutMs(), TimeUnit.MILLISECONDS);
+            circuitBreaker.onSuccess();
+            return result;
+        } catch (ExecutionException e) {
+            circuitBreaker.onFailure(e.getCause());
+            log.warn("Transaction id filter call failed : {}", e.getCause().toString());
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            circuitBreaker.onFailure(e);
+            log.warn("Transaction id filter call timed out");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+        return fallback;
+    }
+
+    private void add(String transactionId) {
+        ensureInitialized();
+        int count = layerCount;
+        if (layer(count - 1).add(transactionId)
+                && redissonClient.getAtomicLong(SIZE_KEY).incrementAndGet() >= totalCapacity(count)) {
+            grow(count);
+        }
+    }
+
+    private boolean contains(String transactionId) {
+        ensureInitialized();
+        if (!isReady()) {
+            return true;
+        }
+        int count = layerCount;
+        for (int i = count - 1; i >= 0; i--) {
+            if (layer(i).contains(transactionId)) {
+                return true;
+            }
+        }
+        // 다른 노드가 층을 늘렸을 수 있으니 없다고 답하기 전에 한 번 더 본다.
+        int latest = (int) redissonClient.getAtomicLong(LAYERS_KEY).get();
+        for (int i = latest - 1; i >= count; i--) {
+            if (layer(i).contains(transactionId)) {
+                layerCount = latest;
+                return true;
+            }
+        }
+        layerCount = Math.max(layerCount, latest);
+        return false;
+    }
+
+    private boolean isReady() {
+        if (!ready && readyBucket().isExists()) {
+            ready = true;
+        }
+        return ready;
+    }
+
+    private synchronized void grow(int count) {
+        layer(count).tryInit(capacity(count), falsePositiveRate / (2L << Math.min(count, 30)));
+        redissonClient.getAtomicLong(LAYERS_KEY).compareAndSet(count, count + 1);
+        layerCount = Math.max(layerCount, (int) redissonClient.getAtomicLong(LAYERS_KEY).get());
+    }
+
+    private RBloomFilter<String> layer(int index) {
+        return redissonClient.getBloomFilter(LAYER_PREFIX + index, StringCodec.INSTANCE);
+    }
+
+    private RBucket<String> readyBucket() {
+        return redissonClient.getBucket(READY_KEY, StringCodec.INSTANCE);
+    }
+
+    private long capacity(int index) {
+        return initialCapacity << Math.min(index, 30);
+    }
+
+    private long totalCapacity(int count) {
+        return initialCapacity * ((1L << Math.min(count, 30)) - 1);
+    }
+}
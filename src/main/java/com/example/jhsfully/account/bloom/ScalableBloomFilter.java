@@ -0,0 +1,239 @@
+package com.example.jhsfully.account.bloom;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 원소 수를 미리 몰라도 오탐률을 유지하는 블룸 필터.
+ *
+ * 마지막 층이 용량에 차면 용량은 두 배, 오탐률은 절반인 층을 새로 붙인다.
+ * 층별 오탐률의 합이 설정한 오탐률을 넘지 않는다. 없는 원소를 있다고 할 수는 있어도
+ * 넣은 원소를 없다고 하지는 않는다. 여러 스레드가 동시에 넣고 조회해도 안전하다.
+ */
+public class ScalableBloomFilter {
+    private static final int MAGIC = 0x41434246; // "ACBF"
+
+    private final long initialCapacity;
+    private final double falsePositiveRate;
+    private final List<Layer> layers = new CopyOnWriteArrayList<>();
+
+    public ScalableBloomFilter(long initialCapacity, double falsePositiveRate) {
+        if (initialCapacity <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("invalid bloom filter parameters");
+        }
+        this.initialCapacity = initialCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+        layers.add(new Layer(initialCapacity, falsePositiveRate / 2));
+    }
+
+    public void put(String value) {
+        long[] hash = hash(value);
+        Layer last = layers.get(layers.size() - 1);
+        if (last.put(hash) && last.count.get() >= last.capacity) {
+            grow(last);
+        }
+    }
+
+    public boolean mightContain(String value) {
+        long[] hash = hash(value);
+        for (Layer layer : layers) {
+            if (layer.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long size() {
+        return layers.stream().mapToLong(layer -> layer.count.get()).sum();
+    }
+
+    public int getLayerCount() {
+        return layers.size();
+    }
+
+    public long getBitCount() {
+        return layers.stream().mapToLong(layer -> layer.bitCount).sum();
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        List<Layer> snapshot = layers;
+        out.writeInt(MAGIC);
+        out.writeLong(initialCapacity);
+        out.writeDouble(falsePositiveRate);
+        out.writeInt(snapshot.size());
+        for (Layer layer : snapshot) {
+            out.writeLong(layer.capacity);
+            out.writeInt(layer.hashCount);
+            out.writeLong(layer.count.get());
+            out.writeInt(layer.bits.length());
+            for (int i = 0; i < layer.bits.length(); i++) {
+                out.writeLong(layer.bits.get(i));
+            }
+        }
+    }
+
+    public static ScalableBloomFilter readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a bloom filter snapshot");
+        }
+        ScalableBloomFilter filter = new ScalableBloomFilter(in.readLong(), in.readDouble());
+        filter.layers.clear();
+        int layerCount = in.readInt();
+        for (int i = 0; i < layerCount; i++) {
+            long capacity = in.readLong();
+            int hashCount = in.readInt();
+            long count = in.readLong();
+            long[] words = new long[in.readInt()];
+            for (int j = 0; j < words.length; j++) {
+                words[j] = in.readLong();
+            }
+            filter.layers.add(new Layer(capacity, hashCount, count, words));
+        }
+        return filter;
+    }
+
+    private synchronized void grow(Layer full) {
+        int index = layers.size();
+        if (layers.get(index - 1) != full) {
+            return;
+        }
+        layers.add(new Layer(initialCapacity << Math.min(index, 30),
+                falsePositiveRate / (2L << Math.min(index, 30))));
+    }
+
+    //MurmurHash3 x64 128비트. 두 값을 섞어 k개의 위치를 만든다.
+    static long[] hash(String value) {
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        long h1 = 0;
+        long h2 = 0;
+        final long c1 = 0x87c37b91114253d5L;
+        final long c2 = 0x4cf5ad432745937fL;
+        int blocks = data.length / 16;
+        for (int i = 0; i < blocks; i++) {
+            long k1 = getLong(data, i * 16);
+            long k2 = getLong(data, i * 16 + 8);
+            k1 *= c1; k1 = Long.rotateLeft(k1, 31); k1 *= c2; h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27); h1 += h2; h1 = h1 * 5 + 0x52dce729;
+            k2 *= c2; k2 = Long.rotateLeft(k2, 33); k2 *= c1; h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31); h2 += h1; h2 = h2 * 5 + 0x38495ab5;
+        }
+        long k1 = 0;
+        long k2 = 0;
+        int tail = blocks * 16;
+        for (int i = data.length - 1; i >= tail + 8; i--) {
+            k2 ^= (data[i] & 0xffL) << ((i - tail - 8) * 8);
+        }
+        for (int i = Math.min(data.length, tail + 8) - 1; i >= tail; i--) {
+            k1 ^= (data[i] & 0xffL) << ((i - tail) * 8);
+        }
+        if (k2 != 0) {
+            k2 *= c2; k2 = Long.rotateLeft(k2, 33); k2 *= c1; h2 ^= k2;
+        }
+        if (k1 != 0) {
+            k1 *= c1; k1 = Long.rotateLeft(k1, 31); k1 *= c2; h1 ^= k1;
+        }
+        h1 ^= data.length;
+        h2 ^= data.length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return new long[]{h1, h2};
+    }
+
+    private static long getLong(byte[] data, int offset) {
+        long value = 0;
+        for (int i = 7; i >= 0; i--) {
+            value = (value << 8) | (data[offset + i] & 0xffL);
+        }
+        return value;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static final class Layer {
+        private final long capacity;
+        private final int hashCount;
+        private final long bitCount;
+        private final AtomicLongArray bits;
+        private final AtomicLong count;
+
+        private Layer(long capacity, double falsePositiveRate) {
+            this(capacity, optimalHashCount(capacity, optimalBitCount(capacity, falsePositiveRate)),
+                    0, new long[(int) ((optimalBitCount(capacity, falsePositiveRate) + 63) >>> 6)]);
+        }
+
+        private Layer(long capacity, int hashCount, long count, long[] words) {
+            this.capacity = capacity;
+            this.hashCount = hashCount;
+            this.bitCount = (long) words.length << 6;
+            this.bits = new AtomicLongArray(words);
+            this.count = new AtomicLong(count);
+        }
+
+        //새로 켠 비트가 하나라도 있으면 처음 넣은 값으로 보고 개수를 센다.
+        private boolean put(long[] hash) {
+            boolean changed = false;
+            long combined = hash[0];
+            for (int i = 0; i < hashCount; i++) {
+                long index = (combined & Long.MAX_VALUE) % bitCount;
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+                long current = bits.get(word);
+                while ((current & mask) == 0) {
+                    if (bits.compareAndSet(word, current, current | mask)) {
+                        changed = true;
+                        break;
+                    }
+                    current = bits.get(word);
+                }
+                combined += hash[1];
+            }
+            if (changed) {
+                count.incrementAndGet();
+            }
+            return changed;
+        }
+
+        private boolean mightContain(long[] hash) {
+            long combined = hash[0];
+            for (int i = 0; i < hashCount; i++) {
+                long index = (combined & Long.MAX_VALUE) % bitCount;
+                if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+                combined += hash[1];
+            }
+            return true;
+        }
+
+        private static long optimalBitCount(long capacity, double falsePositiveRate) {
+            long bitCount = (long) Math.ceil(-capacity * Math.log(falsePositiveRate)
+                    / (Math.log(2) * Math.log(2)));
+            if (bitCount > (long) Integer.MAX_VALUE << 6) {
+                throw new IllegalArgumentException("bloom filter layer too large");
+            }
+            return Math.max(64, bitCount);
+        }
+
+        private static int optimalHashCount(long capacity, long bitCount) {
+            return Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.jhsfully.account.bloom;
+
+/**
+ * 발급된 transactionId 집합을 근사적으로 들고 있는 필터.
+ *
+ * mightContain이 false면 그 거래는 확실히 없으므로 락이나 DB 조회 없이 바로 거절할 수 있다.
+ * 거래 행을 저장하기 전에 put을 먼저 호출해야 한다.
+ */
+public interface TransactionIdFilter {
+    void put(String transactionId);
+
+    boolean mightContain(String transactionId);
+}
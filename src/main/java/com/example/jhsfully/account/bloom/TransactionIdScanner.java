@@ -0,0 +1,53 @@
+package com.example.jhsfully.account.bloom;
+
+import com.example.jhsfully.account.repository.TransactionRepository;
+import com.example.jhsfully.account.repository.TransactionRepository.TransactionKey;
+import com.example.jhsfully.account.shard.ShardRouter;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * DB의 transactionId를 id 순서로 끊어 읽는다. 필터를 다시 만들 때 쓴다.
+ * id는 샤드마다 따로 매겨지므로 샤드마다 같은 afterId부터 읽고,
+ * 위치는 샤드별 최대 id 중 가장 작은 값으로 남긴다. (겹쳐 읽은 번호는 다시 넣어도 그만이다.)
+ */
+final class TransactionIdScanner {
+    private static final int PAGE_SIZE = 10_000;
+
+    private TransactionIdScanner() {
+    }
+
+    static long scan(TransactionRepository transactionRepository,
+                     ShardRouter shardRouter,
+                     long afterId,
+                     Consumer<String> consumer) {
+        long position = Long.MAX_VALUE;
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            long lastId = shardRouter.call(shard, () -> scan(transactionRepository, afterId, consumer));
+            position = Math.min(position, lastId);
+        }
+        return position;
+    }
+
+    static long maxId(TransactionRepository transactionRepository, ShardRouter shardRouter) {
+        return shardRouter.fanOut(shard -> transactionRepository.findMaxId().orElse(0L))
+                .stream()
+                .mapToLong(Long::longValue)
+                .min()
+                .orElse(0L);
+    }
+
+    private static long scan(TransactionRepository transactionRepository,
+                             long afterId,
+                             Consumer<String> consumer) {
+        List<TransactionKey> keys;
+        while (!(keys = transactionRepository.findTransactionKeysAfter(
+                afterId, PageRequest.of(0, PAGE_SIZE))).isEmpty()) {
+            keys.forEach(key -> consumer.accept(key.getTransactionId()));
+            afterId = keys.get(keys.size() - 1).getId();
+        }
+        return afterId;
+    }
+}
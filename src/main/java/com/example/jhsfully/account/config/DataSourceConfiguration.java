@@ -0,0 +1,72 @@
+package com.example.jhsfully.account.config;
+
+import com.example.jhsfully.account.datasource.ReadWriteRoutingDataSource;
+import com.example.jhsfully.account.shard.ShardRouter;
+import com.example.jhsfully.account.shard.ShardRoutingDataSource;
+import com.example.jhsfully.account.shard.ShardSchemaInitializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 데이터소스 구성. 샤드 라우팅이 가장 바깥이고, 0번 샤드는 spring.datasource이다.
+ * 나머지 샤드는 account.sharding.url-pattern의 {0}에 샤드 번호를 넣은 주소로 만든다.
+ * 트랜잭션 속성과 샤드가 정해진 뒤에 커넥션을 얻도록 LazyConnectionDataSourceProxy로 감싼다.
+ */
+@Configuration
+public class DataSourceConfiguration {
+
+    @Bean
+    public DataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().build();
+    }
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(
+            @Qualifier("primaryDataSource") DataSource primaryDataSource,
+            ObjectProvider<ReadWriteRoutingDataSource> readWriteRoutingDataSource,
+            ShardRouter shardRouter,
+            DataSourceProperties properties,
+            @Value("${account.sharding.url-pattern:}") String urlPattern) {
+        DataSource shardZero = readWriteRoutingDataSource.getIfAvailable();
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(0, shardZero == null ? primaryDataSource : shardZero);
+        for (int shard = 1; shard < shardRouter.getShardCount(); shard++) {
+            targets.put(shard, DataSourceBuilder.create()
+                    .url(MessageFormat.format(urlPattern, String.valueOf(shard)))
+                    .username(properties.determineUsername())
+                    .password(properties.determinePassword())
+                    .build());
+        }
+
+        ShardRoutingDataSource shardRoutingDataSource = new ShardRoutingDataSource();
+        shardRoutingDataSource.setTargetDataSources(targets);
+        shardRoutingDataSource.setDefaultTargetDataSource(targets.get(0));
+        return shardRoutingDataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "account.sharding.copy-schema", havingValue = "true")
+    public ShardSchemaInitializer shardSchemaInitializer(ShardRoutingDataSource shardRoutingDataSource,
+                                                         ShardRouter shardRouter) {
+        return new ShardSchemaInitializer(shardRoutingDataSource, shardRouter.getShardCount());
+    }
+}
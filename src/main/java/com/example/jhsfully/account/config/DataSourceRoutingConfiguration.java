@@ -0,0 +1,67 @@
+package com.example.jhsfully.account.config;
+
+import com.example.jhsfully.account.datasource.FixedLagReplicaPosition;
+import com.example.jhsfully.account.datasource.ReadWriteRoutingDataSource;
+import com.example.jhsfully.account.datasource.ReplicaPosition;
+import com.example.jhsfully.account.datasource.StandInReplicator;
+import com.example.jhsfully.account.type.DataSourceType;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * spring.datasource(primaryDataSource)를 primary로, account.datasource.replica를 복제본으로 두고 트랜잭션 속성에 따라 나눈다.
+ * replica.stand-in이 true면 두 H2 사이를 StandInReplicator가 복제한다. (로컬 개발용)
+ * 아니면 실제 복제본이 max-lag-ms 이상 뒤처지지 않는다고 보고 읽는다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "account.datasource.routing.enabled", havingValue = "true")
+public class DataSourceRoutingConfiguration {
+
+    @Bean
+    public DataSource replicaDataSource(
+            @Value("${account.datasource.replica.url}") String url,
+            @Value("${account.datasource.replica.username:sa}") String username,
+            @Value("${account.datasource.replica.password:}") String password) {
+        return DataSourceBuilder.create().url(url).username(username).password(password).build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "account.datasource.replica.stand-in", havingValue = "true")
+    public StandInReplicator standInReplicator(
+            @Qualifier("primaryDataSource") DataSource primaryDataSource,
+            @Qualifier("replicaDataSource") DataSource replicaDataSource) {
+        return new StandInReplicator(primaryDataSource, replicaDataSource);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "account.datasource.replica.stand-in", havingValue = "false",
+            matchIfMissing = true)
+    public FixedLagReplicaPosition fixedLagReplicaPosition(
+            @Value("${account.datasource.replica.max-lag-ms:1000}") long maxLagMs) {
+        return new FixedLagReplicaPosition(maxLagMs);
+    }
+
+    //0번 샤드로 쓰인다. (DataSourceConfiguration)
+    @Bean
+    public ReadWriteRoutingDataSource readWriteRoutingDataSource(
+            @Qualifier("primaryDataSource") DataSource primaryDataSource,
+            @Qualifier("replicaDataSource") DataSource replicaDataSource,
+            ReplicaPosition replicaPosition) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(DataSourceType.PRIMARY, primaryDataSource);
+        targets.put(DataSourceType.REPLICA, replicaDataSource);
+
+        ReadWriteRoutingDataSource routingDataSource = new ReadWriteRoutingDataSource(replicaPosition);
+        routingDataSource.setTargetDataSources(targets);
+        routingDataSource.setDefaultTargetDataSource(primaryDataSource);
+        return routingDataSource;
+    }
+}
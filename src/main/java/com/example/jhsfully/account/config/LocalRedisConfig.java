@@ -5,20 +5,37 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import redis.embedded.RedisServer;
 
-import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
 
+/**
+ * 로컬 개발용 내장 Redis.
+ * Redisson이 처음 연결할 때 start를 부르며, 설정된 주소가 이 호스트가 아니거나
+ * 이미 그 포트에서 Redis가 떠 있으면 띄우지 않는다.
+ */
 @Slf4j
 @Configuration
 public class LocalRedisConfig {
+    private static final int PROBE_TIMEOUT_MS = 200;
+
+    @Value("${spring.redis.host}")
+    private String redisHost;
 
     @Value("${spring.redis.port}")
     private int redisPort;
 
+    @Value("${account.redis.embedded:true}")
+    private boolean embedded;
+
     private RedisServer redisServer;
 
-    @PostConstruct
-    public void startRedis(){
+    public synchronized void startRedis(){
+        if(redisServer != null || !embedded || !isLocalHost() || isListening()){
+            return;
+        }
         redisServer = new RedisServer(redisPort);
 
         try{
@@ -29,11 +46,32 @@ public class LocalRedisConfig {
 
     }
 
+    public synchronized boolean isStarted(){
+        return redisServer != null && redisServer.isActive();
+    }
+
     @PreDestroy
-    public void stopRedis(){
+    public synchronized void stopRedis(){
         if(redisServer != null){
             redisServer.stop();
         }
     }
 
+    private boolean isLocalHost(){
+        try{
+            return InetAddress.getByName(redisHost).isLoopbackAddress();
+        }catch (IOException e){
+            return false;
+        }
+    }
+
+    private boolean isListening(){
+        try(Socket socket = new Socket()){
+            socket.connect(new InetSocketAddress(redisHost, redisPort), PROBE_TIMEOUT_MS);
+            return true;
+        }catch (IOException e){
+            return false;
+        }
+    }
+
 }
@@ -3,6 +3,9 @@ package com.example.jhsfully.account.config;
 import org.redisson.Redisson;
 import org.redisson.api.RedissonClient;
 import org.redisson.config.Config;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.target.AbstractLazyCreationTargetSource;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -17,10 +20,53 @@ public class RedisRepositoryConfig {
     private int redisPort;
 
     @Bean
-    public RedissonClient redissonClient(){
-        Config config = new Config();
-        config.useSingleServer().setAddress("redis://" + redisHost + ":" + redisPort);
-        return Redisson.create(config);
+    public RedissonTargetSource redissonTargetSource(LocalRedisConfig localRedisConfig){
+        return new RedissonTargetSource(localRedisConfig, "redis://" + redisHost + ":" + redisPort);
+    }
+
+    //lazy-connect면 처음 호출될 때 연결하는 프록시를 돌려준다. 종료는 redissonTargetSource가 맡는다.
+    @Bean(destroyMethod = "")
+    public RedissonClient redissonClient(RedissonTargetSource redissonTargetSource,
+                                         @Value("${account.redis.lazy-connect:false}") boolean lazyConnect)
+            throws Exception {
+        if(!lazyConnect){
+            return (RedissonClient) redissonTargetSource.getTarget();
+        }
+        ProxyFactory proxyFactory = new ProxyFactory();
+        proxyFactory.addInterface(RedissonClient.class);
+        proxyFactory.setTargetSource(redissonTargetSource);
+        return (RedissonClient) proxyFactory.getProxy(getClass().getClassLoader());
+    }
+
+    public static class RedissonTargetSource extends AbstractLazyCreationTargetSource implements DisposableBean {
+        private final LocalRedisConfig localRedisConfig;
+        private final String address;
+
+        private RedissonTargetSource(LocalRedisConfig localRedisConfig, String address){
+            this.localRedisConfig = localRedisConfig;
+            this.address = address;
+        }
+
+        @Override
+        public Class<?> getTargetClass(){
+            return RedissonClient.class;
+        }
+
+        @Override
+        protected Object createObject(){
+            //로컬 Redis가 먼저 떠 있어야 연결할 수 있다.
+            localRedisConfig.startRedis();
+            Config config = new Config();
+            config.useSingleServer().setAddress(address);
+            return Redisson.create(config);
+        }
+
+        @Override
+        public void destroy() throws Exception {
+            if(isInitialized()){
+                ((RedissonClient) getTarget()).shutdown();
+            }
+        }
     }
 
 }
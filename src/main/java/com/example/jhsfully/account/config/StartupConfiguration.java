@@ -0,0 +1,57 @@
+package com.example.jhsfully.account.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * fast-startup 프로필(spring.main.lazy-initialization)용 설정.
+ *
+ * 지연 초기화된 빈은 만들어지기 전까지 @Scheduled 작업과 이벤트 리스너가 등록되지 않으므로
+ * 그런 메소드를 가진 빈은 지연 초기화에서 뺀다.
+ * account.startup.exit-after-ready는 CDS 클래스 목록을 뽑기 위한 학습 실행에서 쓴다.
+ */
+@Slf4j
+@Configuration
+public class StartupConfiguration {
+
+    @Bean
+    public static LazyInitializationExcludeFilter scheduledOrListenerBeans() {
+        return (beanName, beanDefinition, beanType) -> hasAnnotatedMethod(beanType);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "account.startup.exit-after-ready", havingValue = "true")
+    public ApplicationListener<ApplicationReadyEvent> exitAfterReady() {
+        return event -> {
+            log.info("Application is ready, exiting for the training run.");
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        };
+    }
+
+    private static boolean hasAnnotatedMethod(Class<?> beanType) {
+        if (beanType == null) {
+            return false;
+        }
+        AtomicBoolean found = new AtomicBoolean();
+        ReflectionUtils.doWithMethods(beanType, method -> found.set(true), StartupConfiguration::isEagerMethod);
+        return found.get();
+    }
+
+    private static boolean isEagerMethod(Method method) {
+        return AnnotatedElementUtils.hasAnnotation(method, Scheduled.class)
+                || AnnotatedElementUtils.hasAnnotation(method, EventListener.class);
+    }
+}
@@ -4,11 +4,20 @@ import com.example.jhsfully.account.domain.Account;
 import com.example.jhsfully.account.dto.AccountInfo;
 import com.example.jhsfully.account.dto.CreateAccount;
 import com.example.jhsfully.account.dto.DeleteAccount;
+import com.example.jhsfully.account.dto.ImportAccount;
+import com.example.jhsfully.account.dto.QueryBalances;
+import com.example.jhsfully.account.service.AccountImportService;
 import com.example.jhsfully.account.service.AccountService;
+import com.example.jhsfully.account.service.BalanceStreamService;
+import com.example.jhsfully.account.type.ImportFormat;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.validation.Valid;
+import java.io.InputStream;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -16,6 +25,8 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class AccountController {
     private final AccountService accountService;
+    private final AccountImportService accountImportService;
+    private final BalanceStreamService balanceStreamService;
 
     @PostMapping("/account")
     public CreateAccount.Response createAccount(
@@ -28,6 +39,14 @@ public class AccountController {
         );
     }
 
+    //대량 생성. 본문을 한 줄씩 읽으므로 파일 전체를 메모리에 올리지 않는다.
+    @PostMapping(value = "/account/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ImportAccount.Response importAccounts(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body){
+        return accountImportService.importAccounts(body, ImportFormat.fromContentType(contentType));
+    }
+
     @DeleteMapping("/account")
     public DeleteAccount.Response deleteAccount(
             @RequestBody @Valid DeleteAccount.Request request){
@@ -51,6 +70,21 @@ public class AccountController {
                 .collect(Collectors.toList());
     }
 
+    //여러 계좌의 잔액을 한 번에 조회한다. 사용자 조회 없이 계좌 번호로만 찾는다.
+    @PostMapping("/account/balances")
+    public QueryBalances.Response getBalances(
+            @RequestBody @Valid QueryBalances.Request request){
+        return QueryBalances.Response.from(request.getAccountNumbers(),
+                accountService.getBalances(request.getAccountNumbers()));
+    }
+
+    //잔액이 바뀔 때마다 AccountInfo를 보낸다. 처음에는 현재 잔액을 모두 보낸다.
+    @GetMapping(value = "/account/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAccountsByUserId(
+            @RequestParam("user_id") Long userId){
+        return balanceStreamService.subscribe(userId);
+    }
+
     @GetMapping("/account/{id}")
     public Account getAccount(@PathVariable Long id){
         return accountService.getAccount(id);
@@ -0,0 +1,26 @@
+package com.example.jhsfully.account.controller;
+
+import com.example.jhsfully.account.dto.HotAccount;
+import com.example.jhsfully.account.service.HotAccountTracker;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+//운영용. GET /actuator/hotaccounts?limit=10
+@Component
+@Endpoint(id = "hotaccounts")
+@RequiredArgsConstructor
+public class HotAccountEndpoint {
+    private static final int DEFAULT_LIMIT = 10;
+
+    private final HotAccountTracker hotAccountTracker;
+
+    @ReadOperation
+    public List<HotAccount> hotAccounts(@Nullable Integer limit) {
+        return hotAccountTracker.getHotAccounts(limit == null ? DEFAULT_LIMIT : limit);
+    }
+}
@@ -1,17 +1,29 @@
 package com.example.jhsfully.account.controller;
 
 import com.example.jhsfully.account.aop.AccountLock;
+import com.example.jhsfully.account.aop.ConcurrencyLimited;
+import com.example.jhsfully.account.datasource.ConsistencyTokenFilter;
+import com.example.jhsfully.account.datasource.RoutingContext;
+import com.example.jhsfully.account.deadline.RequestDeadline;
 import com.example.jhsfully.account.dto.CancelBalance;
 import com.example.jhsfully.account.dto.QueryTransactionResponse;
 import com.example.jhsfully.account.dto.TransactionDto;
 import com.example.jhsfully.account.dto.UseBalance;
 import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.service.BalanceExecutor;
 import com.example.jhsfully.account.service.TransactionService;
+import com.example.jhsfully.account.type.AdmissionPriority;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 잔액 관련 컨트롤러
@@ -24,22 +36,33 @@ import javax.validation.Valid;
 @RequiredArgsConstructor
 public class TransactionController {
 
+    private static final String IMMUTABLE =
+            CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().getHeaderValue() + ", immutable";
+
     private final TransactionService transactionService;
+    private final BalanceExecutor balanceExecutor;
 
     @PostMapping("/transaction/use")
+    @ConcurrencyLimited(priority = AdmissionPriority.LOW)
     @AccountLock
     public UseBalance.Response useBalance(
-            @Valid @RequestBody UseBalance.Request request
-    ) throws InterruptedException {
+            @Valid @RequestBody UseBalance.Request request,
+            HttpServletResponse response
+    ) {
         try {
-            Thread.sleep(5000L);
-            return UseBalance.Response.from(transactionService.useBalance(
+            UseBalance.Response useResponse = UseBalance.Response.from(balanceExecutor.useBalance(
                                         request.getUserId(),
                                         request.getAccountNumber(),
                                         request.getAmount())
             );
+            setConsistencyToken(response);
+            return useResponse;
         } catch (AccountException e){
             log.error("Failed to use balance.");
+            //호출자가 이미 떠난 요청은 실패 기록도 남기지 않는다.
+            if (RequestDeadline.isExpired()) {
+                throw e;
+            }
             transactionService.saveFailedUseTransaction(
                     request.getAccountNumber(),
                     request.getAmount()
@@ -51,17 +74,26 @@ public class TransactionController {
 
 
     @PostMapping("/transaction/cancel")
+    @ConcurrencyLimited
     @AccountLock
     public CancelBalance.Response cancelBalance(
-            @Valid @RequestBody CancelBalance.Request request
+            @Valid @RequestBody CancelBalance.Request request,
+            HttpServletResponse response
     ){
-        try {return CancelBalance.Response.from(transactionService.cancelBalance(
+        try {CancelBalance.Response cancelResponse = CancelBalance.Response.from(
+                balanceExecutor.cancelBalance(
                 request.getTransactionId(),
                 request.getAccountNumber(),
                 request.getAmount())
         );
+            setConsistencyToken(response);
+            return cancelResponse;
         } catch (AccountException e){
             log.error("Failed to use balance.");
+            //호출자가 이미 떠난 요청은 실패 기록도 남기지 않는다.
+            if (RequestDeadline.isExpired()) {
+                throw e;
+            }
             transactionService.saveFailedCancelTransaction(
                     request.getAccountNumber(),
                     request.getAmount()
@@ -71,11 +103,30 @@ public class TransactionController {
         }
     }
 
+    //이후 조회에서 이 토큰을 돌려주면, 이 거래가 반영되지 않은 복제본에서는 읽지 않는다.
+    private static void setConsistencyToken(HttpServletResponse response) {
+        response.setHeader(ConsistencyTokenFilter.HEADER,
+                String.valueOf(RoutingContext.issueConsistencyToken()));
+    }
+
+    //거래는 저장된 뒤 바뀌지 않으므로 거래 번호를 그대로 ETag로 쓰고 오래 캐시하게 한다.
+    //없는 거래 번호에 304를 주지 않도록 조회(필터, 캐시)를 먼저 하고 ETag를 비교한다.
     @GetMapping("/transaction/{transactionId}")
-    public QueryTransactionResponse queryTransaction(
-            @PathVariable String transactionId
+    @ConcurrencyLimited
+    public ResponseEntity<QueryTransactionResponse> queryTransaction(
+            @PathVariable String transactionId,
+            WebRequest webRequest
     ){
-        return QueryTransactionResponse.from(transactionService.queryTransaction(transactionId));
+        QueryTransactionResponse queryResponse = QueryTransactionResponse.from(
+                transactionService.queryTransaction(transactionId));
+        String eTag = "\"" + transactionId + "\"";
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .header(HttpHeaders.CACHE_CONTROL, IMMUTABLE)
+                .body(queryResponse);
     }
 
 }
@@ -0,0 +1,42 @@
+package com.example.jhsfully.account.datasource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 쓰기 응답에 실린 X-Consistency-Token을 읽기 요청에서 다시 받는다.
+ */
+@Component
+@ConditionalOnProperty(name = "account.datasource.routing.enabled", havingValue = "true")
+public class ConsistencyTokenFilter extends OncePerRequestFilter {
+    public static final String HEADER = "X-Consistency-Token";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String value = request.getHeader(HEADER);
+        if (value == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        try {
+            RoutingContext.setConsistencyToken(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            //알 수 없는 토큰이면 primary에서 읽는다.
+            RoutingContext.setConsistencyToken(Long.MAX_VALUE);
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RoutingContext.clearConsistencyToken();
+        }
+    }
+}
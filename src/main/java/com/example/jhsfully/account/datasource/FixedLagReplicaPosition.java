@@ -0,0 +1,18 @@
+package com.example.jhsfully.account.datasource;
+
+/**
+ * 실제 복제본용. 복제 지연이 max-lag-ms를 넘지 않는다고 보고,
+ * 그보다 최근에 쓴 클라이언트의 읽기만 primary로 보낸다.
+ */
+public class FixedLagReplicaPosition implements ReplicaPosition {
+    private final long maxLagMs;
+
+    public FixedLagReplicaPosition(long maxLagMs) {
+        this.maxLagMs = maxLagMs;
+    }
+
+    @Override
+    public long replicatedUpTo() {
+        return System.currentTimeMillis() - maxLagMs;
+    }
+}
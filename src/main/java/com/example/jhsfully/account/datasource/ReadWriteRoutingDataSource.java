@@ -0,0 +1,29 @@
+package com.example.jhsfully.account.datasource;
+
+import com.example.jhsfully.account.type.DataSourceType;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * readOnly 서비스 메소드의 트랜잭션만 복제본으로 보낸다.
+ * 클라이언트가 준 토큰 시각까지 복제본이 따라오지 못했으면 primary에서 읽는다.
+ * 트랜잭션 속성이 정해진 뒤에 커넥션을 얻도록 LazyConnectionDataSourceProxy로 감싸서 쓴다.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    private final ReplicaPosition replicaPosition;
+
+    public ReadWriteRoutingDataSource(ReplicaPosition replicaPosition) {
+        this.replicaPosition = replicaPosition;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || !RoutingContext.isReplicaAllowed()) {
+            return DataSourceType.PRIMARY;
+        }
+        return replicaPosition.replicatedUpTo() > RoutingContext.getConsistencyToken()
+                ? DataSourceType.REPLICA
+                : DataSourceType.PRIMARY;
+    }
+}
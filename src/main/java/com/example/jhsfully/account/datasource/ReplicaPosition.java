@@ -0,0 +1,9 @@
+package com.example.jhsfully.account.datasource;
+
+/**
+ * 복제본이 어느 시각(epoch ms)까지의 커밋을 모두 반영했는지 알려준다.
+ * 아직 한 번도 따라오지 못했으면 0이다.
+ */
+public interface ReplicaPosition {
+    long replicatedUpTo();
+}
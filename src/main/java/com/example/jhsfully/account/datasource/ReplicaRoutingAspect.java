@@ -0,0 +1,40 @@
+package com.example.jhsfully.account.datasource;
+
+import com.example.jhsfully.account.type.BalanceMode;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 서비스의 @Transactional(readOnly = true) 메소드 안에서만 복제본 사용을 허용한다.
+ * 서비스 밖에서 리포지토리를 바로 부르는 경우(필터 재구성, 엔진 복구 등)는 항상 primary를 본다.
+ * ENGINE, REDIS 방식은 응답 뒤에 DB에 반영되어 응답 시각으로 만든 일관성 토큰이 맞지 않으므로 복제본을 쓰지 않는다.
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(name = "account.datasource.routing.enabled", havingValue = "true")
+public class ReplicaRoutingAspect {
+    private final boolean replicaEnabled;
+
+    public ReplicaRoutingAspect(@Value("${account.balance.mode:LOCK}") BalanceMode balanceMode) {
+        this.replicaEnabled = !balanceMode.isPersistedAsync();
+    }
+
+    @Around("within(com.example.jhsfully.account.service..*) && @annotation(transactional)")
+    public Object aroundMethod(ProceedingJoinPoint pjp,
+                               Transactional transactional) throws Throwable {
+        if (!replicaEnabled || !transactional.readOnly()) {
+            return pjp.proceed();
+        }
+        Boolean previous = RoutingContext.allowReplica();
+        try {
+            return pjp.proceed();
+        } finally {
+            RoutingContext.restoreReplicaAllowed(previous);
+        }
+    }
+}
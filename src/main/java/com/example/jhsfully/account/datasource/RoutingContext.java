@@ -0,0 +1,51 @@
+package com.example.jhsfully.account.datasource;
+
+/**
+ * 요청 스레드의 라우팅 상태.
+ * replicaAllowed는 readOnly 서비스 메소드 안에서만 켜지고,
+ * consistencyToken은 클라이언트가 돌려준 마지막 쓰기 시각(epoch ms)이다.
+ */
+public final class RoutingContext {
+    private static final ThreadLocal<Boolean> REPLICA_ALLOWED = new ThreadLocal<>();
+    private static final ThreadLocal<Long> CONSISTENCY_TOKEN = new ThreadLocal<>();
+
+    private RoutingContext() {
+    }
+
+    public static boolean isReplicaAllowed() {
+        return Boolean.TRUE.equals(REPLICA_ALLOWED.get());
+    }
+
+    //이전 값을 반환한다. 끝나면 restoreReplicaAllowed로 되돌린다.
+    public static Boolean allowReplica() {
+        Boolean previous = REPLICA_ALLOWED.get();
+        REPLICA_ALLOWED.set(Boolean.TRUE);
+        return previous;
+    }
+
+    public static void restoreReplicaAllowed(Boolean previous) {
+        if (previous == null) {
+            REPLICA_ALLOWED.remove();
+        } else {
+            REPLICA_ALLOWED.set(previous);
+        }
+    }
+
+    public static long getConsistencyToken() {
+        Long token = CONSISTENCY_TOKEN.get();
+        return token == null ? 0L : token;
+    }
+
+    public static void setConsistencyToken(long token) {
+        CONSISTENCY_TOKEN.set(token);
+    }
+
+    public static void clearConsistencyToken() {
+        CONSISTENCY_TOKEN.remove();
+    }
+
+    //커밋이 끝난 뒤에 발급한다. 이 시각 이후까지 따라온 복제본만 이 쓰기를 볼 수 있다.
+    public static long issueConsistencyToken() {
+        return System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.jhsfully.account.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 로컬 개발용 복제. 두 H2 인스턴스 사이에서 primary의 내용을 주기적으로 복제본에 통째로 옮긴다.
+ *
+ * 기동이 끝나면 primary의 스키마를 복제본에 만들고, 동기화마다 모든 행을 읽어 복제본 트랜잭션 하나로 바꿔 넣는다.
+ * 동기화를 시작한 뒤에 읽기 시작하므로 그 시각 이전에 커밋된 쓰기(삭제 포함)는 모두 옮겨지고, 그 시각을 replicatedUpTo로 알린다.
+ * 자식 테이블부터 읽고 부모 테이블부터 넣어서, 읽는 사이에 생긴 행이 없는 부모를 가리키지 않게 한다.
+ * 테이블 전체를 옮기므로 개발용 크기의 데이터에서만 쓴다. (account.datasource.replica.stand-in)
+ */
+@Slf4j
+public class StandInReplicator implements ReplicaPosition {
+    private static final List<String> TABLES = Arrays.asList("ACCOUNT_USER", "ACCOUNT", "TRANSACTION");
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final TransactionTemplate replicaTransaction;
+
+    private volatile long replicatedUpTo;
+    private boolean initialized;
+
+    public StandInReplicator(DataSource primary, DataSource replica) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+        this.replicaTransaction = new TransactionTemplate(new DataSourceTransactionManager(replica));
+    }
+
+    @Override
+    public long replicatedUpTo() {
+        return replicatedUpTo;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void initialize() {
+        List<String> script = primary.queryForList(
+                "SCRIPT NODATA NOSETTINGS TABLE " + String.join(", ", TABLES), String.class);
+        for (String statement : script) {
+            if (statement.startsWith("CREATE USER")) {
+                continue;
+            }
+            replica.execute(statement);
+        }
+        initialized = true;
+        log.info("Replica schema created for tables {}", TABLES);
+        sync();
+    }
+
+    @Scheduled(fixedDelayString = "${account.datasource.replica.sync-interval-ms:100}")
+    public synchronized void sync() {
+        if (!initialized) {
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        Map<String, List<Map<String, Object>>> rows = new HashMap<>();
+        for (int i = TABLES.size() - 1; i >= 0; i--) {
+            rows.put(TABLES.get(i), primary.queryForList("SELECT * FROM " + TABLES.get(i)));
+        }
+        replicaTransaction.executeWithoutResult(status -> {
+            for (int i = TABLES.size() - 1; i >= 0; i--) {
+                replica.update("DELETE FROM " + TABLES.get(i));
+            }
+            for (String table : TABLES) {
+                insert(table, rows.get(table));
+            }
+        });
+        replicatedUpTo = startedAt;
+    }
+
+    private void insert(String table, List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<String> columns = new ArrayList<>(rows.get(0).keySet());
+        String sql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                + columns.stream().map(column -> "?").collect(Collectors.joining(", ")) + ")";
+        replica.batchUpdate(sql, rows.stream()
+                .map(row -> columns.stream().map(row::get).toArray())
+                .collect(Collectors.toList()));
+    }
+}
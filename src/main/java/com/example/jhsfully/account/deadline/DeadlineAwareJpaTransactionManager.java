@@ -0,0 +1,28 @@
+package com.example.jhsfully.account.deadline;
+
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionTimedOutException;
+
+/**
+ * 요청 시한이 있으면 남은 시간을 트랜잭션 타임아웃으로 쓴다.
+ * Hibernate는 이 값에서 남은 시간을 계산해 매 쿼리의 JDBC query timeout으로 건다.
+ * 시한이 이미 지났으면 트랜잭션을 시작하지 않는다.
+ */
+public class DeadlineAwareJpaTransactionManager extends JpaTransactionManager {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected int determineTimeout(TransactionDefinition definition) {
+        int timeout = super.determineTimeout(definition);
+        if (!RequestDeadline.isPresent()) {
+            return timeout;
+        }
+        long remaining = RequestDeadline.remainingMillis(Long.MAX_VALUE);
+        if (remaining <= 0) {
+            throw new TransactionTimedOutException("Request deadline exceeded");
+        }
+        int seconds = (int) Math.min(Integer.MAX_VALUE, (remaining + 999) / 1000);
+        return timeout == TransactionDefinition.TIMEOUT_DEFAULT ? seconds : Math.min(timeout, seconds);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.jhsfully.account.deadline;
+
+import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.type.ErrorCode;
+
+/**
+ * 요청 스레드에 묶인 처리 시한. (epoch ms)
+ * 시한이 없는 요청은 기존 대기 시간과 타임아웃을 그대로 쓴다.
+ */
+public final class RequestDeadline {
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private RequestDeadline() {
+    }
+
+    public static void set(long deadlineMillis) {
+        DEADLINE.set(deadlineMillis);
+    }
+
+    public static void clear() {
+        DEADLINE.remove();
+    }
+
+    //다른 스레드로 넘길 때 쓴다. 시한이 없으면 null.
+    public static Long get() {
+        return DEADLINE.get();
+    }
+
+    public static boolean isPresent() {
+        return DEADLINE.get() != null;
+    }
+
+    public static boolean isExpired() {
+        return isPresent() && remainingMillis(Long.MAX_VALUE) <= 0;
+    }
+
+    //남은 시간과 upperBound 중 작은 값. 시한이 없으면 upperBound.
+    public static long remainingMillis(long upperBound) {
+        Long deadline = DEADLINE.get();
+        if (deadline == null) {
+            return upperBound;
+        }
+        return Math.min(upperBound, deadline - System.currentTimeMillis());
+    }
+
+    public static void check() {
+        if (isExpired()) {
+            throw new AccountException(ErrorCode.DEADLINE_EXCEEDED);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.jhsfully.account.deadline;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 요청 헤더에서 처리 시한을 읽는다.
+ * X-Request-Timeout은 받은 시점부터의 ms, X-Request-Deadline은 epoch ms이며 둘 다 오면 이른 쪽을 쓴다.
+ * 숫자가 아닌 값은 무시한다.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+    public static final String DEADLINE_HEADER = "X-Request-Deadline";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long now = System.currentTimeMillis();
+        long deadline = Long.MAX_VALUE;
+
+        Long timeout = parse(request.getHeader(TIMEOUT_HEADER));
+        if (timeout != null) {
+            deadline = now + timeout;
+        }
+        Long absolute = parse(request.getHeader(DEADLINE_HEADER));
+        if (absolute != null) {
+            deadline = Math.min(deadline, absolute);
+        }
+
+        if (deadline == Long.MAX_VALUE) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        RequestDeadline.set(deadline);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestDeadline.clear();
+        }
+    }
+
+    private static Long parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
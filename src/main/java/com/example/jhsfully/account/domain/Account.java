@@ -17,12 +17,13 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Builder
 @Entity
+@Table(indexes = @Index(name = "ux_account_account_number", columnList = "accountNumber", unique = true))
 public class Account extends BaseEntity{
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private AccountUser accountUser;
     private String accountNumber;
 
-    @Enumerated(EnumType.STRING)
+    @Convert(converter = EnumCodeConverter.AccountStatusConverter.class)
     private AccountStatus accountStatus;
     private Long balance;
 
@@ -42,4 +43,11 @@ public class Account extends BaseEntity{
         }
         balance += amount;
     }
+
+    public void depositBalance(Long amount){
+        if(amount < 0){
+            throw new AccountException(ErrorCode.INVALID_REQUEST);
+        }
+        balance += amount;
+    }
 }
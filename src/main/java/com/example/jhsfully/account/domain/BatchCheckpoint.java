@@ -0,0 +1,22 @@
+package com.example.jhsfully.account.domain;
+
+import lombok.*;
+
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+//배치 실행에서 커밋된 청크. 계좌 변경과 같은 트랜잭션에 저장되므로 재시작할 때 두 번 처리되지 않는다.
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(indexes = @Index(name = "ux_batch_checkpoint_run_id_chunk_index",
+        columnList = "runId, chunkIndex", unique = true))
+public class BatchCheckpoint extends BaseEntity {
+    private String runId;
+    private Long chunkIndex;
+    private Integer accounts;
+}
@@ -0,0 +1,55 @@
+package com.example.jhsfully.account.domain;
+
+import com.example.jhsfully.account.type.AccountStatus;
+import com.example.jhsfully.account.type.TransactionResultType;
+import com.example.jhsfully.account.type.TransactionType;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * enum을 이름 대신 순서 번호 1바이트로 저장한다. (저널, 캐시 인코딩과 같은 규칙)
+ * 순서가 곧 저장 값이므로 enum 값은 뒤에만 추가한다.
+ */
+public abstract class EnumCodeConverter<E extends Enum<E>> implements AttributeConverter<E, Byte> {
+    private final E[] values;
+
+    protected EnumCodeConverter(Class<E> type) {
+        this.values = type.getEnumConstants();
+    }
+
+    @Override
+    public Byte convertToDatabaseColumn(E value) {
+        return value == null ? null : code(value);
+    }
+
+    @Override
+    public E convertToEntityAttribute(Byte code) {
+        return code == null ? null : values[code];
+    }
+
+    public static byte code(Enum<?> value) {
+        return (byte) value.ordinal();
+    }
+
+    @Converter
+    public static class TransactionTypeConverter extends EnumCodeConverter<TransactionType> {
+        public TransactionTypeConverter() {
+            super(TransactionType.class);
+        }
+    }
+
+    @Converter
+    public static class TransactionResultTypeConverter extends EnumCodeConverter<TransactionResultType> {
+        public TransactionResultTypeConverter() {
+            super(TransactionResultType.class);
+        }
+    }
+
+    @Converter
+    public static class AccountStatusConverter extends EnumCodeConverter<AccountStatus> {
+        public AccountStatusConverter() {
+            super(AccountStatus.class);
+        }
+    }
+}
@@ -17,17 +17,29 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @Builder
 @Entity
+@Table(indexes = {
+        @Index(name = "ux_transaction_transaction_id", columnList = "transactionId", unique = true),
+        @Index(name = "ux_transaction_original_transaction_id",
+                columnList = "originalTransactionId", unique = true)})
 public class Transaction extends BaseEntity{
-    @Enumerated(EnumType.STRING)
+    @Convert(converter = EnumCodeConverter.TransactionTypeConverter.class)
     private TransactionType transactionType;
-    @Enumerated(EnumType.STRING)
+    @Convert(converter = EnumCodeConverter.TransactionResultTypeConverter.class)
     private TransactionResultType transactionResultType;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Account account;
     private Long amount;
     private Long balanceSnapshot;
 
+    //거래 번호는 16바이트로 저장한다.
+    @Convert(converter = TransactionIdConverter.class)
+    @Column(length = TransactionIdConverter.LENGTH)
     private String transactionId;
     private LocalDateTime transactedAt;
+
+    //취소 거래만 원거래 번호를 가진다. 원거래 하나에 성공한 취소는 하나뿐이다.
+    @Convert(converter = TransactionIdConverter.class)
+    @Column(length = TransactionIdConverter.LENGTH)
+    private String originalTransactionId;
 }
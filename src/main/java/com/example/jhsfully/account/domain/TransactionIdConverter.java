@@ -0,0 +1,65 @@
+package com.example.jhsfully.account.domain;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.util.Arrays;
+
+/**
+ * 32자리 16진수 거래 번호를 16바이트로 저장한다. API와 엔티티에서는 그대로 문자열이다.
+ *
+ * 형식이 틀린 번호(조회 요청에 섞여 들어온 값)는 어떤 거래와도 맞지 않는 값으로 바꾼다.
+ * 거래 번호는 UUID v4라서 7번째 바이트가 0x4_이므로 0xff로 채운 값은 나올 수 없다.
+ */
+@Converter
+public class TransactionIdConverter implements AttributeConverter<String, byte[]> {
+    public static final int LENGTH = 16;
+    private static final byte[] UNMATCHABLE = new byte[LENGTH];
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    static {
+        Arrays.fill(UNMATCHABLE, (byte) 0xff);
+    }
+
+    @Override
+    public byte[] convertToDatabaseColumn(String transactionId) {
+        return transactionId == null ? null : toBytes(transactionId);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] bytes) {
+        return bytes == null ? null : toHex(bytes);
+    }
+
+    public static boolean isValid(String transactionId) {
+        if (transactionId.length() != LENGTH * 2) {
+            return false;
+        }
+        for (int i = 0; i < transactionId.length(); i++) {
+            if (Character.digit(transactionId.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static byte[] toBytes(String transactionId) {
+        if (!isValid(transactionId)) {
+            return UNMATCHABLE.clone();
+        }
+        byte[] bytes = new byte[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            bytes[i] = (byte) ((Character.digit(transactionId.charAt(i * 2), 16) << 4)
+                    | Character.digit(transactionId.charAt(i * 2 + 1), 16));
+        }
+        return bytes;
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.jhsfully.account.dto;
 
 import com.example.jhsfully.account.aop.AccountLockIdInterface;
+import com.example.jhsfully.account.aop.TransactionIdInterface;
 import com.example.jhsfully.account.type.TransactionResultType;
 import lombok.*;
 
@@ -11,7 +12,7 @@ public class CancelBalance {
     @Getter
     @Setter
     @AllArgsConstructor
-    public static class Request implements AccountLockIdInterface {
+    public static class Request implements AccountLockIdInterface, TransactionIdInterface {
         @NotBlank
         private String transactionId;
 
@@ -0,0 +1,20 @@
+package com.example.jhsfully.account.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * 락 경합이 많은 계좌. 횟수는 스케치 추정치이고, 대기 시간은 상위 목록에 든 뒤부터 잰 값이다.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+public class HotAccount {
+    private String accountNumber;
+    private long attempts;
+    private long failures;
+    private double waitP50Ms;
+    private double waitP95Ms;
+    private double waitP99Ms;
+}
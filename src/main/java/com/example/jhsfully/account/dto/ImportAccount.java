@@ -0,0 +1,44 @@
+package com.example.jhsfully.account.dto;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ImportAccount {
+
+    //CSV는 userId,initialBalance 순서, NDJSON은 한 줄에 객체 하나
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Row{
+        private Long userId;
+        private Long initialBalance;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Failure{
+        private long line;
+        private String errorCode;
+        private String errorMessage;
+    }
+
+    //failures는 max-failures개까지만 담고, failed는 전체 실패 건수다.
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Response{
+        private long total;
+        private long created;
+        private long failed;
+        @Builder.Default
+        private List<Failure> failures = new ArrayList<>();
+    }
+}
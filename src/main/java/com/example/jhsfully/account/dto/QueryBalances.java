@@ -0,0 +1,45 @@
+package com.example.jhsfully.account.dto;
+
+import lombok.*;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class QueryBalances {
+    public static final int MAX_ACCOUNT_NUMBERS = 1000;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Request{
+        @NotEmpty
+        @Size(max = MAX_ACCOUNT_NUMBERS)
+        private List<@NotNull String> accountNumbers;
+    }
+
+    //계좌 번호 -> 잔액. 없는 계좌 번호는 notFound에 따로 담는다.
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Response{
+        private Map<String, Long> balances;
+        private List<String> notFound;
+
+        public static Response from(List<String> accountNumbers, Map<String, Long> balances){
+            return Response.builder()
+                    .balances(balances)
+                    .notFound(accountNumbers.stream()
+                            .filter(accountNumber -> !balances.containsKey(accountNumber))
+                            .distinct()
+                            .collect(Collectors.toList()))
+                    .build();
+        }
+    }
+}
@@ -25,6 +25,7 @@ public class TransactionDto {
     private Long balanceSnapshot;
     private String transactionId;
     private LocalDateTime transactedAt;
+    private String originalTransactionId;
 
     public static TransactionDto fromEntity(Transaction transaction){
         return TransactionDto.builder()
@@ -35,6 +36,7 @@ public class TransactionDto {
                 .balanceSnapshot(transaction.getBalanceSnapshot())
                 .transactionId(transaction.getTransactionId())
                 .transactedAt(transaction.getTransactedAt())
+                .originalTransactionId(transaction.getOriginalTransactionId())
                 .build();
     }
 }
@@ -1,6 +1,7 @@
 package com.example.jhsfully.account.dto;
 
 import com.example.jhsfully.account.aop.AccountLockIdInterface;
+import com.example.jhsfully.account.aop.UserIdInterface;
 import com.example.jhsfully.account.type.TransactionResultType;
 import lombok.*;
 
@@ -11,7 +12,7 @@ public class UseBalance {
     @Getter
     @Setter
     @AllArgsConstructor
-    public static class Request implements AccountLockIdInterface {
+    public static class Request implements AccountLockIdInterface, UserIdInterface {
         @NotNull
         @Min(1)
         private Long userId;
@@ -0,0 +1,54 @@
+package com.example.jhsfully.account.engine;
+
+import com.example.jhsfully.account.dto.TransactionDto;
+import com.example.jhsfully.account.type.TransactionType;
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * shard 큐에 들어가는 사용/취소 요청.
+ *
+ * 호출자가 시간 초과로 포기(abandon)한 요청은 shard가 적용하지 않고,
+ * shard가 먼저 가져간(claim) 요청은 호출자가 결과를 끝까지 기다린다.
+ */
+@Getter
+public class BalanceCommand {
+    private static final int WAITING = 0;
+    private static final int CLAIMED = 1;
+    private static final int ABANDONED = 2;
+
+    private final TransactionType transactionType;
+    private final Long userId;
+    private final String transactionId;
+    private final String accountNumber;
+    private final Long amount;
+    private final CompletableFuture<TransactionDto> future = new CompletableFuture<>();
+    private final AtomicInteger state = new AtomicInteger(WAITING);
+
+    private BalanceCommand(TransactionType transactionType, Long userId,
+                           String transactionId, String accountNumber, Long amount) {
+        this.transactionType = transactionType;
+        this.userId = userId;
+        this.transactionId = transactionId;
+        this.accountNumber = accountNumber;
+        this.amount = amount;
+    }
+
+    public static BalanceCommand use(Long userId, String accountNumber, Long amount) {
+        return new BalanceCommand(TransactionType.USE, userId, null, accountNumber, amount);
+    }
+
+    public static BalanceCommand cancel(String transactionId, String accountNumber, Long amount) {
+        return new BalanceCommand(TransactionType.CANCEL, null, transactionId, accountNumber, amount);
+    }
+
+    public boolean claim() {
+        return state.compareAndSet(WAITING, CLAIMED);
+    }
+
+    public boolean abandon() {
+        return state.compareAndSet(WAITING, ABANDONED);
+    }
+}
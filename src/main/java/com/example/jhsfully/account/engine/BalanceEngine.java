@@ -0,0 +1,257 @@
+package com.example.jhsfully.account.engine;
+
+import com.example.jhsfully.account.bloom.TransactionIdFilter;
+import com.example.jhsfully.account.dto.TransactionDto;
+import com.example.jhsfully.account.event.AccountChangedEvent;
+import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.ledger.LedgerJournal;
+import com.example.jhsfully.account.ledger.LedgerRecord;
+import com.example.jhsfully.account.repository.AccountRepository;
+import com.example.jhsfully.account.repository.AccountUserRepository;
+import com.example.jhsfully.account.repository.TransactionRepository;
+import com.example.jhsfully.account.service.CancellationIndex;
+import com.example.jhsfully.account.service.BalanceExecutor;
+import com.example.jhsfully.account.type.BalanceMode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.example.jhsfully.account.type.ErrorCode.ACCOUNT_NOT_FOUND;
+import static com.example.jhsfully.account.type.ErrorCode.BALANCE_ENGINE_BUSY;
+
+/**
+ * 계좌번호 해시로 나눈 N개의 단일 스레드 shard에서 잔액을 처리하는 메모리 엔진.
+ *
+ * 같은 계좌의 요청은 항상 같은 shard에서 순서대로 처리되므로 Redis 락도,
+ * 요청마다의 DB 트랜잭션도 필요 없다. 각 shard는 자신의 저널에 먼저 기록한 뒤 응답하고,
+ * DB 반영은 BalancePersister가 뒤에서 묶어서 처리한다.
+ * 시작 시에는 DB에 반영되지 못한 저널 레코드와 dead-letter 저널을 먼저 저장한다.
+ * 해지나 배치로 DB의 계좌가 바뀌면(AccountChangedEvent) 해당 계좌를 shard 캐시에서 버린다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "account.balance.mode", havingValue = "ENGINE")
+public class BalanceEngine implements BalanceExecutor {
+    private final AccountRepository accountRepository;
+    private final AccountUserRepository accountUserRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionIdFilter transactionIdFilter;
+    private final CancellationIndex cancellationIndex;
+
+    private final Path directory;
+    private final int shardCount;
+    private final int queueSize;
+    private final int journalCapacity;
+    private final boolean fsync;
+    private final long timeoutMs;
+    private final int persistBatchSize;
+    private final int persistMaxAttempts;
+    private final Counter deadLetters;
+
+    private BalanceShard[] shards;
+    private Thread[] shardThreads;
+    private BalancePersister persister;
+    private Thread persisterThread;
+    private LedgerJournal deadLetterJournal;
+
+    public BalanceEngine(AccountRepository accountRepository,
+                         AccountUserRepository accountUserRepository,
+                         TransactionRepository transactionRepository,
+                         TransactionTemplate transactionTemplate,
+                         TransactionIdFilter transactionIdFilter,
+                         CancellationIndex cancellationIndex,
+                         MeterRegistry meterRegistry,
+                         @Value("${account.engine.directory:./engine}") String directory,
+                         @Value("${account.engine.shards:4}") int shardCount,
+                         @Value("${account.engine.queue-size:65536}") int queueSize,
+                         @Value("${account.engine.journal-capacity:67108864}") int journalCapacity,
+                         @Value("${account.engine.fsync:true}") boolean fsync,
+                         @Value("${account.engine.timeout-ms:3000}") long timeoutMs,
+                         @Value("${account.engine.persist-batch-size:500}") int persistBatchSize,
+                         @Value("${account.engine.persist-max-attempts:10}") int persistMaxAttempts) {
+        this.accountRepository = accountRepository;
+        this.accountUserRepository = accountUserRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.transactionIdFilter = transactionIdFilter;
+        this.cancellationIndex = cancellationIndex;
+        this.directory = Paths.get(directory);
+        this.shardCount = shardCount;
+        this.queueSize = queueSize;
+        this.journalCapacity = journalCapacity;
+        this.fsync = fsync;
+        this.timeoutMs = timeoutMs;
+        this.persistBatchSize = persistBatchSize;
+        this.persistMaxAttempts = persistMaxAttempts;
+        this.deadLetters = Counter.builder("account.engine.dead-letter")
+                .description("Engine transactions moved to the dead-letter journal")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        deadLetterJournal = new LedgerJournal(
+                directory.resolve("engine-dead-letter.journal"), journalCapacity, true);
+        persister = new BalancePersister(transactionTemplate,
+                accountRepository, transactionRepository, persistBatchSize,
+                persistMaxAttempts, deadLetterJournal, deadLetters);
+        recover("dead-letter", -1, deadLetterJournal);
+        shards = new BalanceShard[shardCount];
+        shardThreads = new Thread[shardCount];
+
+        for (int i = 0; i < shardCount; i++) {
+            LedgerJournal journal = new LedgerJournal(
+                    directory.resolve("engine-" + i + ".journal"), journalCapacity, false);
+            recover("shard #" + i, i, journal);
+
+            shards[i] = new BalanceShard(i, queueSize, journal, fsync, journalCapacity / 2,
+                    accountUserRepository, transactionRepository, persister,
+                    transactionIdFilter, cancellationIndex);
+            shardThreads[i] = new Thread(shards[i], "balance-shard-" + i);
+            shardThreads[i].start();
+        }
+        persister.setPersistedListener((shard, sequence) -> shards[shard].markPersisted(sequence));
+        persisterThread = new Thread(persister, "balance-persister");
+        persisterThread.start();
+
+        log.info("Balance engine started with {} shards.", shardCount);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        for (BalanceShard shard : shards) {
+            shard.stop();
+        }
+        for (Thread thread : shardThreads) {
+            thread.join();
+        }
+        persister.stop();
+        persisterThread.join();
+        deadLetterJournal.close();
+    }
+
+    @Override
+    public BalanceMode getMode() {
+        return BalanceMode.ENGINE;
+    }
+
+    @Override
+    public TransactionDto useBalance(Long userId, String accountNumber, Long amount) {
+        return submit(BalanceCommand.use(userId, accountNumber, amount));
+    }
+
+    @Override
+    public TransactionDto cancelBalance(String transactionId, String accountNumber, Long amount) {
+        return submit(BalanceCommand.cancel(transactionId, accountNumber, amount));
+    }
+
+    public int getBacklog(int shard) {
+        return shards[shard].getBacklog();
+    }
+
+    //DB에서 바뀐 계좌는 커밋 후에 캐시에서 버린다. 롤백되면 캐시도 그대로 둔다.
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onAccountChanged(AccountChangedEvent event) {
+        for (String accountNumber : event.getAccountNumbers()) {
+            shardOf(accountNumber).evict(accountNumber);
+        }
+    }
+
+    private BalanceShard shardOf(String accountNumber) {
+        return shards[Math.floorMod(accountNumber.hashCode(), shardCount)];
+    }
+
+    private TransactionDto submit(BalanceCommand command) {
+        BalanceShard shard = shardOf(command.getAccountNumber());
+        if (!shard.offer(command)) {
+            throw new AccountException(BALANCE_ENGINE_BUSY);
+        }
+
+        try {
+            try {
+                return command.getFuture().get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (command.abandon()) {
+                    throw new AccountException(BALANCE_ENGINE_BUSY);
+                }
+                // shard가 이미 처리 중이므로 결과를 버리면 안 된다.
+                return command.getFuture().get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AccountException) {
+                throw (AccountException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //DB에 저장되기 전에 종료된 거래를 저널에서 찾아 저장한다.
+    //dead-letter 저널에는 같은 거래가 두 번 남을 수 있으므로 거래 id로 한 번만 담는다.
+    private void recover(String name, int shard, LedgerJournal journal) {
+        Map<String, EngineTransaction> missing = new LinkedHashMap<>();
+
+        journal.replay(0L, record -> {
+            if (!missing.containsKey(record.getTransactionId())
+                    && transactionRepository.findByTransactionId(record.getTransactionId()).isEmpty()) {
+                missing.put(record.getTransactionId(), toEngineTransaction(shard, record));
+            }
+        });
+        if (!missing.isEmpty()) {
+            log.warn("Balance engine {} recovering {} unsaved transactions.", name, missing.size());
+            persister.persist(new ArrayList<>(missing.values()));
+        }
+        journal.reset();
+    }
+
+    private EngineTransaction toEngineTransaction(int shard, LedgerRecord record) {
+        Long accountId = accountRepository.findByAccountNumber(record.getAccountNumber())
+                .orElseThrow(() -> new AccountException(ACCOUNT_NOT_FOUND))
+                .getId();
+
+        return EngineTransaction.builder()
+                .shard(shard)
+                .sequence(record.getSequence())
+                .accountId(accountId)
+                .accountNumber(record.getAccountNumber())
+                .transactionType(record.getTransactionType())
+                .amount(record.getAmount())
+                .balanceSnapshot(record.getBalance())
+                .transactionId(record.getTransactionId())
+                .originalTransactionId(record.getOriginalTransactionId())
+                .transactedAt(LocalDateTime.ofInstant(
+                        Instant.ofEpochMilli(record.getTransactedAt()), ZoneId.systemDefault()))
+                .build();
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.jhsfully.account.engine;
+
+import com.example.jhsfully.account.domain.Transaction;
+import com.example.jhsfully.account.ledger.LedgerJournal;
+import com.example.jhsfully.account.repository.AccountRepository;
+import com.example.jhsfully.account.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static com.example.jhsfully.account.type.TransactionResultType.S;
+
+/**
+ * shard에서 확정된 거래를 모아서 DB에 저장한다.
+ * 한 묶음을 하나의 DB 트랜잭션으로 저장하며, 계좌 잔액은 묶음 안의 변경량을 합쳐 계좌마다 한 번만 더한다.
+ * 저장에 실패한 묶음은 max-attempts까지 재시도하고, 그래도 실패하면 dead-letter 저널에 남기고 알린다.
+ * dead-letter로 간 거래는 DB에 없으므로 pending에 그대로 두고, 다음 시작 시 다시 저장한다.
+ */
+@Slf4j
+public class BalancePersister implements Runnable {
+    private static final long RETRY_DELAY_MS = 1000L;
+
+    private final BlockingQueue<EngineTransaction> queue = new LinkedBlockingQueue<>();
+    private final Map<String, EngineTransaction> pending = new ConcurrentHashMap<>();
+    private final Set<String> pendingCancels = ConcurrentHashMap.newKeySet();
+    private final TransactionTemplate transactionTemplate;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final LedgerJournal deadLetterJournal;
+    private final Counter deadLetters;
+    private BiConsumer<Integer, Long> persistedListener = (shard, sequence) -> { };
+    private volatile boolean running = true;
+
+    //persist만 직접 호출하는 경우. 스레드로 돌리지 않으므로 재시도와 dead-letter가 없다.
+    public BalancePersister(TransactionTemplate transactionTemplate,
+                            AccountRepository accountRepository,
+                            TransactionRepository transactionRepository,
+                            int batchSize) {
+        this(transactionTemplate, accountRepository, transactionRepository, batchSize, 1, null, null);
+    }
+
+    public BalancePersister(TransactionTemplate transactionTemplate,
+                            AccountRepository accountRepository,
+                            TransactionRepository transactionRepository,
+                            int batchSize,
+                            int maxAttempts,
+                            LedgerJournal deadLetterJournal,
+                            Counter deadLetters) {
+        this.transactionTemplate = transactionTemplate;
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.deadLetterJournal = deadLetterJournal;
+        this.deadLetters = deadLetters;
+    }
+
+    public void setPersistedListener(BiConsumer<Integer, Long> persistedListener) {
+        this.persistedListener = persistedListener;
+    }
+
+    public void enqueue(EngineTransaction transaction) {
+        pending.put(transaction.getTransactionId(), transaction);
+        if (transaction.getOriginalTransactionId() != null) {
+            pendingCancels.add(transaction.getOriginalTransactionId());
+        }
+        queue.add(transaction);
+    }
+
+    //아직 저장되지 않은 취소 거래 중에 이 원거래를 취소한 것이 있는지
+    public boolean isCancelPending(String originalTransactionId) {
+        return pendingCancels.contains(originalTransactionId);
+    }
+
+    public Optional<EngineTransaction> findPending(String transactionId) {
+        return Optional.ofNullable(pending.get(transactionId));
+    }
+
+    /**
+     * DB 잔액에 아직 저장되지 않은 변경량을 더해 계좌를 읽는다.
+     * 묶음 저장과 같은 모니터 안에서 읽으므로 변경량을 빠뜨리거나 두 번 더하지 않는다.
+     */
+    public synchronized Optional<EngineAccount> loadAccount(String accountNumber) {
+        return accountRepository.findByAccountNumber(accountNumber)
+                .map(EngineAccount::fromEntity)
+                .map(account -> {
+                    for (EngineTransaction transaction : pending.values()) {
+                        if (account.getId().equals(transaction.getAccountId())) {
+                            account.setBalance(account.getBalance() + transaction.getDelta());
+                        }
+                    }
+                    return account;
+                });
+    }
+
+    public int getBacklog() {
+        return queue.size();
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        List<EngineTransaction> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                EngineTransaction first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                persistWithRetry(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 한 묶음을 저장한다. 복구 시에는 호출 스레드에서 직접 사용한다.
+     */
+    public void persist(List<EngineTransaction> batch) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Transaction> transactions = new ArrayList<>(batch.size());
+            Map<Long, Long> deltas = new LinkedHashMap<>();
+
+            for (EngineTransaction transaction : batch) {
+                transactions.add(Transaction.builder()
+                        .transactionType(transaction.getTransactionType())
+                        .transactionResultType(S)
+                        .account(accountRepository.getReferenceById(transaction.getAccountId()))
+                        .amount(transaction.getAmount())
+                        .balanceSnapshot(transaction.getBalanceSnapshot())
+                        .transactionId(transaction.getTransactionId())
+                        .transactedAt(transaction.getTransactedAt())
+                        .originalTransactionId(transaction.getOriginalTransactionId())
+                        .build());
+                deltas.merge(transaction.getAccountId(), transaction.getDelta(), Long::sum);
+            }
+
+            transactionRepository.saveAll(transactions);
+            LocalDateTime now = LocalDateTime.now();
+            deltas.forEach((accountId, delta) -> accountRepository.addBalance(accountId, delta, now));
+        });
+    }
+
+    private void persistWithRetry(List<EngineTransaction> batch) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                persistAndRelease(batch);
+                break;
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts && deadLetter(batch, e)) {
+                    break;
+                }
+                log.error("Failed to persist {} engine transactions. Retrying. ({}/{})",
+                        batch.size(), attempt, maxAttempts, e);
+                TimeUnit.MILLISECONDS.sleep(RETRY_DELAY_MS);
+            }
+        }
+
+        //dead-letter 저널에 남은 거래도 shard 저널에서는 지워도 된다.
+        Map<Integer, Long> persisted = new HashMap<>();
+        for (EngineTransaction transaction : batch) {
+            persisted.put(transaction.getShard(), transaction.getSequence());
+        }
+        persisted.forEach(persistedListener);
+    }
+
+    private synchronized void persistAndRelease(List<EngineTransaction> batch) {
+        persist(batch);
+        for (EngineTransaction transaction : batch) {
+            pending.remove(transaction.getTransactionId());
+            if (transaction.getOriginalTransactionId() != null) {
+                pendingCancels.remove(transaction.getOriginalTransactionId());
+            }
+        }
+    }
+
+    //저장하지 못한 묶음이 뒤의 묶음을 막지 않도록 따로 남기고 넘어간다.
+    //dead-letter 저널에도 남기지 못하면 false를 돌려주고 저장을 계속 재시도한다.
+    private boolean deadLetter(List<EngineTransaction> batch, RuntimeException cause) {
+        try {
+            long sequence = deadLetterJournal.getLastSequence();
+            for (EngineTransaction transaction : batch) {
+                deadLetterJournal.append(transaction.toLedgerRecord(++sequence));
+            }
+            deadLetterJournal.flush();
+        } catch (RuntimeException e) {
+            log.error("Failed to write {} engine transactions to dead-letter journal.", batch.size(), e);
+            return false;
+        }
+        deadLetters.increment(batch.size());
+        log.error("[ALERT] Gave up persisting {} engine transactions after {} attempts. "
+                + "Moved to dead-letter journal.", batch.size(), maxAttempts, cause);
+        return true;
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.jhsfully.account.engine;
+
+import com.example.jhsfully.account.bloom.TransactionIdFilter;
+import com.example.jhsfully.account.domain.Transaction;
+import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.ledger.LedgerJournal;
+import com.example.jhsfully.account.repository.AccountUserRepository;
+import com.example.jhsfully.account.repository.TransactionRepository;
+import com.example.jhsfully.account.service.CancellationIndex;
+import com.example.jhsfully.account.type.AccountStatus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.jhsfully.account.type.ErrorCode.*;
+import static com.example.jhsfully.account.type.TransactionResultType.S;
+import static com.example.jhsfully.account.type.TransactionType.USE;
+
+/**
+ * 계좌 일부를 전담하는 단일 스레드 처리기.
+ *
+ * 큐에서 요청을 묶음으로 꺼내 하나씩 적용하고, 묶음마다 저널을 한 번 내린 뒤 호출자에게 응답한다.
+ * 계좌 상태는 이 스레드만 만지므로 락이 필요 없다. DB 저장은 BalancePersister가 비동기로 수행한다.
+ */
+@Slf4j
+public class BalanceShard implements Runnable {
+    private static final int BATCH_SIZE = 256;
+
+    private final int index;
+    private final BlockingQueue<BalanceCommand> queue;
+    private final LedgerJournal journal;
+    private final boolean fsync;
+    private final int compactThreshold;
+    private final AccountUserRepository accountUserRepository;
+    private final TransactionRepository transactionRepository;
+    private final BalancePersister persister;
+    private final TransactionIdFilter transactionIdFilter;
+    private final CancellationIndex cancellationIndex;
+
+    private final Map<String, EngineAccount> accounts = new HashMap<>();
+    private final Set<String> batchCancels = new HashSet<>();
+    //다른 스레드가 요청한 캐시 제거. shard 스레드가 다음 묶음 전에 비운다.
+    private final Queue<String> evictions = new ConcurrentLinkedQueue<>();
+    private final AtomicLong persistedSequence = new AtomicLong();
+    private long sequence;
+    private volatile boolean running = true;
+
+    public BalanceShard(int index,
+                        int queueSize,
+                        LedgerJournal journal,
+                        boolean fsync,
+                        int compactThreshold,
+                        AccountUserRepository accountUserRepository,
+                        TransactionRepository transactionRepository,
+                        BalancePersister persister,
+                        TransactionIdFilter transactionIdFilter,
+                        CancellationIndex cancellationIndex) {
+        this.index = index;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.journal = journal;
+        this.fsync = fsync;
+        this.compactThreshold = compactThreshold;
+        this.accountUserRepository = accountUserRepository;
+        this.transactionRepository = transactionRepository;
+        this.persister = persister;
+        this.transactionIdFilter = transactionIdFilter;
+        this.cancellationIndex = cancellationIndex;
+        this.sequence = journal.getLastSequence();
+        this.persistedSequence.set(sequence);
+    }
+
+    public boolean offer(BalanceCommand command) {
+        return running && queue.offer(command);
+    }
+
+    public int getBacklog() {
+        return queue.size();
+    }
+
+    //해지나 배치로 DB의 계좌가 바뀌었으면 다음 요청 때 다시 읽도록 캐시에서 버린다.
+    public void evict(String accountNumber) {
+        evictions.add(accountNumber);
+    }
+
+    public void markPersisted(long sequence) {
+        persistedSequence.set(sequence);
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        List<BalanceCommand> batch = new ArrayList<>(BATCH_SIZE);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                BalanceCommand first = queue.poll(100, TimeUnit.MILLISECONDS);
+                evictAccounts();
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH_SIZE - 1);
+                    process(batch);
+                }
+                compactJournal();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (RuntimeException e) {
+                log.error("Balance shard #{} failed to process a batch.", index, e);
+            } finally {
+                batch.clear();
+            }
+        }
+        journal.close();
+    }
+
+    private void evictAccounts() {
+        String accountNumber;
+        while ((accountNumber = evictions.poll()) != null) {
+            accounts.remove(accountNumber);
+        }
+    }
+
+    private void process(List<BalanceCommand> batch) {
+        try {
+            applyBatch(batch);
+        } finally {
+            batchCancels.clear();
+        }
+    }
+
+    private void applyBatch(List<BalanceCommand> batch) {
+        List<BalanceCommand> applied = new ArrayList<>(batch.size());
+        List<EngineTransaction> transactions = new ArrayList<>(batch.size());
+
+        for (BalanceCommand command : batch) {
+            if (!command.claim()) {
+                continue;
+            }
+            try {
+                transactions.add(apply(command));
+                applied.add(command);
+            } catch (RuntimeException e) {
+                command.getFuture().completeExceptionally(e);
+            }
+        }
+        if (applied.isEmpty()) {
+            return;
+        }
+        if (fsync) {
+            journal.flush();
+        }
+        for (int i = 0; i < applied.size(); i++) {
+            persister.enqueue(transactions.get(i));
+            applied.get(i).getFuture().complete(transactions.get(i).toDto());
+        }
+    }
+
+    private EngineTransaction apply(BalanceCommand command) {
+        EngineAccount account;
+
+        if (command.getTransactionType() == USE) {
+            account = getAccount(command.getAccountNumber(), command.getUserId());
+            validateUseBalance(account, command);
+        } else {
+            EngineTransaction original = findTransaction(command.getTransactionId());
+            account = getAccount(command.getAccountNumber(), null);
+            validateCancelBalance(original, account, command);
+        }
+        //필터에 넣다가 실패해도 잔액이 바뀌지 않도록 번호를 먼저 발급한다.
+        String transactionId = newTransactionId();
+        long previousBalance = account.getBalance();
+        account.setBalance(command.getTransactionType() == USE
+                ? previousBalance - command.getAmount()
+                : previousBalance + command.getAmount());
+
+        EngineTransaction transaction = EngineTransaction.builder()
+                .shard(index)
+                .sequence(sequence + 1)
+                .accountId(account.getId())
+                .accountNumber(account.getAccountNumber())
+                .transactionType(command.getTransactionType())
+                .amount(command.getAmount())
+                .balanceSnapshot(account.getBalance())
+                .transactionId(transactionId)
+                .transactedAt(LocalDateTime.now())
+                .originalTransactionId(command.getTransactionType() == USE
+                        ? null : command.getTransactionId())
+                .build();
+
+        try {
+            journal.append(transaction.toLedgerRecord(transaction.getSequence()));
+        } catch (RuntimeException e) {
+            // 기록하지 못한 변경은 메모리에서도 되돌린다.
+            account.setBalance(previousBalance);
+            throw e;
+        }
+        sequence = transaction.getSequence();
+        if (transaction.getOriginalTransactionId() != null) {
+            batchCancels.add(transaction.getOriginalTransactionId());
+        }
+        return transaction;
+    }
+
+    private String newTransactionId() {
+        String transactionId = UUID.randomUUID().toString().replace("-", "");
+        transactionIdFilter.put(transactionId);
+        return transactionId;
+    }
+
+    //캐시에 없으면 DB에서 읽어온다. 사용자 검증 순서는 TransactionService와 같다.
+    private EngineAccount getAccount(String accountNumber, Long userId) {
+        EngineAccount account = accounts.get(accountNumber);
+        if (account != null) {
+            return account;
+        }
+        account = persister.loadAccount(accountNumber).orElse(null);
+        if (account == null) {
+            if (userId != null && !accountUserRepository.existsById(userId)) {
+                throw new AccountException(USER_NOT_FOUND);
+            }
+            throw new AccountException(ACCOUNT_NOT_FOUND);
+        }
+        accounts.put(accountNumber, account);
+        return account;
+    }
+
+    private EngineTransaction findTransaction(String transactionId) {
+        Optional<EngineTransaction> pending = persister.findPending(transactionId);
+        if (pending.isPresent()) {
+            return pending.get();
+        }
+        Transaction transaction = transactionRepository.findByTransactionId(transactionId)
+                .orElseThrow(() -> new AccountException(TRANSACTION_NOT_FOUND));
+        return EngineTransaction.builder()
+                .accountId(transaction.getAccount().getId())
+                .transactionType(transaction.getTransactionType())
+                .transactionResultType(transaction.getTransactionResultType())
+                .amount(transaction.getAmount())
+                .transactedAt(transaction.getTransactedAt())
+                .build();
+    }
+
+    private void validateUseBalance(EngineAccount account, BalanceCommand command) {
+        if (!Objects.equals(account.getUserId(), command.getUserId())) {
+            if (!accountUserRepository.existsById(command.getUserId())) {
+                throw new AccountException(USER_NOT_FOUND);
+            }
+            throw new AccountException(USER_ACCOUNT_UN_MATCH);
+        }
+        if (account.getAccountStatus() == AccountStatus.UNREGISTERED) {
+            throw new AccountException(ACCOUNT_ALREADY_UNREGISTERED);
+        }
+        if (command.getAmount() > account.getBalance()) {
+            throw new AccountException(AMOUNT_EXCEED_BALANCE);
+        }
+    }
+
+    private void validateCancelBalance(EngineTransaction original,
+                                       EngineAccount account,
+                                       BalanceCommand command) {
+        if (!Objects.equals(original.getAccountId(), account.getId())) {
+            throw new AccountException(TRANSACTION_ACCOUNT_UN_MATCH);
+        }
+        if (original.getTransactionType() != USE || original.getTransactionResultType() != S) {
+            throw new AccountException(TRANSACTION_NOT_CANCELLABLE);
+        }
+        if (!Objects.equals(original.getAmount(), command.getAmount())) {
+            throw new AccountException(CANCEL_MUST_FULLY);
+        }
+        if (original.getTransactedAt().isBefore(LocalDateTime.now().minusYears(1))) {
+            throw new AccountException(TOO_OLD_ORDER_TO_CANCEL);
+        }
+        //같은 묶음, 저장 대기 중인 거래, DB 순서로 이미 취소되었는지 본다.
+        String transactionId = command.getTransactionId();
+        if (batchCancels.contains(transactionId)
+                || persister.isCancelPending(transactionId)
+                || cancellationIndex.isCancelled(transactionId)) {
+            throw new AccountException(TRANSACTION_ALREADY_CANCELLED);
+        }
+    }
+
+    //DB에 모두 반영된 저널은 비워서 파일이 계속 커지지 않게 한다.
+    private void compactJournal() {
+        if (journal.size() >= compactThreshold && persistedSequence.get() == sequence) {
+            journal.reset();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.jhsfully.account.engine;
+
+import com.example.jhsfully.account.domain.Account;
+import com.example.jhsfully.account.type.AccountStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * shard가 메모리에 들고 있는 계좌 상태. shard 스레드에서만 읽고 쓴다.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+public class EngineAccount {
+    private final Long id;
+    private final Long userId;
+    private final String accountNumber;
+    private AccountStatus accountStatus;
+    private long balance;
+
+    public static EngineAccount fromEntity(Account account) {
+        return new EngineAccount(
+                account.getId(),
+                account.getAccountUser().getId(),
+                account.getAccountNumber(),
+                account.getAccountStatus(),
+                account.getBalance());
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.jhsfully.account.engine;
+
+import com.example.jhsfully.account.dto.TransactionDto;
+import com.example.jhsfully.account.ledger.LedgerRecord;
+import com.example.jhsfully.account.type.TransactionResultType;
+import com.example.jhsfully.account.type.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static com.example.jhsfully.account.type.TransactionResultType.S;
+
+/**
+ * 메모리에서 확정되었지만 아직 DB에 저장되지 않았을 수 있는 거래.
+ */
+@Getter
+@AllArgsConstructor
+@Builder
+public class EngineTransaction {
+    private final int shard;
+    private final long sequence;
+    private final Long accountId;
+    private final String accountNumber;
+    private final TransactionType transactionType;
+    //엔진에서 확정된 거래는 모두 성공이다. DB에서 읽은 원거래만 실패일 수 있다.
+    @Builder.Default
+    private final TransactionResultType transactionResultType = S;
+    private final Long amount;
+    private final Long balanceSnapshot;
+    private final String transactionId;
+    private final LocalDateTime transactedAt;
+    private final String originalTransactionId;
+
+    //계좌 잔액에 더해지는 양. 사용은 빼고 취소는 더한다.
+    public long getDelta() {
+        return transactionType == TransactionType.USE ? -amount : amount;
+    }
+
+    //저널마다 sequence가 따로 증가하므로 기록할 저널의 sequence를 받는다.
+    public LedgerRecord toLedgerRecord(long sequence) {
+        return LedgerRecord.builder()
+                .sequence(sequence)
+                .accountNumber(accountNumber)
+                .transactionType(transactionType)
+                .amount(amount)
+                .balance(balanceSnapshot)
+                .transactedAt(transactedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli())
+                .transactionId(transactionId)
+                .originalTransactionId(originalTransactionId)
+                .build();
+    }
+
+    public TransactionDto toDto() {
+        return TransactionDto.builder()
+                .accountNumber(accountNumber)
+                .transactionType(transactionType)
+                .transactionResultType(transactionResultType)
+                .amount(amount)
+                .balanceSnapshot(balanceSnapshot)
+                .transactionId(transactionId)
+                .transactedAt(transactedAt)
+                .originalTransactionId(originalTransactionId)
+                .build();
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.jhsfully.account.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collection;
+
+/**
+ * 잔액 사용/취소가 아닌 경로(해지, 이자/수수료 배치)로 계좌가 바뀌었을 때 발행되는 이벤트.
+ * 계좌를 메모리나 Redis에 들고 있는 실행기는 커밋 후에 해당 계좌를 버리고 DB에서 다시 읽는다.
+ */
+@Getter
+@AllArgsConstructor
+public class AccountChangedEvent {
+    private final Collection<String> accountNumbers;
+}
@@ -0,0 +1,17 @@
+package com.example.jhsfully.account.event;
+
+import com.example.jhsfully.account.dto.TransactionDto;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 잔액 사용/취소가 성공했을 때 발행되는 이벤트.
+ * 거래를 저장한 트랜잭션 안에서 동기적으로 발행된다.
+ * userId는 계좌 소유주로, 사용자별 잔액 스트림이 받을 대상을 고를 때 쓴다.
+ */
+@Getter
+@AllArgsConstructor
+public class BalanceChangedEvent {
+    private final TransactionDto transaction;
+    private final Long userId;
+}
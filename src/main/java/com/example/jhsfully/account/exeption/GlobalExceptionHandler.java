@@ -1,15 +1,19 @@
 package com.example.jhsfully.account.exeption;
 
+import com.example.jhsfully.account.deadline.RequestDeadline;
 import com.example.jhsfully.account.dto.ErrorResponse;
 import com.example.jhsfully.account.type.ErrorCode;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.TransactionTimedOutException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import static com.example.jhsfully.account.type.ErrorCode.DEADLINE_EXCEEDED;
 import static com.example.jhsfully.account.type.ErrorCode.INTERNAL_SERVER_ERROR;
 import static com.example.jhsfully.account.type.ErrorCode.INVALID_REQUEST;
 
@@ -38,8 +42,20 @@ public class GlobalExceptionHandler {
         return new ErrorResponse(INVALID_REQUEST, INVALID_REQUEST.getDescription());
     }
 
+    @ExceptionHandler({QueryTimeoutException.class, TransactionTimedOutException.class})
+    public ErrorResponse handleTimeoutException(RuntimeException e){
+        log.error("{} is occurred.", e.getClass().getSimpleName());
+
+        return new ErrorResponse(DEADLINE_EXCEEDED, DEADLINE_EXCEEDED.getDescription());
+    }
+
     @ExceptionHandler(Exception.class)
     public ErrorResponse handleException(Exception e){
+        //Hibernate가 트랜잭션 타임아웃을 다른 예외로 감싸서 던지는 경우
+        if(RequestDeadline.isExpired()){
+            log.error("Request deadline exceeded.", e);
+            return new ErrorResponse(DEADLINE_EXCEEDED, DEADLINE_EXCEEDED.getDescription());
+        }
         log.error("Exception is occurred.", e);
 
         return new ErrorResponse(INTERNAL_SERVER_ERROR,
@@ -0,0 +1,23 @@
+package com.example.jhsfully.account.exeption;
+
+import com.example.jhsfully.account.engine.BalanceCommand;
+import lombok.Getter;
+
+/**
+ * 묶음 커밋 중 한 요청을 처리하다 예상하지 못한 예외가 난 경우.
+ * 묶음 트랜잭션은 롤백되고, 호출자는 이 요청만 빼고 다시 커밋한다.
+ */
+@Getter
+public class GroupCommandException extends RuntimeException {
+    private final transient BalanceCommand command;
+
+    public GroupCommandException(BalanceCommand command, RuntimeException cause) {
+        super(cause);
+        this.command = command;
+    }
+
+    @Override
+    public synchronized RuntimeException getCause() {
+        return (RuntimeException) super.getCause();
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.jhsfully.account.ledger;
+
+import com.example.jhsfully.account.dto.TransactionDto;
+import com.example.jhsfully.account.event.BalanceChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 이벤트 소싱 방식의 잔액 원장.
+ *
+ * 잔액 사용/취소가 커밋되면 저널에 한 건을 순차 기록하고,
+ * 잔액은 마지막 스냅샷 + 이후 저널 재생으로 복원한다.
+ * 롤백된 거래는 기록하지 않는다. 커밋 후 저널 기록에 실패하면 로그만 남고,
+ * 어긋난 잔액은 LedgerVerifier가 DB와 비교해 찾아낸다.
+ *
+ * 잔액의 원본은 여전히 DB의 Account.balance이고, 원장은 커밋된 결과를 뒤따라 적는 그림자다.
+ * 거래 서비스는 원장을 읽지 않으며, 원장이 꺼져 있거나 기록에 실패해도 거래는 그대로 성공한다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "account.ledger.enabled", havingValue = "true")
+public class LedgerEngine {
+    private static final String JOURNAL_FILE = "ledger.journal";
+    private static final String SNAPSHOT_FILE = "ledger.snapshot";
+
+    private final Path directory;
+    private final int journalCapacity;
+    private final boolean fsync;
+
+    private final Map<String, Long> balances = new ConcurrentHashMap<>();
+    private LedgerJournal journal;
+    private LedgerSnapshotStore snapshotStore;
+    private long sequence;
+
+    public LedgerEngine(@Value("${account.ledger.directory:./ledger}") String directory,
+                        @Value("${account.ledger.journal-capacity:67108864}") int journalCapacity,
+                        @Value("${account.ledger.fsync:false}") boolean fsync) {
+        this.directory = Paths.get(directory);
+        this.journalCapacity = journalCapacity;
+        this.fsync = fsync;
+    }
+
+    @PostConstruct
+    public void recover() {
+        long start = System.currentTimeMillis();
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        snapshotStore = new LedgerSnapshotStore(directory.resolve(SNAPSHOT_FILE));
+        journal = new LedgerJournal(directory.resolve(JOURNAL_FILE), journalCapacity, fsync);
+
+        long snapshotSequence = snapshotStore.load()
+                .map(snapshot -> {
+                    balances.putAll(snapshot.getBalances());
+                    return snapshot.getSequence();
+                })
+                .orElse(0L);
+
+        int[] replayed = {0};
+        journal.replay(snapshotSequence, record -> {
+            balances.put(record.getAccountNumber(), record.getBalance());
+            replayed[0]++;
+        });
+        sequence = Math.max(snapshotSequence, journal.getLastSequence());
+
+        log.info("Ledger recovered : {} accounts, {} records replayed after snapshot #{} ({} ms)",
+                balances.size(), replayed[0], snapshotSequence,
+                System.currentTimeMillis() - start);
+    }
+
+    //롤백된 거래가 원장에 남지 않도록 커밋 후에 기록한다. 트랜잭션 밖에서 발행된 이벤트는 바로 기록한다.
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBalanceChanged(BalanceChangedEvent event) {
+        try {
+            append(event.getTransaction());
+        } catch (RuntimeException e) {
+            log.error("Failed to append ledger record : {}",
+                    event.getTransaction().getTransactionId(), e);
+        }
+    }
+
+    public synchronized long append(TransactionDto transaction) {
+        long next = sequence + 1;
+        journal.append(LedgerRecord.builder()
+                .sequence(next)
+                .accountNumber(transaction.getAccountNumber())
+                .transactionType(transaction.getTransactionType())
+                .amount(transaction.getAmount())
+                .balance(transaction.getBalanceSnapshot())
+                .transactedAt(transaction.getTransactedAt()
+                        .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli())
+                .transactionId(transaction.getTransactionId())
+                .build());
+        sequence = next;
+        balances.put(transaction.getAccountNumber(), transaction.getBalanceSnapshot());
+        return next;
+    }
+
+    public Optional<Long> getBalance(String accountNumber) {
+        return Optional.ofNullable(balances.get(accountNumber));
+    }
+
+    /**
+     * 현재 잔액을 스냅샷으로 남기고 저널을 비운다.
+     * 스냅샷이 디스크에 내려간 뒤에만 저널을 비우므로, 도중에 죽어도 이전 스냅샷 + 저널로 복원된다.
+     * append와 같은 모니터를 쓰므로 스냅샷 도중 기록되는 레코드는 없다.
+     */
+    @Scheduled(fixedDelayString = "${account.ledger.snapshot-interval-ms:60000}")
+    public synchronized void snapshot() {
+        if (journal.size() == 0) {
+            return;
+        }
+        snapshotStore.save(sequence, new HashMap<>(balances));
+        journal.reset();
+        log.debug("Ledger snapshot #{} saved.", sequence);
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        snapshot();
+        journal.close();
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.jhsfully.account.ledger;
+
+import com.example.jhsfully.account.type.TransactionType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * 메모리 맵 파일 기반의 append-only 저널.
+ *
+ * 레코드 포맷 : [int length][int crc32][payload]
+ * payload    : [long sequence][byte type][long amount][long balance][long transactedAt]
+ *              [short accountNumberLength][accountNumber bytes]
+ *              [short transactionIdLength][transactionId bytes]
+ *
+ * 길이가 0 이거나 CRC가 맞지 않는 레코드, 혹은 sequence가 증가하지 않는 레코드를 만나면
+ * 그 지점을 저널의 끝으로 본다. (중간에 끊긴 쓰기, 리셋 이전의 잔여 데이터)
+ */
+@Slf4j
+public class LedgerJournal implements AutoCloseable {
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+    private static final int FIXED_PAYLOAD_SIZE =
+            Long.BYTES * 4 + Byte.BYTES + Short.BYTES * 2;
+
+    private final FileChannel channel;
+    private final boolean fsync;
+    private MappedByteBuffer buffer;
+    private long lastSequence;
+
+    public LedgerJournal(Path file, int initialCapacity, boolean fsync) {
+        this.fsync = fsync;
+        try {
+            this.channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            long capacity = Math.max(channel.size(), initialCapacity);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.buffer.position(0);
+        this.lastSequence = 0L;
+    }
+
+    /**
+     * 저장된 레코드 중 afterSequence 보다 큰 것들을 순서대로 전달하고,
+     * 쓰기 위치를 마지막 유효 레코드 뒤로 옮긴다.
+     */
+    public synchronized void replay(long afterSequence, Consumer<LedgerRecord> consumer) {
+        buffer.position(0);
+        long previous = 0L;
+
+        while (true) {
+            int start = buffer.position();
+            LedgerRecord record = readNext(previous);
+            if (record == null) {
+                buffer.position(start);
+                break;
+            }
+            previous = record.getSequence();
+            if (record.getSequence() > afterSequence) {
+                consumer.accept(record);
+            }
+        }
+        lastSequence = previous;
+    }
+
+    /**
+     * 레코드 한 건을 순차적으로 기록한다.
+     */
+    public synchronized void append(LedgerRecord record) {
+        if (record.getSequence() <= lastSequence) {
+            throw new IllegalStateException("Ledger sequence must increase : "
+                    + record.getSequence() + " <= " + lastSequence);
+        }
+        byte[] accountNumber = record.getAccountNumber().getBytes(StandardCharsets.UTF_8);
+        byte[] transactionId = record.getTransactionId() == null ? new byte[0]
+                : record.getTransactionId().getBytes(StandardCharsets.UTF_8);
+        byte[] originalTransactionId = record.getOriginalTransactionId() == null ? null
+                : record.getOriginalTransactionId().getBytes(StandardCharsets.UTF_8);
+        int payloadSize = FIXED_PAYLOAD_SIZE + accountNumber.length + transactionId.length
+                + (originalTransactionId == null ? 0 : Short.BYTES + originalTransactionId.length);
+
+        ensureCapacity(HEADER_SIZE + payloadSize + Integer.BYTES);
+
+        int start = buffer.position();
+        buffer.position(start + HEADER_SIZE);
+        buffer.putLong(record.getSequence());
+        buffer.put((byte) record.getTransactionType().ordinal());
+        buffer.putLong(record.getAmount());
+        buffer.putLong(record.getBalance());
+        buffer.putLong(record.getTransactedAt());
+        buffer.putShort((short) accountNumber.length);
+        buffer.put(accountNumber);
+        buffer.putShort((short) transactionId.length);
+        buffer.put(transactionId);
+        if (originalTransactionId != null) {
+            buffer.putShort((short) originalTransactionId.length);
+            buffer.put(originalTransactionId);
+        }
+        int end = buffer.position();
+
+        buffer.putInt(start + Integer.BYTES, checksum(start + HEADER_SIZE, payloadSize));
+        // 길이는 마지막에 써서, 중간에 끊긴 레코드는 길이 0 또는 CRC 불일치로 보이게 한다.
+        buffer.putInt(start, payloadSize);
+        buffer.position(end);
+
+        if (fsync) {
+            buffer.force();
+        }
+        lastSequence = record.getSequence();
+    }
+
+    /**
+     * 여러 건을 기록한 뒤 한 번에 디스크로 내린다. (group fsync)
+     */
+    public synchronized void flush() {
+        buffer.force();
+    }
+
+    /**
+     * 스냅샷으로 모든 레코드가 반영된 뒤 저널을 처음부터 다시 쓴다.
+     * 뒤에 남은 이전 레코드는 sequence가 작으므로 재생 시 무시된다.
+     */
+    public synchronized void reset() {
+        buffer.putInt(0, 0);
+        buffer.position(0);
+        buffer.force();
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    public synchronized int size() {
+        return buffer.position();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private LedgerRecord readNext(long previousSequence) {
+        if (buffer.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int start = buffer.position();
+        int payloadSize = buffer.getInt();
+        int crc = buffer.getInt();
+        if (payloadSize < FIXED_PAYLOAD_SIZE || payloadSize > buffer.remaining()) {
+            return null;
+        }
+        if (checksum(start + HEADER_SIZE, payloadSize) != crc) {
+            log.warn("Ledger journal checksum mismatch at position {}", start);
+            return null;
+        }
+
+        long sequence = buffer.getLong();
+        if (sequence <= previousSequence) {
+            return null;
+        }
+        TransactionType type = TransactionType.values()[buffer.get()];
+        long amount = buffer.getLong();
+        long balance = buffer.getLong();
+        long transactedAt = buffer.getLong();
+        byte[] accountNumber = new byte[buffer.getShort()];
+        buffer.get(accountNumber);
+        byte[] transactionId = new byte[buffer.getShort()];
+        buffer.get(transactionId);
+        byte[] originalTransactionId = null;
+        if (buffer.position() < start + HEADER_SIZE + payloadSize) {
+            originalTransactionId = new byte[buffer.getShort()];
+            buffer.get(originalTransactionId);
+        }
+
+        return LedgerRecord.builder()
+                .sequence(sequence)
+                .transactionType(type)
+                .amount(amount)
+                .balance(balance)
+                .transactedAt(transactedAt)
+                .accountNumber(new String(accountNumber, StandardCharsets.UTF_8))
+                .transactionId(transactionId.length == 0 ? null
+                        : new String(transactionId, StandardCharsets.UTF_8))
+                .originalTransactionId(originalTransactionId == null ? null
+                        : new String(originalTransactionId, StandardCharsets.UTF_8))
+                .build();
+    }
+
+    private int checksum(int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(offset + length).position(offset);
+        CRC32 crc32 = new CRC32();
+        crc32.update(view);
+        return (int) crc32.getValue();
+    }
+
+    private void ensureCapacity(int required) {
+        if (buffer.remaining() >= required) {
+            return;
+        }
+        int position = buffer.position();
+        long capacity = (long) buffer.capacity() * 2;
+        while (capacity - position < required) {
+            capacity *= 2;
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Ledger journal is full. Take a snapshot first.");
+        }
+        try {
+            buffer.force();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            buffer.position(position);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
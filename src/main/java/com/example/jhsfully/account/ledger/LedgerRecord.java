@@ -0,0 +1,25 @@
+package com.example.jhsfully.account.ledger;
+
+import com.example.jhsfully.account.type.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * 저널에 기록되는 한 건의 잔액 변경.
+ * balance는 변경이 적용된 이후의 잔액이므로, 재생 시 마지막 레코드만으로 잔액이 결정된다.
+ * originalTransactionId는 취소 거래에만 있으며, 없으면 기록하지 않는다. (이전 형식과 호환)
+ */
+@Getter
+@AllArgsConstructor
+@Builder
+public class LedgerRecord {
+    private final long sequence;
+    private final String accountNumber;
+    private final TransactionType transactionType;
+    private final long amount;
+    private final long balance;
+    private final long transactedAt;
+    private final String transactionId;
+    private final String originalTransactionId;
+}
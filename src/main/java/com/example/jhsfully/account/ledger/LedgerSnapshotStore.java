@@ -0,0 +1,110 @@
+package com.example.jhsfully.account.ledger;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.CRC32;
+
+/**
+ * 계좌별 잔액 스냅샷을 파일로 저장/복원한다.
+ * 임시 파일에 모두 기록하고 fsync한 후 교체하고, 교체 후에는 디렉터리도 fsync한다.
+ * 그래서 save가 돌아오면 전원이 나가도 스냅샷 파일은 새 내용으로 완전한 상태로 남는다.
+ */
+@Slf4j
+public class LedgerSnapshotStore {
+    private final Path file;
+
+    public LedgerSnapshotStore(Path file) {
+        this.file = file;
+    }
+
+    public void save(long sequence, Map<String, Long> balances) {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc32 = new CRC32();
+
+        try (FileOutputStream fileOut = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                     new BufferedOutputStream(fileOut), crc32))) {
+            out.writeLong(sequence);
+            out.writeInt(balances.size());
+            for (Map.Entry<String, Long> entry : balances.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+            out.flush();
+            // 체크섬은 본문 뒤에 붙는다. (체크섬 자체는 계산에 포함하지 않음)
+            long checksum = crc32.getValue();
+            out.writeLong(checksum);
+            out.flush();
+            // 내용이 디스크에 내려가기 전에 교체하면 빈 파일로 바뀔 수 있다.
+            fileOut.getChannel().force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try {
+            Files.move(temp, file,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 이름 교체는 디렉터리 항목이 디스크에 내려가야 확정된다.
+    private void forceDirectory() throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException e) {
+            // 디렉터리를 열 수 없는 OS(Windows)에서는 파일 교체만으로 만족한다.
+            log.debug("Directory fsync is not supported : {}", directory);
+        }
+    }
+
+    public Optional<Snapshot> load() {
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        CRC32 crc32 = new CRC32();
+
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file)), crc32))) {
+            long sequence = in.readLong();
+            int size = in.readInt();
+            Map<String, Long> balances = new HashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                balances.put(in.readUTF(), in.readLong());
+            }
+            long expected = crc32.getValue();
+            if (in.readLong() != expected) {
+                log.error("Ledger snapshot checksum mismatch : {}", file);
+                return Optional.empty();
+            }
+            return Optional.of(new Snapshot(sequence, balances));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Snapshot {
+        private final long sequence;
+        private final Map<String, Long> balances;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.jhsfully.account.ledger;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.nio.file.Path;
+
+@Getter
+@Builder
+@AllArgsConstructor
+public class LedgerVerificationReport {
+    private long cutoffTransactionId;
+    private long accounts;
+    private long transactions;
+    private long discrepancies;
+    private long elapsedMillis;
+    private Path reportFile;
+}
@@ -0,0 +1,312 @@
+package com.example.jhsfully.account.ledger;
+
+import com.example.jhsfully.account.domain.EnumCodeConverter;
+import com.example.jhsfully.account.domain.TransactionIdConverter;
+import com.example.jhsfully.account.shard.ShardRouter;
+import com.example.jhsfully.account.type.DiscrepancyType;
+import com.example.jhsfully.account.type.TransactionResultType;
+import com.example.jhsfully.account.type.TransactionType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * balanceSnapshot 사슬로 잔액 원장을 검증한다.
+ *
+ * 계좌 id 범위를 fork/join으로 잘게 나누고, 범위마다 거래를 (계좌, id) 순서로 흘려 읽으며
+ * 계좌 하나씩 사슬을 따라간다. 메모리에는 현재 계좌의 직전 스냅샷만 둔다.
+ * - 성공한 사용/수수료는 직전 스냅샷 - 금액, 성공한 취소/이자는 직전 스냅샷 + 금액이어야 한다.
+ * - 마지막 스냅샷은 계좌 잔액과 같아야 한다.
+ * - 취소는 같은 계좌의 성공한 사용 거래를 같은 금액으로 가리켜야 한다.
+ * 실패 거래는 잔액을 바꾸지 않고, 락 밖에서 기록될 수 있어 사슬에서 뺀다.
+ *
+ * 시작할 때의 최대 거래 id까지만 읽고 락 없이 읽기만 하므로 운영 트래픽을 막지 않는다.
+ * 그 사이 잔액이 바뀐 계좌는 마지막 잔액을 한 번 더 읽어 확인한 뒤에만 보고한다.
+ * 불일치는 report-directory에 CSV로 남긴다.
+ */
+@Slf4j
+@Component
+public class LedgerVerifier {
+    private static final String STREAM_SQL =
+            "SELECT t.account_id, t.id, t.transaction_id, t.transaction_type, t.transaction_result_type, "
+                    + "t.amount, t.balance_snapshot, t.original_transaction_id, "
+                    + "a.account_number, a.balance, "
+                    + "o.account_id AS original_account_id, o.amount AS original_amount, "
+                    + "o.transaction_type AS original_type, o.transaction_result_type AS original_result "
+                    + "FROM transaction t "
+                    + "JOIN account a ON a.id = t.account_id "
+                    + "LEFT JOIN transaction o ON o.transaction_id = t.original_transaction_id "
+                    + "WHERE t.account_id BETWEEN ? AND ? AND t.id <= ? "
+                    + "ORDER BY t.account_id, t.id";
+    private static final String RECHECK_SQL =
+            "SELECT a.balance, (SELECT t.balance_snapshot FROM transaction t "
+                    + "WHERE t.account_id = a.id AND t.transaction_result_type = "
+                    + EnumCodeConverter.code(TransactionResultType.S) + " "
+                    + "ORDER BY t.id DESC LIMIT 1) AS last_snapshot "
+                    + "FROM account a WHERE a.id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+    private final ForkJoinPool pool;
+    private final long rangeSize;
+    private final int fetchSize;
+    private final Path reportDirectory;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public LedgerVerifier(DataSource dataSource,
+                          ShardRouter shardRouter,
+                          @Value("${account.verifier.parallelism:4}") int parallelism,
+                          @Value("${account.verifier.range-size:10000}") long rangeSize,
+                          @Value("${account.verifier.fetch-size:1000}") int fetchSize,
+                          @Value("${account.verifier.report-directory:./reports}") String reportDirectory) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.shardRouter = shardRouter;
+        this.pool = new ForkJoinPool(parallelism);
+        this.rangeSize = rangeSize;
+        this.fetchSize = fetchSize;
+        this.reportDirectory = Paths.get(reportDirectory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Scheduled(cron = "${account.verifier.cron:-}")
+    public void scheduledVerify() {
+        verify();
+    }
+
+    //이미 실행 중이면 null을 반환한다.
+    public LedgerVerificationReport verify() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Ledger verification is already running.");
+            return null;
+        }
+        long startedAt = System.currentTimeMillis();
+        try {
+            Files.createDirectories(reportDirectory);
+            Path reportFile = reportDirectory.resolve("ledger-"
+                    + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".csv");
+            try (ReportWriter writer = new ReportWriter(reportFile)) {
+                Counters counters = new Counters();
+                long cutoff = 0L;
+                for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+                    cutoff = Math.max(cutoff, verifyShard(shard, writer, counters));
+                }
+                LedgerVerificationReport report = LedgerVerificationReport.builder()
+                        .cutoffTransactionId(cutoff)
+                        .accounts(counters.accounts.get())
+                        .transactions(counters.transactions.get())
+                        .discrepancies(writer.count.get())
+                        .elapsedMillis(System.currentTimeMillis() - startedAt)
+                        .reportFile(reportFile)
+                        .build();
+                log.info("Ledger verified. accounts={}, transactions={}, discrepancies={}, elapsed={}ms, report={}",
+                        report.getAccounts(), report.getTransactions(), report.getDiscrepancies(),
+                        report.getElapsedMillis(), reportFile);
+                return report;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private long verifyShard(int shard, ReportWriter writer, Counters counters) {
+        return shardRouter.call(shard, () -> {
+            Long cutoff = jdbcTemplate.queryForObject("SELECT MAX(id) FROM transaction", Long.class);
+            Long minAccountId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM account", Long.class);
+            Long maxAccountId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM account", Long.class);
+            if (cutoff == null || minAccountId == null) {
+                return 0L;
+            }
+            pool.invoke(new RangeTask(shard, minAccountId, maxAccountId, cutoff, writer, counters));
+            return cutoff;
+        });
+    }
+
+    private class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int shard;
+        private final long from;
+        private final long to;
+        private final long cutoff;
+        private final ReportWriter writer;
+        private final Counters counters;
+
+        private RangeTask(int shard, long from, long to, long cutoff,
+                          ReportWriter writer, Counters counters) {
+            this.shard = shard;
+            this.from = from;
+            this.to = to;
+            this.cutoff = cutoff;
+            this.writer = writer;
+            this.counters = counters;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from < rangeSize) {
+                shardRouter.call(shard, () -> {
+                    verifyRange();
+                    return null;
+                });
+                return;
+            }
+            long middle = from + (to - from) / 2;
+            invokeAll(new RangeTask(shard, from, middle, cutoff, writer, counters),
+                    new RangeTask(shard, middle + 1, to, cutoff, writer, counters));
+        }
+
+        private void verifyRange() {
+            ChainState chain = new ChainState(writer, counters);
+            jdbcTemplate.query(STREAM_SQL, chain::accept, from, to, cutoff);
+            chain.finish();
+        }
+    }
+
+    //계좌 하나의 사슬 상태. 계좌가 바뀌면 이전 계좌의 마지막 잔액을 확인한다.
+    private class ChainState {
+        private final ReportWriter writer;
+        private final Counters counters;
+
+        private long accountId = -1L;
+        private String accountNumber;
+        private long balance;
+        private Long previous;
+
+        private ChainState(ReportWriter writer, Counters counters) {
+            this.writer = writer;
+            this.counters = counters;
+        }
+
+        private void accept(ResultSet rs) throws SQLException {
+            long rowAccountId = rs.getLong("account_id");
+            if (rowAccountId != accountId) {
+                finish();
+                accountId = rowAccountId;
+                accountNumber = rs.getString("account_number");
+                balance = rs.getLong("balance");
+                previous = null;
+                counters.accounts.incrementAndGet();
+            }
+            counters.transactions.incrementAndGet();
+            if (rs.getByte("transaction_result_type") != EnumCodeConverter.code(TransactionResultType.S)) {
+                return;
+            }
+
+            String transactionId = TransactionIdConverter.toHex(rs.getBytes("transaction_id"));
+            long amount = rs.getLong("amount");
+            long snapshot = rs.getLong("balance_snapshot");
+            TransactionType type = TransactionType.values()[rs.getByte("transaction_type")];
+            boolean cancel = type == TransactionType.CANCEL;
+            boolean credit = cancel || type == TransactionType.INTEREST;
+            if (previous != null) {
+                long expected = credit ? previous + amount : previous - amount;
+                if (expected != snapshot) {
+                    writer.write(DiscrepancyType.SNAPSHOT_MISMATCH, accountNumber, transactionId,
+                            expected, snapshot);
+                }
+            }
+            if (cancel) {
+                checkOriginal(rs, transactionId, amount);
+            }
+            //불일치가 있어도 기록된 스냅샷부터 다시 따라가서 한 번의 오류가 뒤로 번지지 않게 한다.
+            previous = snapshot;
+        }
+
+        private void checkOriginal(ResultSet rs, String transactionId, long amount) throws SQLException {
+            long originalAccountId = rs.getLong("original_account_id");
+            if (rs.wasNull()) {
+                writer.write(DiscrepancyType.ORIGINAL_NOT_FOUND, accountNumber, transactionId, null, null);
+            } else if (originalAccountId != accountId) {
+                writer.write(DiscrepancyType.ORIGINAL_ACCOUNT_MISMATCH, accountNumber, transactionId,
+                        accountId, originalAccountId);
+            } else if (rs.getByte("original_type") != EnumCodeConverter.code(TransactionType.USE)
+                    || rs.getByte("original_result") != EnumCodeConverter.code(TransactionResultType.S)) {
+                writer.write(DiscrepancyType.ORIGINAL_NOT_CANCELLABLE, accountNumber, transactionId, null, null);
+            } else if (rs.getLong("original_amount") != amount) {
+                writer.write(DiscrepancyType.CANCEL_AMOUNT_MISMATCH, accountNumber, transactionId,
+                        rs.getLong("original_amount"), amount);
+            }
+        }
+
+        private void finish() {
+            if (previous == null || previous == balance) {
+                return;
+            }
+            //읽는 동안 잔액이 바뀌었을 수 있으니 지금 값으로 한 번 더 본다.
+            boolean consistent = Boolean.TRUE.equals(jdbcTemplate.query(RECHECK_SQL, rs -> {
+                if (!rs.next()) {
+                    return false;
+                }
+                long currentBalance = rs.getLong("balance");
+                long lastSnapshot = rs.getLong("last_snapshot");
+                return !rs.wasNull() && currentBalance == lastSnapshot;
+            }, accountId));
+            if (!consistent) {
+                writer.write(DiscrepancyType.FINAL_BALANCE_MISMATCH, accountNumber, null, previous, balance);
+            }
+        }
+    }
+
+    private static class Counters {
+        private final AtomicLong accounts = new AtomicLong();
+        private final AtomicLong transactions = new AtomicLong();
+    }
+
+    //여러 작업 스레드가 한 파일에 줄 단위로 쓴다.
+    private static class ReportWriter implements AutoCloseable {
+        private final BufferedWriter writer;
+        private final AtomicLong count = new AtomicLong();
+
+        private ReportWriter(Path file) throws IOException {
+            this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            this.writer.write("type,accountNumber,transactionId,expected,actual");
+            this.writer.newLine();
+        }
+
+        private synchronized void write(DiscrepancyType type, String accountNumber, String transactionId,
+                                        Long expected, Long actual) {
+            count.incrementAndGet();
+            try {
+                writer.write(String.join(",", type.name(), accountNumber,
+                        Objects.toString(transactionId, ""),
+                        Objects.toString(expected, ""), Objects.toString(actual, "")));
+                writer.newLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
@@ -2,9 +2,20 @@ package com.example.jhsfully.account.repository;
 
 import com.example.jhsfully.account.domain.Account;
 import com.example.jhsfully.account.domain.AccountUser;
+import com.example.jhsfully.account.dto.AccountDto;
+import com.example.jhsfully.account.dto.AccountInfo;
+import com.example.jhsfully.account.type.AccountStatus;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,9 +23,54 @@ import java.util.Optional;
 public interface AccountRepository extends JpaRepository<Account, Long> {
     Optional<Account> findFirstByOrderByIdDesc();
 
+    Optional<Account> findFirstByOrderByIdAsc();
+
     Integer countByAccountUser(AccountUser accountUser);
 
     Optional<Account> findByAccountNumber(String AccountNumber);
 
     List<Account> findByAccountUser(AccountUser accountUser);
+
+    @EntityGraph(attributePaths = "accountUser")
+    Optional<Account> findWithAccountUserById(Long id);
+
+    //조회 전용: 엔티티 대신 DTO로 바로 읽어 영속성 컨텍스트를 거치지 않는다.
+    @Query("select new com.example.jhsfully.account.dto.AccountDto(" +
+            "a.accountUser.id, a.accountNumber, a.balance, a.registeredAt, a.unRegisteredAt) " +
+            "from Account a where a.accountUser.id = :userId order by a.id")
+    List<AccountDto> findAccountDtosByUserId(@Param("userId") Long userId);
+
+    //account_number 인덱스를 탄다. IN 목록의 크기는 호출하는 쪽에서 나눈다.
+    @Query("select new com.example.jhsfully.account.dto.AccountInfo(a.accountNumber, a.balance) " +
+            "from Account a where a.accountNumber in :accountNumbers")
+    List<AccountInfo> findAccountInfosByAccountNumberIn(
+            @Param("accountNumbers") Collection<String> accountNumbers);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Account a where a.accountNumber = :accountNumber")
+    Optional<Account> findByAccountNumberForUpdate(@Param("accountNumber") String accountNumber);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Account a where a.id = :id")
+    Optional<Account> findByIdForUpdate(@Param("id") Long id);
+
+    @Query("select a.accountNumber from Account a " +
+            "where a.id between :fromId and :toId and a.accountStatus = :status order by a.id")
+    List<String> findAccountNumbersByIdBetween(@Param("fromId") Long fromId,
+                                               @Param("toId") Long toId,
+                                               @Param("status") AccountStatus status);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Account a " +
+            "where a.id between :fromId and :toId and a.accountStatus = :status order by a.id")
+    List<Account> findByIdBetweenForUpdate(@Param("fromId") Long fromId,
+                                           @Param("toId") Long toId,
+                                           @Param("status") AccountStatus status);
+
+    //변경량만 더하므로 다른 경로가 그 사이에 바꾼 잔액을 덮어쓰지 않는다.
+    @Modifying
+    @Query("update Account a set a.balance = a.balance + :delta, a.updatedAt = :updatedAt where a.id = :id")
+    int addBalance(@Param("id") Long id,
+                   @Param("delta") Long delta,
+                   @Param("updatedAt") LocalDateTime updatedAt);
 }
@@ -0,0 +1,16 @@
+package com.example.jhsfully.account.repository;
+
+import com.example.jhsfully.account.domain.BatchCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface BatchCheckpointRepository extends JpaRepository<BatchCheckpoint, Long> {
+
+    @Query("select c.chunkIndex from BatchCheckpoint c where c.runId = :runId")
+    List<Long> findChunkIndexesByRunId(@Param("runId") String runId);
+}
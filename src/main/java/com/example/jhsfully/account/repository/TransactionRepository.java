@@ -1,9 +1,15 @@
 package com.example.jhsfully.account.repository;
 
 import com.example.jhsfully.account.domain.Transaction;
+import com.example.jhsfully.account.dto.TransactionDto;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,4 +17,28 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
 
     Optional<Transaction> findByTransactionId(String transactionId);
 
+    List<Transaction> findByTransactionIdIn(Collection<String> transactionIds);
+
+    boolean existsByOriginalTransactionId(String originalTransactionId);
+
+    @Query("select max(t.id) from Transaction t")
+    Optional<Long> findMaxId();
+
+    @Query("select t.id as id, t.transactionId as transactionId from Transaction t " +
+            "where t.id > :afterId order by t.id")
+    List<TransactionKey> findTransactionKeysAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    //조회 전용: 계좌 번호만 조인해서 DTO로 바로 읽는다.
+    @Query("select new com.example.jhsfully.account.dto.TransactionDto(" +
+            "a.accountNumber, t.transactionType, t.transactionResultType, t.amount, " +
+            "t.balanceSnapshot, t.transactionId, t.transactedAt, t.originalTransactionId) " +
+            "from Transaction t join t.account a where t.transactionId = :transactionId")
+    Optional<TransactionDto> findDtoByTransactionId(@Param("transactionId") String transactionId);
+
+    interface TransactionKey {
+        Long getId();
+
+        String getTransactionId();
+    }
+
 }
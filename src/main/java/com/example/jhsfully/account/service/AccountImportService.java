@@ -0,0 +1,279 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.domain.EnumCodeConverter;
+import com.example.jhsfully.account.dto.ImportAccount;
+import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.shard.ShardRouter;
+import com.example.jhsfully.account.type.AccountStatus;
+import com.example.jhsfully.account.type.ErrorCode;
+import com.example.jhsfully.account.type.ImportFormat;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static com.example.jhsfully.account.type.ErrorCode.*;
+
+/**
+ * CSV/NDJSON으로 계좌를 대량 생성한다.
+ *
+ * 입력을 한 줄씩 읽어 chunk-size 단위로 모으고, 청크마다
+ * - 사용자 존재 여부와 기존 계좌 수를 IN 조회 한 번씩으로 확인하고
+ * - 통과한 행을 샤드에 나눈 뒤, 샤드마다 계좌 번호 구간을 한 번에 잡아 JDBC 배치로 넣는다.
+ * 샤드별 삽입은 병렬로 하고, 실패한 행은 줄 번호와 함께 응답에 담는다.
+ *
+ * 계좌 번호는 단건 생성과 같은 규칙(샤드의 마지막 번호 + 샤드 수)으로 이어서 매긴다.
+ * 같은 노드의 가져오기끼리는 샤드별 락으로 번호 구간이 겹치지 않게 한다.
+ */
+@Slf4j
+@Service
+public class AccountImportService {
+    private static final int MAX_ACCOUNT_PER_USER = 10;
+    private static final String INSERT_SQL =
+            "INSERT INTO account (id, account_user_id, account_number, account_status, balance, "
+                    + "registered_at, created_at, updated_at) "
+                    + "VALUES (NEXT VALUE FOR hibernate_sequence, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final int maxFailures;
+    private final Object[] reservationLocks;
+
+    public AccountImportService(DataSource dataSource,
+                                PlatformTransactionManager transactionManager,
+                                ShardRouter shardRouter,
+                                ObjectMapper objectMapper,
+                                @Value("${account.import.chunk-size:1000}") int chunkSize,
+                                @Value("${account.import.max-failures:1000}") int maxFailures) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardRouter = shardRouter;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.maxFailures = maxFailures;
+        this.reservationLocks = new Object[shardRouter.getShardCount()];
+        for (int shard = 0; shard < reservationLocks.length; shard++) {
+            reservationLocks[shard] = new Object();
+        }
+    }
+
+    public ImportAccount.Response importAccounts(InputStream input, ImportFormat format) {
+        Result result = new Result();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            List<Line> chunk = new ArrayList<>(chunkSize);
+            String text;
+            long number = 0;
+            while ((text = reader.readLine()) != null) {
+                number++;
+                if (text.isBlank() || (number == 1 && format == ImportFormat.CSV && isHeader(text))) {
+                    continue;
+                }
+                result.total++;
+                //형식 오류도 청크에 넣어서 실패 목록이 줄 번호 순서를 따르게 한다.
+                try {
+                    chunk.add(new Line(number, parse(text, format), null));
+                } catch (AccountException e) {
+                    chunk.add(new Line(number, null, e.getErrorCode()));
+                }
+                if (chunk.size() == chunkSize) {
+                    importChunk(chunk, result);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                importChunk(chunk, result);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("Account import finished. total={}, created={}, failed={}",
+                result.total, result.created, result.failed);
+        return ImportAccount.Response.builder()
+                .total(result.total)
+                .created(result.created)
+                .failed(result.failed)
+                .failures(result.failures)
+                .build();
+    }
+
+    private ImportAccount.Row parse(String text, ImportFormat format) {
+        ImportAccount.Row row;
+        if (format == ImportFormat.CSV) {
+            String[] columns = text.split(",", -1);
+            if (columns.length != 2) {
+                throw new AccountException(INVALID_REQUEST);
+            }
+            try {
+                row = new ImportAccount.Row(Long.parseLong(columns[0].trim()), Long.parseLong(columns[1].trim()));
+            } catch (NumberFormatException e) {
+                throw new AccountException(INVALID_REQUEST);
+            }
+        } else {
+            try {
+                row = objectMapper.readValue(text, ImportAccount.Row.class);
+            } catch (JsonProcessingException e) {
+                throw new AccountException(INVALID_REQUEST);
+            }
+        }
+        //단건 생성의 CreateAccount.Request와 같은 조건
+        if (row.getUserId() == null || row.getUserId() < 1
+                || row.getInitialBalance() == null || row.getInitialBalance() < 0) {
+            throw new AccountException(INVALID_REQUEST);
+        }
+        return row;
+    }
+
+    private static boolean isHeader(String text) {
+        return !Character.isDigit(text.trim().charAt(0));
+    }
+
+    private void importChunk(List<Line> chunk, Result result) {
+        Set<Long> userIds = new HashSet<>();
+        for (Line line : chunk) {
+            if (line.error == null) {
+                userIds.add(line.row.getUserId());
+            }
+        }
+        if (userIds.isEmpty()) {
+            chunk.forEach(line -> result.fail(line.number, line.error, line.error.getDescription()));
+            return;
+        }
+        MapSqlParameterSource parameters = new MapSqlParameterSource("userIds", userIds);
+        //사용자 행은 모든 샤드에 있으므로 한 샤드에서만 확인한다.
+        Set<Long> users = new HashSet<>(namedJdbcTemplate.queryForList(
+                "SELECT id FROM account_user WHERE id IN (:userIds)", parameters, Long.class));
+        Map<Long, Integer> counts = new HashMap<>();
+        for (List<Map<String, Object>> rows : shardRouter.fanOut(shard -> namedJdbcTemplate.queryForList(
+                "SELECT account_user_id, COUNT(*) AS accounts FROM account "
+                        + "WHERE account_user_id IN (:userIds) GROUP BY account_user_id", parameters))) {
+            for (Map<String, Object> row : rows) {
+                counts.merge(((Number) row.get("account_user_id")).longValue(),
+                        ((Number) row.get("accounts")).intValue(), Integer::sum);
+            }
+        }
+
+        List<List<Line>> byShard = new ArrayList<>();
+        for (int shard = 0; shard < shardRouter.getShardCount(); shard++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (Line line : chunk) {
+            if (line.error != null) {
+                result.fail(line.number, line.error, line.error.getDescription());
+                continue;
+            }
+            Long userId = line.row.getUserId();
+            if (!users.contains(userId)) {
+                result.fail(line.number, USER_NOT_FOUND, USER_NOT_FOUND.getDescription());
+            } else if (counts.merge(userId, 1, Integer::sum) > MAX_ACCOUNT_PER_USER) {
+                result.fail(line.number, MAX_ACCOUNT_PER_USER_10, MAX_ACCOUNT_PER_USER_10.getDescription());
+            } else {
+                byShard.get(shardRouter.nextShard()).add(line);
+            }
+        }
+
+        for (Optional<DataAccessException> failure : shardRouter.fanOut(shard -> insert(shard, byShard.get(shard)))) {
+            failure.ifPresent(e -> log.error("Account import chunk failed", e));
+        }
+        for (List<Line> lines : byShard) {
+            for (Line line : lines) {
+                if (line.accountNumber != null) {
+                    result.created++;
+                } else {
+                    result.fail(line.number, INTERNAL_SERVER_ERROR, INTERNAL_SERVER_ERROR.getDescription());
+                }
+            }
+        }
+    }
+
+    //샤드의 마지막 번호 다음부터 행 수만큼 번호를 잡고 한 트랜잭션에 배치로 넣는다.
+    private Optional<DataAccessException> insert(int shard, List<Line> lines) {
+        if (lines.isEmpty()) {
+            return Optional.empty();
+        }
+        synchronized (reservationLocks[shard]) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    List<String> last = jdbcTemplate.queryForList(
+                            "SELECT account_number FROM account ORDER BY id DESC LIMIT 1", String.class);
+                    String accountNumber = last.isEmpty()
+                            ? shardRouter.firstAccountNumber(shard)
+                            : shardRouter.nextAccountNumber(shard, last.get(0));
+                    for (Line line : lines) {
+                        line.accountNumber = accountNumber;
+                        accountNumber = shardRouter.nextAccountNumber(shard, accountNumber);
+                    }
+                    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                    jdbcTemplate.batchUpdate(INSERT_SQL, lines, lines.size(), (ps, line) -> {
+                        ps.setLong(1, line.row.getUserId());
+                        ps.setString(2, line.accountNumber);
+                        ps.setByte(3, EnumCodeConverter.code(AccountStatus.IN_USE));
+                        ps.setLong(4, line.row.getInitialBalance());
+                        ps.setTimestamp(5, now);
+                        ps.setTimestamp(6, now);
+                        ps.setTimestamp(7, now);
+                    });
+                });
+                return Optional.empty();
+            } catch (DataAccessException e) {
+                for (Line line : lines) {
+                    line.accountNumber = null;
+                }
+                return Optional.of(e);
+            }
+        }
+    }
+
+    private static class Line {
+        private final long number;
+        private final ImportAccount.Row row;
+        private final ErrorCode error;
+        private String accountNumber;
+
+        private Line(long number, ImportAccount.Row row, ErrorCode error) {
+            this.number = number;
+            this.row = row;
+            this.error = error;
+        }
+    }
+
+    private class Result {
+        private long total;
+        private long created;
+        private long failed;
+        private final List<ImportAccount.Failure> failures = new ArrayList<>();
+
+        private void fail(long line, ErrorCode errorCode, String errorMessage) {
+            failed++;
+            if (failures.size() < maxFailures) {
+                failures.add(ImportAccount.Failure.builder()
+                        .line(line)
+                        .errorCode(errorCode.name())
+                        .errorMessage(errorMessage)
+                        .build());
+            }
+        }
+    }
+}
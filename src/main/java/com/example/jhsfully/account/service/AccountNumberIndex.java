@@ -0,0 +1,254 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.domain.Account;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Optional;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 계좌 번호 -> (계좌 id, 소유주 id) 색인. 계좌 번호는 long으로 바꿔 키로 쓴다.
+ *
+ * 세 값 모두 계좌가 만들어진 뒤 바뀌지 않으므로 갱신할 일이 없고,
+ * 계좌를 만들거나 읽은 트랜잭션이 커밋된 뒤에 채운다. 다른 노드가 만든 계좌는 처음 읽을 때 들어온다.
+ * 색인이 가리키는 행이 없거나 계좌가 해지되면 지운다.
+ * 슬롯 [번호, id, 소유주 id]를 long 버퍼 하나에 두는 선형 탐사 해시이며, off-heap을 켜면 힙 밖에 둔다.
+ * 조회는 락 없이 읽고, 그동안 쓰기가 있었으면 읽기 락으로 다시 읽는다.
+ */
+@Component
+public class AccountNumberIndex {
+    private static final int SLOT_LONGS = 3;
+    private static final long EMPTY = 0L;
+    private static final int ACCOUNT_NUMBER_LENGTH = 10;
+
+    private final boolean offHeap;
+    private final StampedLock lock = new StampedLock();
+    private LongBuffer slots;
+    private int mask;
+    private int size;
+
+    public AccountNumberIndex(@Value("${account.account-index.initial-capacity:65536}") int initialCapacity,
+                              @Value("${account.account-index.off-heap:false}") boolean offHeap) {
+        this.offHeap = offHeap;
+        int capacity = Integer.highestOneBit(Math.max(16, initialCapacity - 1) << 1);
+        this.slots = allocate(capacity);
+        this.mask = capacity - 1;
+    }
+
+    //10자리 숫자가 아니면 -1
+    public static long parse(String accountNumber) {
+        if (accountNumber == null || accountNumber.length() != ACCOUNT_NUMBER_LENGTH
+                || accountNumber.charAt(0) == '0') {
+            return -1L;
+        }
+        long value = 0;
+        for (int i = 0; i < ACCOUNT_NUMBER_LENGTH; i++) {
+            int digit = accountNumber.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1L;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    public Optional<Entry> get(String accountNumber) {
+        long key = parse(accountNumber);
+        if (key < 0) {
+            return Optional.empty();
+        }
+        long stamp = lock.tryOptimisticRead();
+        Entry entry = find(key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                entry = find(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return Optional.ofNullable(entry);
+    }
+
+    //DB 트랜잭션 안이면 커밋된 뒤에 넣는다. 롤백된 계좌가 색인에 남지 않게 한다.
+    public void putAfterCommit(Account account) {
+        String accountNumber = account.getAccountNumber();
+        long id = account.getId();
+        long ownerId = account.getAccountUser().getId();
+        afterCommit(() -> put(accountNumber, id, ownerId));
+    }
+
+    public void removeAfterCommit(String accountNumber) {
+        afterCommit(() -> remove(accountNumber));
+    }
+
+    public void put(Account account) {
+        put(account.getAccountNumber(), account.getId(), account.getAccountUser().getId());
+    }
+
+    public void put(String accountNumber, long id, long ownerId) {
+        long key = parse(accountNumber);
+        if (key < 0) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            if ((size + 1) * 4L > (mask + 1) * 3L) {
+                resize();
+            }
+            if (insert(slots, mask, key, id, ownerId)) {
+                size++;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(String accountNumber) {
+        long key = parse(accountNumber);
+        if (key < 0) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (delete(key)) {
+                size--;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private Entry find(long key) {
+        //락 없이 읽는 동안 slots가 바뀔 수 있으므로 mask는 읽은 버퍼에서 구한다.
+        LongBuffer current = slots;
+        int currentMask = current.capacity() / SLOT_LONGS - 1;
+        for (int slot = slot(key, currentMask), probes = 0; probes <= currentMask;
+             slot = (slot + 1) & currentMask, probes++) {
+            int base = slot * SLOT_LONGS;
+            long stored = current.get(base);
+            if (stored == EMPTY) {
+                return null;
+            }
+            if (stored == key) {
+                return new Entry(current.get(base + 1), current.get(base + 2));
+            }
+        }
+        return null;
+    }
+
+    private void resize() {
+        int capacity = (mask + 1) << 1;
+        LongBuffer resized = allocate(capacity);
+        for (int slot = 0; slot <= mask; slot++) {
+            int base = slot * SLOT_LONGS;
+            long key = slots.get(base);
+            if (key != EMPTY) {
+                insert(resized, capacity - 1, key, slots.get(base + 1), slots.get(base + 2));
+            }
+        }
+        slots = resized;
+        mask = capacity - 1;
+    }
+
+    //새 키면 true. 이미 있는 키는 값이 같으므로 그대로 둔다.
+    private static boolean insert(LongBuffer target, int targetMask, long key, long id, long ownerId) {
+        int slot = slot(key, targetMask);
+        while (true) {
+            int base = slot * SLOT_LONGS;
+            long stored = target.get(base);
+            if (stored == key) {
+                return false;
+            }
+            if (stored == EMPTY) {
+                target.put(base + 1, id);
+                target.put(base + 2, ownerId);
+                target.put(base, key);
+                return true;
+            }
+            slot = (slot + 1) & targetMask;
+        }
+    }
+
+    //지운 자리는 뒤따르는 슬롯을 당겨 메운다. 탐사 사슬이 끊기지 않게 묘비는 두지 않는다.
+    private boolean delete(long key) {
+        int hole = slot(key, mask);
+        while (true) {
+            long stored = slots.get(hole * SLOT_LONGS);
+            if (stored == EMPTY) {
+                return false;
+            }
+            if (stored == key) {
+                break;
+            }
+            hole = (hole + 1) & mask;
+        }
+        for (int next = (hole + 1) & mask; ; next = (next + 1) & mask) {
+            int base = next * SLOT_LONGS;
+            long stored = slots.get(base);
+            if (stored == EMPTY) {
+                break;
+            }
+            int home = slot(stored, mask);
+            //home이 (hole, next] 구간 밖이면 hole로 옮겨도 탐사로 찾을 수 있다.
+            boolean movable = hole <= next
+                    ? home <= hole || home > next
+                    : home <= hole && home > next;
+            if (movable) {
+                int holeBase = hole * SLOT_LONGS;
+                slots.put(holeBase + 1, slots.get(base + 1));
+                slots.put(holeBase + 2, slots.get(base + 2));
+                slots.put(holeBase, stored);
+                hole = next;
+            }
+        }
+        slots.put(hole * SLOT_LONGS, EMPTY);
+        return true;
+    }
+
+    //연속된 계좌 번호가 한곳에 몰리지 않도록 섞는다. (MurmurHash3 fmix64)
+    private static int slot(long key, int targetMask) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & targetMask;
+    }
+
+    private LongBuffer allocate(int capacity) {
+        int bytes = capacity * SLOT_LONGS * Long.BYTES;
+        return (offHeap ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes)).asLongBuffer();
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Entry {
+        private final long id;
+        private final long ownerId;
+    }
+}
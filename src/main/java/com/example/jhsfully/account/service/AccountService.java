@@ -1,20 +1,24 @@
 package com.example.jhsfully.account.service;
 
+import com.example.jhsfully.account.aop.ShardKey;
 import com.example.jhsfully.account.domain.Account;
 import com.example.jhsfully.account.domain.AccountUser;
 import com.example.jhsfully.account.dto.AccountDto;
+import com.example.jhsfully.account.dto.AccountInfo;
+import com.example.jhsfully.account.event.AccountChangedEvent;
 import com.example.jhsfully.account.exeption.AccountException;
 import com.example.jhsfully.account.repository.AccountRepository;
 import com.example.jhsfully.account.repository.AccountUserRepository;
+import com.example.jhsfully.account.shard.ShardRouter;
 import com.example.jhsfully.account.type.AccountStatus;
 import com.example.jhsfully.account.type.ErrorCode;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import javax.transaction.Transactional;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
 import java.util.stream.Collectors;
 
 import static com.example.jhsfully.account.type.ErrorCode.USER_NOT_FOUND;
@@ -22,15 +26,22 @@ import static com.example.jhsfully.account.type.ErrorCode.USER_NOT_FOUND;
 @Service
 @RequiredArgsConstructor
 public class AccountService {
+    //IN 목록 하나에 넣는 계좌 번호 수
+    private static final int BALANCE_QUERY_CHUNK_SIZE = 500;
+
     private final AccountRepository accountRepository;
     private final AccountUserRepository accountUserRepository;
+    private final ShardRouter shardRouter;
+    private final AccountNumberIndex accountNumberIndex;
+    private final BalanceExecutor balanceExecutor;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      *사용자가 있는지 조회
-     *계좌 번호를 생성
+     *계좌를 만들 샤드를 고르고, 그 샤드의 계좌 번호를 생성
      *계좌를 저장하고, 그 정보를 넘긴다.
+     *샤드가 정해진 뒤에 트랜잭션이 시작되도록 메소드 전체를 하나의 트랜잭션으로 묶지 않는다.
      */
-    @Transactional //계좌 생성
     public AccountDto createAccount(Long userId, Long initialBalance){
 
         //userId를 통해, AccountUser를 찾음.
@@ -39,43 +50,52 @@ public class AccountService {
         //밸리데이션
         validateCreateAccount(accountUser);
 
-        //가장 큰 계좌 번호를 가져와 + 1
-        String newAccountNumber = accountRepository.findFirstByOrderByIdDesc()
-                .map(account -> (Integer.parseInt(account.getAccountNumber())) + 1 + "")
-                .orElse("1000000000");
-
-        //Dto를 만들어 반환시킴.
-        return AccountDto.fromEntity(
-                accountRepository.save(
-                Account.builder()
-                        .accountUser(accountUser)
-                        .accountStatus(AccountStatus.IN_USE)
-                        .accountNumber(newAccountNumber)
-                        .balance(initialBalance)
-                        .registeredAt(LocalDateTime.now())
-                        .build()
-                )
-        );
+        int shard = shardRouter.nextShard();
+        return shardRouter.call(shard, () -> {
+            //샤드에서 가장 큰 계좌 번호 다음의 그 샤드 번호
+            String newAccountNumber = accountRepository.findFirstByOrderByIdDesc()
+                    .map(account -> shardRouter.nextAccountNumber(shard, account.getAccountNumber()))
+                    .orElse(shardRouter.firstAccountNumber(shard));
+
+            Account account = accountRepository.save(
+                    Account.builder()
+                            .accountUser(accountUser)
+                            .accountStatus(AccountStatus.IN_USE)
+                            .accountNumber(newAccountNumber)
+                            .balance(initialBalance)
+                            .registeredAt(LocalDateTime.now())
+                            .build()
+            );
+            //트랜잭션 안에서 불렸다면 커밋된 뒤에 색인에 넣는다.
+            accountNumberIndex.putAfterCommit(account);
+
+            //Dto를 만들어 반환시킴.
+            return AccountDto.fromEntity(account);
+        });
     }
 
     //accountUser의 카운트를 세서 밸리데이션을 수행함, 조건에 만족하지 않으면 정의된 예외를 던지도록함.
     private void validateCreateAccount(AccountUser accountUser) {
-        if(accountRepository.countByAccountUser(accountUser) >= 10){
+        long count = shardRouter.fanOut(shard -> accountRepository.countByAccountUser(accountUser))
+                .stream()
+                .mapToLong(Integer::longValue)
+                .sum();
+        if(count >= 10){
             throw new AccountException(ErrorCode.MAX_ACCOUNT_PER_USER_10);
         }
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public Account getAccount(Long id){
         if(id < 0){
             throw new RuntimeException("Minus");
         }
-        return accountRepository.findById(id).get();
+        return accountRepository.findWithAccountUserById(id).get();
     }
 
     //계좌 해지 트랜잭션.
     @Transactional
-    public AccountDto deleteAccount(Long userId, String accountNumber) {
+    public AccountDto deleteAccount(Long userId, @ShardKey String accountNumber) {
         //userId를 통해, AccountUser를 찾음. 없을 경우 User not fount 예외를 던짐/
         AccountUser accountUser = getAccountUser(userId);
 
@@ -88,6 +108,9 @@ public class AccountService {
         account.setUnRegisteredAt(LocalDateTime.now());
 
         accountRepository.save(account);
+        accountNumberIndex.removeAfterCommit(accountNumber);
+        //엔진/Redis에 남아 있는 계좌 상태를 버리게 한다.
+        eventPublisher.publishEvent(new AccountChangedEvent(Collections.singletonList(accountNumber)));
 
         return AccountDto.fromEntity(account);
     }
@@ -104,17 +127,65 @@ public class AccountService {
         }
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public List<AccountDto> getAccountsByUserId(Long userId) {
-        AccountUser accountUser = getAccountUser(userId);
-
-        List<Account> accounts = accountRepository.findByAccountUser(accountUser);
+        if(!accountUserRepository.existsById(userId)){
+            throw new AccountException(USER_NOT_FOUND);
+        }
 
-        return accounts.stream()
-                .map(AccountDto::fromEntity)
+        //사용자의 계좌는 여러 샤드에 흩어져 있으므로 샤드마다 병렬로 조회해서 합친다.
+        return shardRouter.fanOut(shard -> accountRepository.findAccountDtosByUserId(userId))
+                .stream()
+                .flatMap(List::stream)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 여러 계좌의 잔액을 한 번에 조회한다. 찾은 계좌만 요청 순서대로 담는다.
+     * 잔액 캐시(REDIS 방식)에 있는 계좌는 DB를 보지 않고,
+     * 나머지는 샤드별로 모아 BALANCE_QUERY_CHUNK_SIZE개씩 IN 조회한다.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Long> getBalances(List<String> accountNumbers) {
+        //형식이 맞지 않는 계좌 번호는 있을 수 없으므로 조회하지 않는다.
+        Set<String> requested = accountNumbers.stream()
+                .filter(accountNumber -> AccountNumberIndex.parse(accountNumber) >= 0)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (requested.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Long> found = new HashMap<>(balanceExecutor.getCachedBalances(requested));
+        Map<Integer, List<String>> uncachedByShard = requested.stream()
+                .filter(accountNumber -> !found.containsKey(accountNumber))
+                .collect(Collectors.groupingBy(shardRouter::shardOfAccountNumber));
+        if (!uncachedByShard.isEmpty()) {
+            shardRouter.fanOut(shard -> findAccountInfos(
+                            uncachedByShard.getOrDefault(shard, Collections.emptyList())))
+                    .forEach(accountInfos -> accountInfos.forEach(accountInfo ->
+                            found.put(accountInfo.getAccountNumber(), accountInfo.getBalance())));
+        }
+
+        Map<String, Long> balances = new LinkedHashMap<>();
+        for (String accountNumber : requested) {
+            Long balance = found.get(accountNumber);
+            if (balance != null) {
+                balances.put(accountNumber, balance);
+            }
+        }
+        return balances;
+    }
+
+    private List<AccountInfo> findAccountInfos(List<String> accountNumbers) {
+        List<AccountInfo> accountInfos = new ArrayList<>(accountNumbers.size());
+        for (int from = 0; from < accountNumbers.size(); from += BALANCE_QUERY_CHUNK_SIZE) {
+            accountInfos.addAll(accountRepository.findAccountInfosByAccountNumberIn(
+                    accountNumbers.subList(from,
+                            Math.min(from + BALANCE_QUERY_CHUNK_SIZE, accountNumbers.size()))));
+        }
+        return accountInfos;
+    }
+
     private AccountUser getAccountUser(Long userId) {
         AccountUser accountUser = accountUserRepository.findById(userId)
                 .orElseThrow(() -> new AccountException(USER_NOT_FOUND));
@@ -0,0 +1,112 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.type.AdmissionPriority;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 응답 시간을 보고 동시 처리 한도를 스스로 조절한다. (gradient 방식)
+ *
+ * 평소 응답 시간(longRtt, 느린 이동 평균)보다 방금 응답 시간이 길어지면 그 비율만큼 한도를 줄이고,
+ * 비슷하면 sqrt(limit)만큼 늘린다. 한도의 절반도 쓰지 않는 동안에는 늘리지 않는다.
+ * LOW 요청은 한도의 lowPriorityRatio까지만 받는다.
+ */
+@Component
+@ConditionalOnProperty(name = "account.concurrency-limit.enabled", havingValue = "true")
+public class AdaptiveConcurrencyLimiter {
+    private static final int LONG_RTT_WINDOW = 600;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final double lowPriorityRatio;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final Map<AdmissionPriority, Counter> rejected = new EnumMap<>(AdmissionPriority.class);
+    private volatile double limit;
+    private double longRtt;
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry,
+                                      @Value("${account.concurrency-limit.initial-limit:20}") int initialLimit,
+                                      @Value("${account.concurrency-limit.min-limit:4}") int minLimit,
+                                      @Value("${account.concurrency-limit.max-limit:200}") int maxLimit,
+                                      @Value("${account.concurrency-limit.tolerance:1.5}") double tolerance,
+                                      @Value("${account.concurrency-limit.smoothing:0.2}") double smoothing,
+                                      @Value("${account.concurrency-limit.low-priority-ratio:0.75}") double lowPriorityRatio) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.lowPriorityRatio = lowPriorityRatio;
+
+        Gauge.builder("account.concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive concurrency limit for transaction endpoints")
+                .register(meterRegistry);
+        Gauge.builder("account.concurrency.inflight", inflight, AtomicInteger::get)
+                .description("Transaction requests currently admitted")
+                .register(meterRegistry);
+        for (AdmissionPriority priority : AdmissionPriority.values()) {
+            rejected.put(priority, Counter.builder("account.concurrency.rejected")
+                    .tag("priority", priority.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * 자리가 있으면 inflight를 하나 늘리고 true를 반환한다. true를 받았으면 반드시 release를 호출해야 한다.
+     */
+    public boolean tryAcquire(AdmissionPriority priority) {
+        int allowed = priority == AdmissionPriority.LOW
+                ? Math.max(1, (int) (limit * lowPriorityRatio))
+                : (int) limit;
+        while (true) {
+            int current = inflight.get();
+            if (current >= allowed) {
+                rejected.get(priority).increment();
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(long rttNanos) {
+        int current = inflight.getAndDecrement();
+        onSample(rttNanos, current);
+    }
+
+    private synchronized void onSample(long rttNanos, int inflightAtSample) {
+        if (longRtt == 0) {
+            longRtt = rttNanos;
+        } else {
+            longRtt += (rttNanos - longRtt) / LONG_RTT_WINDOW;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / rttNanos));
+        if (gradient == 1.0 && inflightAtSample * 2 < limit) {
+            return;
+        }
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        newLimit = limit * (1 - smoothing) + newLimit * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    public double getLimit() {
+        return limit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+}
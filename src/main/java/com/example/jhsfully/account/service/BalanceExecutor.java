@@ -0,0 +1,25 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.dto.TransactionDto;
+import com.example.jhsfully.account.type.BalanceMode;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 잔액 사용/취소의 실행 방식.
+ * account.balance.mode 설정에 맞는 구현체 하나만 빈으로 등록된다.
+ */
+public interface BalanceExecutor {
+    BalanceMode getMode();
+
+    TransactionDto useBalance(Long userId, String accountNumber, Long amount);
+
+    TransactionDto cancelBalance(String transactionId, String accountNumber, Long amount);
+
+    //DB보다 먼저 갱신되는 잔액을 가진 방식만 돌려준다. 없는 계좌는 DB에서 읽는다.
+    default Map<String, Long> getCachedBalances(Collection<String> accountNumbers) {
+        return Collections.emptyMap();
+    }
+}
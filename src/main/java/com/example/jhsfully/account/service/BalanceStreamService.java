@@ -0,0 +1,326 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.dto.AccountInfo;
+import com.example.jhsfully.account.dto.TransactionDto;
+import com.example.jhsfully.account.event.BalanceChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 사용자별 잔액 스트림(SSE). 잔액 사용/취소가 커밋되면 소유주의 구독자에게 AccountInfo를 보낸다.
+ *
+ * 구독자마다 계좌 번호별로 마지막 잔액만 남기는 버퍼를 두고 워커가 비운다.
+ * 커밋한 스레드는 버퍼에 넣기만 하므로 느린 구독자 때문에 거래가 늦어지지 않는다.
+ * 버퍼가 가득 찬 구독자는 끊고, 다시 연결하면 처음 보내는 현재 잔액으로 맞춰진다.
+ * 다른 노드에서 커밋된 변경은 Redis 토픽(ACBAL)으로 받는다. 자기 노드가 보낸 메시지는 건너뛴다.
+ */
+@Slf4j
+@Service
+public class BalanceStreamService {
+    private static final String TOPIC = "ACBAL";
+    private static final String EVENT_NAME = "account";
+    private static final char SEPARATOR = ':';
+
+    private final AccountService accountService;
+    private final RedissonClient redissonClient;
+    private final ExecutorService workers;
+    private final long timeoutMs;
+    private final int bufferSize;
+    private final boolean crossNode;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Counter dropped;
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private volatile boolean listening;
+
+    @Autowired
+    public BalanceStreamService(AccountService accountService,
+                                RedissonClient redissonClient,
+                                MeterRegistry meterRegistry,
+                                @Value("${account.balance-stream.workers:4}") int workers,
+                                @Value("${account.balance-stream.timeout-ms:1800000}") long timeoutMs,
+                                @Value("${account.balance-stream.buffer-size:64}") int bufferSize,
+                                @Value("${account.balance-stream.cross-node:true}") boolean crossNode) {
+        this.accountService = accountService;
+        this.redissonClient = redissonClient;
+        this.workers = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "balance-stream-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.timeoutMs = timeoutMs;
+        this.bufferSize = bufferSize;
+        this.crossNode = crossNode;
+        this.dropped = Counter.builder("account.balance-stream.dropped")
+                .description("Subscribers disconnected because their buffer was full")
+                .register(meterRegistry);
+
+        Gauge.builder("account.balance-stream.subscribers", this, BalanceStreamService::getSubscriberCount)
+                .description("Number of open balance streams")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * 구독을 등록하고 사용자의 현재 잔액을 먼저 보낸다.
+     * 등록한 뒤에 현재 잔액을 읽으므로 그 사이에 커밋된 변경도 빠지지 않는다.
+     */
+    public SseEmitter subscribe(Long userId) {
+        return register(userId, new SseEmitter(timeoutMs));
+    }
+
+    SseEmitter register(Long userId, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(userId, emitter);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+        subscribers.computeIfAbsent(userId, key -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        if (crossNode) {
+            listen();
+        }
+
+        List<AccountInfo> snapshot;
+        try {
+            snapshot = accountService.getAccountsByUserId(userId)
+                    .stream()
+                    .map(accountDto -> AccountInfo.builder()
+                            .accountNumber(accountDto.getAccountNumber())
+                            .balance(accountDto.getBalance())
+                            .build())
+                    .collect(Collectors.toList());
+        } catch (RuntimeException e) {
+            remove(subscriber);
+            throw e;
+        }
+        subscriber.offerSnapshot(snapshot);
+        return emitter;
+    }
+
+    //롤백된 변경은 보내지 않는다. 트랜잭션 밖에서 발행된 이벤트는 바로 보낸다.
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBalanceChanged(BalanceChangedEvent event) {
+        TransactionDto transaction = event.getTransaction();
+        deliver(event.getUserId(), transaction.getAccountNumber(), transaction.getBalanceSnapshot());
+        if (!crossNode) {
+            return;
+        }
+        //이미 커밋되었으므로 Redis 오류가 요청 실패로 이어지지 않게 한다.
+        try {
+            topic().publishAsync(nodeId + SEPARATOR + event.getUserId() + SEPARATOR
+                            + transaction.getAccountNumber() + SEPARATOR + transaction.getBalanceSnapshot())
+                    .whenComplete((receivers, e) -> {
+                        if (e != null) {
+                            log.warn("Failed to publish balance change of {}",
+                                    transaction.getAccountNumber(), e);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            log.warn("Failed to publish balance change of {}", transaction.getAccountNumber(), e);
+        }
+    }
+
+    //프록시나 로드밸런서가 유휴 연결을 끊지 않도록 주석 한 줄을 보내고, 끊긴 구독자를 정리한다.
+    @Scheduled(fixedDelayString = "${account.balance-stream.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        for (Set<Subscriber> userSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : userSubscribers) {
+                subscriber.offerHeartbeat();
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    void deliver(Long userId, String accountNumber, Long balance) {
+        Set<Subscriber> userSubscribers = subscribers.get(userId);
+        if (userSubscribers == null) {
+            return;
+        }
+        AccountInfo accountInfo = new AccountInfo(accountNumber, balance);
+        for (Subscriber subscriber : userSubscribers) {
+            subscriber.offer(accountInfo);
+        }
+    }
+
+    //첫 구독이 들어올 때 한 번만 토픽을 구독한다. 구독자가 없는 노드는 Redis 메시지를 받지 않는다.
+    //Redis에 닿지 않으면 이 노드의 변경만 보내고 다음 구독 때 다시 시도한다.
+    private void listen() {
+        if (listening) {
+            return;
+        }
+        synchronized (this) {
+            if (listening) {
+                return;
+            }
+            try {
+                topic().addListener(String.class, (channel, message) -> receive(message));
+                listening = true;
+            } catch (RuntimeException e) {
+                log.warn("Failed to subscribe balance topic, streaming local changes only.", e);
+            }
+        }
+    }
+
+    //nodeId:userId:accountNumber:balance
+    void receive(String message) {
+        String[] parts = message.split(String.valueOf(SEPARATOR));
+        if (parts.length != 4 || nodeId.equals(parts[0])) {
+            return;
+        }
+        try {
+            deliver(Long.parseLong(parts[1]), parts[2], Long.parseLong(parts[3]));
+        } catch (NumberFormatException e) {
+            log.warn("Ignored malformed balance message : {}", message);
+        }
+    }
+
+    private RTopic topic() {
+        return redissonClient.getTopic(TOPIC, StringCodec.INSTANCE);
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.userId, (userId, userSubscribers) -> {
+            userSubscribers.remove(subscriber);
+            return userSubscribers.isEmpty() ? null : userSubscribers;
+        });
+    }
+
+    private class Subscriber {
+        private final Long userId;
+        private final SseEmitter emitter;
+        //계좌 번호 -> 아직 보내지 않은 마지막 잔액. 같은 계좌의 변경은 하나로 합쳐진다.
+        private Map<String, AccountInfo> pending = new LinkedHashMap<>();
+        private boolean heartbeat;
+        private boolean scheduled;
+        private boolean closed;
+
+        private Subscriber(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        private void offer(AccountInfo accountInfo) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (pending.size() >= bufferSize && !pending.containsKey(accountInfo.getAccountNumber())) {
+                    closed = true;
+                } else {
+                    pending.put(accountInfo.getAccountNumber(), accountInfo);
+                }
+            }
+            if (isClosed()) {
+                dropped.increment();
+                remove(this);
+                emitter.complete();
+                return;
+            }
+            schedule();
+        }
+
+        //먼저 들어와 있는 변경이 더 최신이므로 그 계좌는 현재 잔액으로 덮어쓰지 않는다.
+        private void offerSnapshot(List<AccountInfo> snapshot) {
+            synchronized (this) {
+                Map<String, AccountInfo> merged = new LinkedHashMap<>();
+                for (AccountInfo accountInfo : snapshot) {
+                    merged.put(accountInfo.getAccountNumber(), accountInfo);
+                }
+                merged.putAll(pending);
+                pending = merged;
+            }
+            schedule();
+        }
+
+        private void offerHeartbeat() {
+            synchronized (this) {
+                heartbeat = true;
+            }
+            schedule();
+        }
+
+        //워커는 구독자마다 한 번에 하나만 돈다.
+        private void schedule() {
+            synchronized (this) {
+                if (scheduled || closed) {
+                    return;
+                }
+                scheduled = true;
+            }
+            try {
+                workers.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                //종료 중
+            }
+        }
+
+        private synchronized boolean isClosed() {
+            return closed;
+        }
+
+        private void drain() {
+            while (true) {
+                Collection<AccountInfo> batch;
+                boolean sendHeartbeat;
+                synchronized (this) {
+                    if (closed || (pending.isEmpty() && !heartbeat)) {
+                        scheduled = false;
+                        return;
+                    }
+                    batch = pending.values();
+                    pending = new LinkedHashMap<>();
+                    sendHeartbeat = heartbeat;
+                    heartbeat = false;
+                }
+                try {
+                    if (sendHeartbeat) {
+                        emitter.send(SseEmitter.event().comment("ping"));
+                    }
+                    for (AccountInfo accountInfo : batch) {
+                        emitter.send(SseEmitter.event()
+                                .name(EVENT_NAME)
+                                .data(accountInfo));
+                    }
+                } catch (Exception e) {
+                    //클라이언트가 연결을 끊은 경우
+                    synchronized (this) {
+                        closed = true;
+                        scheduled = false;
+                    }
+                    remove(this);
+                    emitter.completeWithError(e);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.event.BalanceChangedEvent;
+import com.example.jhsfully.account.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 이미 취소된 원거래 번호를 찾는다.
+ *
+ * 최근 취소된 번호는 메모리에 두고, 없으면 originalTransactionId 인덱스로 DB를 한 번 본다.
+ * 같은 거래를 반복해서 취소하는 요청은 메모리만 보고 거절된다.
+ * 정확성은 originalTransactionId의 유니크 제약이 보장하고, 이 캐시는 그 앞에서 거르는 역할만 한다.
+ */
+@Component
+public class CancellationIndex {
+    private final TransactionRepository transactionRepository;
+    private final int capacity;
+    private final Map<String, Boolean> cancelled = new ConcurrentHashMap<>();
+    private final Queue<String> order = new ConcurrentLinkedQueue<>();
+
+    public CancellationIndex(TransactionRepository transactionRepository,
+                             @Value("${account.cancellation.cache-size:100000}") int capacity) {
+        this.transactionRepository = transactionRepository;
+        this.capacity = capacity;
+    }
+
+    //메모리만 본다. 락을 잡기 전에 쓴다.
+    public boolean isKnownCancelled(String transactionId) {
+        return cancelled.containsKey(transactionId);
+    }
+
+    public boolean isCancelled(String transactionId) {
+        if (isKnownCancelled(transactionId)) {
+            return true;
+        }
+        if (transactionRepository.existsByOriginalTransactionId(transactionId)) {
+            markCancelled(transactionId);
+            return true;
+        }
+        return false;
+    }
+
+    public void markCancelled(String transactionId) {
+        if (cancelled.putIfAbsent(transactionId, Boolean.TRUE) != null) {
+            return;
+        }
+        order.add(transactionId);
+        while (cancelled.size() > capacity) {
+            String eldest = order.poll();
+            if (eldest == null) {
+                break;
+            }
+            cancelled.remove(eldest);
+        }
+    }
+
+    //롤백된 취소가 캐시에 남지 않도록 커밋 후에 기록한다.
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onBalanceChanged(BalanceChangedEvent event) {
+        String originalTransactionId = event.getTransaction().getOriginalTransactionId();
+        if (originalTransactionId != null) {
+            markCancelled(originalTransactionId);
+        }
+    }
+}
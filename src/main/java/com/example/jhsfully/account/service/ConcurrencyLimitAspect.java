@@ -0,0 +1,40 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.aop.ConcurrencyLimited;
+import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.type.ErrorCode;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * 한도를 넘는 요청은 락과 DB에 들어가기 전에 SERVER_OVERLOADED로 거절한다.
+ * 락 대기 시간까지 응답 시간에 포함되도록 LockAopAspect보다 먼저(바깥에서) 실행된다.
+ * 기본으로는 꺼져 있고 account.concurrency-limit.enabled=true(또는 protection 프로필)로 켠다.
+ */
+@Aspect
+@Component
+@Order(2)
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "account.concurrency-limit.enabled", havingValue = "true")
+public class ConcurrencyLimitAspect {
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Around("@annotation(concurrencyLimited)")
+    public Object aroundMethod(ProceedingJoinPoint pjp,
+                               ConcurrencyLimited concurrencyLimited) throws Throwable {
+        if (!concurrencyLimiter.tryAcquire(concurrencyLimited.priority())) {
+            throw new AccountException(ErrorCode.SERVER_OVERLOADED);
+        }
+        long startedAt = System.nanoTime();
+        try {
+            return pjp.proceed();
+        } finally {
+            concurrencyLimiter.release(System.nanoTime() - startedAt);
+        }
+    }
+}
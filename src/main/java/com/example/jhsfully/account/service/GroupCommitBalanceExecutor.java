@@ -0,0 +1,149 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.dto.TransactionDto;
+import com.example.jhsfully.account.engine.BalanceCommand;
+import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.exeption.GroupCommandException;
+import com.example.jhsfully.account.type.BalanceMode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static com.example.jhsfully.account.type.ErrorCode.BALANCE_ENGINE_BUSY;
+
+/**
+ * 같은 계좌로 동시에 들어온 사용/취소를 모아서 한 번에 커밋하는 방식.
+ *
+ * 그룹을 처음 만든 요청 스레드가 리더가 되어 window-ms 동안(또는 max-batch가 찰 때까지) 기다린 뒤,
+ * 모인 요청을 TransactionService.commitGroup으로 한 트랜잭션에 적용한다.
+ * 나머지 요청 스레드는 자신의 결과를 기다리기만 한다.
+ * 한 요청에서 예상하지 못한 예외가 나면 그 요청만 실패시키고 나머지로 다시 커밋한다.
+ * 노드 간 순서는 계좌 행의 비관적 락으로 보장하므로 Redis 락은 잡지 않는다.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "account.balance.mode", havingValue = "GROUP_COMMIT")
+public class GroupCommitBalanceExecutor implements BalanceExecutor {
+    private final TransactionService transactionService;
+    private final long windowMs;
+    private final int maxBatch;
+    private final long timeoutMs;
+
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+
+    public GroupCommitBalanceExecutor(TransactionService transactionService,
+                                      @Value("${account.group-commit.window-ms:2}") long windowMs,
+                                      @Value("${account.group-commit.max-batch:128}") int maxBatch,
+                                      @Value("${account.group-commit.timeout-ms:3000}") long timeoutMs) {
+        this.transactionService = transactionService;
+        this.windowMs = windowMs;
+        this.maxBatch = maxBatch;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @Override
+    public BalanceMode getMode() {
+        return BalanceMode.GROUP_COMMIT;
+    }
+
+    @Override
+    public TransactionDto useBalance(Long userId, String accountNumber, Long amount) {
+        return submit(BalanceCommand.use(userId, accountNumber, amount));
+    }
+
+    @Override
+    public TransactionDto cancelBalance(String transactionId, String accountNumber, Long amount) {
+        return submit(BalanceCommand.cancel(transactionId, accountNumber, amount));
+    }
+
+    private TransactionDto submit(BalanceCommand command) {
+        String accountNumber = command.getAccountNumber();
+        AtomicReference<Group> created = new AtomicReference<>();
+
+        Group group = groups.compute(accountNumber, (key, current) -> {
+            Group result = current;
+            if (result == null) {
+                result = new Group();
+                created.set(result);
+            }
+            result.commands.add(command);
+            if (result.commands.size() >= maxBatch) {
+                // 가득 찬 그룹은 더 받지 않고 리더를 깨운다.
+                result.full.countDown();
+                return null;
+            }
+            return result;
+        });
+
+        if (created.get() != null) {
+            lead(accountNumber, created.get());
+        }
+        return await(command);
+    }
+
+    private void lead(String accountNumber, Group group) {
+        try {
+            group.full.await(windowMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        groups.remove(accountNumber, group);
+
+        // 그룹에서 분리된 뒤에는 commands가 바뀌지 않는다.
+        // 호출자가 이미 포기한 요청은 여기서 걸러진다.
+        List<BalanceCommand> commands = group.commands.stream()
+                .filter(BalanceCommand::claim)
+                .collect(Collectors.toList());
+        while (!commands.isEmpty()) {
+            try {
+                Map<BalanceCommand, TransactionDto> results =
+                        transactionService.commitGroup(accountNumber, commands);
+                results.forEach((command, transaction) -> command.getFuture().complete(transaction));
+                return;
+            } catch (GroupCommandException e) {
+                // 롤백된 묶음에서 실패한 요청만 빼고 다시 커밋한다.
+                log.warn("Group commit retried without a failed command.", e.getCause());
+                e.getCommand().getFuture().completeExceptionally(e.getCause());
+                commands.remove(e.getCommand());
+            } catch (RuntimeException e) {
+                log.error("Group commit failed for {} commands.", commands.size(), e);
+                commands.forEach(command -> command.getFuture().completeExceptionally(e));
+                return;
+            }
+        }
+    }
+
+    private TransactionDto await(BalanceCommand command) {
+        try {
+            try {
+                return command.getFuture().get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (command.abandon()) {
+                    throw new AccountException(BALANCE_ENGINE_BUSY);
+                }
+                return command.getFuture().get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Group {
+        private final List<BalanceCommand> commands = new ArrayList<>();
+        private final CountDownLatch full = new CountDownLatch(1);
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.bloom.CountMinSketch;
+import com.example.jhsfully.account.dto.HotAccount;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+/**
+ * 계좌별 락 시도, 실패, 대기 시간을 고정된 메모리로 모아 경합이 심한 계좌를 찾는다.
+ *
+ * 시도와 실패 횟수는 Count-Min 스케치로 모든 계좌에 대해 추정하고, 시도 추정치가 큰 top-k 계좌만
+ * 대기 시간 히스토그램을 따로 둔다. 목록이 찼으면 가장 적게 시도된 계좌보다 추정치가 커야 들어오고,
+ * 그 계좌는 밀려난다. decay-interval-ms마다 모든 값을 절반으로 줄여 최근 경향을 따라간다.
+ */
+@Component
+public class HotAccountTracker {
+    // 2^(i-1) ~ 2^i 마이크로초. 마지막 칸은 약 35분 이상을 모두 담는다.
+    private static final int BUCKETS = 32;
+
+    private final CountMinSketch attempts;
+    private final CountMinSketch failures;
+    private final int topK;
+    private final Map<String, WaitHistogram> top = new ConcurrentHashMap<>();
+    //목록이 찼을 때 새 계좌가 넘어야 하는 시도 추정치
+    private volatile long admissionThreshold;
+
+    public HotAccountTracker(@Value("${account.hot-account.width:2048}") int width,
+                             @Value("${account.hot-account.depth:4}") int depth,
+                             @Value("${account.hot-account.top-k:32}") int topK) {
+        this.attempts = new CountMinSketch(width, depth);
+        this.failures = new CountMinSketch(width, depth);
+        this.topK = topK;
+    }
+
+    public void recordAcquired(String accountNumber, long waitNanos) {
+        record(accountNumber, waitNanos, false);
+    }
+
+    public void recordFailed(String accountNumber, long waitNanos) {
+        record(accountNumber, waitNanos, true);
+    }
+
+    private void record(String accountNumber, long waitNanos, boolean failed) {
+        long estimate = attempts.add(accountNumber, 1);
+        if (failed) {
+            failures.add(accountNumber, 1);
+        }
+        WaitHistogram histogram = top.get(accountNumber);
+        if (histogram == null && (top.size() < topK || estimate > admissionThreshold)) {
+            histogram = admit(accountNumber, estimate);
+        }
+        if (histogram != null) {
+            histogram.record(waitNanos);
+        }
+    }
+
+    private synchronized WaitHistogram admit(String accountNumber, long estimate) {
+        WaitHistogram histogram = top.get(accountNumber);
+        if (histogram != null) {
+            return histogram;
+        }
+        if (top.size() >= topK) {
+            String coldest = null;
+            long coldestEstimate = Long.MAX_VALUE;
+            for (String candidate : top.keySet()) {
+                long candidateEstimate = attempts.estimate(candidate);
+                if (candidateEstimate < coldestEstimate) {
+                    coldest = candidate;
+                    coldestEstimate = candidateEstimate;
+                }
+            }
+            admissionThreshold = coldestEstimate;
+            if (estimate <= coldestEstimate) {
+                return null;
+            }
+            top.remove(coldest);
+        }
+        histogram = new WaitHistogram();
+        top.put(accountNumber, histogram);
+        return histogram;
+    }
+
+    public List<HotAccount> getHotAccounts(int limit) {
+        return top.entrySet().stream()
+                .map(entry -> entry.getValue().toHotAccount(entry.getKey(),
+                        attempts.estimate(entry.getKey()), failures.estimate(entry.getKey())))
+                .sorted(Comparator.comparingLong(HotAccount::getAttempts).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Scheduled(fixedDelayString = "${account.hot-account.decay-interval-ms:60000}",
+            initialDelayString = "${account.hot-account.decay-interval-ms:60000}")
+    public synchronized void decay() {
+        attempts.halve();
+        failures.halve();
+        top.values().forEach(WaitHistogram::halve);
+        admissionThreshold >>>= 1;
+    }
+
+    /**
+     * 로그 구간 히스토그램. 백분위는 해당 구간의 상한으로 답한다.
+     */
+    private static class WaitHistogram {
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+        private void record(long waitNanos) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0L, waitNanos));
+            counts.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros)));
+        }
+
+        private void halve() {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts.getAndUpdate(i, value -> value >>> 1);
+            }
+        }
+
+        private HotAccount toHotAccount(String accountNumber, long attempts, long failures) {
+            long[] snapshot = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = counts.get(i);
+                total += snapshot[i];
+            }
+            return HotAccount.builder()
+                    .accountNumber(accountNumber)
+                    .attempts(attempts)
+                    .failures(failures)
+                    .waitP50Ms(percentile(snapshot, total, 0.50))
+                    .waitP95Ms(percentile(snapshot, total, 0.95))
+                    .waitP99Ms(percentile(snapshot, total, 0.99))
+                    .build();
+        }
+
+        private static double percentile(long[] snapshot, long total, double quantile) {
+            if (total == 0) {
+                return 0.0;
+            }
+            long rank = (long) Math.ceil(total * quantile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    return i == 0 ? 0.0 : (1L << i) / 1000.0;
+                }
+            }
+            return (1L << (BUCKETS - 1)) / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.jhsfully.account.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 노드 메모리의 토큰 버킷. (GCRA)
+ *
+ * 버킷마다 "다음 요청이 이론상 도착해야 할 시각" 하나만 두고 CAS로 갱신하므로 락이 없다.
+ * 그 시각이 지금보다 capacity개 간격 이상 앞서 있으면 토큰이 없는 것이다.
+ */
+@Component
+@ConditionalOnProperty(name = "account.rate-limit.store", havingValue = "LOCAL", matchIfMissing = true)
+public class LocalRateLimiter implements RateLimiter {
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final LongSupplier nanoClock;
+
+    public LocalRateLimiter() {
+        this(System::nanoTime);
+    }
+
+    LocalRateLimiter(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public boolean tryAcquire(String key, long capacity, double refillPerSecond) {
+        long interval = (long) (1_000_000_000L / refillPerSecond);
+        long burst = interval * capacity;
+        AtomicLong bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(Long.MIN_VALUE));
+
+        while (true) {
+            long now = nanoClock.getAsLong();
+            long current = bucket.get();
+            long arrival = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+            long next = arrival + interval;
+            if (next - now > burst) {
+                return false;
+            }
+            if (bucket.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    //가득 찬 버킷은 없는 것과 같으므로 지운다.
+    @Scheduled(fixedDelayString = "${account.rate-limit.cleanup-interval-ms:60000}")
+    public void cleanup() {
+        long now = nanoClock.getAsLong();
+        buckets.entrySet().removeIf(entry -> entry.getValue().get() - now < 0);
+    }
+}
@@ -1,6 +1,11 @@
 package com.example.jhsfully.account.service;
 
 import com.example.jhsfully.account.aop.AccountLockIdInterface;
+import com.example.jhsfully.account.aop.TransactionIdInterface;
+import com.example.jhsfully.account.bloom.TransactionIdFilter;
+import com.example.jhsfully.account.deadline.RequestDeadline;
+import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.type.ErrorCode;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
@@ -14,12 +19,41 @@ import org.springframework.stereotype.Component;
 @RequiredArgsConstructor
 public class LockAopAspect {
     private final LockService lockService;
-    @Around("@annotation(com.example.jhsfully.account.aop.AccountLock) && args(request)")
+    private final BalanceExecutor balanceExecutor;
+    private final TransactionIdFilter transactionIdFilter;
+    private final CancellationIndex cancellationIndex;
+    @Around("@annotation(com.example.jhsfully.account.aop.AccountLock) && args(request, ..)")
     public Object aroundMethod(ProceedingJoinPoint pjp,
                                AccountLockIdInterface request) throws Throwable {
-        //lock 취득 시도
-        lockService.lock(request.getAccountNumber());
+        RequestDeadline.check();
+        if(request instanceof TransactionIdInterface){
+            String transactionId = ((TransactionIdInterface) request).getTransactionId();
+            //발급된 적 없는 거래 번호는 락과 DB를 거치지 않고 거절
+            if(!transactionIdFilter.mightContain(transactionId)){
+                throw new AccountException(ErrorCode.TRANSACTION_NOT_FOUND);
+            }
+            //최근에 취소된 거래를 반복해서 취소하는 요청
+            if(cancellationIndex.isKnownCancelled(transactionId)){
+                throw new AccountException(ErrorCode.TRANSACTION_ALREADY_CANCELLED);
+            }
+        }
+        //계좌별 순서를 스스로 보장하는 실행 방식이면 락을 잡지 않음
+        if(!balanceExecutor.getMode().isLockRequired()){
+            return pjp.proceed();
+        }
+        //lock 취득 시도, 요청 시한이 있으면 남은 시간만큼만 기다림
+        long waitTime = RequestDeadline.remainingMillis(LockService.WAIT_TIME_MS);
+        if(waitTime <= 0){
+            throw new AccountException(ErrorCode.DEADLINE_EXCEEDED);
+        }
+        try{
+            lockService.lock(request.getAccountNumber(), waitTime);
+        }catch (AccountException e){
+            RequestDeadline.check();
+            throw e;
+        }
         try{
+            RequestDeadline.check();
             return pjp.proceed();
         }finally {
             // lock 해제
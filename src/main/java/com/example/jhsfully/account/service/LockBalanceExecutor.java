@@ -0,0 +1,32 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.dto.TransactionDto;
+import com.example.jhsfully.account.type.BalanceMode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * 기본 방식. @AccountLock으로 Redis 락을 잡은 상태에서 요청마다 DB 트랜잭션으로 처리한다.
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "account.balance.mode", havingValue = "LOCK", matchIfMissing = true)
+public class LockBalanceExecutor implements BalanceExecutor {
+    private final TransactionService transactionService;
+
+    @Override
+    public BalanceMode getMode() {
+        return BalanceMode.LOCK;
+    }
+
+    @Override
+    public TransactionDto useBalance(Long userId, String accountNumber, Long amount) {
+        return transactionService.useBalance(userId, accountNumber, amount);
+    }
+
+    @Override
+    public TransactionDto cancelBalance(String transactionId, String accountNumber, Long amount) {
+        return transactionService.cancelBalance(transactionId, accountNumber, amount);
+    }
+}
@@ -1,46 +1,250 @@
 package com.example.jhsfully.account.service;
 
 import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.type.CircuitState;
 import com.example.jhsfully.account.type.ErrorCode;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RFuture;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static com.example.jhsfully.account.type.ErrorCode.ACCOUNT_TRANSACTION_LOCK;
 
+/**
+ * 계좌 락. 노드 안의 로컬 락 뒤에 Redis 락을 두는 2단 구조.
+ *
+ * 같은 계좌에 대한 요청이 한 노드에 몰려도 Redis 락을 두고 경쟁하는 스레드는 노드당 하나뿐이고,
+ * 나머지는 로컬 락에서 순서대로 기다린다. 락을 놓을 때 로컬 대기자가 있으면
+ * Redis 락을 풀지 않고 그대로 넘겨준다. (lease의 절반이 지났거나 너무 많이 넘겨준 경우 제외)
+ * 넘겨받을 대기자가 그 사이에 포기하면 키의 마지막 참조를 놓는 스레드가 Redis 락을 푼다.
+ *
+ * Redis 호출이 연달아 실패하면 서킷이 열리고, 그동안은 Redis를 부르지 않고 로컬 락만 잡는다.
+ * 이때 노드 간 직렬화는 거래 서비스가 잡는 계좌 행 락(SELECT ... FOR UPDATE)에 맡긴다.
+ * 서킷이 닫혀 있는 동안의 실패는 브레이커에 세기만 하고 락 획득 실패로 돌려준다.
+ * 락 시도마다 대기 시간과 성공 여부를 HotAccountTracker에 남긴다.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class LockService {
+    public static final long WAIT_TIME_MS = 1000L;
+    private static final long LEASE_TIME_MS = 15000L;
+    private static final int MAX_HANDOFFS = 16;
+    private static final String PROBE_KEY = "ACLK:probe";
+
+    // Redisson 락의 소유자는 스레드 단위이므로, 스레드 간에 넘겨줄 수 있도록 가상의 소유자 id를 쓴다.
+    // 획득 시도마다 새 id를 써서, 늦게 잡힌 락을 풀 때 지금 락을 가진 쪽을 건드리지 않게 한다.
+    private static final AtomicLong OWNER_IDS = new AtomicLong(Long.MIN_VALUE);
+
     private final RedissonClient redissonClient;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final HotAccountTracker hotAccountTracker;
+    private final Map<String, KeyLock> keyLocks = new ConcurrentHashMap<>();
 
     public void lock(String accountNumber){
-        RLock lock = redissonClient.getLock(getLockKey(accountNumber));
+        lock(accountNumber, WAIT_TIME_MS);
+    }
+
+    //waitTimeMs는 로컬 락과 Redis 락 대기를 합친 시간이다.
+    public void lock(String accountNumber, long waitTimeMs){
+        long startedAt = System.nanoTime();
+        try{
+            acquire(accountNumber, waitTimeMs);
+        } catch (AccountException e){
+            hotAccountTracker.recordFailed(accountNumber, System.nanoTime() - startedAt);
+            throw e;
+        }
+        hotAccountTracker.recordAcquired(accountNumber, System.nanoTime() - startedAt);
+    }
+
+    private void acquire(String accountNumber, long waitTimeMs){
+        String lockKey = getLockKey(accountNumber);
         log.debug("Trying lock for accountNumber : {}", accountNumber);
+        long deadline = System.currentTimeMillis() + waitTimeMs;
 
+        KeyLock keyLock = acquireKeyLock(lockKey);
         try{
-            boolean isLock = lock.tryLock(1, 15, TimeUnit.SECONDS);
+            if(!keyLock.local.tryLock(waitTimeMs, TimeUnit.MILLISECONDS)){
+                releaseKeyLock(lockKey);
+                log.error("================= Lock acquisition failed ===================");
+                throw new AccountException(ACCOUNT_TRANSACTION_LOCK);
+            }
+        } catch (InterruptedException e){
+            releaseKeyLock(lockKey);
+            Thread.currentThread().interrupt();
+            throw new AccountException(ACCOUNT_TRANSACTION_LOCK);
+        }
+
+        if(keyLock.redisHeld){
+            log.debug("Redis lock handed over for accountNumber : {}", accountNumber);
+            return;
+        }
+
+        //Redis가 불안정하면 기다리지 않고 로컬 락만으로 진행한다. 노드 간 정합성은 DB 행 락이 지킨다.
+        if(!circuitBreaker.allowRequest()){
+            circuitBreaker.recordFallback();
+            log.debug("Redis lock circuit is open, local lock only for accountNumber : {}", accountNumber);
+            return;
+        }
+
+        RLock lock = redissonClient.getLock(lockKey);
+        long ownerId = OWNER_IDS.getAndIncrement();
+        RFuture<Boolean> future = null;
+        try{
+            long remaining = Math.max(0L, deadline - System.currentTimeMillis());
+            future = lock.tryLockAsync(remaining, LEASE_TIME_MS,
+                    TimeUnit.MILLISECONDS, ownerId);
+            boolean isLock = future.get(remaining + circuitBreaker.getCallTimeoutMs(),
+                    TimeUnit.MILLISECONDS);
+            circuitBreaker.onSuccess();
             if(!isLock){
+                unlockLocal(lockKey, keyLock);
                 log.error("================= Lock acquisition failed ===================");
                 throw new AccountException(ACCOUNT_TRANSACTION_LOCK);
             }
+            keyLock.redisHeld = true;
+            keyLock.redisOwnerId = ownerId;
+            keyLock.acquiredAt = System.currentTimeMillis();
+            keyLock.handoffs = 0;
         } catch (AccountException e){
             throw e;
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            unlockLocal(lockKey, keyLock);
+            throw new AccountException(ACCOUNT_TRANSACTION_LOCK);
         } catch (Exception e){
-            log.error("Redis lock failed", e);
+            if(future != null){
+                //응답이 늦게 와서 락이 잡히면 바로 풀어 준다. 이 시도의 id로만 풀므로 다른 소유자의 락은 그대로다.
+                future.whenComplete((granted, error) -> {
+                    if(Boolean.TRUE.equals(granted)){
+                        lock.unlockAsync(ownerId);
+                    }
+                });
+            }
+            circuitBreaker.onFailure(e);
+            //이 실패로 서킷이 열리지 않았다면 Redis 락 없이 진행하지 않는다.
+            if(circuitBreaker.getState() != CircuitState.OPEN){
+                unlockLocal(lockKey, keyLock);
+                log.warn("Redis lock failed for accountNumber : {}", accountNumber, e);
+                throw new AccountException(ACCOUNT_TRANSACTION_LOCK);
+            }
+            circuitBreaker.recordFallback();
+            log.warn("Redis lock circuit opened, local lock only for accountNumber : {}", accountNumber, e);
         }
     }
 
     public void unlock(String accountNumber){
+        String lockKey = getLockKey(accountNumber);
         log.debug("Unlock for accountNumber : {}", accountNumber);
-        redissonClient.getLock(getLockKey(accountNumber)).unlock();
+
+        KeyLock keyLock = keyLocks.get(lockKey);
+        if(keyLock == null || !keyLock.local.isHeldByCurrentThread()){
+            throw new IllegalMonitorStateException("Lock is not held : " + lockKey);
+        }
+
+        if(keyLock.redisHeld && !canHandOff(keyLock)){
+            keyLock.redisHeld = false;
+            unlockRedis(lockKey, keyLock.redisOwnerId);
+        } else if(keyLock.redisHeld){
+            keyLock.handoffs++;
+        }
+        unlockLocal(lockKey, keyLock);
+    }
+
+    private void unlockRedis(String lockKey, long ownerId){
+        try{
+            redissonClient.getLock(lockKey).unlockAsync(ownerId)
+                    .get(circuitBreaker.getCallTimeoutMs(), TimeUnit.MILLISECONDS);
+            circuitBreaker.onSuccess();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        } catch (Exception e){
+            //풀지 못한 락은 lease가 지나면 Redis에서 풀린다.
+            circuitBreaker.onFailure(e);
+            log.error("Redis unlock failed", e);
+        }
+    }
+
+    //서킷이 열린 뒤 open-ms가 지났으면 Redis를 한 번 찔러 보고 닫을지 정한다.
+    @Scheduled(fixedDelayString = "${account.lock.circuit-breaker.probe-interval-ms:1000}")
+    public void probeRedis(){
+        if(!circuitBreaker.tryStartProbe()){
+            return;
+        }
+        try{
+            redissonClient.getBucket(PROBE_KEY).isExistsAsync()
+                    .get(circuitBreaker.getCallTimeoutMs(), TimeUnit.MILLISECONDS);
+            circuitBreaker.onProbeResult(true);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            circuitBreaker.onProbeResult(false);
+        } catch (Exception e){
+            log.debug("Redis lock probe failed", e);
+            circuitBreaker.onProbeResult(false);
+        }
+    }
+
+    //로컬 대기자가 있고, lease가 충분히 남았으며, 다른 노드도 기회를 얻을 수 있을 때만 넘겨준다.
+    private static boolean canHandOff(KeyLock keyLock) {
+        return keyLock.local.hasQueuedThreads()
+                && keyLock.handoffs < MAX_HANDOFFS
+                && System.currentTimeMillis() - keyLock.acquiredAt < LEASE_TIME_MS / 2;
+    }
+
+    private KeyLock acquireKeyLock(String lockKey) {
+        return keyLocks.compute(lockKey, (key, keyLock) -> {
+            KeyLock result = keyLock == null ? new KeyLock() : keyLock;
+            result.references++;
+            return result;
+        });
+    }
+
+    //넘겨주기로 한 대기자가 시간 초과나 인터럽트로 떠나 아무도 남지 않았으면 넘겨받을 스레드가 없으므로
+    //마지막으로 떠나는 스레드가 Redis 락을 푼다.
+    private void releaseKeyLock(String lockKey) {
+        KeyLock[] removed = new KeyLock[1];
+        keyLocks.computeIfPresent(lockKey, (key, keyLock) -> {
+            if(--keyLock.references > 0){
+                return keyLock;
+            }
+            removed[0] = keyLock;
+            return null;
+        });
+        if(removed[0] != null && removed[0].redisHeld){
+            removed[0].redisHeld = false;
+            log.debug("No waiter took over the Redis lock : {}", lockKey);
+            unlockRedis(lockKey, removed[0].redisOwnerId);
+        }
+    }
+
+    private void unlockLocal(String lockKey, KeyLock keyLock) {
+        keyLock.local.unlock();
+        releaseKeyLock(lockKey);
     }
 
     private static String getLockKey(String accountNumber) {
         return "ACLK:" + accountNumber;
     }
+
+    /**
+     * 계좌 하나에 대한 로컬 락 상태.
+     * references는 keyLocks.compute 안에서만, 나머지는 local 락을 잡은 스레드만 변경한다.
+     */
+    private static class KeyLock {
+        private final ReentrantLock local = new ReentrantLock(true);
+        private int references;
+        private boolean redisHeld;
+        private long redisOwnerId;
+        private long acquiredAt;
+        private int handoffs;
+    }
 }
@@ -0,0 +1,265 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.datasource.RoutingContext;
+import com.example.jhsfully.account.deadline.RequestDeadline;
+import com.example.jhsfully.account.dto.TransactionDto;
+import com.example.jhsfully.account.engine.BalanceCommand;
+import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.type.BalanceMode;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.example.jhsfully.account.type.ErrorCode.BALANCE_ENGINE_BUSY;
+import static com.example.jhsfully.account.type.TransactionType.USE;
+
+/**
+ * 계좌마다 메일박스를 두고, 한 계좌의 요청은 한 번에 한 워커만 처리하는 방식.
+ *
+ * 같은 노드로 들어온 같은 계좌의 요청끼리는 락을 두고 경쟁하지 않는다.
+ * 노드가 여러 대라면 distributed-lock 설정으로 메일박스를 비우는 동안 Redis 락을 한 번만 잡는다.
+ * 메일박스는 요청이 올 때 만들어지고, 일정 시간 비어 있으면 회수된다.
+ * 대기 건수는 계좌 수와 무관하게 account.mailbox.backlog 게이지 하나로 합산해 노출한다.
+ * 요청 스레드의 처리 시한과 라우팅 상태는 요청과 함께 넘겨 워커에서 되살린다.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "account.balance.mode", havingValue = "MAILBOX")
+public class MailboxBalanceExecutor implements BalanceExecutor {
+    private static final int DRAIN_LIMIT = 64;
+
+    private final TransactionService transactionService;
+    private final LockService lockService;
+    private final ExecutorService workers;
+    private final boolean distributedLock;
+    private final long timeoutMs;
+    private final long idleMs;
+
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final AtomicInteger totalBacklog = new AtomicInteger();
+
+    public MailboxBalanceExecutor(TransactionService transactionService,
+                                  LockService lockService,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${account.mailbox.workers:16}") int workers,
+                                  @Value("${account.mailbox.distributed-lock:true}") boolean distributedLock,
+                                  @Value("${account.mailbox.timeout-ms:3000}") long timeoutMs,
+                                  @Value("${account.mailbox.idle-ms:60000}") long idleMs) {
+        this.transactionService = transactionService;
+        this.lockService = lockService;
+        this.workers = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "balance-mailbox-" + count.incrementAndGet());
+            }
+        });
+        this.distributedLock = distributedLock;
+        this.timeoutMs = timeoutMs;
+        this.idleMs = idleMs;
+
+        Gauge.builder("account.mailbox.active", mailboxes, Map::size)
+                .description("Number of live per-account mailboxes")
+                .register(meterRegistry);
+        Gauge.builder("account.mailbox.backlog", totalBacklog, AtomicInteger::get)
+                .description("Pending balance commands across all mailboxes")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.shutdown();
+        workers.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public BalanceMode getMode() {
+        return BalanceMode.MAILBOX;
+    }
+
+    @Override
+    public TransactionDto useBalance(Long userId, String accountNumber, Long amount) {
+        return await(submit(BalanceCommand.use(userId, accountNumber, amount)));
+    }
+
+    @Override
+    public TransactionDto cancelBalance(String transactionId, String accountNumber, Long amount) {
+        return await(submit(BalanceCommand.cancel(transactionId, accountNumber, amount)));
+    }
+
+    /**
+     * 요청을 계좌 메일박스에 넣고 바로 반환한다. 결과는 command의 future로 전달된다.
+     */
+    public BalanceCommand submit(BalanceCommand command) {
+        AtomicBoolean schedule = new AtomicBoolean();
+        // 회수와 겹치지 않도록 메일박스 조회와 적재를 한 번에 처리한다.
+        Mailbox mailbox = mailboxes.compute(command.getAccountNumber(), (accountNumber, current) -> {
+            Mailbox result = current == null ? new Mailbox(accountNumber) : current;
+            schedule.set(result.enqueue(new Submission(command)));
+            return result;
+        });
+        if (schedule.get()) {
+            workers.execute(mailbox::drain);
+        }
+        return command;
+    }
+
+    public int getBacklog(String accountNumber) {
+        Mailbox mailbox = mailboxes.get(accountNumber);
+        return mailbox == null ? 0 : mailbox.backlog.get();
+    }
+
+    @Scheduled(fixedDelayString = "${account.mailbox.reclaim-interval-ms:10000}")
+    public void reclaimIdleMailboxes() {
+        long now = System.currentTimeMillis();
+        for (String accountNumber : mailboxes.keySet()) {
+            mailboxes.computeIfPresent(accountNumber,
+                    (key, mailbox) -> mailbox.isIdle(now) ? null : mailbox);
+        }
+    }
+
+    private TransactionDto await(BalanceCommand command) {
+        try {
+            try {
+                return command.getFuture().get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (command.abandon()) {
+                    throw new AccountException(BALANCE_ENGINE_BUSY);
+                }
+                return command.getFuture().get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private TransactionDto execute(BalanceCommand command) {
+        if (command.getTransactionType() == USE) {
+            return transactionService.useBalance(
+                    command.getUserId(), command.getAccountNumber(), command.getAmount());
+        }
+        return transactionService.cancelBalance(
+                command.getTransactionId(), command.getAccountNumber(), command.getAmount());
+    }
+
+    private class Mailbox {
+        private final String accountNumber;
+        private final Queue<Submission> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger backlog = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile long lastActiveAt = System.currentTimeMillis();
+
+        private Mailbox(String accountNumber) {
+            this.accountNumber = accountNumber;
+        }
+
+        //워커를 새로 띄워야 하면 true
+        private boolean enqueue(Submission submission) {
+            queue.add(submission);
+            backlog.incrementAndGet();
+            totalBacklog.incrementAndGet();
+            lastActiveAt = System.currentTimeMillis();
+            return scheduled.compareAndSet(false, true);
+        }
+
+        private boolean isIdle(long now) {
+            return !scheduled.get() && queue.isEmpty() && now - lastActiveAt >= idleMs;
+        }
+
+        private void drain() {
+            boolean locked = false;
+            try {
+                if (distributedLock) {
+                    lockService.lock(accountNumber);
+                    locked = true;
+                }
+                for (int i = 0; i < DRAIN_LIMIT; i++) {
+                    Submission submission = queue.poll();
+                    if (submission == null) {
+                        break;
+                    }
+                    backlog.decrementAndGet();
+                    totalBacklog.decrementAndGet();
+                    process(submission);
+                }
+            } catch (RuntimeException e) {
+                // 락을 얻지 못하면 대기 중인 요청을 모두 실패시킨다.
+                failAll(e);
+            } finally {
+                if (locked) {
+                    lockService.unlock(accountNumber);
+                }
+                lastActiveAt = System.currentTimeMillis();
+                scheduled.set(false);
+                // 한 메일박스가 워커를 독점하지 않도록, 남은 요청은 다시 줄을 세운다.
+                if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+                    workers.execute(this::drain);
+                }
+            }
+        }
+
+        private void process(Submission submission) {
+            BalanceCommand command = submission.command;
+            if (!command.claim()) {
+                return;
+            }
+            Boolean previous = submission.replicaAllowed ? RoutingContext.allowReplica() : null;
+            if (submission.consistencyToken > 0) {
+                RoutingContext.setConsistencyToken(submission.consistencyToken);
+            }
+            if (submission.deadline != null) {
+                RequestDeadline.set(submission.deadline);
+            }
+            try {
+                command.getFuture().complete(execute(command));
+            } catch (RuntimeException e) {
+                command.getFuture().completeExceptionally(e);
+            } finally {
+                RoutingContext.restoreReplicaAllowed(previous);
+                RoutingContext.clearConsistencyToken();
+                RequestDeadline.clear();
+            }
+        }
+
+        private void failAll(RuntimeException e) {
+            Submission submission;
+            while ((submission = queue.poll()) != null) {
+                backlog.decrementAndGet();
+                totalBacklog.decrementAndGet();
+                if (submission.command.claim()) {
+                    submission.command.getFuture().completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    //요청 스레드에서 만들어, 워커가 같은 시한과 라우팅 상태로 요청을 처리하게 한다.
+    private static class Submission {
+        private final BalanceCommand command;
+        private final Long deadline = RequestDeadline.get();
+        private final boolean replicaAllowed = RoutingContext.isReplicaAllowed();
+        private final long consistencyToken = RoutingContext.getConsistencyToken();
+
+        private Submission(BalanceCommand command) {
+            this.command = command;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.aop.AccountLockIdInterface;
+import com.example.jhsfully.account.aop.UserIdInterface;
+import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.type.ErrorCode;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * 사용자별, 계좌별로 요청 수를 제한한다.
+ *
+ * LockAopAspect보다 먼저 실행되어, 한도를 넘은 요청은 락과 DB를 건드리지 않고 바로 거절된다.
+ * 기본으로는 꺼져 있고 account.rate-limit.enabled=true(또는 protection 프로필)로 켠다.
+ */
+@Aspect
+@Component
+@Order(1)
+@ConditionalOnProperty(name = "account.rate-limit.enabled", havingValue = "true")
+public class RateLimitAspect {
+    private final RateLimiter rateLimiter;
+    private final long userCapacity;
+    private final double userRefillPerSecond;
+    private final long accountCapacity;
+    private final double accountRefillPerSecond;
+
+    public RateLimitAspect(RateLimiter rateLimiter,
+                           @Value("${account.rate-limit.user.capacity:20}") long userCapacity,
+                           @Value("${account.rate-limit.user.refill-per-second:10}") double userRefillPerSecond,
+                           @Value("${account.rate-limit.account.capacity:20}") long accountCapacity,
+                           @Value("${account.rate-limit.account.refill-per-second:10}") double accountRefillPerSecond) {
+        this.rateLimiter = rateLimiter;
+        this.userCapacity = userCapacity;
+        this.userRefillPerSecond = userRefillPerSecond;
+        this.accountCapacity = accountCapacity;
+        this.accountRefillPerSecond = accountRefillPerSecond;
+    }
+
+    @Around("@annotation(com.example.jhsfully.account.aop.AccountLock) && args(request, ..)")
+    public Object aroundMethod(ProceedingJoinPoint pjp,
+                               AccountLockIdInterface request) throws Throwable {
+        if (request instanceof UserIdInterface
+                && !rateLimiter.tryAcquire("user:" + ((UserIdInterface) request).getUserId(),
+                userCapacity, userRefillPerSecond)) {
+            throw new AccountException(ErrorCode.TOO_MANY_REQUESTS);
+        }
+        if (!rateLimiter.tryAcquire("account:" + request.getAccountNumber(),
+                accountCapacity, accountRefillPerSecond)) {
+            throw new AccountException(ErrorCode.TOO_MANY_REQUESTS);
+        }
+        return pjp.proceed();
+    }
+}
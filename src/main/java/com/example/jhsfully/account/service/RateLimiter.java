@@ -0,0 +1,8 @@
+package com.example.jhsfully.account.service;
+
+/**
+ * 키마다 capacity만큼 몰아서 받고, 이후에는 초당 refillPerSecond개씩 받는다.
+ */
+public interface RateLimiter {
+    boolean tryAcquire(String key, long capacity, double refillPerSecond);
+}
@@ -0,0 +1,406 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.bloom.TransactionIdFilter;
+import com.example.jhsfully.account.domain.Account;
+import com.example.jhsfully.account.dto.TransactionDto;
+import com.example.jhsfully.account.event.AccountChangedEvent;
+import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.repository.AccountRepository;
+import com.example.jhsfully.account.repository.AccountUserRepository;
+import com.example.jhsfully.account.repository.TransactionRepository;
+import com.example.jhsfully.account.type.BalanceMode;
+import com.example.jhsfully.account.type.TransactionType;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.StreamUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+import static com.example.jhsfully.account.type.ErrorCode.*;
+import static com.example.jhsfully.account.type.TransactionResultType.S;
+import static com.example.jhsfully.account.type.TransactionType.CANCEL;
+import static com.example.jhsfully.account.type.TransactionType.USE;
+
+/**
+ * Redis에 올려둔 잔액을 Lua 스크립트 한 번으로 검사하고 차감하는 방식.
+ *
+ * 잔액 확인과 차감이 Redis 안에서 원자적으로 일어나므로 분산 락이 필요 없다.
+ * 스크립트는 DB에 저장할 거래를 ACBL:PENDING 리스트에 넣고, RedisBalanceReconciler가 이를 DB에 반영한다.
+ * 잔액 키는 반영 전 거래 수(pending)를 함께 들고 있다. 반영 전 거래가 있는 동안은 만료되지 않고,
+ * 모두 반영되면 account-ttl-seconds 뒤에 만료된다. 이때는 DB 잔액이 최신이므로 다시 올려도 된다.
+ * 해지나 배치로 DB의 계좌가 바뀌면 키를 지우고, 반영 전 거래가 남아 있으면 반영이 끝날 때까지
+ * 새 거래를 막았다가 지운다.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "account.balance.mode", havingValue = "REDIS")
+public class RedisBalanceExecutor implements BalanceExecutor {
+    public static final String PENDING_KEY = "ACBL:PENDING";
+
+    private static final long SUCCESS = 1L;
+    private static final long CACHE_MISS = -1L;
+    private static final long USER_UN_MATCH = -2L;
+    private static final long UNREGISTERED = -3L;
+    private static final long EXCEED_BALANCE = -4L;
+    private static final long TRANSACTION_UN_MATCH = -5L;
+    private static final long ALREADY_CANCELLED = -6L;
+    private static final long STALE = -7L;
+
+    private final RedissonClient redissonClient;
+    private final AccountRepository accountRepository;
+    private final AccountUserRepository accountUserRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionIdFilter transactionIdFilter;
+    private final CancellationIndex cancellationIndex;
+    private final long transactionTtlSeconds;
+    private final long accountTtlSeconds;
+
+    private String loadScript;
+    private String useScript;
+    private String cancelScript;
+    private String evictScript;
+    private String settleScript;
+    private String loadSha;
+    private String useSha;
+    private String cancelSha;
+    private String evictSha;
+    private String settleSha;
+
+    public RedisBalanceExecutor(RedissonClient redissonClient,
+                                AccountRepository accountRepository,
+                                AccountUserRepository accountUserRepository,
+                                TransactionRepository transactionRepository,
+                                TransactionIdFilter transactionIdFilter,
+                                CancellationIndex cancellationIndex,
+                                @Value("${account.redis-balance.transaction-ttl-seconds:86400}")
+                                long transactionTtlSeconds,
+                                @Value("${account.redis-balance.account-ttl-seconds:3600}")
+                                long accountTtlSeconds) {
+        this.redissonClient = redissonClient;
+        this.accountRepository = accountRepository;
+        this.accountUserRepository = accountUserRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionIdFilter = transactionIdFilter;
+        this.cancellationIndex = cancellationIndex;
+        this.transactionTtlSeconds = transactionTtlSeconds;
+        this.accountTtlSeconds = accountTtlSeconds;
+    }
+
+    @PostConstruct
+    public void loadScripts() {
+        loadScript = readScript("scripts/load-balance.lua");
+        useScript = readScript("scripts/use-balance.lua");
+        cancelScript = readScript("scripts/cancel-balance.lua");
+        evictScript = readScript("scripts/evict-balance.lua");
+        settleScript = readScript("scripts/settle-balance.lua");
+        registerScripts();
+    }
+
+    @Override
+    public BalanceMode getMode() {
+        return BalanceMode.REDIS;
+    }
+
+    @Override
+    public TransactionDto useBalance(Long userId, String accountNumber, Long amount) {
+        String transactionId = newTransactionId();
+        LocalDateTime transactedAt = LocalDateTime.now();
+        Object[] args = {
+                String.valueOf(userId), String.valueOf(amount), transactionId,
+                String.valueOf(toEpochMilli(transactedAt)),
+                String.valueOf(transactionTtlSeconds), accountNumber};
+
+        List<Object> keys = Arrays.asList(getAccountKey(accountNumber), PENDING_KEY,
+                getTransactionKey(transactionId));
+
+        List<Long> result = eval(true, keys, args);
+        if (result.get(0) == CACHE_MISS) {
+            loadAccount(accountNumber, userId);
+            result = eval(true, keys, args);
+        }
+
+        long code = result.get(0);
+        if (code == STALE) {
+            throw new AccountException(ACCOUNT_TRANSACTION_LOCK);
+        }
+        if (code == USER_UN_MATCH) {
+            throw new AccountException(accountUserRepository.existsById(userId)
+                    ? USER_ACCOUNT_UN_MATCH : USER_NOT_FOUND);
+        }
+        if (code == UNREGISTERED) {
+            throw new AccountException(ACCOUNT_ALREADY_UNREGISTERED);
+        }
+        if (code == EXCEED_BALANCE) {
+            throw new AccountException(AMOUNT_EXCEED_BALANCE);
+        }
+        return toDto(USE, accountNumber, amount, result, transactionId, transactedAt);
+    }
+
+    @Override
+    public TransactionDto cancelBalance(String transactionId, String accountNumber, Long amount) {
+        OriginalTransaction original = findOriginal(transactionId);
+        if (!original.cancellable) {
+            throw new AccountException(TRANSACTION_NOT_CANCELLABLE);
+        }
+        if (!Objects.equals(original.amount, amount)) {
+            throw new AccountException(CANCEL_MUST_FULLY);
+        }
+        if (original.transactedAt.isBefore(LocalDateTime.now().minusYears(1))) {
+            throw new AccountException(TOO_OLD_ORDER_TO_CANCEL);
+        }
+        if (cancellationIndex.isCancelled(transactionId)) {
+            throw new AccountException(TRANSACTION_ALREADY_CANCELLED);
+        }
+
+        String cancelTransactionId = newTransactionId();
+        LocalDateTime transactedAt = LocalDateTime.now();
+        Object[] args = {
+                String.valueOf(original.accountId), String.valueOf(amount), cancelTransactionId,
+                String.valueOf(toEpochMilli(transactedAt)),
+                String.valueOf(transactionTtlSeconds), accountNumber, transactionId};
+        List<Object> keys = Arrays.asList(getAccountKey(accountNumber), PENDING_KEY,
+                getTransactionKey(cancelTransactionId), getCancelKey(transactionId));
+
+        List<Long> result = eval(false, keys, args);
+        if (result.get(0) == CACHE_MISS) {
+            loadAccount(accountNumber, null);
+            result = eval(false, keys, args);
+        }
+        if (result.get(0) == STALE) {
+            throw new AccountException(ACCOUNT_TRANSACTION_LOCK);
+        }
+        if (result.get(0) == TRANSACTION_UN_MATCH) {
+            throw new AccountException(TRANSACTION_ACCOUNT_UN_MATCH);
+        }
+        if (result.get(0) == ALREADY_CANCELLED) {
+            throw new AccountException(TRANSACTION_ALREADY_CANCELLED);
+        }
+        return toDto(CANCEL, accountNumber, amount, result, cancelTransactionId, transactedAt);
+    }
+
+    /**
+     * 올라와 있는 계좌의 잔액을 한 번의 왕복(배치 HGET)으로 읽는다. 반영 전 거래가 있으면 DB보다 최신이다.
+     * Redis에 닿지 않으면 빈 맵을 돌려주어 DB 값으로 답하게 한다.
+     */
+    @Override
+    public Map<String, Long> getCachedBalances(Collection<String> accountNumbers) {
+        Map<String, RFuture<String>> futures = new LinkedHashMap<>();
+        try {
+            RBatch batch = redissonClient.createBatch();
+            for (String accountNumber : accountNumbers) {
+                futures.put(accountNumber, batch.<String, String>getMap(
+                        getAccountKey(accountNumber), StringCodec.INSTANCE).getAsync("balance"));
+            }
+            batch.execute();
+        } catch (RedisException e) {
+            log.warn("Failed to read cached balances, falling back to DB.", e);
+            return new HashMap<>();
+        }
+        //execute가 끝났으므로 모두 완료된 상태다. 실패한 응답이 있으면 DB 값으로 답한다.
+        Map<String, Long> balances = new HashMap<>();
+        try {
+            futures.forEach((accountNumber, future) -> {
+                String balance = future.toCompletableFuture().join();
+                if (balance != null) {
+                    balances.put(accountNumber, Long.valueOf(balance));
+                }
+            });
+        } catch (CompletionException e) {
+            log.warn("Failed to read cached balances, falling back to DB.", e.getCause());
+            return new HashMap<>();
+        }
+        return balances;
+    }
+
+    //해지나 배치로 DB의 계좌가 바뀌면 커밋 후에 잔액 키를 지운다.
+    //이미 커밋되었으므로 Redis 오류는 로그만 남긴다. 키는 만료되거나 다음 변경 때 다시 지워진다.
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onAccountChanged(AccountChangedEvent event) {
+        List<Object> keys = event.getAccountNumbers().stream()
+                .map(RedisBalanceExecutor::getAccountKey)
+                .collect(Collectors.toList());
+        try {
+            evalSha(evictScript, evictSha, RScript.ReturnType.INTEGER, keys);
+        } catch (RedisException e) {
+            log.warn("Failed to evict {} cached balances.", keys.size(), e);
+        }
+    }
+
+    /**
+     * ACBL:PENDING 앞쪽 count건이 DB에 반영된 뒤 리스트에서 지우고 계좌별 반영 전 거래 수를 줄인다.
+     * settled는 계좌 번호별 반영된 거래 수다.
+     */
+    public void settle(int count, Map<String, Integer> settled) {
+        List<Object> keys = new ArrayList<>(settled.size() + 1);
+        List<Object> args = new ArrayList<>(settled.size() + 2);
+        keys.add(PENDING_KEY);
+        args.add(String.valueOf(count));
+        args.add(String.valueOf(accountTtlSeconds));
+        settled.forEach((accountNumber, transactions) -> {
+            keys.add(getAccountKey(accountNumber));
+            args.add(String.valueOf(transactions));
+        });
+        evalSha(settleScript, settleSha, RScript.ReturnType.INTEGER, keys, args.toArray());
+    }
+
+    //아직 DB에 반영되지 않은 거래는 Redis에서, 나머지는 DB에서 찾는다.
+    //type이 없는 항목은 종류를 알 수 없으므로 DB에서 다시 찾는다.
+    private OriginalTransaction findOriginal(String transactionId) {
+        Map<String, String> cached = redissonClient
+                .<String, String>getMap(getTransactionKey(transactionId), StringCodec.INSTANCE)
+                .readAllMap();
+        if (cached.containsKey("type")) {
+            return new OriginalTransaction(
+                    Long.valueOf(cached.get("accountId")),
+                    Long.valueOf(cached.get("amount")),
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(
+                            Long.parseLong(cached.get("transactedAt"))), ZoneId.systemDefault()),
+                    USE.name().equals(cached.get("type")));
+        }
+        return transactionRepository.findByTransactionId(transactionId)
+                .map(transaction -> new OriginalTransaction(
+                        transaction.getAccount().getId(),
+                        transaction.getAmount(),
+                        transaction.getTransactedAt(),
+                        transaction.getTransactionType() == USE
+                                && transaction.getTransactionResultType() == S))
+                .orElseThrow(() -> new AccountException(TRANSACTION_NOT_FOUND));
+    }
+
+    private void loadAccount(String accountNumber, Long userId) {
+        Account account = accountRepository.findByAccountNumber(accountNumber)
+                .orElseThrow(() -> new AccountException(
+                        userId != null && !accountUserRepository.existsById(userId)
+                                ? USER_NOT_FOUND : ACCOUNT_NOT_FOUND));
+
+        evalSha(loadScript, loadSha, RScript.ReturnType.INTEGER,
+                Arrays.asList(getAccountKey(accountNumber)),
+                String.valueOf(account.getId()),
+                String.valueOf(account.getAccountUser().getId()),
+                account.getAccountStatus().name(),
+                String.valueOf(account.getBalance()),
+                String.valueOf(accountTtlSeconds));
+    }
+
+    private List<Long> eval(boolean use, List<Object> keys, Object[] args) {
+        return evalSha(use ? useScript : cancelScript, use ? useSha : cancelSha,
+                RScript.ReturnType.MULTI, keys, args);
+    }
+
+    private <R> R evalSha(String script, String sha, RScript.ReturnType returnType,
+                          List<Object> keys, Object... args) {
+        RScript rScript = redissonClient.getScript(StringCodec.INSTANCE);
+        try {
+            return rScript.evalSha(RScript.Mode.READ_WRITE, sha, returnType, keys, args);
+        } catch (RedisException e) {
+            if (e.getMessage() == null || !e.getMessage().contains("NOSCRIPT")) {
+                throw e;
+            }
+            // Redis가 재시작되어 스크립트 캐시가 비었을 때
+            log.warn("Lua script cache was flushed. Reloading scripts.");
+            registerScripts();
+            return rScript.eval(RScript.Mode.READ_WRITE, script, returnType, keys, args);
+        }
+    }
+
+    private void registerScripts() {
+        RScript rScript = redissonClient.getScript(StringCodec.INSTANCE);
+        loadSha = rScript.scriptLoad(loadScript);
+        useSha = rScript.scriptLoad(useScript);
+        cancelSha = rScript.scriptLoad(cancelScript);
+        evictSha = rScript.scriptLoad(evictScript);
+        settleSha = rScript.scriptLoad(settleScript);
+    }
+
+    private static TransactionDto toDto(TransactionType transactionType,
+                                        String accountNumber,
+                                        Long amount,
+                                        List<Long> result,
+                                        String transactionId,
+                                        LocalDateTime transactedAt) {
+        return TransactionDto.builder()
+                .accountNumber(accountNumber)
+                .transactionType(transactionType)
+                .transactionResultType(S)
+                .amount(amount)
+                .balanceSnapshot(result.get(1))
+                .transactionId(transactionId)
+                .transactedAt(transactedAt)
+                .build();
+    }
+
+    private static String readScript(String path) {
+        try {
+            return StreamUtils.copyToString(
+                    new ClassPathResource(path).getInputStream(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String newTransactionId() {
+        String transactionId = UUID.randomUUID().toString().replace("-", "");
+        transactionIdFilter.put(transactionId);
+        return transactionId;
+    }
+
+    private static long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    public static String getAccountKey(String accountNumber) {
+        return "ACBL:" + accountNumber;
+    }
+
+    private static String getCancelKey(String transactionId) {
+        return "ACCX:" + transactionId;
+    }
+
+    private static String getTransactionKey(String transactionId) {
+        return "ACTX:" + transactionId;
+    }
+
+    private static class OriginalTransaction {
+        private final Long accountId;
+        private final Long amount;
+        private final LocalDateTime transactedAt;
+        //성공한 사용 거래만 취소할 수 있다.
+        private final boolean cancellable;
+
+        private OriginalTransaction(Long accountId, Long amount, LocalDateTime transactedAt,
+                                    boolean cancellable) {
+            this.accountId = accountId;
+            this.amount = amount;
+            this.transactedAt = transactedAt;
+            this.cancellable = cancellable;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.domain.Transaction;
+import com.example.jhsfully.account.engine.BalancePersister;
+import com.example.jhsfully.account.engine.EngineTransaction;
+import com.example.jhsfully.account.repository.AccountRepository;
+import com.example.jhsfully.account.repository.TransactionRepository;
+import com.example.jhsfully.account.type.TransactionType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RList;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Redis 잔액 방식에서 ACBL:PENDING에 쌓인 거래를 DB에 반영한다.
+ *
+ * 노드가 여러 대여도 한 번에 한 노드만 반영하도록 Redis 락을 잡고,
+ * 반영이 끝난 만큼만 리스트에서 지운다. 중간에 죽어 같은 거래를 다시 읽으면
+ * 이미 저장된 transactionId는 건너뛴다. DB 잔액에는 변경량만 더하므로
+ * 그 사이 다른 경로가 바꾼 잔액을 덮어쓰지 않는다.
+ *
+ * 락은 watchdog이 연장하고, 한 번에 max-batches-per-run 묶음까지만 반영하고 락을 놓는다.
+ * 묶음 저장이 실패하면 한 건씩 저장해서 실패한 거래 앞까지만 지운다.
+ * 같은 거래가 persist-max-attempts번 실패하면 ACBL:DEAD로 옮기고 알린다.
+ * 옮긴 거래의 계좌는 반영 전 거래 수를 줄이지 않으므로, 복구할 때까지 Redis 잔액이 만료되거나 DB 값으로 바뀌지 않는다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "account.balance.mode", havingValue = "REDIS")
+public class RedisBalanceReconciler {
+    private static final String LOCK_KEY = "ACBL:RECONCILE";
+    public static final String DEAD_LETTER_KEY = "ACBL:DEAD";
+
+    private final RedissonClient redissonClient;
+    private final RedisBalanceExecutor redisBalanceExecutor;
+    private final TransactionRepository transactionRepository;
+    private final BalancePersister persister;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final int maxAttempts;
+    private final Counter deadLetters;
+    //거래 번호 -> 저장에 실패한 횟수
+    private final Map<String, Integer> failures = new ConcurrentHashMap<>();
+
+    public RedisBalanceReconciler(RedissonClient redissonClient,
+                                  RedisBalanceExecutor redisBalanceExecutor,
+                                  AccountRepository accountRepository,
+                                  TransactionRepository transactionRepository,
+                                  TransactionTemplate transactionTemplate,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${account.redis-balance.reconcile-batch-size:500}")
+                                  int batchSize,
+                                  @Value("${account.redis-balance.reconcile-max-batches-per-run:20}")
+                                  int maxBatchesPerRun,
+                                  @Value("${account.redis-balance.persist-max-attempts:10}")
+                                  int maxAttempts) {
+        this.redissonClient = redissonClient;
+        this.redisBalanceExecutor = redisBalanceExecutor;
+        this.transactionRepository = transactionRepository;
+        this.persister = new BalancePersister(transactionTemplate,
+                accountRepository, transactionRepository, batchSize);
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.maxAttempts = maxAttempts;
+        this.deadLetters = Counter.builder("account.redis-balance.dead-letter")
+                .description("Redis balance transactions moved to the dead-letter list")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${account.redis-balance.reconcile-interval-ms:200}")
+    public void reconcile() {
+        RLock lock = redissonClient.getLock(LOCK_KEY);
+        if (!lock.tryLock()) {
+            return;
+        }
+
+        try {
+            RList<String> pending = redissonClient.getList(
+                    RedisBalanceExecutor.PENDING_KEY, StringCodec.INSTANCE);
+            List<String> entries;
+            for (int batch = 0; batch < maxBatchesPerRun
+                    && !(entries = pending.range(0, batchSize - 1)).isEmpty(); batch++) {
+                if (reconcile(entries) < entries.size()) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to reconcile redis balances.", e);
+        } finally {
+            if (lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    //앞에서부터 반영했거나 dead-letter로 옮긴 건수를 돌려준다.
+    private int reconcile(List<String> entries) {
+        List<EngineTransaction> transactions = new ArrayList<>(entries.size());
+        for (String entry : entries) {
+            try {
+                transactions.add(parse(entry));
+            } catch (RuntimeException e) {
+                transactions.add(null);
+            }
+        }
+
+        List<Boolean> deadLettered = new ArrayList<>(Collections.nCopies(entries.size(), false));
+        int done = entries.size();
+        if (transactions.contains(null) || !tryPersist(transactions)) {
+            done = 0;
+            while (done < entries.size()) {
+                EngineTransaction transaction = transactions.get(done);
+                if (transaction != null && tryPersist(Collections.singletonList(transaction))) {
+                    failures.remove(transaction.getTransactionId());
+                } else if (transaction == null || failures.merge(
+                        transaction.getTransactionId(), 1, Integer::sum) >= maxAttempts) {
+                    deadLetter(entries.get(done));
+                    if (transaction != null) {
+                        failures.remove(transaction.getTransactionId());
+                    }
+                    deadLettered.set(done, true);
+                } else {
+                    break;
+                }
+                done++;
+            }
+        }
+        if (done == 0) {
+            return 0;
+        }
+
+        Map<String, Integer> settled = new HashMap<>();
+        for (int i = 0; i < done; i++) {
+            if (!deadLettered.get(i)) {
+                settled.merge(transactions.get(i).getAccountNumber(), 1, Integer::sum);
+            }
+        }
+        redisBalanceExecutor.settle(done, settled);
+        return done;
+    }
+
+    private boolean tryPersist(List<EngineTransaction> transactions) {
+        try {
+            persist(transactions);
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Failed to persist {} redis balance transactions.", transactions.size(), e);
+            return false;
+        }
+    }
+
+    private void deadLetter(String entry) {
+        redissonClient.<String>getList(DEAD_LETTER_KEY, StringCodec.INSTANCE).add(entry);
+        deadLetters.increment();
+        log.error("[ALERT] Gave up persisting redis balance transaction after {} attempts. Moved to {} : {}",
+                maxAttempts, DEAD_LETTER_KEY, entry);
+    }
+
+    private void persist(List<EngineTransaction> transactions) {
+        Set<String> saved = transactionRepository.findByTransactionIdIn(
+                        transactions.stream()
+                                .map(EngineTransaction::getTransactionId)
+                                .collect(Collectors.toList()))
+                .stream()
+                .map(Transaction::getTransactionId)
+                .collect(Collectors.toSet());
+
+        List<EngineTransaction> unsaved = transactions.stream()
+                .filter(transaction -> !saved.contains(transaction.getTransactionId()))
+                .collect(Collectors.toList());
+        if (!unsaved.isEmpty()) {
+            persister.persist(unsaved);
+        }
+    }
+
+    //TYPE|transactionId|accountId|accountNumber|amount|balance|transactedAt[|originalTransactionId]
+    private static EngineTransaction parse(String entry) {
+        String[] fields = entry.split("\\|");
+        return EngineTransaction.builder()
+                .transactionType(TransactionType.valueOf(fields[0]))
+                .transactionId(fields[1])
+                .accountId(Long.valueOf(fields[2]))
+                .accountNumber(fields[3])
+                .amount(Long.valueOf(fields[4]))
+                .balanceSnapshot(Long.valueOf(fields[5]))
+                .transactedAt(LocalDateTime.ofInstant(
+                        Instant.ofEpochMilli(Long.parseLong(fields[6])), ZoneId.systemDefault()))
+                .originalTransactionId(fields.length > 7 ? fields[7] : null)
+                .build();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.type.CircuitState;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+import static com.example.jhsfully.account.type.CircuitState.*;
+
+/**
+ * Redis 락 호출의 서킷 브레이커.
+ *
+ * 연속 실패가 failure-threshold에 이르면 열리고, 열린 동안 요청 스레드는 상태만 읽고
+ * Redis를 부르지 않은 채 대체 경로(로컬 락 + DB 행 락)로 넘어간다.
+ * 열린 뒤 open-ms가 지나면 LockService가 백그라운드에서 Redis를 한 번 찔러 보고(HALF_OPEN)
+ * 성공하면 닫고, 실패하면 다시 open-ms 동안 연다.
+ * Redis 거래 번호 필터(RedisTransactionIdFilter)도 같은 브레이커를 본다.
+ */
+@Slf4j
+@Component
+public class RedisCircuitBreaker {
+    private final AtomicReference<CircuitState> state = new AtomicReference<>(CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final int failureThreshold;
+    private final long openMs;
+    private final long callTimeoutMs;
+    private final LongSupplier clock;
+    private final Counter fallbacks;
+    private volatile long openedAt;
+
+    @Autowired
+    public RedisCircuitBreaker(MeterRegistry meterRegistry,
+                               @Value("${account.lock.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                               @Value("${account.lock.circuit-breaker.open-ms:5000}") long openMs,
+                               @Value("${account.lock.circuit-breaker.call-timeout-ms:200}") long callTimeoutMs) {
+        this(meterRegistry, failureThreshold, openMs, callTimeoutMs, System::currentTimeMillis);
+    }
+
+    RedisCircuitBreaker(MeterRegistry meterRegistry, int failureThreshold, long openMs,
+                        long callTimeoutMs, LongSupplier clock) {
+        this.failureThreshold = failureThreshold;
+        this.openMs = openMs;
+        this.callTimeoutMs = callTimeoutMs;
+        this.clock = clock;
+        this.fallbacks = Counter.builder("account.lock.fallback")
+                .description("Locks taken without Redis while the circuit is open or Redis failed")
+                .register(meterRegistry);
+        Gauge.builder("account.lock.circuit.state", state, current -> current.get().ordinal())
+                .description("Redis lock circuit state (0 closed, 1 open, 2 half-open)")
+                .register(meterRegistry);
+    }
+
+    public boolean allowRequest() {
+        return state.get() == CLOSED;
+    }
+
+    public CircuitState getState() {
+        return state.get();
+    }
+
+    //Redis 호출 하나에 허용하는 시간. 락 대기 시간과 별도로 응답을 기다리는 여유다.
+    public long getCallTimeoutMs() {
+        return callTimeoutMs;
+    }
+
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+    }
+
+    public void onFailure(Throwable cause) {
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold
+                && state.compareAndSet(CLOSED, OPEN)) {
+            openedAt = clock.getAsLong();
+            log.error("Redis lock circuit opened after {} consecutive failures", failureThreshold, cause);
+        }
+    }
+
+    public void recordFallback() {
+        fallbacks.increment();
+    }
+
+    //열린 지 open-ms가 지났으면 HALF_OPEN으로 바꾸고 true. 한 번에 하나만 찔러 본다.
+    public boolean tryStartProbe() {
+        return state.get() == OPEN
+                && clock.getAsLong() - openedAt >= openMs
+                && state.compareAndSet(OPEN, HALF_OPEN);
+    }
+
+    public void onProbeResult(boolean success) {
+        if (success) {
+            consecutiveFailures.set(0);
+            state.set(CLOSED);
+            log.info("Redis lock circuit closed");
+        } else {
+            openedAt = clock.getAsLong();
+            state.set(OPEN);
+        }
+    }
+}
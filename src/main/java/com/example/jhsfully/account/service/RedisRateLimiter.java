@@ -0,0 +1,57 @@
+package com.example.jhsfully.account.service;
+
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Redis 슬라이딩 윈도우. 노드가 여러 대여도 키마다 한 번에 세어진다.
+ *
+ * 버킷을 처음부터 다 채우는 데 걸리는 시간(capacity / refillPerSecond)을 창으로 보고,
+ * 그 창 안에서 capacity개까지 받는다.
+ */
+@Component
+@ConditionalOnProperty(name = "account.rate-limit.store", havingValue = "REDIS")
+public class RedisRateLimiter implements RateLimiter {
+    private static final String KEY_PREFIX = "ACRL:";
+
+    private final RedissonClient redissonClient;
+    private String script;
+
+    public RedisRateLimiter(RedissonClient redissonClient) {
+        this.redissonClient = redissonClient;
+    }
+
+    @PostConstruct
+    public void loadScript() {
+        try {
+            script = StreamUtils.copyToString(new ClassPathResource("scripts/rate-limit.lua")
+                    .getInputStream(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean tryAcquire(String key, long capacity, double refillPerSecond) {
+        long now = System.currentTimeMillis();
+        long windowMs = Math.max(1L, (long) (capacity * 1000 / refillPerSecond));
+        Long admitted = redissonClient.getScript(StringCodec.INSTANCE).eval(
+                RScript.Mode.READ_WRITE, script, RScript.ReturnType.INTEGER,
+                Collections.singletonList(KEY_PREFIX + key),
+                String.valueOf(now), String.valueOf(windowMs), String.valueOf(capacity),
+                now + ":" + ThreadLocalRandom.current().nextLong());
+        return admitted == 1L;
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.dto.TransactionDto;
+import com.example.jhsfully.account.type.TransactionResultType;
+import com.example.jhsfully.account.type.TransactionType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 한 번 저장되면 바뀌지 않는 거래를 직렬화해서 담아 두는 캐시.
+ *
+ * 정해진 크기의 버퍼 하나를 원형으로 쓰고, 가득 차면 가장 오래된 거래부터 밀어낸다.
+ * 거래 객체를 그대로 들고 있지 않으므로 메모리 사용량이 설정한 크기를 넘지 않으며,
+ * off-heap을 켜면 버퍼를 힙 밖에 두어 GC 대상에서도 빠진다.
+ * 조회는 락 없이 읽고, 읽는 중에 덮어써졌으면 없는 것으로 본다.
+ *
+ * 레코드 : [int 길이][short 키 길이][키][본문], 길이 -1은 버퍼 끝까지 건너뛰라는 표시
+ */
+@Component
+public class TransactionNearCache {
+    private static final int SKIP = -1;
+    private static final int HEADER_SIZE = Integer.BYTES + Short.BYTES;
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private final Map<String, Long> index = new ConcurrentHashMap<>();
+    private final StampedLock lock = new StampedLock();
+    private long head;
+    private long tail;
+
+    public TransactionNearCache(@Value("${account.transaction-cache.capacity-bytes:67108864}")
+                                int capacity,
+                                @Value("${account.transaction-cache.off-heap:false}")
+                                boolean offHeap) {
+        this.capacity = capacity;
+        this.buffer = offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    //DB 트랜잭션 안이면 커밋된 뒤에 넣는다. 롤백된 거래가 캐시에 남지 않게 한다.
+    public void putAfterCommit(TransactionDto transaction) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put(transaction);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(transaction);
+            }
+        });
+    }
+
+    public void put(TransactionDto transaction) {
+        if (!isCacheable(transaction)) {
+            return;
+        }
+        byte[] key = transaction.getTransactionId().getBytes(StandardCharsets.UTF_8);
+        byte[] body = encode(transaction);
+        int size = HEADER_SIZE + key.length + body.length;
+        if (size > capacity / 2 || index.containsKey(transaction.getTransactionId())) {
+            return;
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            int offset = offset(head);
+            if (offset + size > capacity) {
+                reserve(capacity - offset);
+                if (capacity - offset >= Integer.BYTES) {
+                    buffer.putInt(offset, SKIP);
+                }
+                head += capacity - offset;
+                offset = 0;
+            }
+            reserve(size);
+            buffer.putInt(offset, size);
+            buffer.putShort(offset + Integer.BYTES, (short) key.length);
+            put(offset + HEADER_SIZE, key);
+            put(offset + HEADER_SIZE + key.length, body);
+            index.put(transaction.getTransactionId(), head);
+            head += size;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public Optional<TransactionDto> get(String transactionId) {
+        Long position = index.get(transactionId);
+        if (position == null) {
+            return Optional.empty();
+        }
+        long stamp = lock.tryOptimisticRead();
+        TransactionDto transaction = read(position, transactionId);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                transaction = read(position, transactionId);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return Optional.ofNullable(transaction);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    //새 레코드가 들어갈 자리만큼 오래된 레코드를 밀어낸다.
+    private void reserve(int size) {
+        while (capacity - (head - tail) < size) {
+            int offset = offset(tail);
+            if (capacity - offset < Integer.BYTES || buffer.getInt(offset) == SKIP) {
+                tail += capacity - offset;
+                continue;
+            }
+            int length = buffer.getInt(offset);
+            byte[] key = new byte[buffer.getShort(offset + Integer.BYTES)];
+            get(offset + HEADER_SIZE, key);
+            index.remove(new String(key, StandardCharsets.UTF_8), tail);
+            tail += length;
+        }
+    }
+
+    //낙관적 읽기 중에는 값이 깨져 있을 수 있으므로 예외는 없는 것으로 처리한다.
+    private TransactionDto read(long position, String transactionId) {
+        try {
+            if (position < tail) {
+                return null;
+            }
+            int offset = offset(position);
+            int length = buffer.getInt(offset);
+            byte[] key = new byte[buffer.getShort(offset + Integer.BYTES)];
+            if (length <= HEADER_SIZE || offset + length > capacity) {
+                return null;
+            }
+            get(offset + HEADER_SIZE, key);
+            if (!transactionId.equals(new String(key, StandardCharsets.UTF_8))) {
+                return null;
+            }
+            ByteBuffer body = buffer.duplicate();
+            body.limit(offset + length).position(offset + HEADER_SIZE + key.length);
+            return decode(body, transactionId);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static boolean isCacheable(TransactionDto transaction) {
+        return transaction.getTransactionId() != null
+                && transaction.getTransactionType() != null
+                && transaction.getTransactionResultType() != null
+                && transaction.getAmount() != null
+                && transaction.getBalanceSnapshot() != null
+                && transaction.getTransactedAt() != null;
+    }
+
+    private int offset(long position) {
+        return (int) (position % capacity);
+    }
+
+    private void put(int offset, byte[] bytes) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.put(bytes);
+    }
+
+    private void get(int offset, byte[] bytes) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.get(bytes);
+    }
+
+    private static byte[] encode(TransactionDto transaction) {
+        byte[] accountNumber = bytes(transaction.getAccountNumber());
+        byte[] originalTransactionId = bytes(transaction.getOriginalTransactionId());
+        ByteBuffer body = ByteBuffer.allocate(2 + 8 + 8 + 8 + 4
+                + Short.BYTES + accountNumber.length + Short.BYTES + originalTransactionId.length);
+        body.put((byte) transaction.getTransactionType().ordinal());
+        body.put((byte) transaction.getTransactionResultType().ordinal());
+        body.putLong(transaction.getAmount());
+        body.putLong(transaction.getBalanceSnapshot());
+        body.putLong(transaction.getTransactedAt().toEpochSecond(ZoneOffset.UTC));
+        body.putInt(transaction.getTransactedAt().getNano());
+        body.putShort((short) accountNumber.length).put(accountNumber);
+        body.putShort((short) originalTransactionId.length).put(originalTransactionId);
+        return body.array();
+    }
+
+    private static TransactionDto decode(ByteBuffer body, String transactionId) {
+        TransactionType transactionType = TransactionType.values()[body.get()];
+        TransactionResultType transactionResultType = TransactionResultType.values()[body.get()];
+        long amount = body.getLong();
+        long balanceSnapshot = body.getLong();
+        LocalDateTime transactedAt = LocalDateTime.ofEpochSecond(
+                body.getLong(), body.getInt(), ZoneOffset.UTC);
+        String accountNumber = string(body);
+        String originalTransactionId = string(body);
+
+        return TransactionDto.builder()
+                .accountNumber(accountNumber)
+                .transactionType(transactionType)
+                .transactionResultType(transactionResultType)
+                .amount(amount)
+                .balanceSnapshot(balanceSnapshot)
+                .transactionId(transactionId)
+                .transactedAt(transactedAt)
+                .originalTransactionId(originalTransactionId.isEmpty() ? null : originalTransactionId)
+                .build();
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer body) {
+        byte[] bytes = new byte[body.getShort()];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
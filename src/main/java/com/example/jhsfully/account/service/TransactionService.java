@@ -1,27 +1,34 @@
 package com.example.jhsfully.account.service;
 
+import com.example.jhsfully.account.aop.ShardKey;
+import com.example.jhsfully.account.bloom.TransactionIdFilter;
 import com.example.jhsfully.account.domain.Account;
 import com.example.jhsfully.account.domain.AccountUser;
 import com.example.jhsfully.account.domain.Transaction;
 import com.example.jhsfully.account.dto.TransactionDto;
+import com.example.jhsfully.account.engine.BalanceCommand;
+import com.example.jhsfully.account.event.BalanceChangedEvent;
 import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.exeption.GroupCommandException;
 import com.example.jhsfully.account.repository.AccountRepository;
 import com.example.jhsfully.account.repository.AccountUserRepository;
 import com.example.jhsfully.account.repository.TransactionRepository;
+import com.example.jhsfully.account.shard.ShardRouter;
 import com.example.jhsfully.account.type.AccountStatus;
 import com.example.jhsfully.account.type.ErrorCode;
+import com.example.jhsfully.account.type.ShardKeyType;
 import com.example.jhsfully.account.type.TransactionResultType;
 import com.example.jhsfully.account.type.TransactionType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-
-import javax.transaction.Transactional;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Objects;
-import java.util.UUID;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.example.jhsfully.account.type.ErrorCode.*;
 import static com.example.jhsfully.account.type.TransactionResultType.F;
@@ -36,10 +43,16 @@ public class TransactionService {
     private final TransactionRepository transactionRepository;
     private final AccountUserRepository accountUserRepository;
     private final AccountRepository accountRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionIdFilter transactionIdFilter;
+    private final CancellationIndex cancellationIndex;
+    private final TransactionNearCache transactionNearCache;
+    private final ShardRouter shardRouter;
+    private final AccountNumberIndex accountNumberIndex;
 
     @Transactional
     public TransactionDto useBalance(Long userId,
-                                     String accountNumber,
+                                     @ShardKey String accountNumber,
                                      Long amount) {
         /**
          * 사용자가 없는 경우,
@@ -48,23 +61,28 @@ public class TransactionService {
          * 계좌가 이미 해지 상태인 경우, 거래금액이 잔액보다 큰 경우,
          * 거래금액이 너무 작거나 큰 경우 실패 응답
          */
-        AccountUser accountUser = accountUserRepository.findById(userId)
-                .orElseThrow(() -> new AccountException(USER_NOT_FOUND));
+        //색인의 소유주가 요청한 사용자와 같으면 사용자는 반드시 있으므로 따로 조회하지 않는다. (외래 키)
+        Optional<AccountNumberIndex.Entry> indexed = accountNumberIndex.get(accountNumber);
+        if (indexed.map(entry -> entry.getOwnerId() != userId).orElse(true)) {
+            accountUserRepository.findById(userId)
+                    .orElseThrow(() -> new AccountException(USER_NOT_FOUND));
+        }
 
-        Account account = accountRepository.findByAccountNumber(accountNumber)
+        //Redis 락이 없는 경우(서킷 open)에도 갱신을 잃지 않도록 계좌 행을 잠근다.
+        Account account = findAccountForUpdate(accountNumber, indexed)
                 .orElseThrow(() -> new AccountException(ACCOUNT_NOT_FOUND));
 
-        validateUseBalance(accountUser, account, amount); //유효성 검사 수행, 하위 코드들은 통과한 이후임.
+        validateUseBalance(userId, account, amount); //유효성 검사 수행, 하위 코드들은 통과한 이후임.
 
         Long accountBalance = account.getBalance();
         account.useBalance(amount);
 
-        return saveAndGetTransaction(USE, S, account, amount);
+        return publishBalanceChanged(account, saveAndGetTransaction(USE, S, account, amount));
     }
 
     //거래 전에 유효성 검사를 수행함.
-    private void validateUseBalance(AccountUser user, Account account, Long amount) {
-        if (!Objects.equals(user.getId(), account.getAccountUser().getId())) {
+    private void validateUseBalance(Long userId, Account account, Long amount) {
+        if (!Objects.equals(userId, account.getAccountUser().getId())) {
             throw new AccountException(ErrorCode.USER_ACCOUNT_UN_MATCH);
         }
         if (account.getAccountStatus() == AccountStatus.UNREGISTERED) {
@@ -76,7 +94,7 @@ public class TransactionService {
     }
 
     @Transactional
-    public void saveFailedUseTransaction(String accountNumber, Long amount) {
+    public void saveFailedUseTransaction(@ShardKey String accountNumber, Long amount) {
         Account account = accountRepository.findByAccountNumber(accountNumber)
                 .orElseThrow(() -> new AccountException(ACCOUNT_NOT_FOUND));
         saveAndGetTransaction(USE, F, account, amount);
@@ -87,35 +105,151 @@ public class TransactionService {
             TransactionResultType transactionResultType,
             Account account,
             Long amount) {
-        return TransactionDto.fromEntity(transactionRepository.save(
-                        Transaction.builder()
-                                .transactionType(transactionType)
-                                .transactionResultType(transactionResultType)
-                                .account(account)
-                                .amount(amount)
-                                .balanceSnapshot(account.getBalance())
-                                .transactionId(UUID.randomUUID().toString().replace("-", ""))
-                                .transactedAt(LocalDateTime.now())
-                                .build()
-                )
-        );
+        return saveAndGetTransaction(transactionType, transactionResultType, account, amount, null);
+    }
+
+    private TransactionDto saveAndGetTransaction(
+            TransactionType transactionType,
+            TransactionResultType transactionResultType,
+            Account account,
+            Long amount,
+            String originalTransactionId) {
+        TransactionDto transactionDto = TransactionDto.fromEntity(transactionRepository.save(
+                newTransaction(transactionType, transactionResultType, account, amount,
+                        originalTransactionId)));
+        transactionNearCache.putAfterCommit(transactionDto);
+        return transactionDto;
+    }
+
+    private Transaction newTransaction(
+            TransactionType transactionType,
+            TransactionResultType transactionResultType,
+            Account account,
+            Long amount,
+            String originalTransactionId) {
+        String transactionId = shardRouter.newTransactionId(account.getAccountNumber());
+        transactionIdFilter.put(transactionId);
+        return Transaction.builder()
+                .transactionType(transactionType)
+                .transactionResultType(transactionResultType)
+                .account(account)
+                .amount(amount)
+                .balanceSnapshot(account.getBalance())
+                .transactionId(transactionId)
+                .transactedAt(LocalDateTime.now())
+                .originalTransactionId(originalTransactionId)
+                .build();
+    }
+
+    /**
+     * 같은 계좌에 모인 사용/취소 요청을 하나의 DB 트랜잭션에서 순서대로 적용한다.
+     * 계좌 행은 한 번 잠그고 한 번 갱신하며, 거래 내역은 한 번에 저장한다.
+     * 검증에 실패한 요청은 그 자리에서 실패로 완료하고, 적용된 요청의 결과만 반환한다.
+     * 요청은 호출자가 미리 claim해 두어야 하며, 이미 완료된 요청은 건너뛴다.
+     * 검증 외의 예외는 묶음 전체를 롤백시키므로 GroupCommandException으로 그 요청을 알린다.
+     */
+    @Transactional
+    public Map<BalanceCommand, TransactionDto> commitGroup(@ShardKey String accountNumber,
+                                                                     List<BalanceCommand> commands) {
+        Optional<Account> account = findAccountForUpdate(accountNumber,
+                accountNumberIndex.get(accountNumber));
+        Map<Long, Optional<AccountUser>> users = new HashMap<>();
+        Map<String, Transaction> originals = transactionRepository.findByTransactionIdIn(
+                        commands.stream()
+                                .filter(command -> command.getTransactionType() == CANCEL)
+                                .map(BalanceCommand::getTransactionId)
+                                .collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(Transaction::getTransactionId, Function.identity()));
+
+        Set<String> cancelled = new HashSet<>();
+        List<BalanceCommand> applied = new ArrayList<>();
+        List<Transaction> transactions = new ArrayList<>();
+        for (BalanceCommand command : commands) {
+            if (command.getFuture().isDone()) {
+                continue;
+            }
+            try {
+                if (command.getTransactionType() == USE) {
+                    AccountUser accountUser = users
+                            .computeIfAbsent(command.getUserId(), accountUserRepository::findById)
+                            .orElseThrow(() -> new AccountException(USER_NOT_FOUND));
+                    Account target = account
+                            .orElseThrow(() -> new AccountException(ACCOUNT_NOT_FOUND));
+                    validateUseBalance(accountUser.getId(), target, command.getAmount());
+                    target.useBalance(command.getAmount());
+                } else {
+                    Transaction original = Optional.ofNullable(originals.get(command.getTransactionId()))
+                            .orElseThrow(() -> new AccountException(TRANSACTION_NOT_FOUND));
+                    Account target = account
+                            .orElseThrow(() -> new AccountException(ACCOUNT_NOT_FOUND));
+                    validateCancelBalance(original, target, command.getAmount());
+                    //같은 묶음 안에서 같은 거래를 두 번 취소하는 경우
+                    if (!cancelled.add(original.getTransactionId())) {
+                        throw new AccountException(TRANSACTION_ALREADY_CANCELLED);
+                    }
+                    target.cancelBalance(command.getAmount());
+                }
+                transactions.add(newTransaction(command.getTransactionType(), S, account.get(),
+                        command.getAmount(), command.getTransactionType() == CANCEL
+                                ? command.getTransactionId() : null));
+                applied.add(command);
+            } catch (AccountException e) {
+                command.getFuture().completeExceptionally(e);
+            } catch (RuntimeException e) {
+                throw new GroupCommandException(command, e);
+            }
+        }
+
+        List<Transaction> saved = transactionRepository.saveAll(transactions);
+        Map<BalanceCommand, TransactionDto> results = new LinkedHashMap<>();
+        for (int i = 0; i < saved.size(); i++) {
+            TransactionDto transactionDto = TransactionDto.fromEntity(saved.get(i));
+            transactionNearCache.putAfterCommit(transactionDto);
+            results.put(applied.get(i),
+                    publishBalanceChanged(saved.get(i).getAccount(), transactionDto));
+        }
+        return results;
+    }
+
+    //색인에 있으면 기본 키로 잠가 읽는다. 없으면 계좌 번호로 읽고 커밋된 뒤 색인에 넣는다.
+    private Optional<Account> findAccountForUpdate(String accountNumber,
+                                                   Optional<AccountNumberIndex.Entry> indexed) {
+        if (indexed.isPresent()) {
+            Optional<Account> account = accountRepository.findByIdForUpdate(indexed.get().getId());
+            if (account.isPresent()) {
+                return account;
+            }
+            //색인이 가리키는 행이 없으면 지우고 계좌 번호로 다시 찾는다.
+            accountNumberIndex.remove(accountNumber);
+        }
+        Optional<Account> account = accountRepository.findByAccountNumberForUpdate(accountNumber);
+        account.ifPresent(accountNumberIndex::putAfterCommit);
+        return account;
+    }
+
+    //성공한 거래만 이벤트로 알린다. 리스너가 실패하면 거래도 롤백된다.
+    private TransactionDto publishBalanceChanged(Account account, TransactionDto transactionDto) {
+        eventPublisher.publishEvent(new BalanceChangedEvent(transactionDto, account.getAccountUser().getId()));
+        return transactionDto;
     }
 
     @Transactional
     public TransactionDto cancelBalance(String transactionId,
-                                        String accountNumber,
+                                        @ShardKey String accountNumber,
                                         Long amount) {
 
         Transaction transaction = transactionRepository.findByTransactionId(transactionId)
                 .orElseThrow(() -> new AccountException(TRANSACTION_NOT_FOUND));
 
-        Account account = accountRepository.findByAccountNumber(accountNumber)
+        Account account = findAccountForUpdate(accountNumber, accountNumberIndex.get(accountNumber))
                 .orElseThrow(() -> new AccountException(ACCOUNT_NOT_FOUND));
 
         validateCancelBalance(transaction, account, amount);
         account.cancelBalance(amount);
 
-        return saveAndGetTransaction(CANCEL, S, account, amount);
+        return publishBalanceChanged(account,
+                saveAndGetTransaction(CANCEL, S, account, amount, transactionId));
     }
 
     private void validateCancelBalance(Transaction transaction,
@@ -125,6 +259,13 @@ public class TransactionService {
         if(!Objects.equals(transaction.getAccount().getId(), account.getId())){
             throw new AccountException(TRANSACTION_ACCOUNT_UN_MATCH);
         }
+        //취소 거래나 실패한 거래를 취소하면 같은 금액이 다시 들어오므로 막는다.
+        if(transaction.getTransactionType() != USE || transaction.getTransactionResultType() != S){
+            throw new AccountException(TRANSACTION_NOT_CANCELLABLE);
+        }
+        if(cancellationIndex.isCancelled(transaction.getTransactionId())){
+            throw new AccountException(TRANSACTION_ALREADY_CANCELLED);
+        }
         if(!Objects.equals(transaction.getAmount(), amount)){
             throw new AccountException(CANCEL_MUST_FULLY);
         }
@@ -134,15 +275,24 @@ public class TransactionService {
     }
 
     @Transactional
-    public void saveFailedCancelTransaction(String accountNumber, Long amount) {
+    public void saveFailedCancelTransaction(@ShardKey String accountNumber, Long amount) {
         Account account = accountRepository.findByAccountNumber(accountNumber)
                 .orElseThrow(() -> new AccountException(ACCOUNT_NOT_FOUND));
         saveAndGetTransaction(CANCEL, F, account, amount);
     }
 
-    public TransactionDto queryTransaction(String transactionId) {
-        return TransactionDto.fromEntity(transactionRepository
-                .findByTransactionId(transactionId)
-                .orElseThrow(() -> new AccountException(TRANSACTION_NOT_FOUND)));
+    @Transactional(readOnly = true)
+    public TransactionDto queryTransaction(@ShardKey(ShardKeyType.TRANSACTION_ID) String transactionId) {
+        if (!transactionIdFilter.mightContain(transactionId)) {
+            throw new AccountException(TRANSACTION_NOT_FOUND);
+        }
+        Optional<TransactionDto> cached = transactionNearCache.get(transactionId);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        TransactionDto transactionDto = transactionRepository.findDtoByTransactionId(transactionId)
+                .orElseThrow(() -> new AccountException(TRANSACTION_NOT_FOUND));
+        transactionNearCache.put(transactionDto);
+        return transactionDto;
     }
 }
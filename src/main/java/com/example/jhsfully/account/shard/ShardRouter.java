@@ -0,0 +1,208 @@
+package com.example.jhsfully.account.shard;
+
+import com.example.jhsfully.account.datasource.RoutingContext;
+import com.example.jhsfully.account.type.BalanceMode;
+import com.example.jhsfully.account.type.ShardKeyType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 계좌 번호와 거래 번호로 샤드를 정하고, 현재 스레드의 샤드를 바꿔 가며 작업을 실행한다.
+ *
+ * 계좌 번호는 샤드 수로 나눈 나머지가 샤드 번호가 되도록 발급한다. (샤드 하나면 기존과 같은 번호)
+ * 거래 번호는 앞 두 자리 16진수에 계좌의 샤드 번호를 넣는다.
+ * 샤딩 전에 만들어진 행은 0번 샤드에 남아 있으므로, legacy-last-account-number 이하의 계좌는 0번 샤드로 보내고
+ * 새 계좌 번호는 그 뒤부터 발급한다. 샤딩 전 거래 번호는 형식으로 구분되지 않으므로 조회 시 0번 샤드를 한 번 더 본다.
+ * 사용자 단위 조회는 샤드마다 병렬로 실행해서 합친다.
+ */
+@Component
+public class ShardRouter {
+    private static final long FIRST_ACCOUNT_NUMBER = 1_000_000_000L;
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    private final int shardCount;
+    private final long legacyLastAccountNumber;
+    private final ExecutorService fanOutExecutor;
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    public ShardRouter(@Value("${account.sharding.shards:1}") int shardCount,
+                       @Value("${account.balance.mode:LOCK}") BalanceMode balanceMode,
+                       @Value("${account.sharding.fan-out-threads:4}") int fanOutThreads,
+                       @Value("${account.sharding.legacy-last-account-number:0}") long legacyLastAccountNumber) {
+        if (shardCount < 1 || shardCount > 256) {
+            throw new IllegalArgumentException("account.sharding.shards must be 1..256 : " + shardCount);
+        }
+        if (shardCount > 1 && !balanceMode.isShardable()) {
+            throw new IllegalStateException(balanceMode + " mode does not support sharding");
+        }
+        this.shardCount = shardCount;
+        this.legacyLastAccountNumber = legacyLastAccountNumber;
+        this.fanOutExecutor = shardCount == 1 ? null
+                : Executors.newFixedThreadPool(Math.min(shardCount, fanOutThreads), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "shard-fan-out-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (fanOutExecutor != null) {
+            fanOutExecutor.shutdown();
+        }
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    //샤딩 전에 만든 행이 0번 샤드에 남아 있는지
+    public boolean hasLegacyRows() {
+        return shardCount > 1 && legacyLastAccountNumber > 0;
+    }
+
+    //ShardRoutingDataSource가 커넥션을 얻을 때 본다. 정해지지 않았으면 0번 샤드.
+    public static int currentShard() {
+        Integer shard = CURRENT_SHARD.get();
+        return shard == null ? 0 : shard;
+    }
+
+    public int shardOf(ShardKeyType type, String key) {
+        return type == ShardKeyType.TRANSACTION_ID
+                ? shardOfTransactionId(key)
+                : shardOfAccountNumber(key);
+    }
+
+    public int shardOfAccountNumber(String accountNumber) {
+        try {
+            long number = Long.parseLong(accountNumber);
+            if (number <= legacyLastAccountNumber) {
+                return 0;
+            }
+            return (int) Math.floorMod(number, (long) shardCount);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    //샤드 번호가 들어가기 전에 발급된 거래 번호는 0번 샤드에 있지만 여기서는 구분할 수 없다.
+    //그래서 TRANSACTION_ID로 라우팅한 조회는 hasLegacyRows()일 때 ShardRoutingAspect가 0번 샤드에서 다시 찾는다.
+    public int shardOfTransactionId(String transactionId) {
+        if (shardCount == 1 || transactionId == null || transactionId.length() < 2) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(transactionId.substring(0, 2), 16) % shardCount;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public String newTransactionId(String accountNumber) {
+        String uuid = UUID.randomUUID().toString().replace("-", "");
+        if (shardCount == 1) {
+            return uuid;
+        }
+        return String.format("%02x", shardOfAccountNumber(accountNumber)) + uuid.substring(2);
+    }
+
+    //새 계좌를 만들 샤드. 돌아가며 고른다.
+    public int nextShard() {
+        return Math.floorMod(nextShard.getAndIncrement(), shardCount);
+    }
+
+    //샤드의 첫 계좌 번호와, 마지막 번호 다음 번호. 샤딩 전 번호 범위는 건너뛴다.
+    public String firstAccountNumber(int shard) {
+        return String.valueOf(align(shard, Math.max(FIRST_ACCOUNT_NUMBER, legacyLastAccountNumber + 1)));
+    }
+
+    //0번 샤드의 마지막 번호는 샤딩 전 번호일 수 있으므로 샤드 번호에 맞춰 올린다.
+    public String nextAccountNumber(int shard, String lastAccountNumber) {
+        return String.valueOf(align(shard, Math.max(Long.parseLong(lastAccountNumber) + 1,
+                Math.max(FIRST_ACCOUNT_NUMBER, legacyLastAccountNumber + 1))));
+    }
+
+    //from 이상이면서 샤드 수로 나눈 나머지가 shard인 가장 작은 번호
+    private long align(int shard, long from) {
+        return from + Math.floorMod(shard - from, (long) shardCount);
+    }
+
+    public <T> T call(int shard, Supplier<T> task) {
+        Integer previous = enter(shard);
+        try {
+            return task.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    //이전 샤드를 반환한다. 끝나면 restore로 되돌린다.
+    static Integer enter(int shard) {
+        Integer previous = CURRENT_SHARD.get();
+        CURRENT_SHARD.set(shard);
+        return previous;
+    }
+
+    static void restore(Integer previous) {
+        if (previous == null) {
+            CURRENT_SHARD.remove();
+        } else {
+            CURRENT_SHARD.set(previous);
+        }
+    }
+
+    /**
+     * 모든 샤드에서 task를 실행하고 샤드 순서대로 결과를 모은다.
+     * 호출한 스레드의 복제본 허용 여부와 일관성 토큰을 작업 스레드에 넘겨준다.
+     */
+    public <T> List<T> fanOut(IntFunction<T> task) {
+        if (shardCount == 1) {
+            return Collections.singletonList(call(0, () -> task.apply(0)));
+        }
+        boolean replicaAllowed = RoutingContext.isReplicaAllowed();
+        long consistencyToken = RoutingContext.getConsistencyToken();
+
+        List<CompletableFuture<T>> futures = IntStream.range(0, shardCount)
+                .mapToObj(shard -> CompletableFuture.supplyAsync(() -> {
+                    Boolean previous = replicaAllowed ? RoutingContext.allowReplica() : null;
+                    RoutingContext.setConsistencyToken(consistencyToken);
+                    try {
+                        return call(shard, () -> task.apply(shard));
+                    } finally {
+                        RoutingContext.restoreReplicaAllowed(previous);
+                        RoutingContext.clearConsistencyToken();
+                    }
+                }, fanOutExecutor))
+                .collect(Collectors.toList());
+        try {
+            return futures.stream()
+                    .map(CompletableFuture::join)
+                    .collect(Collectors.toList());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.jhsfully.account.shard;
+
+import com.example.jhsfully.account.aop.ShardKey;
+import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.type.ErrorCode;
+import com.example.jhsfully.account.type.ShardKeyType;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @ShardKey 파라미터가 있는 서비스 메소드를 그 키의 샤드에서 실행한다.
+ * 트랜잭션이 커넥션을 얻기 전에 샤드가 정해지도록 트랜잭션 어드바이스보다 바깥에서 실행된다.
+ * 거래 번호로 찾지 못하면 샤딩 전에 발급되어 0번 샤드에 남은 거래일 수 있으므로 0번 샤드에서 다시 실행한다.
+ */
+@Aspect
+@Component
+@Order(3)
+@RequiredArgsConstructor
+public class ShardRoutingAspect {
+    private static final int NO_KEY = -1;
+
+    private final ShardRouter shardRouter;
+    private final Map<Method, Integer> keyIndexes = new ConcurrentHashMap<>();
+
+    @Around("execution(public * com.example.jhsfully.account.service.*Service.*(..))")
+    public Object aroundMethod(ProceedingJoinPoint pjp) throws Throwable {
+        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+        int index = keyIndexes.computeIfAbsent(method, ShardRoutingAspect::findKeyIndex);
+        if (index == NO_KEY || shardRouter.getShardCount() == 1) {
+            return pjp.proceed();
+        }
+        ShardKey shardKey = findShardKey(method.getParameterAnnotations()[index]);
+        int shard = shardRouter.shardOf(shardKey.value(), (String) pjp.getArgs()[index]);
+
+        try {
+            return proceedOn(pjp, shard);
+        } catch (AccountException e) {
+            if (shardKey.value() != ShardKeyType.TRANSACTION_ID || shard == 0
+                    || !shardRouter.hasLegacyRows() || e.getErrorCode() != ErrorCode.TRANSACTION_NOT_FOUND) {
+                throw e;
+            }
+            return proceedOn(pjp, 0);
+        }
+    }
+
+    private static Object proceedOn(ProceedingJoinPoint pjp, int shard) throws Throwable {
+        Integer previous = ShardRouter.enter(shard);
+        try {
+            return pjp.proceed();
+        } finally {
+            ShardRouter.restore(previous);
+        }
+    }
+
+    private static int findKeyIndex(Method method) {
+        Annotation[][] annotations = method.getParameterAnnotations();
+        for (int i = 0; i < annotations.length; i++) {
+            if (findShardKey(annotations[i]) != null) {
+                return i;
+            }
+        }
+        return NO_KEY;
+    }
+
+    private static ShardKey findShardKey(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof ShardKey) {
+                return (ShardKey) annotation;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.jhsfully.account.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+
+/**
+ * 현재 스레드의 샤드 번호로 데이터소스를 고른다.
+ * 0번 샤드는 spring.datasource(복제본 라우팅을 켰으면 그 라우팅 데이터소스)이다.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardRouter.currentShard();
+    }
+
+    //0번 샤드는 빈으로 따로 관리되므로 이 클래스가 만든 나머지 샤드의 풀만 닫는다.
+    public void close() {
+        getResolvedDataSources().forEach((shard, dataSource) -> {
+            if (!Integer.valueOf(0).equals(shard) && dataSource instanceof HikariDataSource) {
+                ((HikariDataSource) dataSource).close();
+            }
+        });
+    }
+
+    public DataSource getShard(int shard) {
+        return getResolvedDataSources().get(shard);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.jhsfully.account.shard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 로컬 H2 샤드용. Hibernate와 data.sql이 0번 샤드를 만든 뒤, 같은 스키마와 사용자 행을 나머지 샤드에 복사한다.
+ * 사용자는 모든 샤드에 같은 행을 둔다. (계좌가 어느 샤드에 있든 외래 키가 맞도록)
+ */
+@Slf4j
+public class ShardSchemaInitializer implements SmartInitializingSingleton {
+    private final ShardRoutingDataSource shardRoutingDataSource;
+    private final int shardCount;
+
+    public ShardSchemaInitializer(ShardRoutingDataSource shardRoutingDataSource, int shardCount) {
+        this.shardRoutingDataSource = shardRoutingDataSource;
+        this.shardCount = shardCount;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (shardCount == 1) {
+            return;
+        }
+        JdbcTemplate source = new JdbcTemplate(shardRoutingDataSource.getShard(0));
+        List<String> script = source.queryForList("SCRIPT NODATA NOSETTINGS", String.class);
+        List<Map<String, Object>> users = source.queryForList("SELECT * FROM ACCOUNT_USER");
+
+        for (int shard = 1; shard < shardCount; shard++) {
+            JdbcTemplate target = new JdbcTemplate(shardRoutingDataSource.getShard(shard));
+            for (String statement : script) {
+                if (!statement.startsWith("CREATE USER")) {
+                    target.execute(statement);
+                }
+            }
+            copyUsers(target, users);
+            log.info("Shard {} schema created. users={}", shard, users.size());
+        }
+    }
+
+    private static void copyUsers(JdbcTemplate target, List<Map<String, Object>> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        List<String> columns = new ArrayList<>(users.get(0).keySet());
+        String sql = "MERGE INTO ACCOUNT_USER (" + String.join(", ", columns) + ") KEY (ID) VALUES ("
+                + columns.stream().map(column -> "?").collect(Collectors.joining(", ")) + ")";
+        target.batchUpdate(sql, users.stream()
+                .map(row -> columns.stream().map(row::get).toArray())
+                .collect(Collectors.toList()));
+    }
+}
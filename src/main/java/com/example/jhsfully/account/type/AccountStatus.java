@@ -1,5 +1,6 @@
 package com.example.jhsfully.account.type;
 
+//DB에는 선언 순서로 저장한다. 새 값은 뒤에만 추가한다.
 public enum AccountStatus {
     IN_USE,
     UNREGISTERED
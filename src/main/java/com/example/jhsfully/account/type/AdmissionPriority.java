@@ -0,0 +1,10 @@
+package com.example.jhsfully.account.type;
+
+/**
+ * 과부하일 때 먼저 받아 줄 요청.
+ * LOW는 동시 처리 한도의 일부까지만 받고, 남은 자리는 HIGH(취소, 조회)를 위해 비워 둔다.
+ */
+public enum AdmissionPriority {
+    HIGH,
+    LOW
+}
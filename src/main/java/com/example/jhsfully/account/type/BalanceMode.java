@@ -0,0 +1,25 @@
+package com.example.jhsfully.account.type;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 잔액 사용/취소를 처리하는 방식.
+ * lockRequired가 false인 방식은 자체적으로 계좌별 순서를 보장하므로 Redis 락을 잡지 않는다.
+ * (GROUP_COMMIT은 DB 행 락으로 순서를 보장한다.)
+ * shardable이 false인 방식은 자체 영속화가 샤드를 모르므로 샤드가 하나일 때만 쓸 수 있다.
+ * persistedAsync가 true인 방식은 응답한 뒤에 DB에 반영하므로 복제본은 물론 primary도 잠시 뒤처진다.
+ */
+@Getter
+@AllArgsConstructor
+public enum BalanceMode {
+    LOCK(true, true, false),
+    ENGINE(false, false, true),
+    REDIS(false, false, true),
+    MAILBOX(false, true, false),
+    GROUP_COMMIT(false, true, false);
+
+    private final boolean lockRequired;
+    private final boolean shardable;
+    private final boolean persistedAsync;
+}
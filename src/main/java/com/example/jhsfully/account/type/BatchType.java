@@ -0,0 +1,13 @@
+package com.example.jhsfully.account.type;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum BatchType {
+    INTEREST(TransactionType.INTEREST),
+    FEE(TransactionType.FEE);
+
+    private final TransactionType transactionType;
+}
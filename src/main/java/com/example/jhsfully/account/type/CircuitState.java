@@ -0,0 +1,5 @@
+package com.example.jhsfully.account.type;
+
+public enum CircuitState {
+    CLOSED, OPEN, HALF_OPEN
+}
@@ -0,0 +1,6 @@
+package com.example.jhsfully.account.type;
+
+public enum DataSourceType {
+    PRIMARY,
+    REPLICA
+}
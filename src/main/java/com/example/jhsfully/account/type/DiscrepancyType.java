@@ -0,0 +1,17 @@
+package com.example.jhsfully.account.type;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public enum DiscrepancyType {
+    SNAPSHOT_MISMATCH("직전 잔액과 거래 금액으로 계산한 잔액이 스냅샷과 다릅니다."),
+    FINAL_BALANCE_MISMATCH("마지막 스냅샷이 계좌 잔액과 다릅니다."),
+    ORIGINAL_NOT_FOUND("취소 거래의 원거래가 없습니다."),
+    ORIGINAL_ACCOUNT_MISMATCH("취소 거래와 원거래의 계좌가 다릅니다."),
+    ORIGINAL_NOT_CANCELLABLE("원거래가 성공한 사용 거래가 아닙니다."),
+    CANCEL_AMOUNT_MISMATCH("취소 금액이 원거래 금액과 다릅니다.");
+
+    private final String description;
+}
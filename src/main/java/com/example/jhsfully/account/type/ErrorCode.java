@@ -17,9 +17,15 @@ public enum ErrorCode {
     TRANSACTION_ACCOUNT_UN_MATCH("해당 계좌에서 발생한 거래가 아닙니다."),
     CANCEL_MUST_FULLY("부분 취소는 허용되지 않습니다."),
     TOO_OLD_ORDER_TO_CANCEL("1년이 지난 거래는 취소가 불가능합니다."),
+    TRANSACTION_ALREADY_CANCELLED("이미 취소된 거래입니다."),
+    TRANSACTION_NOT_CANCELLABLE("성공한 사용 거래만 취소할 수 있습니다."),
     ACCOUNT_ALREADY_UNREGISTERED("계좌가 이미 해지되었습니다."),
     BALANCE_NOT_EMPTY("잔액이 있는 계좌는 해지할 수 없습니다."),
-    MAX_ACCOUNT_PER_USER_10("사용자 최대 계좌는 10개입니다.");
+    MAX_ACCOUNT_PER_USER_10("사용자 최대 계좌는 10개입니다."),
+    BALANCE_ENGINE_BUSY("거래 처리량을 초과했습니다. 잠시 후 다시 시도해 주세요."),
+    TOO_MANY_REQUESTS("요청이 너무 많습니다. 잠시 후 다시 시도해 주세요."),
+    SERVER_OVERLOADED("처리 중인 요청이 많아 받을 수 없습니다. 잠시 후 다시 시도해 주세요."),
+    DEADLINE_EXCEEDED("요청 처리 시한이 지났습니다.");
 
     private final String description;
 }
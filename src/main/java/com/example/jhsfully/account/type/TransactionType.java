@@ -1,7 +1,8 @@
 package com.example.jhsfully.account.type;
 
+//DB에는 선언 순서로 저장한다. 새 값은 뒤에만 추가한다.
 public enum TransactionType {
 
-    USE, CANCEL
+    USE, CANCEL, INTEREST, FEE
 
 }
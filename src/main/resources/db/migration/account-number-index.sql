@@ -0,0 +1,2 @@
+-- 계좌 번호로 찾는 조회(단건, 잔액 일괄 조회의 IN 목록)가 인덱스를 타도록 유니크 제약을 건다. (샤드마다 한 번씩 실행)
+alter table account add constraint ux_account_account_number unique (account_number);
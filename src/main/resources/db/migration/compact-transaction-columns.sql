@@ -0,0 +1,38 @@
+-- 문자열로 저장하던 거래 번호와 enum 컬럼을 압축 형식으로 바꾼다. (H2, 샤드마다 한 번씩 실행)
+-- 거래 번호: 32자리 16진수 varchar -> binary(16), enum: 이름 -> 순서 번호 tinyint
+-- enum 순서 번호는 TransactionType, TransactionResultType, AccountStatus의 선언 순서와 같아야 한다.
+
+alter table transaction add column transaction_id_code binary(16);
+alter table transaction add column original_transaction_id_code binary(16);
+alter table transaction add column transaction_type_code tinyint;
+alter table transaction add column transaction_result_type_code tinyint;
+
+-- 문자열을 바로 binary로 바꾸면 UTF-8 바이트가 되므로 uuid를 거쳐 16진수로 읽는다.
+update transaction set
+    transaction_id_code = cast(cast(transaction_id as uuid) as binary(16)),
+    original_transaction_id_code = cast(cast(original_transaction_id as uuid) as binary(16)),
+    transaction_type_code = case transaction_type
+        when 'USE' then 0 when 'CANCEL' then 1 when 'INTEREST' then 2 when 'FEE' then 3 end,
+    transaction_result_type_code = case transaction_result_type
+        when 'S' then 0 when 'F' then 1 end;
+
+alter table transaction drop constraint if exists ux_transaction_original_transaction_id;
+alter table transaction drop column transaction_id;
+alter table transaction drop column original_transaction_id;
+alter table transaction drop column transaction_type;
+alter table transaction drop column transaction_result_type;
+alter table transaction alter column transaction_id_code rename to transaction_id;
+alter table transaction alter column original_transaction_id_code rename to original_transaction_id;
+alter table transaction alter column transaction_type_code rename to transaction_type;
+alter table transaction alter column transaction_result_type_code rename to transaction_result_type;
+
+alter table transaction
+    add constraint ux_transaction_transaction_id unique (transaction_id);
+alter table transaction
+    add constraint ux_transaction_original_transaction_id unique (original_transaction_id);
+
+alter table account add column account_status_code tinyint;
+update account set account_status_code = case account_status
+    when 'IN_USE' then 0 when 'UNREGISTERED' then 1 end;
+alter table account drop column account_status;
+alter table account alter column account_status_code rename to account_status;
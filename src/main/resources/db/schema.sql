@@ -0,0 +1,66 @@
+-- fast-startup 프로필에서 Hibernate 스키마 생성 대신 쓰는 스키마. 엔티티를 바꾸면 같이 바꾼다.
+create sequence hibernate_sequence start with 1 increment by 1;
+
+create table account_user (
+    id bigint not null,
+    created_at timestamp,
+    updated_at timestamp,
+    name varchar(255),
+    primary key (id)
+);
+
+create table account (
+    id bigint not null,
+    created_at timestamp,
+    updated_at timestamp,
+    account_number varchar(255),
+    account_status tinyint,
+    balance bigint,
+    registered_at timestamp,
+    un_registered_at timestamp,
+    account_user_id bigint,
+    primary key (id)
+);
+
+create table transaction (
+    id bigint not null,
+    created_at timestamp,
+    updated_at timestamp,
+    amount bigint,
+    balance_snapshot bigint,
+    original_transaction_id binary(16),
+    transacted_at timestamp,
+    transaction_id binary(16),
+    transaction_result_type tinyint,
+    transaction_type tinyint,
+    account_id bigint,
+    primary key (id)
+);
+
+create table batch_checkpoint (
+    id bigint not null,
+    created_at timestamp,
+    updated_at timestamp,
+    accounts integer,
+    chunk_index bigint,
+    run_id varchar(255),
+    primary key (id)
+);
+
+alter table batch_checkpoint
+    add constraint ux_batch_checkpoint_run_id_chunk_index unique (run_id, chunk_index);
+
+alter table account
+    add constraint ux_account_account_number unique (account_number);
+
+alter table transaction
+    add constraint ux_transaction_transaction_id unique (transaction_id);
+
+alter table transaction
+    add constraint ux_transaction_original_transaction_id unique (original_transaction_id);
+
+alter table account
+    add constraint fk_account_account_user foreign key (account_user_id) references account_user;
+
+alter table transaction
+    add constraint fk_transaction_account foreign key (account_id) references account;
@@ -0,0 +1,34 @@
+-- KEYS[1] : ACBL:<accountNumber>
+-- KEYS[2] : ACBL:PENDING
+-- KEYS[3] : ACTX:<transactionId>
+-- KEYS[4] : ACCX:<originalTransactionId>
+-- ARGV    : originalAccountId, amount, transactionId, transactedAt(epoch ms), ttlSeconds, accountNumber,
+--           originalTransactionId
+-- 반환    : {1, balance} 성공, {-1} 캐시 없음, {-5} 거래와 계좌 불일치, {-6} 이미 취소된 거래,
+--           {-7} DB에서 바뀌어 반영을 기다리는 계좌
+local account = redis.call('HMGET', KEYS[1], 'id', 'balance', 'stale')
+if not account[1] then
+    return {-1}
+end
+if account[3] then
+    return {-7}
+end
+if account[1] ~= ARGV[1] then
+    return {-5}
+end
+if redis.call('SETNX', KEYS[4], ARGV[3]) == 0 then
+    return {-6}
+end
+redis.call('EXPIRE', KEYS[4], ARGV[5])
+
+local balance = string.format('%d', tonumber(account[2]) + tonumber(ARGV[2]))
+
+redis.call('HSET', KEYS[1], 'balance', balance)
+redis.call('HINCRBY', KEYS[1], 'pending', 1)
+redis.call('PERSIST', KEYS[1])
+redis.call('HMSET', KEYS[3], 'accountId', account[1], 'amount', ARGV[2], 'transactedAt', ARGV[4],
+        'type', 'CANCEL')
+redis.call('EXPIRE', KEYS[3], ARGV[5])
+redis.call('RPUSH', KEYS[2], table.concat(
+        {'CANCEL', ARGV[3], account[1], ARGV[6], ARGV[2], balance, ARGV[4], ARGV[7]}, '|'))
+return {1, tonumber(balance)}
@@ -0,0 +1,13 @@
+-- KEYS    : ACBL:<accountNumber> ...
+-- 반환    : 1
+-- 반영 전 거래가 없으면 바로 지운다. 있으면 지금 지울 경우 DB의 옛 잔액으로 다시 올라오므로
+-- stale로 표시해 새 거래를 막고, 반영이 끝나면 settle-balance.lua가 지운다.
+for i = 1, #KEYS do
+    local pending = tonumber(redis.call('HGET', KEYS[i], 'pending') or '0')
+    if pending > 0 then
+        redis.call('HSET', KEYS[i], 'stale', '1')
+    else
+        redis.call('DEL', KEYS[i])
+    end
+end
+return 1
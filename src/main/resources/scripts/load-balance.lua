@@ -0,0 +1,9 @@
+-- KEYS[1] : ACBL:<accountNumber>
+-- ARGV    : accountId, userId, accountStatus, balance, ttlSeconds
+-- 이미 올라와 있는 잔액은 덮어쓰지 않는다. (DB 값이 더 오래되었을 수 있음)
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    redis.call('HMSET', KEYS[1],
+            'id', ARGV[1], 'userId', ARGV[2], 'status', ARGV[3], 'balance', ARGV[4])
+    redis.call('EXPIRE', KEYS[1], ARGV[5])
+end
+return 1
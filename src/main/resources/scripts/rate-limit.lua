@@ -0,0 +1,11 @@
+-- KEYS[1] : ACRL:<key>
+-- ARGV    : now(epoch ms), windowMs, limit, member
+-- 반환    : 1 허용, 0 거절
+local windowStart = tonumber(ARGV[1]) - tonumber(ARGV[2])
+redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', windowStart)
+if redis.call('ZCARD', KEYS[1]) >= tonumber(ARGV[3]) then
+    return 0
+end
+redis.call('ZADD', KEYS[1], ARGV[1], ARGV[4])
+redis.call('PEXPIRE', KEYS[1], ARGV[2])
+return 1
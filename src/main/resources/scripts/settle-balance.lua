@@ -0,0 +1,21 @@
+-- KEYS[1]  : ACBL:PENDING
+-- KEYS[2..]: ACBL:<accountNumber>
+-- ARGV     : 리스트에서 지울 개수, ttlSeconds, KEYS[2..]별로 DB에 반영된 거래 수
+-- 반환     : 1
+-- 반영이 끝난 만큼 리스트를 지우고 계좌별 반영 전 거래 수를 줄인다.
+-- 반영 전 거래가 없는 계좌는 만료를 걸고, stale로 표시된 계좌는 지워서 DB에서 다시 읽게 한다.
+redis.call('LTRIM', KEYS[1], ARGV[1], -1)
+for i = 2, #KEYS do
+    if redis.call('EXISTS', KEYS[i]) == 1 then
+        local pending = redis.call('HINCRBY', KEYS[i], 'pending', -tonumber(ARGV[i + 1]))
+        if pending <= 0 then
+            if redis.call('HEXISTS', KEYS[i], 'stale') == 1 then
+                redis.call('DEL', KEYS[i])
+            else
+                redis.call('HSET', KEYS[i], 'pending', 0)
+                redis.call('EXPIRE', KEYS[i], ARGV[2])
+            end
+        end
+    end
+end
+return 1
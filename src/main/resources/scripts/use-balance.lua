@@ -0,0 +1,37 @@
+-- KEYS[1] : ACBL:<accountNumber>
+-- KEYS[2] : ACBL:PENDING
+-- KEYS[3] : ACTX:<transactionId>
+-- ARGV    : userId, amount, transactionId, transactedAt(epoch ms), ttlSeconds, accountNumber
+-- 반환    : {1, balance} 성공, {-1} 캐시 없음, {-2} 소유주 불일치, {-3} 해지 계좌, {-4} 잔액 부족,
+--           {-7} DB에서 바뀌어 반영을 기다리는 계좌
+local account = redis.call('HMGET', KEYS[1], 'id', 'userId', 'status', 'balance', 'stale')
+if not account[1] then
+    return {-1}
+end
+if account[5] then
+    return {-7}
+end
+if account[2] ~= ARGV[1] then
+    return {-2}
+end
+if account[3] ~= 'IN_USE' then
+    return {-3}
+end
+
+local amount = tonumber(ARGV[2])
+local balance = tonumber(account[4])
+if amount > balance then
+    return {-4}
+end
+balance = string.format('%d', balance - amount)
+
+redis.call('HSET', KEYS[1], 'balance', balance)
+-- 반영 전 거래가 남아 있는 동안은 만료되지 않게 한다.
+redis.call('HINCRBY', KEYS[1], 'pending', 1)
+redis.call('PERSIST', KEYS[1])
+redis.call('HMSET', KEYS[3], 'accountId', account[1], 'amount', ARGV[2], 'transactedAt', ARGV[4],
+        'type', 'USE')
+redis.call('EXPIRE', KEYS[3], ARGV[5])
+redis.call('RPUSH', KEYS[2], table.concat(
+        {'USE', ARGV[3], account[1], ARGV[6], ARGV[2], balance, ARGV[4]}, '|'))
+return {1, tonumber(balance)}
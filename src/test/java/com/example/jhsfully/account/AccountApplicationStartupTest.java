@@ -0,0 +1,43 @@
+package com.example.jhsfully.account;
+
+import com.example.jhsfully.account.config.LocalRedisConfig;
+import com.example.jhsfully.account.config.RedisRepositoryConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountApplicationStartupTest {
+    //CI 장비에서도 넘지 않을 상한. 실제 기동 시간은 실패 메시지와 표준 출력으로 남긴다.
+    private static final long STARTUP_BUDGET_MS = 30_000L;
+
+    @Test
+    void fastStartupProfile() {
+        //given
+        long startedAt = System.nanoTime();
+
+        //when
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(AccountApplication.class)
+                .profiles("fast-startup")
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:fast-startup",
+                        "--account.datasource.replica.url=jdbc:h2:mem:fast-startup-replica")) {
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            System.out.println("fast-startup profile started in " + elapsedMs + " ms");
+
+            //then
+            assertTrue(elapsedMs < STARTUP_BUDGET_MS, "started in " + elapsedMs + " ms");
+            //Redis는 처음 쓰일 때까지 연결하지도 띄우지도 않는다.
+            assertFalse(context.getBean(RedisRepositoryConfig.RedissonTargetSource.class).isInitialized());
+            assertFalse(context.getBean(LocalRedisConfig.class).isStarted());
+            //Hibernate 대신 스키마 스크립트로 테이블과 초기 데이터가 만들어졌다.
+            assertEquals(3, new JdbcTemplate(context.getBean(DataSource.class))
+                    .queryForObject("select count(*) from account_user", Integer.class));
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.jhsfully.account.batch;
+
+import com.example.jhsfully.account.bloom.TransactionIdFilter;
+import com.example.jhsfully.account.domain.Account;
+import com.example.jhsfully.account.domain.AccountUser;
+import com.example.jhsfully.account.domain.BatchCheckpoint;
+import com.example.jhsfully.account.domain.Transaction;
+import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.repository.AccountRepository;
+import com.example.jhsfully.account.repository.BatchCheckpointRepository;
+import com.example.jhsfully.account.repository.TransactionRepository;
+import com.example.jhsfully.account.service.BalanceExecutor;
+import com.example.jhsfully.account.service.LockService;
+import com.example.jhsfully.account.shard.ShardRouter;
+import com.example.jhsfully.account.type.AccountStatus;
+import com.example.jhsfully.account.type.BalanceMode;
+import com.example.jhsfully.account.type.BatchType;
+import com.example.jhsfully.account.type.ErrorCode;
+import com.example.jhsfully.account.type.TransactionType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceBatchServiceTest {
+    @Mock
+    private AccountRepository accountRepository;
+    @Mock
+    private TransactionRepository transactionRepository;
+    @Mock
+    private BatchCheckpointRepository batchCheckpointRepository;
+    @Mock
+    private TransactionIdFilter transactionIdFilter;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private LockService lockService;
+    @Mock
+    private BalanceExecutor balanceExecutor;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Captor
+    private ArgumentCaptor<List<Transaction>> transactionsCaptor;
+
+    private ShardRouter shardRouter;
+    private BalanceBatchService batchService;
+
+    @BeforeEach
+    void setUp() {
+        shardRouter = new ShardRouter(1, BalanceMode.LOCK, 1, 0L);
+        //청크 크기 10, 이자 1%(100bp), 수수료 300
+        batchService = new BalanceBatchService(accountRepository, transactionRepository,
+                batchCheckpointRepository, transactionIdFilter, eventPublisher, lockService,
+                balanceExecutor, shardRouter, transactionManager, 2, 10L, 2, 1L, 100L, 300L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchService.shutdown();
+        shardRouter.shutdown();
+    }
+
+    @Test
+    void applyInterestByChunk() {
+        //given
+        Account first = account(3L, "1000000000", 10000L);
+        Account second = account(15L, "1000000001", 50L);
+        given(balanceExecutor.getMode()).willReturn(BalanceMode.LOCK);
+        givenAccountRange(first, second);
+        given(batchCheckpointRepository.findChunkIndexesByRunId(anyString()))
+                .willReturn(Collections.emptyList());
+        given(transactionManager.getTransaction(any())).willReturn(new SimpleTransactionStatus());
+        given(accountRepository.findAccountNumbersByIdBetween(0L, 9L, AccountStatus.IN_USE))
+                .willReturn(Collections.singletonList("1000000000"));
+        given(accountRepository.findAccountNumbersByIdBetween(10L, 19L, AccountStatus.IN_USE))
+                .willReturn(Collections.singletonList("1000000001"));
+        given(accountRepository.findByIdBetweenForUpdate(0L, 9L, AccountStatus.IN_USE))
+                .willReturn(Collections.singletonList(first));
+        given(accountRepository.findByIdBetweenForUpdate(10L, 19L, AccountStatus.IN_USE))
+                .willReturn(Collections.singletonList(second));
+        given(transactionRepository.saveAll(anyList())).willAnswer(invocation -> invocation.getArgument(0));
+
+        //when
+        BalanceBatchResult result = batchService.run(BatchType.INTEREST, "INTEREST-1");
+
+        //then
+        assertEquals(2, result.getCommittedChunks());
+        assertEquals(2, result.getAccounts());
+        assertEquals(0, result.getFailedChunks());
+        assertEquals(10100L, first.getBalance());
+        //1% 이자가 0원인 계좌는 거래를 남기지 않는다.
+        assertEquals(50L, second.getBalance());
+
+        verify(transactionRepository, times(2)).saveAll(transactionsCaptor.capture());
+        List<Transaction> saved = transactionsCaptor.getAllValues().stream()
+                .filter(transactions -> !transactions.isEmpty())
+                .findFirst().get();
+        assertEquals(TransactionType.INTEREST, saved.get(0).getTransactionType());
+        assertEquals(100L, saved.get(0).getAmount());
+        assertEquals(10100L, saved.get(0).getBalanceSnapshot());
+        verify(batchCheckpointRepository, times(2)).save(any(BatchCheckpoint.class));
+        verify(lockService).lock("1000000000", 1L);
+        verify(lockService).unlock("1000000000");
+        verify(lockService).unlock("1000000001");
+    }
+
+    @Test
+    void skipCommittedChunks() {
+        //given
+        Account first = account(3L, "1000000000", 10000L);
+        Account second = account(15L, "1000000001", 1000L);
+        given(balanceExecutor.getMode()).willReturn(BalanceMode.GROUP_COMMIT);
+        givenAccountRange(first, second);
+        given(batchCheckpointRepository.findChunkIndexesByRunId("FEE-1"))
+                .willReturn(Collections.singletonList(0L));
+        given(transactionManager.getTransaction(any())).willReturn(new SimpleTransactionStatus());
+        given(accountRepository.findAccountNumbersByIdBetween(10L, 19L, AccountStatus.IN_USE))
+                .willReturn(Collections.singletonList("1000000001"));
+        given(accountRepository.findByIdBetweenForUpdate(10L, 19L, AccountStatus.IN_USE))
+                .willReturn(Collections.singletonList(second));
+        given(transactionRepository.saveAll(anyList())).willAnswer(invocation -> invocation.getArgument(0));
+
+        //when
+        BalanceBatchResult result = batchService.run(BatchType.FEE, "FEE-1");
+
+        //then
+        assertEquals(1, result.getSkippedChunks());
+        assertEquals(1, result.getCommittedChunks());
+        assertEquals(10000L, first.getBalance());
+        assertEquals(700L, second.getBalance());
+        verify(accountRepository, never()).findAccountNumbersByIdBetween(eq(0L), anyLong(), any());
+        //GROUP_COMMIT은 행 락만 사용한다.
+        verifyNoInteractions(lockService);
+    }
+
+    @Test
+    void leaveChunkWhenLockIsBusy() {
+        //given
+        Account first = account(3L, "1000000000", 10000L);
+        given(balanceExecutor.getMode()).willReturn(BalanceMode.LOCK);
+        givenAccountRange(first, first);
+        given(batchCheckpointRepository.findChunkIndexesByRunId(anyString()))
+                .willReturn(Collections.emptyList());
+        given(accountRepository.findAccountNumbersByIdBetween(0L, 9L, AccountStatus.IN_USE))
+                .willReturn(Arrays.asList("1000000000", "1000000010"));
+        lenient().doThrow(new AccountException(ErrorCode.ACCOUNT_TRANSACTION_LOCK))
+                .when(lockService).lock("1000000010", 1L);
+
+        //when
+        BalanceBatchResult result = batchService.run(BatchType.INTEREST, "INTEREST-1");
+
+        //then
+        assertEquals(1, result.getFailedChunks());
+        assertEquals(0, result.getCommittedChunks());
+        assertEquals(10000L, first.getBalance());
+        //재시도마다 먼저 잡은 락을 놓는다.
+        verify(lockService, times(2)).unlock("1000000000");
+        verifyNoInteractions(transactionManager);
+        verify(batchCheckpointRepository, never()).save(any());
+    }
+
+    @Test
+    void rejectEngineMode() {
+        //given
+        given(balanceExecutor.getMode()).willReturn(BalanceMode.ENGINE);
+
+        //when
+        //then
+        assertThrows(IllegalStateException.class,
+                () -> batchService.run(BatchType.INTEREST, "INTEREST-1"));
+    }
+
+    private void givenAccountRange(Account first, Account last) {
+        given(accountRepository.findFirstByOrderByIdAsc()).willReturn(Optional.of(first));
+        given(accountRepository.findFirstByOrderByIdDesc()).willReturn(Optional.of(last));
+    }
+
+    private static Account account(Long id, String accountNumber, Long balance) {
+        AccountUser accountUser = AccountUser.builder()
+                .name("KANA").build();
+        accountUser.setId(1L);
+        Account account = Account.builder()
+                .accountUser(accountUser)
+                .accountNumber(accountNumber)
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(balance)
+                .build();
+        account.setId(id);
+        return account;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.jhsfully.account.bloom;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountMinSketchTest {
+
+    @Test
+    void neverUnderestimate() {
+        //given
+        CountMinSketch sketch = new CountMinSketch(256, 4);
+
+        //when
+        for (int i = 0; i < 10_000; i++) {
+            sketch.add("account-" + (i % 1000), 1);
+        }
+        sketch.add("hot", 500);
+
+        //then
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(sketch.estimate("account-" + i) >= 10);
+        }
+        long hot = sketch.estimate("hot");
+        //오차는 총합 * e / width(약 111) 이내여야 한다.
+        assertTrue(hot >= 500 && hot < 500 + 111, "estimate : " + hot);
+    }
+
+    @Test
+    void halveCounters() {
+        //given
+        CountMinSketch sketch = new CountMinSketch(64, 2);
+        sketch.add("1000000000", 9);
+
+        //when
+        sketch.halve();
+
+        //then
+        assertEquals(4L, sketch.estimate("1000000000"));
+    }
+
+    @Test
+    void rejectInvalidWidth() {
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(100, 4));
+    }
+}
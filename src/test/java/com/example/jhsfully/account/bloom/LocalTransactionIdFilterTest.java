@@ -0,0 +1,34 @@
+package com.example.jhsfully.account.bloom;
+
+import com.example.jhsfully.account.repository.TransactionRepository;
+import com.example.jhsfully.account.shard.ShardRouter;
+import com.example.jhsfully.account.type.BalanceMode;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class LocalTransactionIdFilterTest {
+
+    @Test
+    void rejectMultiNodeProfile() {
+        //given
+        MockEnvironment environment = new MockEnvironment();
+        environment.setActiveProfiles("multi-node");
+
+        //when
+        //then
+        assertThrows(IllegalStateException.class, () -> newFilter(environment));
+    }
+
+    @Test
+    void acceptSingleNode() {
+        assertDoesNotThrow(() -> newFilter(new MockEnvironment()));
+    }
+
+    private static LocalTransactionIdFilter newFilter(MockEnvironment environment) {
+        return new LocalTransactionIdFilter(mock(TransactionRepository.class),
+                new ShardRouter(1, BalanceMode.LOCK, 1, 0L), environment, "./filter", 1000L, 0.01);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.jhsfully.account.bloom;
+
+import com.example.jhsfully.account.repository.TransactionRepository;
+import com.example.jhsfully.account.service.RedisCircuitBreaker;
+import com.example.jhsfully.account.shard.ShardRouter;
+import com.example.jhsfully.account.type.BalanceMode;
+import com.example.jhsfully.account.type.CircuitState;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.redisson.api.RAtomicLong;
+import org.redisson.api.RBloomFilter;
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisConnectionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willReturn;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class RedisTransactionIdFilterTest {
+    @Mock
+    private RedissonClient redissonClient;
+    @Mock
+    private RBloomFilter<Object> layer;
+    @Mock
+    private RAtomicLong atomicLong;
+    @Mock
+    private RBucket<Object> readyBucket;
+
+    //연속 2번 실패하면 열린다.
+    private final RedisCircuitBreaker circuitBreaker =
+            new RedisCircuitBreaker(new SimpleMeterRegistry(), 2, 60_000L, 200L);
+    private final ShardRouter shardRouter = new ShardRouter(1, BalanceMode.LOCK, 1, 0L);
+    private RedisTransactionIdFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        given(redissonClient.getBloomFilter(anyString(), any())).willReturn(layer);
+        given(redissonClient.getAtomicLong(anyString())).willReturn(atomicLong);
+        given(redissonClient.getBucket(anyString(), any())).willReturn(readyBucket);
+        given(atomicLong.get()).willReturn(1L);
+        given(readyBucket.isExists()).willReturn(true);
+        filter = new RedisTransactionIdFilter(redissonClient, mock(TransactionRepository.class),
+                shardRouter, 1000L, 0.01, true, circuitBreaker, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        filter.shutdown();
+        shardRouter.shutdown();
+    }
+
+    @Test
+    void failOpenWhileRedisIsDown() {
+        //given
+        given(layer.add(any())).willThrow(new RedisConnectionException("Unable to connect to Redis"));
+        given(layer.contains(any())).willThrow(new RedisConnectionException("Unable to connect to Redis"));
+
+        //when
+        filter.put("issuedWhileDown");
+        boolean unknown = filter.mightContain("neverIssued");
+        filter.put("issuedAfterOpen");
+
+        //then
+        //요청은 실패하지 않고, 모르는 번호도 거절하지 않는다.
+        assertEquals(CircuitState.OPEN, circuitBreaker.getState());
+        assertTrue(unknown);
+        assertTrue(filter.mightContain("issuedWhileDown"));
+        assertEquals(2, filter.getUnsyncedCount());
+        //서킷이 열린 뒤에는 Redis를 부르지 않는다.
+        verify(layer, times(1)).add(any());
+        verify(layer, times(1)).contains(any());
+    }
+
+    @Test
+    void syncIdsAfterRedisIsBack() {
+        //given
+        given(layer.add(any())).willThrow(new RedisConnectionException("Unable to connect to Redis"));
+        filter.put("issuedWhileDown");
+        willReturn(true).given(layer).add(any());
+
+        //when
+        filter.syncUnsynced();
+
+        //then
+        assertEquals(0, filter.getUnsyncedCount());
+        verify(layer, times(2)).add("issuedWhileDown");
+        assertEquals(CircuitState.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void timeOutSlowRedis() {
+        //given
+        given(layer.contains(any())).willAnswer(invocation -> {
+            Thread.sleep(1000L);
+            return false;
+        });
+
+        //when
+        long startedAt = System.currentTimeMillis();
+        boolean result = filter.mightContain("slowId");
+
+        //then
+        assertTrue(result);
+        assertTrue(System.currentTimeMillis() - startedAt < 1000L);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.jhsfully.account.bloom;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScalableBloomFilterTest {
+
+    @Test
+    void noFalseNegativesWhileGrowing() {
+        //given
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01);
+        String[] ids = new String[10_000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = UUID.randomUUID().toString().replace("-", "");
+            filter.put(ids[i]);
+        }
+
+        //when
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("garbage-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        //then
+        assertTrue(filter.getLayerCount() > 1);
+        for (String id : ids) {
+            assertTrue(filter.mightContain(id));
+        }
+        assertTrue(falsePositives < 200, "false positives : " + falsePositives);
+    }
+
+    @Test
+    void writeAndReadSnapshot() throws IOException {
+        //given
+        ScalableBloomFilter filter = new ScalableBloomFilter(100, 0.01);
+        for (int i = 0; i < 500; i++) {
+            filter.put("transaction-" + i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.writeTo(new DataOutputStream(bytes));
+
+        //when
+        ScalableBloomFilter loaded = ScalableBloomFilter.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        //then
+        assertEquals(filter.getLayerCount(), loaded.getLayerCount());
+        assertEquals(filter.size(), loaded.size());
+        for (int i = 0; i < 500; i++) {
+            assertTrue(loaded.mightContain("transaction-" + i));
+        }
+        loaded.put("transaction-new");
+        assertTrue(loaded.mightContain("transaction-new"));
+    }
+}
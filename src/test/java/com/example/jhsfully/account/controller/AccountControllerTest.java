@@ -4,10 +4,15 @@ import com.example.jhsfully.account.domain.Account;
 import com.example.jhsfully.account.dto.AccountDto;
 import com.example.jhsfully.account.dto.CreateAccount;
 import com.example.jhsfully.account.dto.DeleteAccount;
+import com.example.jhsfully.account.dto.ImportAccount;
+import com.example.jhsfully.account.dto.QueryBalances;
 import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.service.AccountImportService;
 import com.example.jhsfully.account.service.AccountService;
+import com.example.jhsfully.account.service.BalanceStreamService;
 import com.example.jhsfully.account.type.AccountStatus;
 import com.example.jhsfully.account.type.ErrorCode;
+import com.example.jhsfully.account.type.ImportFormat;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,23 +20,34 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 @WebMvcTest(AccountController.class)
 class AccountControllerTest {
     @MockBean
     private AccountService accountService;
 
+    @MockBean
+    private AccountImportService accountImportService;
+
+    @MockBean
+    private BalanceStreamService balanceStreamService;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -62,6 +78,31 @@ class AccountControllerTest {
     }
 
 
+    @Test
+    void successImportAccounts() throws Exception {
+        //given
+        given(accountImportService.importAccounts(any(), eq(ImportFormat.CSV)))
+                .willReturn(ImportAccount.Response.builder()
+                        .total(2)
+                        .created(1)
+                        .failed(1)
+                        .failures(Collections.singletonList(ImportAccount.Failure.builder()
+                                .line(3)
+                                .errorCode("USER_NOT_FOUND")
+                                .build()))
+                        .build());
+        //when
+        //then
+        mockMvc.perform(post("/account/import")
+                        .contentType("text/csv")
+                        .content("userId,initialBalance\n1,100\n9,100\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.failures[0].line").value(3))
+                .andExpect(jsonPath("$.failures[0].errorCode").value("USER_NOT_FOUND"))
+                .andDo(print());
+    }
+
     @Test
     void successDeleteAccount() throws Exception {
         //given
@@ -148,4 +189,49 @@ class AccountControllerTest {
                 .andExpect(jsonPath("$.errorMessage").value(ErrorCode.ACCOUNT_NOT_FOUND.getDescription()))
                 .andExpect(status().isOk());
     }
-}
\ No newline at end of file
+
+    @Test
+    void successStreamAccounts() throws Exception {
+        //given
+        given(balanceStreamService.subscribe(1L))
+                .willReturn(new SseEmitter());
+        //when
+        //then
+        mockMvc.perform(get("/account/stream?user_id=1")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted())
+                .andDo(print());
+    }
+
+    @Test
+    void successGetBalances() throws Exception {
+        //given
+        given(accountService.getBalances(any()))
+                .willReturn(Collections.singletonMap("1000000000", 1000L));
+        //when
+        //then
+        mockMvc.perform(post("/account/balances")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new QueryBalances.Request(
+                                Arrays.asList("1000000000", "1000000001")))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balances.1000000000").value(1000L))
+                .andExpect(jsonPath("$.notFound[0]").value("1000000001"))
+                .andDo(print());
+    }
+
+    @Test
+    void failedGetBalances_emptyRequest() throws Exception {
+        //when
+        //then
+        mockMvc.perform(post("/account/balances")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new QueryBalances.Request(Collections.emptyList()))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.errorCode").value("INVALID_REQUEST"))
+                .andDo(print());
+    }
+
+}
@@ -4,7 +4,10 @@ import com.example.jhsfully.account.dto.AccountDto;
 import com.example.jhsfully.account.dto.CancelBalance;
 import com.example.jhsfully.account.dto.TransactionDto;
 import com.example.jhsfully.account.dto.UseBalance;
+import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.service.BalanceExecutor;
 import com.example.jhsfully.account.service.TransactionService;
+import com.example.jhsfully.account.type.ErrorCode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,6 +28,7 @@ import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -34,6 +38,9 @@ class TransactionControllerTest {
     @MockBean
     private TransactionService transactionService;
 
+    @MockBean
+    private BalanceExecutor balanceExecutor;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -43,7 +50,7 @@ class TransactionControllerTest {
     @Test
     void successUseBalance() throws Exception {
         //given
-        given(transactionService.useBalance(
+        given(balanceExecutor.useBalance(
                 anyLong(),
                 anyString(),
                 anyLong()
@@ -76,7 +83,7 @@ class TransactionControllerTest {
     @Test
     void successCancelBalance() throws Exception {
         //given
-        given(transactionService.cancelBalance(
+        given(balanceExecutor.cancelBalance(
                 anyString(),
                 anyString(),
                 anyLong()
@@ -140,7 +147,44 @@ class TransactionControllerTest {
                 .andExpect(jsonPath("$.amount").value(12345L))
                 .andExpect(jsonPath("$.transactionResult").value("S"))
                 .andExpect(jsonPath("$.transactionId").value("transactionalId"))
-                .andExpect(jsonPath("$.transactionType").value("USE"));
+                .andExpect(jsonPath("$.transactionType").value("USE"))
+                .andExpect(header().string("ETag", "\"transactionalId\""))
+                .andExpect(header().string("Cache-Control",
+                        "max-age=31536000, private, immutable"));
+
+    }
 
+    @Test
+    void queryTransactionNotModified() throws Exception {
+        //given
+        given(transactionService.queryTransaction(anyString()))
+                .willReturn(TransactionDto.builder()
+                        .accountNumber("1000010001")
+                        .transactionType(USE)
+                        .transactedAt(LocalDateTime.now())
+                        .amount(12345L)
+                        .transactionId("transactionalId")
+                        .transactionResultType(S)
+                        .build());
+        //when
+        //then
+        mockMvc.perform(get("/transaction/transactionalId")
+                        .header("If-None-Match", "\"transactionalId\""))
+                .andDo(print())
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void queryUnknownTransactionWithETag() throws Exception {
+        //given
+        given(transactionService.queryTransaction(anyString()))
+                .willThrow(new AccountException(ErrorCode.TRANSACTION_NOT_FOUND));
+        //when
+        //then
+        mockMvc.perform(get("/transaction/unknownId")
+                        .header("If-None-Match", "\"unknownId\""))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.errorCode").value("TRANSACTION_NOT_FOUND"));
     }
 }
\ No newline at end of file
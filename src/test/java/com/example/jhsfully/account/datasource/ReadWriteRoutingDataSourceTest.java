@@ -0,0 +1,55 @@
+package com.example.jhsfully.account.datasource;
+
+import com.example.jhsfully.account.type.DataSourceType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadWriteRoutingDataSourceTest {
+    private long replicatedUpTo = 1_000L;
+    private final ReadWriteRoutingDataSource dataSource =
+            new ReadWriteRoutingDataSource(() -> replicatedUpTo);
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        RoutingContext.restoreReplicaAllowed(null);
+        RoutingContext.clearConsistencyToken();
+    }
+
+    @Test
+    void writeGoesToPrimary() {
+        RoutingContext.allowReplica();
+
+        assertEquals(DataSourceType.PRIMARY, dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    void readOnlyServiceMethodGoesToReplica() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        RoutingContext.allowReplica();
+
+        assertEquals(DataSourceType.REPLICA, dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    void readOnlyOutsideServiceGoesToPrimary() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertEquals(DataSourceType.PRIMARY, dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    void readAfterOwnWriteGoesToPrimaryUntilReplicaCatchesUp() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        RoutingContext.allowReplica();
+        RoutingContext.setConsistencyToken(1_000L);
+
+        assertEquals(DataSourceType.PRIMARY, dataSource.determineCurrentLookupKey());
+
+        replicatedUpTo = 1_001L;
+        assertEquals(DataSourceType.REPLICA, dataSource.determineCurrentLookupKey());
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.jhsfully.account.datasource;
+
+import com.example.jhsfully.account.type.BalanceMode;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+class ReplicaRoutingAspectTest {
+
+    @AfterEach
+    void tearDown() {
+        RoutingContext.restoreReplicaAllowed(null);
+    }
+
+    @Test
+    void allowReplicaForReadOnlyMethod() throws Throwable {
+        assertTrue(replicaAllowedIn(BalanceMode.LOCK));
+        assertFalse(RoutingContext.isReplicaAllowed());
+    }
+
+    @Test
+    void readPrimaryWhenPersistedAsync() throws Throwable {
+        assertFalse(replicaAllowedIn(BalanceMode.ENGINE));
+        assertFalse(replicaAllowedIn(BalanceMode.REDIS));
+    }
+
+    private static boolean replicaAllowedIn(BalanceMode balanceMode) throws Throwable {
+        ProceedingJoinPoint pjp = mock(ProceedingJoinPoint.class);
+        given(pjp.proceed()).willAnswer(invocation -> RoutingContext.isReplicaAllowed());
+        Transactional transactional = ReplicaRoutingAspectTest.class
+                .getDeclaredMethod("readOnlyMethod")
+                .getAnnotation(Transactional.class);
+
+        return (boolean) new ReplicaRoutingAspect(balanceMode).aroundMethod(pjp, transactional);
+    }
+
+    @Transactional(readOnly = true)
+    void readOnlyMethod() {
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.jhsfully.account.datasource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StandInReplicatorTest {
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+    private StandInReplicator replicator;
+
+    @BeforeEach
+    void setUp() {
+        String name = UUID.randomUUID().toString();
+        DriverManagerDataSource primaryDataSource =
+                new DriverManagerDataSource("jdbc:h2:mem:primary-" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        DriverManagerDataSource replicaDataSource =
+                new DriverManagerDataSource("jdbc:h2:mem:replica-" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        primary = new JdbcTemplate(primaryDataSource);
+        replica = new JdbcTemplate(replicaDataSource);
+
+        primary.execute("create table account_user (id bigint primary key, created_at timestamp, "
+                + "updated_at timestamp, name varchar(255))");
+        primary.execute("create table account (id bigint primary key, created_at timestamp, "
+                + "updated_at timestamp, account_user_id bigint references account_user(id), "
+                + "account_number varchar(255), balance bigint)");
+        primary.execute("create table transaction (id bigint primary key, created_at timestamp, "
+                + "updated_at timestamp, account_id bigint references account(id), "
+                + "transaction_id varchar(255), amount bigint)");
+        primary.update("insert into account_user values (1, now(), now(), 'ALICE')");
+
+        replicator = new StandInReplicator(primaryDataSource, replicaDataSource);
+    }
+
+    @Test
+    void copySchemaAndRows() {
+        //when
+        replicator.initialize();
+        //then
+        assertEquals("ALICE", replica.queryForObject(
+                "select name from account_user where id = 1", String.class));
+        assertTrue(replicator.replicatedUpTo() > 0);
+    }
+
+    @Test
+    void applyUpdatesOnSync() {
+        //given
+        replicator.initialize();
+        primary.update("insert into account values (10, now(), now(), 1, '1000000000', 1000)");
+        long token = RoutingContext.issueConsistencyToken();
+        assertEquals(0, replica.queryForObject("select count(*) from account", Integer.class));
+
+        //when
+        primary.update("update account set balance = 500, updated_at = now() where id = 10");
+        while (replicator.replicatedUpTo() <= token) {
+            replicator.sync();
+        }
+        //then
+        assertEquals(500L, replica.queryForObject(
+                "select balance from account where id = 10", Long.class));
+    }
+
+    @Test
+    void applyLateCommitsAndDeletes() {
+        //given
+        replicator.initialize();
+        primary.update("insert into account values (10, now(), now(), 1, '1000000000', 1000)");
+        //updated_at이 오래전에 찍힌 채로 늦게 커밋된 쓰기
+        primary.update("insert into account values (11, now(), dateadd('HOUR', -1, now()), 1, '1000000001', 700)");
+        replicator.sync();
+        primary.update("delete from account where id = 10");
+        long token = RoutingContext.issueConsistencyToken();
+
+        //when
+        while (replicator.replicatedUpTo() <= token) {
+            replicator.sync();
+        }
+        //then
+        assertEquals(0, replica.queryForObject("select count(*) from account where id = 10", Integer.class));
+        assertEquals(700L, replica.queryForObject(
+                "select balance from account where id = 11", Long.class));
+    }
+}
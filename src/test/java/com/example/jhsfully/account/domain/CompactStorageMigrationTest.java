@@ -0,0 +1,170 @@
+package com.example.jhsfully.account.domain;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactStorageMigrationTest {
+    private static final int BENCHMARK_ROWS = 50_000;
+    private static final int BENCHMARK_LOOKUPS = 20_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void migrateStringColumns() {
+        //given
+        JdbcTemplate jdbcTemplate = jdbcTemplate("jdbc:h2:mem:migration-" + UUID.randomUUID()
+                + ";DB_CLOSE_DELAY=-1");
+        createStringSchema(jdbcTemplate);
+        String original = UUID.randomUUID().toString().replace("-", "");
+        String cancel = UUID.randomUUID().toString().replace("-", "");
+        jdbcTemplate.update("insert into account values (1, '1000000000', 'UNREGISTERED')");
+        jdbcTemplate.update("insert into transaction values (1, 1, ?, 'USE', 'S', null)", original);
+        jdbcTemplate.update("insert into transaction values (2, 1, ?, 'CANCEL', 'F', ?)", cancel, original);
+
+        //when
+        migrate(jdbcTemplate);
+
+        //then
+        Map<String, Object> row = jdbcTemplate.queryForMap("select * from transaction where id = 2");
+        assertEquals(cancel, TransactionIdConverter.toHex((byte[]) row.get("TRANSACTION_ID")));
+        assertEquals(original, TransactionIdConverter.toHex((byte[]) row.get("ORIGINAL_TRANSACTION_ID")));
+        assertEquals(1, ((Number) row.get("TRANSACTION_TYPE")).intValue());
+        assertEquals(1, ((Number) row.get("TRANSACTION_RESULT_TYPE")).intValue());
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "select account_status from account where id = 1", Integer.class));
+        assertEquals(1L, jdbcTemplate.queryForObject(
+                "select id from transaction where transaction_id = ?", Long.class,
+                (Object) TransactionIdConverter.toBytes(original)));
+    }
+
+    /**
+     * 같은 거래 번호 5만 건을 문자열 스키마와 압축 스키마에 넣고
+     * 거래 번호 인덱스 두 개(transaction_id, original_transaction_id)의 크기와 단건 조회 시간을 비교한다.
+     * 인덱스 크기는 인덱스가 있는 DB와 없는 DB를 압축 종료한 뒤 파일 크기 차이로 잰다.
+     */
+    @Test
+    void benchmarkIndexSizeAndLookup() {
+        //given
+        List<String> transactionIds = new ArrayList<>(BENCHMARK_ROWS);
+        for (int i = 0; i < BENCHMARK_ROWS; i++) {
+            transactionIds.add(UUID.randomUUID().toString().replace("-", ""));
+        }
+
+        //when
+        long stringIndexBytes = databaseBytes("string-indexed", transactionIds, false, true)
+                - databaseBytes("string", transactionIds, false, false);
+        long compactIndexBytes = databaseBytes("compact-indexed", transactionIds, true, true)
+                - databaseBytes("compact", transactionIds, true, false);
+        long stringLookupNanos = measureLookups("string-indexed", transactionIds, false);
+        long compactLookupNanos = measureLookups("compact-indexed", transactionIds, true);
+
+        //then
+        System.out.printf("transaction_id indexes: string=%,d bytes, compact=%,d bytes (%.0f%%)%n",
+                stringIndexBytes, compactIndexBytes, 100.0 * compactIndexBytes / stringIndexBytes);
+        System.out.printf("lookup by transaction_id: string=%,d ns, compact=%,d ns per lookup%n",
+                stringLookupNanos / BENCHMARK_LOOKUPS, compactLookupNanos / BENCHMARK_LOOKUPS);
+        assertTrue(compactIndexBytes < stringIndexBytes,
+                "compact=" + compactIndexBytes + ", string=" + stringIndexBytes);
+    }
+
+    //조회마다 연결을 새로 열지 않도록 연결 하나를 계속 쓴다.
+    private static JdbcTemplate jdbcTemplate(String url) {
+        return new JdbcTemplate(new SingleConnectionDataSource(url, "sa", "", true));
+    }
+
+    private static void close(JdbcTemplate jdbcTemplate) {
+        ((SingleConnectionDataSource) jdbcTemplate.getDataSource()).destroy();
+    }
+
+    //압축 전 Hibernate가 만들던 컬럼 형식
+    private static void createStringSchema(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("create table account (id bigint primary key, "
+                + "account_number varchar(255), account_status varchar(255))");
+        jdbcTemplate.execute("create table transaction (id bigint primary key, account_id bigint, "
+                + "transaction_id varchar(255), transaction_type varchar(255), "
+                + "transaction_result_type varchar(255), original_transaction_id varchar(255))");
+        jdbcTemplate.execute("alter table transaction add constraint "
+                + "ux_transaction_original_transaction_id unique (original_transaction_id)");
+    }
+
+    private static void migrate(JdbcTemplate jdbcTemplate) {
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/compact-transaction-columns.sql"))
+                .execute(jdbcTemplate.getDataSource());
+    }
+
+    private long databaseBytes(String name, List<String> transactionIds, boolean compact,
+                               boolean indexed) {
+        JdbcTemplate jdbcTemplate = jdbcTemplate(url(name));
+        createStringSchema(jdbcTemplate);
+        if (compact) {
+            migrate(jdbcTemplate);
+        }
+        jdbcTemplate.execute("alter table transaction drop constraint ux_transaction_original_transaction_id");
+        jdbcTemplate.execute("alter table transaction drop constraint if exists ux_transaction_transaction_id");
+        List<Object[]> rows = new ArrayList<>(transactionIds.size());
+        for (int i = 0; i < transactionIds.size(); i++) {
+            String transactionId = transactionIds.get(i);
+            String originalTransactionId = new StringBuilder(transactionId).reverse().toString();
+            rows.add(new Object[]{(long) i, key(transactionId, compact),
+                    key(originalTransactionId, compact)});
+        }
+        jdbcTemplate.batchUpdate("insert into transaction (id, account_id, transaction_id, "
+                + "original_transaction_id) values (?, 1, ?, ?)", rows);
+        if (indexed) {
+            jdbcTemplate.execute("alter table transaction add constraint "
+                    + "ux_transaction_transaction_id unique (transaction_id)");
+            jdbcTemplate.execute("alter table transaction add constraint "
+                    + "ux_transaction_original_transaction_id unique (original_transaction_id)");
+        }
+        //SHUTDOWN 뒤에는 연결이 닫혀 JdbcTemplate의 statement 정리가 실패하므로 직접 실행한다.
+        jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                connection.createStatement().execute("shutdown compact"));
+        close(jdbcTemplate);
+        return directory.resolve(name + ".mv.db").toFile().length();
+    }
+
+    private long measureLookups(String name, List<String> transactionIds, boolean compact) {
+        JdbcTemplate jdbcTemplate = jdbcTemplate(url(name));
+        //워밍업
+        lookups(jdbcTemplate, transactionIds, compact, BENCHMARK_LOOKUPS / 4);
+        long start = System.nanoTime();
+        lookups(jdbcTemplate, transactionIds, compact, BENCHMARK_LOOKUPS);
+        long elapsed = System.nanoTime() - start;
+        close(jdbcTemplate);
+        return elapsed;
+    }
+
+    private static void lookups(JdbcTemplate jdbcTemplate, List<String> transactionIds, boolean compact,
+                                int count) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < count; i++) {
+            String transactionId = transactionIds.get(random.nextInt(transactionIds.size()));
+            assertNotNull(jdbcTemplate.queryForObject(
+                    "select id from transaction where transaction_id = ?", Long.class,
+                    key(transactionId, compact)));
+        }
+    }
+
+    private static Object key(String transactionId, boolean compact) {
+        return compact ? TransactionIdConverter.toBytes(transactionId) : transactionId;
+    }
+
+    private String url(String name) {
+        return "jdbc:h2:" + directory.resolve(name);
+    }
+}
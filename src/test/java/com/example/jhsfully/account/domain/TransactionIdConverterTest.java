@@ -0,0 +1,53 @@
+package com.example.jhsfully.account.domain;
+
+import com.example.jhsfully.account.type.AccountStatus;
+import com.example.jhsfully.account.type.TransactionType;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionIdConverterTest {
+    private final TransactionIdConverter converter = new TransactionIdConverter();
+
+    @Test
+    void convertTransactionId() {
+        //given
+        String transactionId = UUID.randomUUID().toString().replace("-", "");
+
+        //when
+        byte[] bytes = converter.convertToDatabaseColumn(transactionId);
+
+        //then
+        assertEquals(16, bytes.length);
+        assertEquals(transactionId, converter.convertToEntityAttribute(bytes));
+        assertNull(converter.convertToDatabaseColumn(null));
+    }
+
+    @Test
+    void neverMatchMalformedTransactionId() {
+        //when
+        byte[] bytes = converter.convertToDatabaseColumn("transactionId");
+
+        //then
+        assertFalse(TransactionIdConverter.isValid("transactionId"));
+        assertEquals("ffffffffffffffffffffffffffffffff", TransactionIdConverter.toHex(bytes));
+    }
+
+    @Test
+    void convertEnumCode() {
+        //given
+        EnumCodeConverter.TransactionTypeConverter typeConverter =
+                new EnumCodeConverter.TransactionTypeConverter();
+        EnumCodeConverter.AccountStatusConverter statusConverter =
+                new EnumCodeConverter.AccountStatusConverter();
+
+        //when
+        //then
+        assertEquals((byte) 3, typeConverter.convertToDatabaseColumn(TransactionType.FEE));
+        assertEquals(TransactionType.CANCEL, typeConverter.convertToEntityAttribute((byte) 1));
+        assertEquals(AccountStatus.UNREGISTERED, statusConverter.convertToEntityAttribute((byte) 1));
+        assertNull(statusConverter.convertToDatabaseColumn(null));
+    }
+}
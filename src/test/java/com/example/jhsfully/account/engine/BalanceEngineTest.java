@@ -0,0 +1,279 @@
+package com.example.jhsfully.account.engine;
+
+import com.example.jhsfully.account.bloom.TransactionIdFilter;
+import com.example.jhsfully.account.domain.Account;
+import com.example.jhsfully.account.domain.AccountUser;
+import com.example.jhsfully.account.domain.Transaction;
+import com.example.jhsfully.account.dto.TransactionDto;
+import com.example.jhsfully.account.event.AccountChangedEvent;
+import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.repository.AccountRepository;
+import com.example.jhsfully.account.repository.AccountUserRepository;
+import com.example.jhsfully.account.repository.TransactionRepository;
+import com.example.jhsfully.account.service.CancellationIndex;
+import com.example.jhsfully.account.type.AccountStatus;
+import com.example.jhsfully.account.type.ErrorCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static com.example.jhsfully.account.type.TransactionType.CANCEL;
+import static com.example.jhsfully.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class BalanceEngineTest {
+    @Mock
+    private AccountRepository accountRepository;
+    @Mock
+    private AccountUserRepository accountUserRepository;
+    @Mock
+    private TransactionRepository transactionRepository;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Mock
+    private TransactionIdFilter transactionIdFilter;
+
+    @TempDir
+    Path directory;
+
+    private final Map<String, Transaction> saved = new ConcurrentHashMap<>();
+    private final AtomicLong persistedDelta = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private Account account;
+
+    private BalanceEngine balanceEngine;
+
+    @BeforeEach
+    void setUp() {
+        AccountUser user = AccountUser.builder()
+                .name("KANA").build();
+        user.setId(12L);
+        account = Account.builder()
+                .accountUser(user)
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(10000L)
+                .accountNumber("1000000012").build();
+        account.setId(1L);
+
+        given(accountRepository.findByAccountNumber("1000000012"))
+                .willReturn(Optional.of(account));
+        given(accountRepository.findByAccountNumber("1000000099"))
+                .willReturn(Optional.empty());
+        given(accountUserRepository.existsById(12L)).willReturn(true);
+        //persister가 저장한 거래는 DB에서 찾을 수 있어야 한다.
+        given(transactionRepository.saveAll(any())).willAnswer(invocation -> {
+            Iterable<Transaction> transactions = invocation.getArgument(0);
+            transactions.forEach(transaction -> {
+                transaction.setAccount(account);
+                saved.put(transaction.getTransactionId(), transaction);
+            });
+            return transactions;
+        });
+        given(transactionRepository.findByTransactionId(anyString()))
+                .willAnswer(invocation -> Optional.ofNullable(
+                        saved.get(invocation.<String>getArgument(0))));
+        given(accountRepository.addBalance(eq(1L), anyLong(), any()))
+                .willAnswer(invocation -> {
+                    persistedDelta.addAndGet(invocation.<Long>getArgument(1));
+                    return 1;
+                });
+        executeTransactions();
+
+        balanceEngine = newEngine();
+    }
+
+    private BalanceEngine newEngine() {
+        //저장 실패는 재시도 없이 바로 dead-letter로 보낸다.
+        BalanceEngine engine = new BalanceEngine(accountRepository, accountUserRepository,
+                transactionRepository, transactionTemplate, transactionIdFilter,
+                mock(CancellationIndex.class), meterRegistry,
+                directory.toString(), 2, 1024, 1 << 16, false, 3000L, 100, 1);
+        engine.start();
+        return engine;
+    }
+
+    private void executeTransactions() {
+        willAnswer(invocation -> {
+            Consumer<TransactionStatus> action = invocation.getArgument(0);
+            action.accept(null);
+            return null;
+        }).given(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        balanceEngine.stop();
+    }
+
+    @Test
+    void useAndCancelBalance() throws Exception {
+        //when
+        TransactionDto used = balanceEngine.useBalance(12L, "1000000012", 1000L);
+        TransactionDto canceled = balanceEngine.cancelBalance(
+                used.getTransactionId(), "1000000012", 1000L);
+
+        //then
+        assertEquals(USE, used.getTransactionType());
+        assertEquals(9000L, used.getBalanceSnapshot());
+        assertEquals(CANCEL, canceled.getTransactionType());
+        assertEquals(10000L, canceled.getBalanceSnapshot());
+        verify(transactionRepository, timeout(2000).atLeastOnce()).saveAll(anyList());
+        //잔액은 덮어쓰지 않고 변경량만 더한다.
+        verify(accountRepository, timeout(2000).atLeastOnce()).addBalance(eq(1L), anyLong(), any());
+        await(() -> saved.size() == 2);
+        assertEquals(0L, persistedDelta.get());
+    }
+
+    @Test
+    void reloadEvictedAccountFromDb() throws Exception {
+        //given
+        TransactionDto used = balanceEngine.useBalance(12L, "1000000012", 1000L);
+        await(() -> saved.containsKey(used.getTransactionId()));
+        verify(accountRepository, timeout(2000)).addBalance(eq(1L), eq(-1000L), any());
+        //사용 1000이 저장된 뒤 배치가 DB에 500을 더했다.
+        account.setBalance(10000L - 1000L + 500L);
+
+        //when
+        balanceEngine.onAccountChanged(new AccountChangedEvent(Collections.singletonList("1000000012")));
+        TransactionDto next = balanceEngine.useBalance(12L, "1000000012", 100L);
+
+        //then
+        assertEquals(9400L, next.getBalanceSnapshot());
+    }
+
+    @Test
+    void keepBalanceWhenTransactionIdFilterFails() throws Exception {
+        //given
+        willThrow(new IllegalStateException("filter is down"))
+                .given(transactionIdFilter).put(anyString());
+
+        //when
+        assertThrows(IllegalStateException.class,
+                () -> balanceEngine.useBalance(12L, "1000000012", 1000L));
+        willAnswer(invocation -> null).given(transactionIdFilter).put(anyString());
+        TransactionDto used = balanceEngine.useBalance(12L, "1000000012", 1000L);
+
+        //then
+        //실패한 사용은 잔액에 남지 않는다.
+        assertEquals(9000L, used.getBalanceSnapshot());
+    }
+
+    @Test
+    void deadLetterAndRecoverOnRestart() throws Exception {
+        //given
+        willThrow(new IllegalStateException("database is down"))
+                .given(transactionTemplate).executeWithoutResult(any());
+
+        //when
+        TransactionDto used = balanceEngine.useBalance(12L, "1000000012", 1000L);
+        await(() -> meterRegistry.counter("account.engine.dead-letter").count() == 1.0);
+        balanceEngine.stop();
+        executeTransactions();
+        balanceEngine = newEngine();
+
+        //then
+        //저장하지 못한 거래는 다음 시작 때 dead-letter 저널에서 저장된다.
+        assertTrue(saved.containsKey(used.getTransactionId()));
+        assertEquals(-1000L, persistedDelta.get());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(10L);
+        }
+    }
+
+    @Test
+    void concurrentUseIsAppliedSequentially() throws Exception {
+        //given
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<TransactionDto>> tasks = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            tasks.add(() -> balanceEngine.useBalance(12L, "1000000012", 10L));
+        }
+
+        //when
+        for (Future<TransactionDto> future : executor.invokeAll(tasks)) {
+            future.get();
+        }
+        executor.shutdown();
+        TransactionDto last = balanceEngine.useBalance(12L, "1000000012", 10L);
+
+        //then
+        assertEquals(10000L - 101 * 10L, last.getBalanceSnapshot());
+    }
+
+    @Test
+    void useBalanceFailed_exceedAmount() {
+        AccountException exception = assertThrows(AccountException.class,
+                () -> balanceEngine.useBalance(12L, "1000000012", 20000L));
+
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, exception.getErrorCode());
+    }
+
+    @Test
+    void useBalanceFailed_AccountNotFound() {
+        AccountException exception = assertThrows(AccountException.class,
+                () -> balanceEngine.useBalance(12L, "1000000099", 1000L));
+
+        assertEquals(ErrorCode.ACCOUNT_NOT_FOUND, exception.getErrorCode());
+    }
+
+    @Test
+    void cancelBalanceFailed_cancelOfCancel() {
+        //given
+        TransactionDto used = balanceEngine.useBalance(12L, "1000000012", 1000L);
+        TransactionDto canceled = balanceEngine.cancelBalance(
+                used.getTransactionId(), "1000000012", 1000L);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> balanceEngine.cancelBalance(canceled.getTransactionId(), "1000000012", 1000L));
+
+        //then
+        assertEquals(ErrorCode.TRANSACTION_NOT_CANCELLABLE, exception.getErrorCode());
+    }
+
+    @Test
+    void cancelBalanceFailed_TransactionNotFound() {
+        AccountException exception = assertThrows(AccountException.class,
+                () -> balanceEngine.cancelBalance("unknown", "1000000012", 1000L));
+
+        assertEquals(ErrorCode.TRANSACTION_NOT_FOUND, exception.getErrorCode());
+    }
+}
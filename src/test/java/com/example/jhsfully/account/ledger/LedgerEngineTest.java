@@ -0,0 +1,146 @@
+package com.example.jhsfully.account.ledger;
+
+import com.example.jhsfully.account.dto.TransactionDto;
+import com.example.jhsfully.account.event.BalanceChangedEvent;
+import com.example.jhsfully.account.type.TransactionType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import static com.example.jhsfully.account.type.TransactionResultType.S;
+import static com.example.jhsfully.account.type.TransactionType.CANCEL;
+import static com.example.jhsfully.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LedgerEngineTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoverFromSnapshotAndJournalTail() {
+        //given
+        LedgerEngine engine = newEngine();
+        engine.onBalanceChanged(event("1000000012", USE, 1000L, 9000L));
+        engine.onBalanceChanged(event("1000000013", USE, 300L, 700L));
+        engine.snapshot();
+        engine.onBalanceChanged(event("1000000012", CANCEL, 1000L, 10000L));
+        engine.onBalanceChanged(event("1000000012", USE, 2500L, 7500L));
+
+        //when
+        LedgerEngine recovered = newEngine();
+
+        //then
+        assertEquals(7500L, recovered.getBalance("1000000012").orElseThrow());
+        assertEquals(700L, recovered.getBalance("1000000013").orElseThrow());
+        assertTrue(recovered.getBalance("1000000014").isEmpty());
+        assertEquals(5L, recovered.append(transaction("1000000013", USE, 100L, 600L)));
+    }
+
+    @Test
+    void appendOnlyCommittedTransactions() {
+        //given
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("ledger",
+                    Collections.singletonMap("account.ledger.enabled", "true")));
+            context.registerBean(LedgerEngine.class, this::newEngine);
+            context.register(TransactionConfig.class);
+            context.refresh();
+            LedgerEngine engine = context.getBean(LedgerEngine.class);
+            TransactionTemplate transactionTemplate = new TransactionTemplate(
+                    context.getBean(PlatformTransactionManager.class));
+
+            //when
+            transactionTemplate.executeWithoutResult(status -> {
+                context.publishEvent(event("1000000012", USE, 1000L, 9000L));
+                status.setRollbackOnly();
+            });
+            transactionTemplate.executeWithoutResult(status ->
+                    context.publishEvent(event("1000000013", USE, 300L, 700L)));
+
+            //then
+            assertTrue(engine.getBalance("1000000012").isEmpty());
+            assertEquals(700L, engine.getBalance("1000000013").orElseThrow());
+        }
+    }
+
+    @Test
+    void snapshotReplacesFileCompletely() {
+        //given
+        LedgerEngine engine = newEngine();
+        engine.onBalanceChanged(event("1000000012", USE, 1000L, 9000L));
+
+        //when
+        engine.snapshot();
+
+        //then
+        assertFalse(Files.exists(directory.resolve("ledger.snapshot.tmp")));
+        assertEquals(9000L, new LedgerSnapshotStore(directory.resolve("ledger.snapshot"))
+                .load().orElseThrow().getBalances().get("1000000012"));
+    }
+
+    private LedgerEngine newEngine() {
+        LedgerEngine engine = new LedgerEngine(directory.toString(), 1024, false);
+        engine.recover();
+        return engine;
+    }
+
+    private static BalanceChangedEvent event(String accountNumber,
+                                             TransactionType type,
+                                             long amount, long balance) {
+        return new BalanceChangedEvent(transaction(accountNumber, type, amount, balance), 1L);
+    }
+
+    private static TransactionDto transaction(String accountNumber,
+                                              TransactionType type,
+                                              long amount, long balance) {
+        return TransactionDto.builder()
+                .accountNumber(accountNumber)
+                .transactionType(type)
+                .transactionResultType(S)
+                .amount(amount)
+                .balanceSnapshot(balance)
+                .transactionId("transactionId")
+                .transactedAt(LocalDateTime.now())
+                .build();
+    }
+
+    @EnableTransactionManagement
+    static class TransactionConfig {
+        //DB 없이 트랜잭션 동기화만 흉내 낸다.
+        @Bean
+        public PlatformTransactionManager transactionManager() {
+            return new AbstractPlatformTransactionManager() {
+                @Override
+                protected Object doGetTransaction() {
+                    return new Object();
+                }
+
+                @Override
+                protected void doBegin(Object transaction, TransactionDefinition definition) {
+                }
+
+                @Override
+                protected void doCommit(DefaultTransactionStatus status) {
+                }
+
+                @Override
+                protected void doRollback(DefaultTransactionStatus status) {
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.jhsfully.account.ledger;
+
+import com.example.jhsfully.account.type.TransactionType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.jhsfully.account.type.TransactionType.CANCEL;
+import static com.example.jhsfully.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LedgerJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void appendAndReplay() {
+        //given
+        Path file = directory.resolve("ledger.journal");
+        try (LedgerJournal journal = new LedgerJournal(file, 128, false)) {
+            journal.replay(0L, record -> { });
+            journal.append(record(1L, "1000000012", USE, 1000L, 9000L));
+            journal.append(record(2L, "1000000012", CANCEL, 1000L, 10000L));
+            journal.append(record(3L, "1000000013", USE, 500L, 500L));
+        }
+
+        //when
+        List<LedgerRecord> records = new ArrayList<>();
+        try (LedgerJournal journal = new LedgerJournal(file, 128, false)) {
+            journal.replay(1L, records::add);
+
+            //then
+            assertEquals(3L, journal.getLastSequence());
+        }
+        assertEquals(2, records.size());
+        assertEquals(CANCEL, records.get(0).getTransactionType());
+        assertEquals(10000L, records.get(0).getBalance());
+        assertEquals("1000000013", records.get(1).getAccountNumber());
+    }
+
+    @Test
+    void replayStopsAtCorruptedRecord() throws Exception {
+        //given
+        Path file = directory.resolve("ledger.journal");
+        int secondRecordPosition;
+        try (LedgerJournal journal = new LedgerJournal(file, 1024, false)) {
+            journal.replay(0L, record -> { });
+            journal.append(record(1L, "1000000012", USE, 1000L, 9000L));
+            secondRecordPosition = journal.size();
+            journal.append(record(2L, "1000000012", USE, 1000L, 8000L));
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(secondRecordPosition + 20);
+            raf.write(0x7F);
+        }
+
+        //when
+        List<LedgerRecord> records = new ArrayList<>();
+        try (LedgerJournal journal = new LedgerJournal(file, 1024, false)) {
+            journal.replay(0L, records::add);
+
+            //then
+            assertEquals(1, records.size());
+            assertEquals(secondRecordPosition, journal.size());
+            assertDoesNotThrow(() ->
+                    journal.append(record(2L, "1000000012", USE, 10L, 8990L)));
+        }
+    }
+
+    @Test
+    void sequenceMustIncrease() {
+        try (LedgerJournal journal = new LedgerJournal(
+                directory.resolve("ledger.journal"), 128, false)) {
+            journal.replay(0L, record -> { });
+            journal.append(record(5L, "1000000012", USE, 1000L, 9000L));
+
+            assertThrows(IllegalStateException.class, () ->
+                    journal.append(record(5L, "1000000012", USE, 1000L, 8000L)));
+        }
+    }
+
+    @Test
+    void appendAndReplayCancelLink() {
+        //given
+        Path file = directory.resolve("ledger.journal");
+        try (LedgerJournal journal = new LedgerJournal(file, 128, false)) {
+            journal.replay(0L, record -> { });
+            journal.append(record(1L, "1000000012", USE, 1000L, 9000L));
+            journal.append(LedgerRecord.builder()
+                    .sequence(2L)
+                    .accountNumber("1000000012")
+                    .transactionType(CANCEL)
+                    .amount(1000L)
+                    .balance(10000L)
+                    .transactedAt(System.currentTimeMillis())
+                    .transactionId("cancelId")
+                    .originalTransactionId("useId")
+                    .build());
+        }
+
+        //when
+        List<LedgerRecord> records = new ArrayList<>();
+        try (LedgerJournal journal = new LedgerJournal(file, 128, false)) {
+            journal.replay(0L, records::add);
+        }
+
+        //then
+        assertEquals(2, records.size());
+        assertNull(records.get(0).getOriginalTransactionId());
+        assertEquals("cancelId", records.get(1).getTransactionId());
+        assertEquals("useId", records.get(1).getOriginalTransactionId());
+    }
+
+    private static LedgerRecord record(long sequence, String accountNumber,
+                                       TransactionType type,
+                                       long amount, long balance) {
+        return LedgerRecord.builder()
+                .sequence(sequence)
+                .accountNumber(accountNumber)
+                .transactionType(type)
+                .amount(amount)
+                .balance(balance)
+                .transactedAt(System.currentTimeMillis())
+                .build();
+    }
+}
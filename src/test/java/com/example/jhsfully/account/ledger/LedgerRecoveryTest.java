@@ -0,0 +1,116 @@
+package com.example.jhsfully.account.ledger;
+
+import com.example.jhsfully.account.bloom.TransactionIdFilter;
+import com.example.jhsfully.account.domain.Account;
+import com.example.jhsfully.account.domain.AccountUser;
+import com.example.jhsfully.account.dto.TransactionDto;
+import com.example.jhsfully.account.repository.AccountRepository;
+import com.example.jhsfully.account.repository.AccountUserRepository;
+import com.example.jhsfully.account.service.AccountNumberIndex;
+import com.example.jhsfully.account.service.CancellationIndex;
+import com.example.jhsfully.account.service.TransactionNearCache;
+import com.example.jhsfully.account.service.TransactionService;
+import com.example.jhsfully.account.shard.ShardRouter;
+import com.example.jhsfully.account.type.AccountStatus;
+import com.example.jhsfully.account.type.BalanceMode;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+
+/**
+ * 원장은 DB 잔액을 따라가는 그림자다. 실제 거래 서비스로 커밋한 뒤
+ * 스냅샷 + 저널로 복원한 잔액이 DB 잔액과 같은지 확인한다.
+ */
+@DataJpaTest
+@Import({TransactionService.class, AccountNumberIndex.class, LedgerRecoveryTest.LedgerConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LedgerRecoveryTest {
+
+    @Autowired
+    private TransactionService transactionService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private AccountUserRepository accountUserRepository;
+    @Autowired
+    private LedgerEngine ledgerEngine;
+
+    @MockBean
+    private TransactionIdFilter transactionIdFilter;
+    @MockBean
+    private CancellationIndex cancellationIndex;
+    @MockBean
+    private TransactionNearCache transactionNearCache;
+
+    @Test
+    void recoveredBalanceEqualsDatabaseBalance() {
+        //given
+        given(transactionIdFilter.mightContain(anyString())).willReturn(true);
+        AccountUser user = accountUserRepository.findById(1L).orElseThrow();
+        for (String accountNumber : new String[]{"1000000012", "1000000013"}) {
+            accountRepository.save(Account.builder()
+                    .accountUser(user)
+                    .accountNumber(accountNumber)
+                    .accountStatus(AccountStatus.IN_USE)
+                    .balance(10000L)
+                    .registeredAt(LocalDateTime.now())
+                    .build());
+        }
+
+        //when (스냅샷 앞뒤로 커밋된 거래를 모두 원장에 남긴다)
+        TransactionDto first = transactionService.useBalance(1L, "1000000012", 1000L);
+        transactionService.useBalance(1L, "1000000013", 300L);
+        ledgerEngine.snapshot();
+        transactionService.cancelBalance(first.getTransactionId(), "1000000012", 1000L);
+        transactionService.useBalance(1L, "1000000012", 2500L);
+
+        //닫지 않고 같은 디렉토리로 새로 띄워, 죽은 뒤 스냅샷 + 저널 꼬리로 복원하는 경우를 본다.
+        LedgerEngine recovered = new LedgerEngine(LedgerConfig.DIRECTORY.toString(), 1 << 16, false);
+        recovered.recover();
+
+        //then
+        for (String accountNumber : new String[]{"1000000012", "1000000013"}) {
+            assertEquals(accountRepository.findByAccountNumber(accountNumber).orElseThrow().getBalance(),
+                    recovered.getBalance(accountNumber).orElseThrow());
+        }
+        assertEquals(7500L, recovered.getBalance("1000000012").orElseThrow());
+        recovered.close();
+    }
+
+    //@Import로만 등록한다. 컴포넌트 스캔에 잡혀 다른 테스트 컨텍스트에 섞이지 않도록 애노테이션을 달지 않는다.
+    static class LedgerConfig {
+        static final Path DIRECTORY = createDirectory();
+
+        @Bean
+        public ShardRouter shardRouter() {
+            return new ShardRouter(1, BalanceMode.LOCK, 1, 0L);
+        }
+
+        @Bean
+        public LedgerEngine ledgerEngine() {
+            return new LedgerEngine(DIRECTORY.toString(), 1 << 16, false);
+        }
+
+        private static Path createDirectory() {
+            try {
+                return Files.createTempDirectory("ledger-recovery");
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
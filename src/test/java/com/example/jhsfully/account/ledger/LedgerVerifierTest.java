@@ -0,0 +1,126 @@
+package com.example.jhsfully.account.ledger;
+
+import com.example.jhsfully.account.domain.EnumCodeConverter;
+import com.example.jhsfully.account.domain.TransactionIdConverter;
+import com.example.jhsfully.account.shard.ShardRouter;
+import com.example.jhsfully.account.type.BalanceMode;
+import com.example.jhsfully.account.type.TransactionResultType;
+import com.example.jhsfully.account.type.TransactionType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LedgerVerifierTest {
+    @TempDir
+    Path reportDirectory;
+
+    private JdbcTemplate jdbcTemplate;
+    private ShardRouter shardRouter;
+    private LedgerVerifier verifier;
+    private long nextTransactionRowId = 1L;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:verifier-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table account (id bigint primary key, "
+                + "account_number varchar(255), balance bigint)");
+        jdbcTemplate.execute("create table transaction (id bigint primary key, account_id bigint, "
+                + "transaction_id binary(16), transaction_type tinyint, "
+                + "transaction_result_type tinyint, amount bigint, balance_snapshot bigint, "
+                + "original_transaction_id binary(16))");
+
+        shardRouter = new ShardRouter(1, BalanceMode.LOCK, 1, 0L);
+        //범위를 잘게 나눠 fork/join 분할도 함께 확인한다.
+        verifier = new LedgerVerifier(dataSource, shardRouter, 2, 2, 10,
+                reportDirectory.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        verifier.shutdown();
+        shardRouter.shutdown();
+    }
+
+    @Test
+    void consistentLedger() {
+        //given
+        account(1L, "1000000000", 700L);
+        transaction(1L, "t1", "USE", "S", 500L, 500L, null);
+        transaction(1L, "t2", "USE", "F", 9999L, 500L, null);
+        transaction(1L, "t3", "CANCEL", "S", 500L, 1000L, "t1");
+        transaction(1L, "t4", "USE", "S", 300L, 700L, null);
+        account(2L, "1000000001", 1000L);
+        account(3L, "1000000002", 800L);
+        transaction(3L, "t5", "USE", "S", 200L, 800L, null);
+
+        //when
+        LedgerVerificationReport report = verifier.verify();
+
+        //then
+        assertEquals(2, report.getAccounts());
+        assertEquals(5, report.getTransactions());
+        assertEquals(5, report.getCutoffTransactionId());
+        assertEquals(0, report.getDiscrepancies());
+    }
+
+    @Test
+    void reportDiscrepancies() throws Exception {
+        //given
+        account(1L, "1000000000", 300L);
+        transaction(1L, "t1", "USE", "S", 100L, 900L, null);
+        transaction(1L, "t2", "USE", "S", 100L, 700L, null);
+        transaction(1L, "t3", "USE", "S", 100L, 600L, null);
+        account(5L, "1000000001", 1000L);
+        transaction(5L, "t4", "USE", "S", 100L, 900L, null);
+        transaction(5L, "t5", "CANCEL", "S", 50L, 950L, "t4");
+        transaction(5L, "t6", "CANCEL", "S", 50L, 1000L, "t1");
+        transaction(5L, "t7", "CANCEL", "S", 0L, 1000L, "missing");
+
+        //when
+        LedgerVerificationReport report = verifier.verify();
+
+        //then
+        List<String> lines = Files.readAllLines(report.getReportFile());
+        assertEquals(5, report.getDiscrepancies());
+        assertEquals(6, lines.size());
+        assertTrue(lines.contains("SNAPSHOT_MISMATCH,1000000000," + id("t2") + ",800,700"));
+        assertTrue(lines.contains("FINAL_BALANCE_MISMATCH,1000000000,,600,300"));
+        assertTrue(lines.contains("CANCEL_AMOUNT_MISMATCH,1000000001," + id("t5") + ",100,50"));
+        assertTrue(lines.contains("ORIGINAL_ACCOUNT_MISMATCH,1000000001," + id("t6") + ",5,1"));
+        assertTrue(lines.contains("ORIGINAL_NOT_FOUND,1000000001," + id("t7") + ",,"));
+    }
+
+    private void account(long id, String accountNumber, long balance) {
+        jdbcTemplate.update("insert into account values (?, ?, ?)", id, accountNumber, balance);
+    }
+
+    private void transaction(long accountId, String transactionId, String type, String result,
+                             long amount, long snapshot, String originalTransactionId) {
+        jdbcTemplate.update("insert into transaction values (?, ?, ?, ?, ?, ?, ?, ?)",
+                nextTransactionRowId++, accountId, TransactionIdConverter.toBytes(id(transactionId)),
+                EnumCodeConverter.code(TransactionType.valueOf(type)),
+                EnumCodeConverter.code(TransactionResultType.valueOf(result)), amount, snapshot,
+                originalTransactionId == null ? null
+                        : TransactionIdConverter.toBytes(id(originalTransactionId)));
+    }
+
+    //"t1" 같은 이름을 32자리 16진수 거래 번호로 바꾼다.
+    private static String id(String name) {
+        return TransactionIdConverter.toHex(Arrays.copyOf(name.getBytes(StandardCharsets.UTF_8),
+                TransactionIdConverter.LENGTH));
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.jhsfully.account.repository;
+
+import com.example.jhsfully.account.domain.Account;
+import com.example.jhsfully.account.domain.AccountUser;
+import com.example.jhsfully.account.domain.Transaction;
+import com.example.jhsfully.account.dto.AccountDto;
+import com.example.jhsfully.account.dto.AccountInfo;
+import com.example.jhsfully.account.dto.TransactionDto;
+import com.example.jhsfully.account.type.AccountStatus;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.example.jhsfully.account.type.TransactionResultType.S;
+import static com.example.jhsfully.account.type.TransactionType.CANCEL;
+import static com.example.jhsfully.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+class AccountRepositoryTest {
+    private static final String TRANSACTION_ID = "0123456789ab4def8123456789abcdef";
+    private static final String ORIGINAL_ID = "a0000000000040008000000000000000";
+    private static final String CANCEL_ID_1 = "c0000000000040008000000000000001";
+    private static final String CANCEL_ID_2 = "c0000000000040008000000000000002";
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Test
+    void readProjectionsWithoutLoadingUser() {
+        //given
+        AccountUser user = entityManager.find(AccountUser.class, 1L);
+        Account account = entityManager.persist(Account.builder()
+                .accountUser(user)
+                .accountNumber("1000000000")
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(10000L)
+                .registeredAt(LocalDateTime.now())
+                .build());
+        entityManager.persist(Transaction.builder()
+                .account(account)
+                .transactionType(USE)
+                .transactionResultType(S)
+                .amount(1000L)
+                .balanceSnapshot(9000L)
+                .transactionId(TRANSACTION_ID)
+                .transactedAt(LocalDateTime.now())
+                .build());
+        entityManager.flush();
+        entityManager.clear();
+
+        //when
+        List<AccountDto> accounts = accountRepository.findAccountDtosByUserId(1L);
+        TransactionDto transaction = transactionRepository
+                .findDtoByTransactionId(TRANSACTION_ID).get();
+        Account loaded = accountRepository.findByAccountNumber("1000000000").get();
+
+        //then
+        assertEquals(1, accounts.size());
+        assertEquals(1L, accounts.get(0).getUserId());
+        assertEquals(10000L, accounts.get(0).getBalance());
+        assertEquals("1000000000", transaction.getAccountNumber());
+        assertEquals(9000L, transaction.getBalanceSnapshot());
+        assertEquals(TRANSACTION_ID, transaction.getTransactionId());
+        assertEquals(USE, transaction.getTransactionType());
+        assertEquals(AccountStatus.IN_USE, loaded.getAccountStatus());
+        assertFalse(Hibernate.isInitialized(loaded.getAccountUser()));
+        assertEquals(1L, loaded.getAccountUser().getId());
+        assertFalse(Hibernate.isInitialized(loaded.getAccountUser()));
+    }
+
+    @Test
+    void readBalancesByAccountNumbers() {
+        //given
+        AccountUser user = entityManager.find(AccountUser.class, 1L);
+        for (int i = 0; i < 3; i++) {
+            entityManager.persist(Account.builder()
+                    .accountUser(user)
+                    .accountNumber(String.valueOf(1000000000L + i))
+                    .accountStatus(AccountStatus.IN_USE)
+                    .balance(1000L * i)
+                    .build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        //when
+        List<AccountInfo> accountInfos = accountRepository.findAccountInfosByAccountNumberIn(
+                Arrays.asList("1000000000", "1000000002", "1000000009"));
+
+        //then
+        assertEquals(2, accountInfos.size());
+        assertTrue(accountInfos.stream().anyMatch(info ->
+                info.getAccountNumber().equals("1000000002") && info.getBalance() == 2000L));
+    }
+
+    @Test
+    void onlyOneAccountPerAccountNumber() {
+        //given
+        AccountUser user = entityManager.find(AccountUser.class, 1L);
+        accountRepository.saveAndFlush(Account.builder()
+                .accountUser(user)
+                .accountNumber("1000000000")
+                .build());
+
+        //when
+        //then
+        assertThrows(DataIntegrityViolationException.class, () ->
+                accountRepository.saveAndFlush(Account.builder()
+                        .accountUser(user)
+                        .accountNumber("1000000000")
+                        .build()));
+    }
+
+    @Test
+    void onlyOneCancelPerOriginalTransaction() {
+        //given
+        AccountUser user = entityManager.find(AccountUser.class, 1L);
+        Account account = entityManager.persist(Account.builder()
+                .accountUser(user)
+                .accountNumber("1000000000")
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(10000L)
+                .build());
+        transactionRepository.saveAndFlush(cancel(account, CANCEL_ID_1, ORIGINAL_ID));
+
+        //when
+        assertTrue(transactionRepository.existsByOriginalTransactionId(ORIGINAL_ID));
+        assertFalse(transactionRepository.existsByOriginalTransactionId(CANCEL_ID_1));
+
+        //then
+        assertThrows(DataIntegrityViolationException.class, () ->
+                transactionRepository.saveAndFlush(cancel(account, CANCEL_ID_2, ORIGINAL_ID)));
+    }
+
+    private static Transaction cancel(Account account, String transactionId,
+                                      String originalTransactionId) {
+        return Transaction.builder()
+                .account(account)
+                .transactionType(CANCEL)
+                .transactionResultType(S)
+                .amount(1000L)
+                .balanceSnapshot(10000L)
+                .transactionId(transactionId)
+                .originalTransactionId(originalTransactionId)
+                .transactedAt(LocalDateTime.now())
+                .build();
+    }
+}
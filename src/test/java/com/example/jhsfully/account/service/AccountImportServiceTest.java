@@ -0,0 +1,110 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.dto.ImportAccount;
+import com.example.jhsfully.account.shard.ShardRouter;
+import com.example.jhsfully.account.type.BalanceMode;
+import com.example.jhsfully.account.type.ImportFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountImportServiceTest {
+    private JdbcTemplate jdbcTemplate;
+    private ShardRouter shardRouter;
+    private AccountImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:import-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create sequence hibernate_sequence");
+        jdbcTemplate.execute("create table account_user (id bigint primary key, name varchar(255))");
+        jdbcTemplate.execute("create table account (id bigint primary key, "
+                + "account_user_id bigint references account_user(id), account_number varchar(255), "
+                + "account_status tinyint, balance bigint, registered_at timestamp, "
+                + "un_registered_at timestamp, created_at timestamp, updated_at timestamp)");
+        jdbcTemplate.update("insert into account_user values (1, 'ALICE'), (2, 'HANS')");
+
+        shardRouter = new ShardRouter(1, BalanceMode.LOCK, 1, 0L);
+        //청크 크기 2, 실패 목록은 2개까지
+        importService = new AccountImportService(dataSource, new DataSourceTransactionManager(dataSource),
+                shardRouter, new ObjectMapper(), 2, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        shardRouter.shutdown();
+    }
+
+    @Test
+    void importCsv() {
+        //given
+        jdbcTemplate.update("insert into account (id, account_user_id, account_number, balance) "
+                + "values (next value for hibernate_sequence, 1, '1000000004', 0)");
+        String csv = "userId,initialBalance\n1,1000\n\n2,0\n2,500\n";
+
+        //when
+        ImportAccount.Response response = importService.importAccounts(input(csv), ImportFormat.CSV);
+
+        //then
+        assertEquals(3, response.getTotal());
+        assertEquals(3, response.getCreated());
+        assertEquals(0, response.getFailed());
+        assertEquals(List.of("1000000004", "1000000005", "1000000006", "1000000007"), accountNumbers());
+        assertEquals(1500L, jdbcTemplate.queryForObject(
+                "select sum(balance) from account where account_status = 0", Long.class));
+    }
+
+    @Test
+    void reportFailedRows() {
+        //given
+        for (int i = 0; i < 9; i++) {
+            jdbcTemplate.update("insert into account (id, account_user_id, account_number, balance) "
+                    + "values (next value for hibernate_sequence, 1, ?, 0)", String.valueOf(1000000000 + i));
+        }
+        String ndjson = "{\"userId\":1,\"initialBalance\":100}\n"
+                + "{\"userId\":1,\"initialBalance\":100}\n"
+                + "{\"userId\":9,\"initialBalance\":100}\n"
+                + "{\"userId\":2,\"initialBalance\":-1}\n"
+                + "not json\n"
+                + "{\"userId\":2,\"initialBalance\":100}\n";
+
+        //when
+        ImportAccount.Response response = importService.importAccounts(input(ndjson), ImportFormat.NDJSON);
+
+        //then
+        assertEquals(6, response.getTotal());
+        assertEquals(2, response.getCreated());
+        assertEquals(4, response.getFailed());
+        //실패 목록은 max-failures개까지만 담는다.
+        assertEquals(2, response.getFailures().size());
+        assertEquals(2, response.getFailures().get(0).getLine());
+        assertEquals("MAX_ACCOUNT_PER_USER_10", response.getFailures().get(0).getErrorCode());
+        assertEquals(3, response.getFailures().get(1).getLine());
+        assertEquals("USER_NOT_FOUND", response.getFailures().get(1).getErrorCode());
+        assertEquals(10, jdbcTemplate.queryForObject(
+                "select count(*) from account where account_user_id = 1", Integer.class));
+    }
+
+    private List<String> accountNumbers() {
+        return jdbcTemplate.queryForList("select account_number from account order by id", String.class)
+                .stream().collect(Collectors.toList());
+    }
+
+    private static ByteArrayInputStream input(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.domain.Account;
+import com.example.jhsfully.account.domain.AccountUser;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountNumberIndexTest {
+
+    @Test
+    void parseAccountNumber() {
+        assertEquals(1000000012L, AccountNumberIndex.parse("1000000012"));
+        assertEquals(-1L, AccountNumberIndex.parse("100000001"));
+        assertEquals(-1L, AccountNumberIndex.parse("10000000a2"));
+        assertEquals(-1L, AccountNumberIndex.parse("0000000012"));
+        assertEquals(-1L, AccountNumberIndex.parse(null));
+    }
+
+    @Test
+    void growWhileKeepingEntries() {
+        //given
+        AccountNumberIndex index = new AccountNumberIndex(16, true);
+
+        //when
+        for (long i = 0; i < 10_000; i++) {
+            index.put(String.valueOf(1000000000L + i), i + 1, i % 7);
+        }
+        index.put("1000000000", 999L, 999L);
+
+        //then
+        assertEquals(10_000, index.size());
+        for (long i = 0; i < 10_000; i++) {
+            AccountNumberIndex.Entry entry = index.get(String.valueOf(1000000000L + i)).get();
+            assertEquals(i + 1, entry.getId());
+            assertEquals(i % 7, entry.getOwnerId());
+        }
+        assertEquals(Optional.empty(), index.get("1000010000"));
+        assertEquals(Optional.empty(), index.get("garbage"));
+    }
+
+    @Test
+    void readWhileWriting() throws Exception {
+        //given
+        AccountNumberIndex index = new AccountNumberIndex(16, false);
+        index.put("1000000000", 1L, 2L);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        //when
+        Future<?> writer = executor.submit(() -> {
+            for (long i = 1; i < 50_000; i++) {
+                index.put(String.valueOf(1000000000L + i), i + 1, 2L);
+            }
+        });
+        while (!writer.isDone()) {
+            //then
+            assertEquals(1L, index.get("1000000000").get().getId());
+        }
+        writer.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+        assertEquals(50_000, index.size());
+    }
+
+    @Test
+    void removeKeepsCollidingEntries() {
+        //given (작은 표에 몰아 넣어 탐사 사슬이 생기게 한다)
+        AccountNumberIndex index = new AccountNumberIndex(16, false);
+        for (long i = 0; i < 12; i++) {
+            index.put(String.valueOf(1000000000L + i), i + 1, 2L);
+        }
+
+        //when
+        for (long i = 0; i < 12; i += 3) {
+            index.remove(String.valueOf(1000000000L + i));
+        }
+        index.remove("1000000099");
+
+        //then
+        assertEquals(8, index.size());
+        for (long i = 0; i < 12; i++) {
+            Optional<AccountNumberIndex.Entry> entry = index.get(String.valueOf(1000000000L + i));
+            if (i % 3 == 0) {
+                assertEquals(Optional.empty(), entry);
+            } else {
+                assertEquals(i + 1, entry.get().getId());
+            }
+        }
+    }
+
+    @Test
+    void putOnlyAfterCommit() {
+        //given
+        AccountNumberIndex index = new AccountNumberIndex(16, false);
+        AccountUser user = AccountUser.builder().name("KANA").build();
+        user.setId(12L);
+        Account account = Account.builder()
+                .accountUser(user)
+                .accountNumber("1000000012").build();
+        account.setId(7L);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            //when
+            index.putAfterCommit(account);
+
+            //then
+            assertEquals(Optional.empty(), index.get("1000000012"));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(TransactionSynchronization::afterCommit);
+            assertEquals(7L, index.get("1000000012").get().getId());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
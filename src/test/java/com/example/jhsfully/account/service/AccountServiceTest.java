@@ -3,27 +3,34 @@ package com.example.jhsfully.account.service;
 import com.example.jhsfully.account.domain.Account;
 import com.example.jhsfully.account.domain.AccountUser;
 import com.example.jhsfully.account.dto.AccountDto;
+import com.example.jhsfully.account.dto.AccountInfo;
+import com.example.jhsfully.account.event.AccountChangedEvent;
 import com.example.jhsfully.account.exeption.AccountException;
 import com.example.jhsfully.account.repository.AccountRepository;
 import com.example.jhsfully.account.repository.AccountUserRepository;
+import com.example.jhsfully.account.shard.ShardRouter;
+import com.example.jhsfully.account.type.BalanceMode;
 import com.example.jhsfully.account.type.AccountStatus;
 import com.example.jhsfully.account.type.ErrorCode;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -34,6 +41,17 @@ class AccountServiceTest {
     private AccountRepository accountRepository;
     @Mock
     private AccountUserRepository accountUserRepository;
+    @Mock
+    private AccountNumberIndex accountNumberIndex;
+    @Mock
+    private BalanceExecutor balanceExecutor;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Captor
+    private ArgumentCaptor<Collection<String>> chunkCaptor;
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter(1, BalanceMode.LOCK, 1, 0L);
 
     @InjectMocks
     private AccountService accountService;
@@ -154,6 +172,8 @@ class AccountServiceTest {
         verify(accountRepository, times(1)).save(captor.capture());
         assertEquals("1000000012", accountDto.getAccountNumber());
         assertEquals(AccountStatus.UNREGISTERED, captor.getValue().getAccountStatus());
+        verify(eventPublisher, times(1)).publishEvent(any(AccountChangedEvent.class));
+        verify(accountNumberIndex).removeAfterCommit("100000000");
     }
 
     @Test
@@ -271,31 +291,28 @@ class AccountServiceTest {
     @Test
     void successGetAccountsByUserId(){
         //given
-        AccountUser user = AccountUser.builder()
-                .name("KANA").build();
-        user.setId(12L);
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.of(user));
+        given(accountUserRepository.existsById(anyLong()))
+                .willReturn(true);
 
-        List<Account> accounts = Arrays.asList(
-                Account.builder()
+        List<AccountDto> accounts = Arrays.asList(
+                AccountDto.builder()
+                        .userId(12L)
                         .accountNumber("1111111111")
-                        .accountUser(user)
                         .balance(1000L)
                         .build(),
-                Account.builder()
+                AccountDto.builder()
+                        .userId(12L)
                         .accountNumber("1111111112")
-                        .accountUser(user)
                         .balance(1200L)
                         .build(),
-                Account.builder()
+                AccountDto.builder()
+                        .userId(12L)
                         .accountNumber("1111111113")
-                        .accountUser(user)
                         .balance(1300L)
                         .build()
         );
 
-        given(accountRepository.findByAccountUser(any()))
+        given(accountRepository.findAccountDtosByUserId(anyLong()))
                 .willReturn(accounts);
 
         //when
@@ -315,12 +332,55 @@ class AccountServiceTest {
     @Test
     void failedToGetAccounts(){
         //given
-        given(accountUserRepository.findById(anyLong()))
-                .willReturn(Optional.empty());
+        given(accountUserRepository.existsById(anyLong()))
+                .willReturn(false);
         //when
         AccountException exception = assertThrows(AccountException.class,
                 () -> accountService.getAccountsByUserId(1L));
         //then
         assertEquals(ErrorCode.USER_NOT_FOUND, exception.getErrorCode());
     }
-}
\ No newline at end of file
+
+    @Test
+    void successGetBalances(){
+        //given
+        List<String> accountNumbers = IntStream.range(0, 1200)
+                .mapToObj(i -> String.valueOf(1000000000L + i))
+                .collect(Collectors.toList());
+        given(balanceExecutor.getCachedBalances(anyCollection()))
+                .willReturn(Collections.singletonMap("1000000000", 7L));
+        given(accountRepository.findAccountInfosByAccountNumberIn(anyCollection()))
+                .willAnswer(invocation -> {
+                    Collection<String> chunk = invocation.getArgument(0);
+                    return chunk.stream()
+                            .filter(accountNumber -> !accountNumber.equals("1000001199"))
+                            .map(accountNumber -> new AccountInfo(accountNumber, 100L))
+                            .collect(Collectors.toList());
+                });
+
+        //when
+        Map<String, Long> balances = accountService.getBalances(accountNumbers);
+
+        //then
+        verify(accountRepository, times(3)).findAccountInfosByAccountNumberIn(chunkCaptor.capture());
+        assertEquals(Arrays.asList(500, 500, 199), chunkCaptor.getAllValues().stream()
+                .map(Collection::size).collect(Collectors.toList()));
+        //캐시에 있는 계좌는 DB에서 다시 읽지 않는다.
+        assertFalse(chunkCaptor.getAllValues().get(0).contains("1000000000"));
+        assertEquals(1199, balances.size());
+        assertEquals(7L, balances.get("1000000000"));
+        assertEquals(100L, balances.get("1000000001"));
+        assertFalse(balances.containsKey("1000001199"));
+        assertEquals("1000000000", balances.keySet().iterator().next());
+    }
+
+    @Test
+    void getBalancesIgnoresMalformedAccountNumbers(){
+        //when
+        Map<String, Long> balances = accountService.getBalances(Arrays.asList("123", "abcdefghij"));
+
+        //then
+        assertTrue(balances.isEmpty());
+        verify(accountRepository, never()).findAccountInfosByAccountNumberIn(anyCollection());
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.type.AdmissionPriority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+            meterRegistry, 8, 2, 100, 1.5, 0.2, 0.5);
+
+    @Test
+    void disabledByDefault() {
+        ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+                .withBean(SimpleMeterRegistry.class)
+                .withUserConfiguration(AdaptiveConcurrencyLimiter.class, ConcurrencyLimitAspect.class);
+
+        contextRunner.run(context -> {
+            assertTrue(context.getBeansOfType(AdaptiveConcurrencyLimiter.class).isEmpty());
+            assertTrue(context.getBeansOfType(ConcurrencyLimitAspect.class).isEmpty());
+        });
+        contextRunner.withPropertyValues("account.concurrency-limit.enabled=true").run(context ->
+                assertNotNull(context.getBean(ConcurrencyLimitAspect.class)));
+    }
+
+    @Test
+    void reserveCapacityForHighPriority() {
+        //LOW는 8 * 0.5 = 4개까지
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.tryAcquire(AdmissionPriority.LOW));
+        }
+        assertFalse(limiter.tryAcquire(AdmissionPriority.LOW));
+
+        //HIGH는 8개까지
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.tryAcquire(AdmissionPriority.HIGH));
+        }
+        assertFalse(limiter.tryAcquire(AdmissionPriority.HIGH));
+
+        assertEquals(1.0, meterRegistry.get("account.concurrency.rejected")
+                .tag("priority", "LOW").counter().count());
+        assertEquals(8.0, meterRegistry.get("account.concurrency.inflight").gauge().value());
+    }
+
+    @Test
+    void decreaseLimitWhenLatencyRises() {
+        for (int i = 0; i < 8; i++) {
+            limiter.tryAcquire(AdmissionPriority.HIGH);
+        }
+        limiter.release(10_000_000L);
+        double before = limiter.getLimit();
+
+        for (int i = 0; i < 7; i++) {
+            limiter.release(100_000_000L);
+        }
+
+        assertTrue(limiter.getLimit() < before);
+        assertEquals(limiter.getLimit(),
+                meterRegistry.get("account.concurrency.limit").gauge().value());
+    }
+
+    @Test
+    void increaseLimitWhileSaturatedWithSteadyLatency() {
+        double before = limiter.getLimit();
+
+        for (int i = 0; i < 20; i++) {
+            while (limiter.tryAcquire(AdmissionPriority.HIGH)) {
+                //한도까지 채운다.
+            }
+            limiter.release(10_000_000L);
+        }
+
+        assertTrue(limiter.getLimit() > before);
+    }
+
+    @Test
+    void keepLimitWhenUnderused() {
+        double before = limiter.getLimit();
+
+        for (int i = 0; i < 20; i++) {
+            limiter.tryAcquire(AdmissionPriority.HIGH);
+            limiter.release(10_000_000L);
+        }
+
+        assertEquals(before, limiter.getLimit());
+    }
+}
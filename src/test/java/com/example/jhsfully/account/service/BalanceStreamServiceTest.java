@@ -0,0 +1,210 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.dto.AccountDto;
+import com.example.jhsfully.account.dto.AccountInfo;
+import com.example.jhsfully.account.dto.TransactionDto;
+import com.example.jhsfully.account.event.BalanceChangedEvent;
+import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.type.ErrorCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.misc.CompletableFutureWrapper;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceStreamServiceTest {
+
+    @Mock
+    private AccountService accountService;
+
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private RTopic topic;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private BalanceStreamService balanceStreamService;
+
+    @AfterEach
+    void tearDown() {
+        balanceStreamService.shutdown();
+    }
+
+    @Test
+    void sendSnapshotThenChanges() {
+        //given
+        balanceStreamService = service(64, true);
+        given(redissonClient.getTopic(anyString(), any())).willReturn(topic);
+        given(topic.publishAsync(anyString())).willReturn(new CompletableFutureWrapper<>(1L));
+        given(accountService.getAccountsByUserId(1L)).willReturn(Arrays.asList(
+                account("1000000000", 1000L), account("1000000001", 2000L)));
+        RecordingEmitter emitter = new RecordingEmitter();
+        balanceStreamService.register(1L, emitter);
+
+        //when
+        balanceStreamService.onBalanceChanged(event(1L, "1000000000", 700L));
+        balanceStreamService.onBalanceChanged(event(2L, "1000000005", 300L));
+
+        //then
+        await(() -> Long.valueOf(700L).equals(emitter.balances.get("1000000000")));
+        assertEquals(2000L, emitter.balances.get("1000000001"));
+        assertFalse(emitter.balances.containsKey("1000000005"));
+        assertEquals(1, balanceStreamService.getSubscriberCount());
+        verify(topic).addListener(eq(String.class), any());
+        //구독자가 다른 노드에 있을 수 있으므로 모든 변경을 발행한다.
+        verify(topic, times(2)).publishAsync(any(String.class));
+    }
+
+    @Test
+    void deliverChangesFromOtherNodes() {
+        //given
+        balanceStreamService = service(64, true);
+        given(redissonClient.getTopic(anyString(), any())).willReturn(topic);
+        given(topic.publishAsync(anyString())).willReturn(new CompletableFutureWrapper<>(1L));
+        RecordingEmitter emitter = new RecordingEmitter();
+        balanceStreamService.register(1L, emitter);
+        balanceStreamService.onBalanceChanged(event(1L, "1000000000", 700L));
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(topic).publishAsync(captor.capture());
+        await(() -> emitter.balances.containsKey("1000000000"));
+        emitter.balances.clear();
+
+        //when
+        balanceStreamService.receive(captor.getValue());
+        balanceStreamService.receive("other-node:1:1000000001:500");
+        balanceStreamService.receive("other-node:1:broken");
+
+        //then
+        await(() -> emitter.balances.containsKey("1000000001"));
+        assertEquals(500L, emitter.balances.get("1000000001"));
+        //자기 노드가 보낸 메시지는 이미 보냈으므로 다시 보내지 않는다.
+        assertFalse(emitter.balances.containsKey("1000000000"));
+    }
+
+    @Test
+    void disconnectSlowSubscriber() throws InterruptedException {
+        //given
+        balanceStreamService = service(1, false);
+        RecordingEmitter emitter = new RecordingEmitter();
+        emitter.block();
+        balanceStreamService.register(1L, emitter);
+        balanceStreamService.deliver(1L, "1000000000", 100L);
+        assertTrue(emitter.sending.await(5, TimeUnit.SECONDS));
+
+        //when
+        balanceStreamService.deliver(1L, "1000000000", 90L);
+        balanceStreamService.deliver(1L, "1000000000", 80L);
+        balanceStreamService.deliver(1L, "1000000001", 100L);
+
+        //then
+        assertTrue(emitter.completed);
+        assertEquals(0, balanceStreamService.getSubscriberCount());
+        assertEquals(1.0, meterRegistry.counter("account.balance-stream.dropped").count());
+        emitter.release();
+    }
+
+    @Test
+    void subscribeFailed_userNotFound() {
+        //given
+        balanceStreamService = service(64, false);
+        given(accountService.getAccountsByUserId(1L))
+                .willThrow(new AccountException(ErrorCode.USER_NOT_FOUND));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> balanceStreamService.register(1L, new RecordingEmitter()));
+
+        //then
+        assertEquals(ErrorCode.USER_NOT_FOUND, exception.getErrorCode());
+        assertEquals(0, balanceStreamService.getSubscriberCount());
+    }
+
+    private BalanceStreamService service(int bufferSize, boolean crossNode) {
+        return new BalanceStreamService(accountService, redissonClient, meterRegistry,
+                2, 60000L, bufferSize, crossNode);
+    }
+
+    private static AccountDto account(String accountNumber, Long balance) {
+        return AccountDto.builder()
+                .userId(1L)
+                .accountNumber(accountNumber)
+                .balance(balance)
+                .build();
+    }
+
+    private static BalanceChangedEvent event(Long userId, String accountNumber, Long balance) {
+        return new BalanceChangedEvent(TransactionDto.builder()
+                .accountNumber(accountNumber)
+                .balanceSnapshot(balance)
+                .build(), userId);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.yield();
+        }
+    }
+
+    //보낸 AccountInfo를 계좌 번호별 마지막 잔액으로 모은다.
+    private static class RecordingEmitter extends SseEmitter {
+        private final Map<String, Long> balances = new ConcurrentHashMap<>();
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private volatile boolean blocking;
+        private volatile boolean completed;
+
+        private void block() {
+            blocking = true;
+        }
+
+        private void release() {
+            released.countDown();
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            sending.countDown();
+            if (blocking) {
+                try {
+                    released.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            builder.build().stream()
+                    .map(DataWithMediaType::getData)
+                    .filter(AccountInfo.class::isInstance)
+                    .map(AccountInfo.class::cast)
+                    .forEach(info -> balances.put(info.getAccountNumber(), info.getBalance()));
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.dto.TransactionDto;
+import com.example.jhsfully.account.engine.BalanceCommand;
+import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.exeption.GroupCommandException;
+import com.example.jhsfully.account.type.ErrorCode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class GroupCommitBalanceExecutorTest {
+    @Mock
+    private TransactionService transactionService;
+
+    @Test
+    void concurrentDebitsAreCommittedTogether() throws Exception {
+        //given
+        List<Integer> groupSizes = new CopyOnWriteArrayList<>();
+        given(transactionService.commitGroup(eq("1000000012"), anyList()))
+                .willAnswer(invocation -> {
+                    List<BalanceCommand> commands = invocation.getArgument(1);
+                    groupSizes.add(commands.size());
+                    Map<BalanceCommand, TransactionDto> results = new LinkedHashMap<>();
+                    for (BalanceCommand command : commands) {
+                        results.put(command, TransactionDto.builder()
+                                .accountNumber("1000000012")
+                                .amount(command.getAmount())
+                                .build());
+                    }
+                    return results;
+                });
+        GroupCommitBalanceExecutor executor =
+                new GroupCommitBalanceExecutor(transactionService, 50L, 8, 3000L);
+
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        List<Callable<TransactionDto>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            long amount = 10L + i;
+            tasks.add(() -> executor.useBalance(12L, "1000000012", amount));
+        }
+
+        //when
+        List<Future<TransactionDto>> futures = callers.invokeAll(tasks);
+        callers.shutdown();
+
+        //then
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(10L + i, futures.get(i).get().getAmount());
+        }
+        assertEquals(8, groupSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(groupSizes.size() < 8);
+    }
+
+    @Test
+    void failedCommandIsDroppedAndGroupIsRetried() throws Exception {
+        //given
+        List<List<BalanceCommand>> attempts = new CopyOnWriteArrayList<>();
+        given(transactionService.commitGroup(eq("1000000012"), anyList()))
+                .willAnswer(invocation -> {
+                    List<BalanceCommand> commands = invocation.getArgument(1);
+                    attempts.add(new ArrayList<>(commands));
+                    Map<BalanceCommand, TransactionDto> results = new LinkedHashMap<>();
+                    for (BalanceCommand command : commands) {
+                        if (command.getAmount() == 13L) {
+                            throw new GroupCommandException(command,
+                                    new QueryTimeoutException("timeout"));
+                        }
+                        results.put(command, TransactionDto.builder()
+                                .amount(command.getAmount())
+                                .build());
+                    }
+                    return results;
+                });
+        GroupCommitBalanceExecutor executor =
+                new GroupCommitBalanceExecutor(transactionService, 100L, 3, 3000L);
+
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        List<Callable<TransactionDto>> tasks = new ArrayList<>();
+        for (long amount = 12L; amount <= 14L; amount++) {
+            long value = amount;
+            tasks.add(() -> executor.useBalance(12L, "1000000012", value));
+        }
+
+        //when
+        List<Future<TransactionDto>> futures = callers.invokeAll(tasks);
+        callers.shutdown();
+
+        //then
+        assertEquals(12L, futures.get(0).get().getAmount());
+        ExecutionException exception =
+                assertThrows(ExecutionException.class, () -> futures.get(1).get());
+        assertTrue(exception.getCause() instanceof QueryTimeoutException);
+        assertEquals(14L, futures.get(2).get().getAmount());
+        //실패한 요청은 다시 커밋하지 않는다.
+        assertEquals(1, attempts.stream()
+                .filter(commands -> commands.stream()
+                        .anyMatch(command -> command.getAmount() == 13L))
+                .count());
+    }
+
+    @Test
+    void commandAbandonedBeforeCommitIsNotApplied() throws Exception {
+        //given (리더가 그룹을 모으는 동안 뒤따른 요청은 시간 초과로 포기한다)
+        List<Integer> groupSizes = new CopyOnWriteArrayList<>();
+        given(transactionService.commitGroup(eq("1000000012"), anyList()))
+                .willAnswer(invocation -> {
+                    List<BalanceCommand> commands = invocation.getArgument(1);
+                    groupSizes.add(commands.size());
+                    Map<BalanceCommand, TransactionDto> results = new LinkedHashMap<>();
+                    commands.forEach(command -> results.put(command,
+                            TransactionDto.builder().amount(command.getAmount()).build()));
+                    return results;
+                });
+        GroupCommitBalanceExecutor executor =
+                new GroupCommitBalanceExecutor(transactionService, 300L, 8, 50L);
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        Future<TransactionDto> leader =
+                callers.submit(() -> executor.useBalance(12L, "1000000012", 10L));
+        Thread.sleep(50L);
+        Future<TransactionDto> follower =
+                callers.submit(() -> executor.useBalance(12L, "1000000012", 20L));
+        callers.shutdown();
+
+        //when
+        ExecutionException exception =
+                assertThrows(ExecutionException.class, follower::get);
+
+        //then
+        assertEquals(ErrorCode.BALANCE_ENGINE_BUSY,
+                ((AccountException) exception.getCause()).getErrorCode());
+        assertEquals(10L, leader.get().getAmount());
+        assertEquals(Collections.singletonList(1), groupSizes);
+    }
+
+    @Test
+    void claimedCommandIsAwaitedPastTimeout() {
+        //given (커밋이 시간 초과보다 오래 걸려도 이미 적용 중인 요청은 결과를 기다린다)
+        given(transactionService.commitGroup(eq("1000000012"), anyList()))
+                .willAnswer(invocation -> {
+                    Thread.sleep(200L);
+                    List<BalanceCommand> commands = invocation.getArgument(1);
+                    Map<BalanceCommand, TransactionDto> results = new LinkedHashMap<>();
+                    commands.forEach(command -> results.put(command,
+                            TransactionDto.builder().amount(command.getAmount()).build()));
+                    return results;
+                });
+        GroupCommitBalanceExecutor executor =
+                new GroupCommitBalanceExecutor(transactionService, 0L, 8, 50L);
+
+        //when
+        TransactionDto transactionDto = executor.useBalance(12L, "1000000012", 10L);
+
+        //then
+        assertEquals(10L, transactionDto.getAmount());
+    }
+}
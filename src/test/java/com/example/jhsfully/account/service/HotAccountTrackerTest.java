@@ -0,0 +1,71 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.dto.HotAccount;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotAccountTrackerTest {
+
+    @Test
+    void keepHottestAccounts() {
+        //given
+        HotAccountTracker tracker = new HotAccountTracker(1024, 4, 2);
+
+        //when
+        for (int i = 0; i < 100; i++) {
+            tracker.recordAcquired("cold-" + i, 0L);
+        }
+        for (int i = 0; i < 50; i++) {
+            tracker.recordAcquired("1000000000", TimeUnit.MILLISECONDS.toNanos(3));
+            tracker.recordAcquired("1000000001", TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        tracker.recordFailed("1000000000", TimeUnit.MILLISECONDS.toNanos(1000));
+
+        //then
+        List<HotAccount> hotAccounts = tracker.getHotAccounts(10);
+        assertEquals(2, hotAccounts.size());
+        assertEquals("1000000000", hotAccounts.get(0).getAccountNumber());
+        assertEquals(51L, hotAccounts.get(0).getAttempts());
+        assertEquals(1L, hotAccounts.get(0).getFailures());
+        assertEquals("1000000001", hotAccounts.get(1).getAccountNumber());
+    }
+
+    @Test
+    void reportWaitPercentiles() {
+        //given
+        HotAccountTracker tracker = new HotAccountTracker(1024, 4, 4);
+
+        //when
+        for (int i = 0; i < 98; i++) {
+            tracker.recordAcquired("1000000000", TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        tracker.recordFailed("1000000000", TimeUnit.MILLISECONDS.toNanos(1000));
+        tracker.recordFailed("1000000000", TimeUnit.MILLISECONDS.toNanos(1000));
+
+        //then
+        HotAccount hotAccount = tracker.getHotAccounts(1).get(0);
+        //100us는 64~128us 구간, 1s는 524~1048ms 구간
+        assertEquals(0.128, hotAccount.getWaitP50Ms());
+        assertEquals(0.128, hotAccount.getWaitP95Ms());
+        assertEquals(1048.576, hotAccount.getWaitP99Ms());
+    }
+
+    @Test
+    void decayOldCounts() {
+        //given
+        HotAccountTracker tracker = new HotAccountTracker(1024, 4, 4);
+        for (int i = 0; i < 10; i++) {
+            tracker.recordAcquired("1000000000", 0L);
+        }
+
+        //when
+        tracker.decay();
+
+        //then
+        assertEquals(5L, tracker.getHotAccounts(1).get(0).getAttempts());
+    }
+}
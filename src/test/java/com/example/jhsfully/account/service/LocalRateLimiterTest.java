@@ -0,0 +1,45 @@
+package com.example.jhsfully.account.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalRateLimiterTest {
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private final LocalRateLimiter rateLimiter = new LocalRateLimiter(now::get);
+
+    @Test
+    void acceptBurstUpToCapacity() {
+        for (int i = 0; i < 5; i++) {
+            assertTrue(rateLimiter.tryAcquire("user:1", 5, 10));
+        }
+        assertFalse(rateLimiter.tryAcquire("user:1", 5, 10));
+        //다른 키는 영향을 받지 않는다.
+        assertTrue(rateLimiter.tryAcquire("user:2", 5, 10));
+    }
+
+    @Test
+    void refillOverTime() {
+        for (int i = 0; i < 5; i++) {
+            rateLimiter.tryAcquire("user:1", 5, 10);
+        }
+        assertFalse(rateLimiter.tryAcquire("user:1", 5, 10));
+
+        now.addAndGet(100_000_000L); //0.1초 -> 토큰 1개
+        assertTrue(rateLimiter.tryAcquire("user:1", 5, 10));
+        assertFalse(rateLimiter.tryAcquire("user:1", 5, 10));
+    }
+
+    @Test
+    void cleanupIdleBuckets() {
+        rateLimiter.tryAcquire("user:1", 5, 10);
+        assertEquals(1, rateLimiter.size());
+
+        now.addAndGet(1_000_000_000L);
+        rateLimiter.cleanup();
+
+        assertEquals(0, rateLimiter.size());
+    }
+}
@@ -1,9 +1,14 @@
 package com.example.jhsfully.account.service;
 
+import com.example.jhsfully.account.bloom.TransactionIdFilter;
+import com.example.jhsfully.account.deadline.RequestDeadline;
+import com.example.jhsfully.account.dto.CancelBalance;
 import com.example.jhsfully.account.dto.UseBalance;
 import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.type.BalanceMode;
 import com.example.jhsfully.account.type.ErrorCode;
 import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
@@ -13,6 +18,10 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -21,12 +30,26 @@ class LockAopAspectTest {
     @Mock
     private LockService lockService;
 
+    @Mock
+    private BalanceExecutor balanceExecutor;
+
+    @Mock
+    private TransactionIdFilter transactionIdFilter;
+
+    @Mock
+    private CancellationIndex cancellationIndex;
+
     @Mock
     private ProceedingJoinPoint proceedingJoinPoint;
 
     @InjectMocks
     private LockAopAspect lockAopAspect;
 
+    @AfterEach
+    void clearDeadline() {
+        RequestDeadline.clear();
+    }
+
 
     @Test
     void lockAndUnlock() throws Throwable {
@@ -38,11 +61,12 @@ class LockAopAspectTest {
 
         UseBalance.Request request = new UseBalance.Request(1L,
                 "1000010001", 1000L);
+        given(balanceExecutor.getMode()).willReturn(BalanceMode.LOCK);
         //when
         lockAopAspect.aroundMethod(proceedingJoinPoint, request);
         //then
         verify(lockService, times(1))
-                .lock(lockArgumentCaptor.capture());
+                .lock(lockArgumentCaptor.capture(), anyLong());
         verify(lockService, times(1))
                 .unlock(unlockArgumentCaptor.capture());
 
@@ -60,6 +84,7 @@ class LockAopAspectTest {
 
         UseBalance.Request request = new UseBalance.Request(1L,
                 "1000010001", 1000L);
+        given(balanceExecutor.getMode()).willReturn(BalanceMode.LOCK);
 
         given(proceedingJoinPoint.proceed())
                 .willThrow(new AccountException(ErrorCode.ACCOUNT_NOT_FOUND));
@@ -68,11 +93,86 @@ class LockAopAspectTest {
             lockAopAspect.aroundMethod(proceedingJoinPoint, request));
         //then
         verify(lockService, times(1))
-                .lock(lockArgumentCaptor.capture());
+                .lock(lockArgumentCaptor.capture(), anyLong());
         verify(lockService, times(1))
                 .unlock(unlockArgumentCaptor.capture());
 
         assertEquals("1000010001", lockArgumentCaptor.getValue());
         assertEquals("1000010001", unlockArgumentCaptor.getValue());
     }
-}
\ No newline at end of file
+
+    @Test
+    void skipLockIfModeDoesNotRequireIt() throws Throwable {
+        //given
+        UseBalance.Request request = new UseBalance.Request(1L,
+                "1000010001", 1000L);
+        given(balanceExecutor.getMode()).willReturn(BalanceMode.ENGINE);
+        //when
+        lockAopAspect.aroundMethod(proceedingJoinPoint, request);
+        //then
+        verify(proceedingJoinPoint, times(1)).proceed();
+        verify(lockService, never()).lock(anyString(), anyLong());
+        verify(lockService, never()).unlock(anyString());
+    }
+
+    @Test
+    void rejectUnknownTransactionIdBeforeLock() throws Throwable {
+        //given
+        CancelBalance.Request request = new CancelBalance.Request("unknown",
+                "1000010001", 1000L);
+        given(transactionIdFilter.mightContain("unknown")).willReturn(false);
+        //when
+        AccountException exception = assertThrows(AccountException.class, () ->
+                lockAopAspect.aroundMethod(proceedingJoinPoint, request));
+        //then
+        assertEquals(ErrorCode.TRANSACTION_NOT_FOUND, exception.getErrorCode());
+        verify(lockService, never()).lock(anyString(), anyLong());
+        verify(proceedingJoinPoint, never()).proceed();
+    }
+
+    @Test
+    void rejectRepeatedCancelBeforeLock() throws Throwable {
+        //given
+        CancelBalance.Request request = new CancelBalance.Request("cancelled",
+                "1000010001", 1000L);
+        given(transactionIdFilter.mightContain("cancelled")).willReturn(true);
+        given(cancellationIndex.isKnownCancelled("cancelled")).willReturn(true);
+        //when
+        AccountException exception = assertThrows(AccountException.class, () ->
+                lockAopAspect.aroundMethod(proceedingJoinPoint, request));
+        //then
+        assertEquals(ErrorCode.TRANSACTION_ALREADY_CANCELLED, exception.getErrorCode());
+        verify(lockService, never()).lock(anyString(), anyLong());
+    }
+
+    @Test
+    void limitLockWaitToRemainingDeadline() throws Throwable {
+        //given
+        ArgumentCaptor<Long> waitTimeCaptor = ArgumentCaptor.forClass(Long.class);
+        UseBalance.Request request = new UseBalance.Request(1L,
+                "1000010001", 1000L);
+        given(balanceExecutor.getMode()).willReturn(BalanceMode.LOCK);
+        RequestDeadline.set(System.currentTimeMillis() + 300);
+        //when
+        lockAopAspect.aroundMethod(proceedingJoinPoint, request);
+        //then
+        verify(lockService, times(1)).lock(eq("1000010001"), waitTimeCaptor.capture());
+        assertTrue(waitTimeCaptor.getValue() > 0);
+        assertTrue(waitTimeCaptor.getValue() <= 300);
+    }
+
+    @Test
+    void rejectExpiredDeadlineBeforeLock() throws Throwable {
+        //given
+        UseBalance.Request request = new UseBalance.Request(1L,
+                "1000010001", 1000L);
+        RequestDeadline.set(System.currentTimeMillis() - 1);
+        //when
+        AccountException exception = assertThrows(AccountException.class, () ->
+                lockAopAspect.aroundMethod(proceedingJoinPoint, request));
+        //then
+        assertEquals(ErrorCode.DEADLINE_EXCEEDED, exception.getErrorCode());
+        verify(lockService, never()).lock(anyString(), anyLong());
+        verify(proceedingJoinPoint, never()).proceed();
+    }
+}
@@ -1,18 +1,36 @@
 package com.example.jhsfully.account.service;
 
 import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.type.CircuitState;
 import com.example.jhsfully.account.type.ErrorCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RBucket;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisConnectionException;
+import org.redisson.misc.CompletableFutureWrapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class LockServiceTest {
@@ -23,6 +41,17 @@ class LockServiceTest {
     @Mock
     private RLock rLock;
 
+    @Mock
+    private RBucket<Object> rBucket;
+
+    //연속 2번 실패하면 열리고, 열린 뒤 바로 probe할 수 있다.
+    @Spy
+    private RedisCircuitBreaker circuitBreaker =
+            new RedisCircuitBreaker(new SimpleMeterRegistry(), 2, 0L, 200L);
+
+    @Spy
+    private HotAccountTracker hotAccountTracker = new HotAccountTracker(64, 4, 4);
+
     @InjectMocks
     private LockService lockService;
 
@@ -32,8 +61,8 @@ class LockServiceTest {
         //given
         given(redissonClient.getLock(anyString()))
                 .willReturn(rLock);
-        given(rLock.tryLock(anyLong(), anyLong(), any()))
-                .willReturn(true);
+        given(rLock.tryLockAsync(anyLong(), anyLong(), any(), anyLong()))
+                .willReturn(new CompletableFutureWrapper<>(true));
         //when
         assertDoesNotThrow(() ->
             lockService.lock("1234"));
@@ -44,12 +73,190 @@ class LockServiceTest {
         //given
         given(redissonClient.getLock(anyString()))
                 .willReturn(rLock);
-        given(rLock.tryLock(anyLong(), anyLong(), any()))
-                .willReturn(false);
+        given(rLock.tryLockAsync(anyLong(), anyLong(), any(), anyLong()))
+                .willReturn(new CompletableFutureWrapper<>(false));
         //when
         AccountException exception = assertThrows(AccountException.class, () ->
                 lockService.lock("1234"));
         //then
         assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK, exception.getErrorCode());
+        verify(hotAccountTracker).recordFailed(eq("1234"), anyLong());
+        assertEquals(1L, hotAccountTracker.getHotAccounts(1).get(0).getFailures());
+    }
+
+    @Test
+    void handOverRedisLockToLocalWaiter() throws Exception {
+        //given
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        given(rLock.tryLockAsync(anyLong(), anyLong(), any(), anyLong()))
+                .willReturn(new CompletableFutureWrapper<>(true));
+        given(rLock.unlockAsync(anyLong()))
+                .willReturn(new CompletableFutureWrapper<>((Void) null));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch waiting = new CountDownLatch(1);
+
+        //when
+        lockService.lock("1234");
+        Future<?> waiter = executor.submit(() -> {
+            waiting.countDown();
+            lockService.lock("1234");
+            lockService.unlock("1234");
+        });
+        waiting.await();
+        Thread.sleep(100L);
+        lockService.unlock("1234");
+        waiter.get(1, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        //then
+        verify(rLock, times(1)).tryLockAsync(anyLong(), anyLong(), any(), anyLong());
+        verify(rLock, times(1)).unlockAsync(anyLong());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void releaseRedisLockWhenWaiterTimesOutDuringHandoff() throws Exception {
+        //given
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        given(rLock.tryLockAsync(anyLong(), anyLong(), any(), anyLong()))
+                .willReturn(new CompletableFutureWrapper<>(true));
+        given(rLock.unlockAsync(anyLong()))
+                .willReturn(new CompletableFutureWrapper<>((Void) null));
+        lockService.lock("1234");
+
+        //참조 없이 로컬 락에만 줄을 서는 스레드로, unlock이 대기자를 보고 넘겨준 뒤
+        //그 대기자가 시간 초과로 떠나 Redis 락을 이어받지 않는 상황을 만든다.
+        Map<String, Object> keyLocks = (Map<String, Object>) ReflectionTestUtils.getField(lockService, "keyLocks");
+        ReentrantLock local = (ReentrantLock) ReflectionTestUtils.getField(keyLocks.get("ACLK:1234"), "local");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> waiter = executor.submit(() -> {
+            local.lock();
+            local.unlock();
+        });
+        while (!local.hasQueuedThreads()) {
+            Thread.sleep(1L);
+        }
+
+        //when
+        lockService.unlock("1234");
+        waiter.get(1, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        //then
+        //넘겨받을 스레드가 없으므로 Redis 락을 풀고 키를 정리한다.
+        verify(rLock, times(1)).unlockAsync(anyLong());
+        assertTrue(keyLocks.isEmpty());
+    }
+
+    @Test
+    void fallBackToLocalLockWhenRedisFails() {
+        //given
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        given(rLock.tryLockAsync(anyLong(), anyLong(), any(), anyLong()))
+                .willReturn(failedFuture());
+
+        //when (서킷이 닫혀 있는 동안의 실패는 락 획득 실패다)
+        AccountException exception = assertThrows(AccountException.class,
+                () -> lockService.lock("1234"));
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK, exception.getErrorCode());
+        assertEquals(CircuitState.CLOSED, circuitBreaker.getState());
+        for (int i = 0; i < 2; i++) {
+            lockService.lock("1234");
+            lockService.unlock("1234");
+        }
+
+        //then
+        assertEquals(CircuitState.OPEN, circuitBreaker.getState());
+        //서킷이 열린 뒤에는 Redis를 부르지 않고, 잡지 않은 락을 풀지도 않는다.
+        verify(rLock, times(2)).tryLockAsync(anyLong(), anyLong(), any(), anyLong());
+        verify(rLock, never()).unlockAsync(anyLong());
+        verify(circuitBreaker, times(2)).recordFallback();
+        Map<?, ?> keyLocks = (Map<?, ?>) ReflectionTestUtils.getField(lockService, "keyLocks");
+        assertTrue(keyLocks.isEmpty());
+    }
+
+    @Test
+    void releaseLateGrantWithItsOwnOwnerId() {
+        //given (첫 시도는 시간 초과 뒤에 잡히고, 두 번째 시도는 바로 잡힌다)
+        CompletableFuture<Boolean> late = new CompletableFuture<>();
+        given(redissonClient.getLock(anyString()))
+                .willReturn(rLock);
+        given(rLock.tryLockAsync(anyLong(), anyLong(), any(), anyLong()))
+                .willReturn(new CompletableFutureWrapper<>(late))
+                .willReturn(new CompletableFutureWrapper<>(true));
+        given(rLock.unlockAsync(anyLong()))
+                .willReturn(new CompletableFutureWrapper<>((Void) null));
+        assertThrows(AccountException.class, () -> lockService.lock("1234", 0L));
+        lockService.lock("1234");
+
+        //when
+        late.complete(true);
+
+        //then
+        ArgumentCaptor<Long> owners = ArgumentCaptor.forClass(Long.class);
+        verify(rLock, times(2)).tryLockAsync(anyLong(), anyLong(), any(), owners.capture());
+        verify(rLock).unlockAsync(owners.getAllValues().get(0));
+        verify(rLock, never()).unlockAsync(owners.getAllValues().get(1));
+        lockService.unlock("1234");
+        verify(rLock).unlockAsync(owners.getAllValues().get(1));
+    }
+
+    @Test
+    void closeCircuitWhenProbeSucceeds() {
+        //given
+        circuitBreaker.onFailure(new IllegalStateException());
+        circuitBreaker.onFailure(new IllegalStateException());
+        given(redissonClient.getBucket(anyString()))
+                .willReturn(rBucket);
+        given(rBucket.isExistsAsync())
+                .willReturn(new CompletableFutureWrapper<>(false));
+
+        //when
+        lockService.probeRedis();
+
+        //then
+        assertEquals(CircuitState.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void keepCircuitOpenWhenProbeFails() {
+        //given
+        circuitBreaker.onFailure(new IllegalStateException());
+        circuitBreaker.onFailure(new IllegalStateException());
+        given(redissonClient.getBucket(anyString()))
+                .willReturn(rBucket);
+        given(rBucket.isExistsAsync())
+                .willReturn(failedFuture());
+
+        //when
+        lockService.probeRedis();
+
+        //then
+        assertEquals(CircuitState.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    void skipProbeWhenCircuitIsClosed() {
+        //when
+        lockService.probeRedis();
+
+        //then
+        verifyNoInteractions(redissonClient);
+    }
+
+    private static <T> CompletableFutureWrapper<T> failedFuture() {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(new RedisConnectionException("Unable to connect to Redis"));
+        return new CompletableFutureWrapper<>(future);
+    }
+
+    @Test
+    void unlockWithoutLock() {
+        assertThrows(IllegalMonitorStateException.class, () ->
+                lockService.unlock("1234"));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,141 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.deadline.RequestDeadline;
+import com.example.jhsfully.account.dto.TransactionDto;
+import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.type.ErrorCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class MailboxBalanceExecutorTest {
+    @Mock
+    private TransactionService transactionService;
+    @Mock
+    private LockService lockService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private MailboxBalanceExecutor mailboxBalanceExecutor;
+
+    @BeforeEach
+    void setUp() {
+        mailboxBalanceExecutor = new MailboxBalanceExecutor(transactionService,
+                lockService, meterRegistry, 8, false, 3000L, 0L);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        mailboxBalanceExecutor.shutdown();
+    }
+
+    @Test
+    void sameAccountIsProcessedOneAtATime() throws Exception {
+        //given
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        given(transactionService.useBalance(anyLong(), eq("1000000012"), anyLong()))
+                .willAnswer(invocation -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    Thread.sleep(1L);
+                    inFlight.decrementAndGet();
+                    return TransactionDto.builder()
+                            .accountNumber("1000000012")
+                            .amount(invocation.getArgument(2))
+                            .build();
+                });
+
+        ExecutorService callers = Executors.newFixedThreadPool(16);
+        List<Callable<TransactionDto>> tasks = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            tasks.add(() -> mailboxBalanceExecutor.useBalance(12L, "1000000012", 10L));
+        }
+
+        //when
+        for (Future<TransactionDto> future : callers.invokeAll(tasks)) {
+            assertEquals(10L, future.get().getAmount());
+        }
+        callers.shutdown();
+
+        //then
+        assertEquals(1, maxInFlight.get());
+        verify(lockService, never()).lock(anyString());
+    }
+
+    @Test
+    void failureIsDeliveredToCaller() {
+        //given
+        given(transactionService.cancelBalance(anyString(), anyString(), anyLong()))
+                .willThrow(new AccountException(ErrorCode.TRANSACTION_NOT_FOUND));
+
+        //when
+        AccountException exception = assertThrows(AccountException.class, () ->
+                mailboxBalanceExecutor.cancelBalance("transactionId", "1000000012", 1000L));
+
+        //then
+        assertEquals(ErrorCode.TRANSACTION_NOT_FOUND, exception.getErrorCode());
+    }
+
+    @Test
+    void idleMailboxIsReclaimed() {
+        //given
+        given(transactionService.useBalance(anyLong(), anyString(), anyLong()))
+                .willReturn(TransactionDto.builder().build());
+        mailboxBalanceExecutor.useBalance(12L, "1000000012", 10L);
+        mailboxBalanceExecutor.useBalance(12L, "1000000013", 10L);
+
+        //when (워커가 메일박스를 놓을 때까지 반복)
+        long deadline = System.currentTimeMillis() + 1000L;
+        while (meterRegistry.find("account.mailbox.active").gauge().value() > 0
+                && System.currentTimeMillis() < deadline) {
+            mailboxBalanceExecutor.reclaimIdleMailboxes();
+        }
+
+        //then (계좌 수와 무관하게 backlog 게이지는 하나다)
+        assertEquals(1, meterRegistry.find("account.mailbox.backlog").gauges().size());
+        assertEquals(0.0, meterRegistry.get("account.mailbox.backlog").gauge().value());
+        assertEquals(0.0, meterRegistry.get("account.mailbox.active").gauge().value());
+    }
+
+    @Test
+    void deadlineIsVisibleInWorker() {
+        //given
+        long deadline = System.currentTimeMillis() + 60_000L;
+        AtomicReference<Long> seen = new AtomicReference<>();
+        given(transactionService.useBalance(anyLong(), anyString(), anyLong()))
+                .willAnswer(invocation -> {
+                    seen.set(RequestDeadline.get());
+                    return TransactionDto.builder().build();
+                });
+
+        //when
+        RequestDeadline.set(deadline);
+        try {
+            mailboxBalanceExecutor.useBalance(12L, "1000000012", 10L);
+        } finally {
+            RequestDeadline.clear();
+        }
+
+        //then
+        assertEquals(deadline, seen.get());
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.dto.CancelBalance;
+import com.example.jhsfully.account.dto.UseBalance;
+import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.type.ErrorCode;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class RateLimitAspectTest {
+    @Mock
+    private RateLimiter rateLimiter;
+
+    @Mock
+    private ProceedingJoinPoint proceedingJoinPoint;
+
+    private RateLimitAspect rateLimitAspect;
+
+    @BeforeEach
+    void setUp() {
+        rateLimitAspect = new RateLimitAspect(rateLimiter, 20, 10, 20, 10);
+    }
+
+    @Test
+    void disabledByDefault() {
+        contextRunner().run(context ->
+                assertTrue(context.getBeansOfType(RateLimitAspect.class).isEmpty()));
+        contextRunner().withPropertyValues("account.rate-limit.enabled=true").run(context ->
+                assertNotNull(context.getBean(RateLimitAspect.class)));
+    }
+
+    private ApplicationContextRunner contextRunner() {
+        return new ApplicationContextRunner()
+                .withBean(RateLimiter.class, () -> rateLimiter)
+                .withUserConfiguration(RateLimitAspect.class);
+    }
+
+    @Test
+    void proceedWithinLimit() throws Throwable {
+        //given
+        given(rateLimiter.tryAcquire(eq("user:1"), anyLong(), anyDouble())).willReturn(true);
+        given(rateLimiter.tryAcquire(eq("account:1000010001"), anyLong(), anyDouble())).willReturn(true);
+        //when
+        rateLimitAspect.aroundMethod(proceedingJoinPoint,
+                new UseBalance.Request(1L, "1000010001", 1000L));
+        //then
+        verify(proceedingJoinPoint, times(1)).proceed();
+    }
+
+    @Test
+    void rejectWhenUserLimitExceeded() throws Throwable {
+        //given
+        given(rateLimiter.tryAcquire(eq("user:1"), anyLong(), anyDouble())).willReturn(false);
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> rateLimitAspect.aroundMethod(proceedingJoinPoint,
+                        new UseBalance.Request(1L, "1000010001", 1000L)));
+        //then
+        assertEquals(ErrorCode.TOO_MANY_REQUESTS, exception.getErrorCode());
+        verify(proceedingJoinPoint, never()).proceed();
+    }
+
+    @Test
+    void rejectCancelWhenAccountLimitExceeded() throws Throwable {
+        //given
+        given(rateLimiter.tryAcquire(eq("account:1000010001"), anyLong(), anyDouble())).willReturn(false);
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> rateLimitAspect.aroundMethod(proceedingJoinPoint,
+                        new CancelBalance.Request("transactionId", "1000010001", 1000L)));
+        //then
+        assertEquals(ErrorCode.TOO_MANY_REQUESTS, exception.getErrorCode());
+        verify(proceedingJoinPoint, never()).proceed();
+    }
+}
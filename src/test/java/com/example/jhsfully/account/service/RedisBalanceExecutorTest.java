@@ -0,0 +1,255 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.bloom.TransactionIdFilter;
+import com.example.jhsfully.account.domain.Account;
+import com.example.jhsfully.account.domain.AccountUser;
+import com.example.jhsfully.account.dto.TransactionDto;
+import com.example.jhsfully.account.event.AccountChangedEvent;
+import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.repository.AccountRepository;
+import com.example.jhsfully.account.repository.AccountUserRepository;
+import com.example.jhsfully.account.repository.TransactionRepository;
+import com.example.jhsfully.account.type.AccountStatus;
+import com.example.jhsfully.account.type.ErrorCode;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.redisson.Redisson;
+import org.redisson.api.RMap;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.config.Config;
+import redis.embedded.RedisServer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.example.jhsfully.account.type.TransactionType.CANCEL;
+import static com.example.jhsfully.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class RedisBalanceExecutorTest {
+    private static final int REDIS_PORT = 16379;
+
+    private static RedisServer redisServer;
+    private static RedissonClient redissonClient;
+
+    @Mock
+    private AccountRepository accountRepository;
+    @Mock
+    private AccountUserRepository accountUserRepository;
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    private RedisBalanceExecutor redisBalanceExecutor;
+    private Account account;
+
+    @BeforeAll
+    static void startRedis() {
+        redisServer = new RedisServer(REDIS_PORT);
+        redisServer.start();
+        Config config = new Config();
+        config.useSingleServer().setAddress("redis://127.0.0.1:" + REDIS_PORT);
+        redissonClient = Redisson.create(config);
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        redissonClient.shutdown();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redissonClient.getKeys().flushall();
+
+        AccountUser user = AccountUser.builder()
+                .name("KANA").build();
+        user.setId(12L);
+        account = Account.builder()
+                .accountUser(user)
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(10000L)
+                .accountNumber("1000000012").build();
+        account.setId(1L);
+        given(accountRepository.findByAccountNumber("1000000012"))
+                .willReturn(Optional.of(account));
+        given(accountUserRepository.existsById(13L)).willReturn(true);
+        given(transactionRepository.findByTransactionId(anyString()))
+                .willReturn(Optional.empty());
+
+        redisBalanceExecutor = new RedisBalanceExecutor(redissonClient,
+                accountRepository, accountUserRepository, transactionRepository,
+                mock(TransactionIdFilter.class), mock(CancellationIndex.class), 60L, 60L);
+        redisBalanceExecutor.loadScripts();
+    }
+
+    @Test
+    void useAndCancelBalance() {
+        //when
+        TransactionDto used = redisBalanceExecutor.useBalance(12L, "1000000012", 1000L);
+        TransactionDto secondUse = redisBalanceExecutor.useBalance(12L, "1000000012", 500L);
+        TransactionDto canceled = redisBalanceExecutor.cancelBalance(
+                used.getTransactionId(), "1000000012", 1000L);
+
+        //then
+        assertEquals(USE, used.getTransactionType());
+        assertEquals(9000L, used.getBalanceSnapshot());
+        assertEquals(8500L, secondUse.getBalanceSnapshot());
+        assertEquals(CANCEL, canceled.getTransactionType());
+        assertEquals(9500L, canceled.getBalanceSnapshot());
+        //DB에서는 처음 한 번만 읽는다.
+        verify(accountRepository, times(1)).findByAccountNumber("1000000012");
+        assertEquals(3, redissonClient.getList(
+                RedisBalanceExecutor.PENDING_KEY, StringCodec.INSTANCE).size());
+    }
+
+    @Test
+    void readCachedBalances() {
+        //given
+        redisBalanceExecutor.useBalance(12L, "1000000012", 1000L);
+
+        //when
+        Map<String, Long> balances = redisBalanceExecutor.getCachedBalances(
+                Arrays.asList("1000000012", "1000000013"));
+
+        //then
+        assertEquals(Collections.singletonMap("1000000012", 9000L), balances);
+    }
+
+    @Test
+    void cancelBalanceFailed_alreadyCancelled() {
+        //given
+        TransactionDto used = redisBalanceExecutor.useBalance(12L, "1000000012", 1000L);
+        redisBalanceExecutor.cancelBalance(used.getTransactionId(), "1000000012", 1000L);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> redisBalanceExecutor.cancelBalance(
+                        used.getTransactionId(), "1000000012", 1000L));
+
+        //then
+        assertEquals(ErrorCode.TRANSACTION_ALREADY_CANCELLED, exception.getErrorCode());
+        assertEquals("10000", redissonClient.getMap(
+                        RedisBalanceExecutor.getAccountKey("1000000012"), StringCodec.INSTANCE)
+                .get("balance"));
+    }
+
+    @Test
+    void cancelBalanceFailed_cancelOfCancel() {
+        //given
+        TransactionDto used = redisBalanceExecutor.useBalance(12L, "1000000012", 1000L);
+        TransactionDto canceled = redisBalanceExecutor.cancelBalance(
+                used.getTransactionId(), "1000000012", 1000L);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> redisBalanceExecutor.cancelBalance(
+                        canceled.getTransactionId(), "1000000012", 1000L));
+
+        //then
+        assertEquals(ErrorCode.TRANSACTION_NOT_CANCELLABLE, exception.getErrorCode());
+        assertEquals("10000", redissonClient.getMap(
+                        RedisBalanceExecutor.getAccountKey("1000000012"), StringCodec.INSTANCE)
+                .get("balance"));
+    }
+
+    @Test
+    void expireAccountOnlyAfterSettled() {
+        //given
+        redisBalanceExecutor.useBalance(12L, "1000000012", 1000L);
+        RMap<String, String> cached = redissonClient.getMap(
+                RedisBalanceExecutor.getAccountKey("1000000012"), StringCodec.INSTANCE);
+        //반영 전 거래가 있는 동안은 만료되지 않는다.
+        assertEquals(-1L, cached.remainTimeToLive());
+
+        //when
+        redisBalanceExecutor.settle(1, Collections.singletonMap("1000000012", 1));
+
+        //then
+        assertEquals(0, redissonClient.getList(
+                RedisBalanceExecutor.PENDING_KEY, StringCodec.INSTANCE).size());
+        assertEquals("0", cached.get("pending"));
+        assertTrue(cached.remainTimeToLive() > 0);
+    }
+
+    @Test
+    void evictAccountAfterPendingSettled() {
+        //given
+        redisBalanceExecutor.useBalance(12L, "1000000012", 1000L);
+        AccountChangedEvent event = new AccountChangedEvent(Collections.singletonList("1000000012"));
+
+        //when
+        redisBalanceExecutor.onAccountChanged(event);
+        AccountException exception = assertThrows(AccountException.class,
+                () -> redisBalanceExecutor.useBalance(12L, "1000000012", 100L));
+        //반영이 끝나 DB에 사용 1000이 들어갔고, 그 뒤 배치가 500을 더했다.
+        account.setBalance(10000L - 1000L + 500L);
+        redisBalanceExecutor.settle(1, Collections.singletonMap("1000000012", 1));
+        TransactionDto next = redisBalanceExecutor.useBalance(12L, "1000000012", 100L);
+
+        //then
+        //반영 전 거래가 남아 있는 동안은 DB의 옛 잔액으로 다시 올리지 않도록 막는다.
+        assertEquals(ErrorCode.ACCOUNT_TRANSACTION_LOCK, exception.getErrorCode());
+        assertEquals(9400L, next.getBalanceSnapshot());
+    }
+
+    @Test
+    void evictSettledAccountImmediately() {
+        //given
+        redisBalanceExecutor.useBalance(12L, "1000000012", 1000L);
+        redisBalanceExecutor.settle(1, Collections.singletonMap("1000000012", 1));
+        account.setAccountStatus(AccountStatus.UNREGISTERED);
+
+        //when
+        redisBalanceExecutor.onAccountChanged(
+                new AccountChangedEvent(Collections.singletonList("1000000012")));
+        AccountException exception = assertThrows(AccountException.class,
+                () -> redisBalanceExecutor.useBalance(12L, "1000000012", 100L));
+
+        //then
+        assertEquals(ErrorCode.ACCOUNT_ALREADY_UNREGISTERED, exception.getErrorCode());
+    }
+
+    @Test
+    void useBalanceFailed_exceedAmount() {
+        AccountException exception = assertThrows(AccountException.class,
+                () -> redisBalanceExecutor.useBalance(12L, "1000000012", 10001L));
+
+        assertEquals(ErrorCode.AMOUNT_EXCEED_BALANCE, exception.getErrorCode());
+    }
+
+    @Test
+    void useBalanceFailed_userUnMatched() {
+        AccountException exception = assertThrows(AccountException.class,
+                () -> redisBalanceExecutor.useBalance(13L, "1000000012", 1000L));
+
+        assertEquals(ErrorCode.USER_ACCOUNT_UN_MATCH, exception.getErrorCode());
+    }
+
+    @Test
+    void cancelBalanceFailed_Unmatched_Amounts() {
+        TransactionDto used = redisBalanceExecutor.useBalance(12L, "1000000012", 1000L);
+
+        AccountException exception = assertThrows(AccountException.class,
+                () -> redisBalanceExecutor.cancelBalance(
+                        used.getTransactionId(), "1000000012", 900L));
+
+        assertEquals(ErrorCode.CANCEL_MUST_FULLY, exception.getErrorCode());
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.bloom.TransactionIdFilter;
+import com.example.jhsfully.account.repository.AccountRepository;
+import com.example.jhsfully.account.repository.AccountUserRepository;
+import com.example.jhsfully.account.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.redisson.Redisson;
+import org.redisson.api.RList;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.config.Config;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import redis.embedded.RedisServer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class RedisBalanceReconcilerTest {
+    private static final int REDIS_PORT = 16379;
+
+    private static RedisServer redisServer;
+    private static RedissonClient redissonClient;
+
+    @Mock
+    private AccountRepository accountRepository;
+    @Mock
+    private TransactionRepository transactionRepository;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RedisBalanceExecutor redisBalanceExecutor;
+    private RList<String> pending;
+
+    @BeforeAll
+    static void startRedis() {
+        redisServer = new RedisServer(REDIS_PORT);
+        redisServer.start();
+        Config config = new Config();
+        config.useSingleServer().setAddress("redis://127.0.0.1:" + REDIS_PORT);
+        redissonClient = Redisson.create(config);
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        redissonClient.shutdown();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redissonClient.getKeys().flushall();
+        pending = redissonClient.getList(RedisBalanceExecutor.PENDING_KEY, StringCodec.INSTANCE);
+
+        willAnswer(invocation -> {
+            Consumer<TransactionStatus> action = invocation.getArgument(0);
+            action.accept(null);
+            return null;
+        }).given(transactionTemplate).executeWithoutResult(any());
+        //2번 계좌는 저장할 때마다 실패한다.
+        given(accountRepository.addBalance(eq(1L), anyLong(), any())).willReturn(1);
+        given(accountRepository.addBalance(eq(2L), anyLong(), any()))
+                .willThrow(new IllegalStateException("constraint violation"));
+
+        redisBalanceExecutor = new RedisBalanceExecutor(redissonClient,
+                accountRepository, mock(AccountUserRepository.class), transactionRepository,
+                mock(TransactionIdFilter.class), mock(CancellationIndex.class), 60L, 60L);
+        redisBalanceExecutor.loadScripts();
+    }
+
+    @Test
+    void deadLetterTransactionThatKeepsFailing() {
+        //given
+        pending.addAll(Arrays.asList(entry("t1", 1L), entry("t2", 2L), entry("t3", 1L)));
+        RedisBalanceReconciler reconciler = newReconciler(500, 20, 2);
+
+        //when
+        reconciler.reconcile();
+
+        //then
+        //실패한 거래 앞까지만 지운다.
+        assertEquals(Arrays.asList(entry("t2", 2L), entry("t3", 1L)), pending.readAll());
+
+        //when
+        reconciler.reconcile();
+
+        //then
+        assertTrue(pending.isEmpty());
+        assertEquals(Collections.singletonList(entry("t2", 2L)), redissonClient
+                .getList(RedisBalanceReconciler.DEAD_LETTER_KEY, StringCodec.INSTANCE).readAll());
+        assertEquals(1.0, meterRegistry.counter("account.redis-balance.dead-letter").count());
+    }
+
+    @Test
+    void deadLetterMalformedEntry() {
+        //given
+        pending.addAll(Arrays.asList("broken", entry("t1", 1L)));
+
+        //when
+        newReconciler(500, 20, 10).reconcile();
+
+        //then
+        assertTrue(pending.isEmpty());
+        verify(accountRepository).addBalance(eq(1L), eq(-100L), any());
+    }
+
+    @Test
+    void stopAfterMaxBatchesPerRun() {
+        //given
+        pending.addAll(Arrays.asList(entry("t1", 1L), entry("t2", 1L), entry("t3", 1L)));
+
+        //when
+        newReconciler(2, 1, 10).reconcile();
+
+        //then
+        assertEquals(Collections.singletonList(entry("t3", 1L)), pending.readAll());
+        verify(accountRepository, never()).addBalance(eq(2L), anyLong(), any());
+        //락은 다음 실행을 위해 풀려 있다.
+        assertFalse(redissonClient.getLock("ACBL:RECONCILE").isLocked());
+    }
+
+    private RedisBalanceReconciler newReconciler(int batchSize, int maxBatchesPerRun, int maxAttempts) {
+        return new RedisBalanceReconciler(redissonClient, redisBalanceExecutor, accountRepository,
+                transactionRepository, transactionTemplate, meterRegistry,
+                batchSize, maxBatchesPerRun, maxAttempts);
+    }
+
+    //TYPE|transactionId|accountId|accountNumber|amount|balance|transactedAt
+    private static String entry(String transactionId, long accountId) {
+        return "USE|" + transactionId + "|" + accountId + "|100000000" + accountId + "|100|900|0";
+    }
+}
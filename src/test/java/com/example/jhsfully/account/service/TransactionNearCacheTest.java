@@ -0,0 +1,71 @@
+package com.example.jhsfully.account.service;
+
+import com.example.jhsfully.account.dto.TransactionDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static com.example.jhsfully.account.type.TransactionResultType.S;
+import static com.example.jhsfully.account.type.TransactionType.CANCEL;
+import static com.example.jhsfully.account.type.TransactionType.USE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionNearCacheTest {
+
+    @Test
+    void putAndGetOffHeap() {
+        //given
+        TransactionNearCache cache = new TransactionNearCache(4096, true);
+        LocalDateTime transactedAt = LocalDateTime.now();
+        cache.put(transaction("cancelId", transactedAt, "useId"));
+
+        //when
+        TransactionDto cached = cache.get("cancelId").get();
+
+        //then
+        assertEquals("1000000012", cached.getAccountNumber());
+        assertEquals(CANCEL, cached.getTransactionType());
+        assertEquals(S, cached.getTransactionResultType());
+        assertEquals(1000L, cached.getAmount());
+        assertEquals(10000L, cached.getBalanceSnapshot());
+        assertEquals(transactedAt, cached.getTransactedAt());
+        assertEquals("useId", cached.getOriginalTransactionId());
+        assertFalse(cache.get("unknown").isPresent());
+    }
+
+    @Test
+    void evictOldestWhenFull() {
+        //given
+        TransactionNearCache cache = new TransactionNearCache(1024, false);
+
+        //when
+        for (int i = 0; i < 100; i++) {
+            cache.put(transaction("transaction-" + i, LocalDateTime.now(), null));
+        }
+
+        //then
+        assertFalse(cache.get("transaction-0").isPresent());
+        assertTrue(cache.get("transaction-99").isPresent());
+        assertNull(cache.get("transaction-99").get().getOriginalTransactionId());
+        assertTrue(cache.size() < 100);
+        for (int i = 0; i < 100; i++) {
+            cache.get("transaction-" + i).ifPresent(transaction ->
+                    assertEquals(USE, transaction.getTransactionType()));
+        }
+    }
+
+    private static TransactionDto transaction(String transactionId,
+                                              LocalDateTime transactedAt,
+                                              String originalTransactionId) {
+        return TransactionDto.builder()
+                .accountNumber("1000000012")
+                .transactionType(originalTransactionId == null ? USE : CANCEL)
+                .transactionResultType(S)
+                .amount(1000L)
+                .balanceSnapshot(10000L)
+                .transactionId(transactionId)
+                .transactedAt(transactedAt)
+                .originalTransactionId(originalTransactionId)
+                .build();
+    }
+}
@@ -1,13 +1,18 @@
 package com.example.jhsfully.account.service;
 
+import com.example.jhsfully.account.bloom.TransactionIdFilter;
 import com.example.jhsfully.account.domain.Account;
 import com.example.jhsfully.account.domain.AccountUser;
 import com.example.jhsfully.account.domain.Transaction;
 import com.example.jhsfully.account.dto.TransactionDto;
+import com.example.jhsfully.account.engine.BalanceCommand;
 import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.exeption.GroupCommandException;
 import com.example.jhsfully.account.repository.AccountRepository;
 import com.example.jhsfully.account.repository.AccountUserRepository;
 import com.example.jhsfully.account.repository.TransactionRepository;
+import com.example.jhsfully.account.shard.ShardRouter;
+import com.example.jhsfully.account.type.BalanceMode;
 import com.example.jhsfully.account.type.AccountStatus;
 import com.example.jhsfully.account.type.ErrorCode;
 import com.example.jhsfully.account.type.TransactionResultType;
@@ -18,9 +23,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.QueryTimeoutException;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Optional;
 
 import static com.example.jhsfully.account.type.TransactionResultType.S;
@@ -28,8 +38,7 @@ import static com.example.jhsfully.account.type.TransactionType.USE;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
-import static org.mockito.Mockito.times;
-import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class TransactionServiceTest {
@@ -39,6 +48,23 @@ class TransactionServiceTest {
     private AccountRepository accountRepository;
     @Mock
     private AccountUserRepository accountUserRepository;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TransactionIdFilter transactionIdFilter;
+
+    @Mock
+    private CancellationIndex cancellationIndex;
+
+    @Mock
+    private TransactionNearCache transactionNearCache;
+
+    @Mock
+    private AccountNumberIndex accountNumberIndex;
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter(1, BalanceMode.LOCK, 1, 0L);
 
     @InjectMocks
     private TransactionService transactionService;
@@ -56,7 +82,7 @@ class TransactionServiceTest {
                 .accountNumber("1000000012").build();
         given(accountUserRepository.findById(anyLong()))
                 .willReturn(Optional.of(user));
-        given(accountRepository.findByAccountNumber(anyString()))
+        given(accountRepository.findByAccountNumberForUpdate(anyString()))
                 .willReturn(Optional.of(account));
 
         given(transactionRepository.save(any()))
@@ -83,6 +109,83 @@ class TransactionServiceTest {
         assertEquals(USE, captor.getValue().getTransactionType());
         assertEquals(8500L, captor.getValue().getBalanceSnapshot());
         assertEquals(1500L, captor.getValue().getAmount());
+        verify(accountNumberIndex).putAfterCommit(account);
+    }
+
+    @Test
+    void useBalanceWithIndexedAccount(){
+        //given
+        AccountUser user = AccountUser.builder()
+                .name("KANA").build();
+        user.setId(12L);
+        Account account = Account.builder()
+                .accountUser(user)
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(10000L)
+                .accountNumber("1000000012").build();
+        account.setId(7L);
+        given(accountNumberIndex.get("1000000012"))
+                .willReturn(Optional.of(new AccountNumberIndex.Entry(7L, 12L)));
+        given(accountRepository.findByIdForUpdate(7L))
+                .willReturn(Optional.of(account));
+        given(transactionRepository.save(any()))
+                .willAnswer(invocation -> invocation.getArgument(0));
+
+        //when
+        TransactionDto transactionDto = transactionService.useBalance(
+                12L, "1000000012", 1500L);
+
+        //then
+        assertEquals(8500L, transactionDto.getBalanceSnapshot());
+        //소유주가 같으면 사용자와 계좌 번호로 DB를 찾지 않는다.
+        verifyNoInteractions(accountUserRepository);
+        verify(accountRepository, never()).findByAccountNumberForUpdate(anyString());
+    }
+
+    @Test
+    void useBalanceWithStaleIndexEntry(){
+        //given
+        AccountUser user = AccountUser.builder()
+                .name("KANA").build();
+        user.setId(12L);
+        Account account = Account.builder()
+                .accountUser(user)
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(10000L)
+                .accountNumber("1000000012").build();
+        given(accountNumberIndex.get("1000000012"))
+                .willReturn(Optional.of(new AccountNumberIndex.Entry(7L, 12L)));
+        given(accountRepository.findByIdForUpdate(7L))
+                .willReturn(Optional.empty());
+        given(accountRepository.findByAccountNumberForUpdate("1000000012"))
+                .willReturn(Optional.of(account));
+        given(transactionRepository.save(any()))
+                .willAnswer(invocation -> invocation.getArgument(0));
+
+        //when
+        TransactionDto transactionDto = transactionService.useBalance(
+                12L, "1000000012", 1500L);
+
+        //then
+        assertEquals(8500L, transactionDto.getBalanceSnapshot());
+        verify(accountNumberIndex).remove("1000000012");
+        verify(accountNumberIndex).putAfterCommit(account);
+    }
+
+    @Test
+    void useBalanceFailed_indexedAccountOfOtherUser(){
+        //given
+        given(accountNumberIndex.get("1000000012"))
+                .willReturn(Optional.of(new AccountNumberIndex.Entry(7L, 13L)));
+        given(accountUserRepository.findById(12L))
+                .willReturn(Optional.empty());
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.useBalance(12L, "1000000012", 1500L));
+
+        //then
+        assertEquals(ErrorCode.USER_NOT_FOUND, exception.getErrorCode());
     }
 
     @Test
@@ -110,7 +213,7 @@ class TransactionServiceTest {
         given(accountUserRepository.findById(anyLong()))
                 .willReturn(Optional.of(user));
 
-        given(accountRepository.findByAccountNumber(anyString()))
+        given(accountRepository.findByAccountNumberForUpdate(anyString()))
                 .willReturn(Optional.empty());
 
         //when
@@ -134,7 +237,7 @@ class TransactionServiceTest {
         given(accountUserRepository.findById(anyLong()))
                 .willReturn(Optional.of(user));
 
-        given(accountRepository.findByAccountNumber(anyString()))
+        given(accountRepository.findByAccountNumberForUpdate(anyString()))
                 .willReturn(Optional.of(Account.builder()
                         .accountUser(otheruser)
                         .balance(1000L)
@@ -158,7 +261,7 @@ class TransactionServiceTest {
         given(accountUserRepository.findById(anyLong()))
                 .willReturn(Optional.of(user));
 
-        given(accountRepository.findByAccountNumber(anyString()))
+        given(accountRepository.findByAccountNumberForUpdate(anyString()))
                 .willReturn(Optional.of(Account.builder()
                         .accountUser(user)
                         .balance(0L)
@@ -187,7 +290,7 @@ class TransactionServiceTest {
                 .accountNumber("1000000012").build();
         given(accountUserRepository.findById(anyLong()))
                 .willReturn(Optional.of(user));
-        given(accountRepository.findByAccountNumber(anyString()))
+        given(accountRepository.findByAccountNumberForUpdate(anyString()))
                 .willReturn(Optional.of(account));
 
         //when
@@ -263,7 +366,7 @@ class TransactionServiceTest {
                 .build();
         given(transactionRepository.findByTransactionId(anyString()))
                 .willReturn(Optional.of(transaction));
-        given(accountRepository.findByAccountNumber(anyString()))
+        given(accountRepository.findByAccountNumberForUpdate(anyString()))
                 .willReturn(Optional.of(account));
 
         given(transactionRepository.save(any()))
@@ -290,17 +393,99 @@ class TransactionServiceTest {
         assertEquals(TransactionType.CANCEL, captor.getValue().getTransactionType());
         assertEquals(10000L + 1000L, captor.getValue().getBalanceSnapshot());
         assertEquals(1000L, captor.getValue().getAmount());
+        assertEquals("transactionId", captor.getValue().getOriginalTransactionId());
         System.out.println("transactionId : " + captor.getValue().getTransactionId());
         System.out.println("test-transactionId : " + transactionDto.getTransactionId());
     }
 
+    @Test
+    void cancelBalanceFailed_alreadyCancelled(){
+        //given
+        Account account = Account.builder()
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(10000L)
+                .accountNumber("1000000012").build();
+        account.setId(1L);
+        Transaction transaction = Transaction.builder()
+                .account(account)
+                .transactionType(USE)
+                .transactionResultType(S)
+                .transactionId("transactionId")
+                .transactedAt(LocalDateTime.now())
+                .amount(1000L)
+                .balanceSnapshot(9000L)
+                .build();
+        given(transactionRepository.findByTransactionId(anyString()))
+                .willReturn(Optional.of(transaction));
+        given(accountRepository.findByAccountNumberForUpdate(anyString()))
+                .willReturn(Optional.of(account));
+        given(cancellationIndex.isCancelled("transactionId"))
+                .willReturn(true);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.cancelBalance("transactionId", "1000000012", 1000L));
+
+        //then
+        assertEquals(ErrorCode.TRANSACTION_ALREADY_CANCELLED, exception.getErrorCode());
+        assertEquals(10000L, account.getBalance());
+        verify(transactionRepository, times(0)).save(any());
+    }
+
+    @Test
+    void cancelBalanceFailed_notSuccessfulUse(){
+        //given
+        Account account = Account.builder()
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(10000L)
+                .accountNumber("1000000012").build();
+        account.setId(1L);
+        Transaction cancel = Transaction.builder()
+                .account(account)
+                .transactionType(TransactionType.CANCEL)
+                .transactionResultType(S)
+                .transactionId("cancelTransactionId")
+                .originalTransactionId("transactionId")
+                .transactedAt(LocalDateTime.now())
+                .amount(1000L)
+                .balanceSnapshot(10000L)
+                .build();
+        Transaction failed = Transaction.builder()
+                .account(account)
+                .transactionType(USE)
+                .transactionResultType(TransactionResultType.F)
+                .transactionId("failedTransactionId")
+                .transactedAt(LocalDateTime.now())
+                .amount(1000L)
+                .balanceSnapshot(10000L)
+                .build();
+        given(transactionRepository.findByTransactionId("cancelTransactionId"))
+                .willReturn(Optional.of(cancel));
+        given(transactionRepository.findByTransactionId("failedTransactionId"))
+                .willReturn(Optional.of(failed));
+        given(accountRepository.findByAccountNumberForUpdate(anyString()))
+                .willReturn(Optional.of(account));
+
+        //when
+        AccountException cancelOfCancel = assertThrows(AccountException.class,
+                () -> transactionService.cancelBalance("cancelTransactionId", "1000000012", 1000L));
+        AccountException cancelOfFailed = assertThrows(AccountException.class,
+                () -> transactionService.cancelBalance("failedTransactionId", "1000000012", 1000L));
+
+        //then
+        assertEquals(ErrorCode.TRANSACTION_NOT_CANCELLABLE, cancelOfCancel.getErrorCode());
+        assertEquals(ErrorCode.TRANSACTION_NOT_CANCELLABLE, cancelOfFailed.getErrorCode());
+        assertEquals(10000L, account.getBalance());
+        verify(transactionRepository, never()).save(any());
+    }
+
     @Test
     @DisplayName("Not exist account -> Can't Cancel Balance")
     void CancelBalanceFailed_Account_NotFound(){
         //given
         given(transactionRepository.findByTransactionId(anyString()))
                 .willReturn(Optional.of(Transaction.builder().build()));
-        given(accountRepository.findByAccountNumber(anyString()))
+        given(accountRepository.findByAccountNumberForUpdate(anyString()))
                 .willReturn(Optional.empty());
 
         //when
@@ -366,7 +551,7 @@ class TransactionServiceTest {
         given(transactionRepository.findByTransactionId(anyString()))
                 .willReturn(Optional.of(transaction));
 
-        given(accountRepository.findByAccountNumber(anyString()))
+        given(accountRepository.findByAccountNumberForUpdate(anyString()))
                 .willReturn(Optional.of(otherAccount));
 
         //when
@@ -408,7 +593,7 @@ class TransactionServiceTest {
         given(transactionRepository.findByTransactionId(anyString()))
                 .willReturn(Optional.of(transaction));
 
-        given(accountRepository.findByAccountNumber(anyString()))
+        given(accountRepository.findByAccountNumberForUpdate(anyString()))
                 .willReturn(Optional.of(account));
 
         //when
@@ -450,7 +635,7 @@ class TransactionServiceTest {
         given(transactionRepository.findByTransactionId(anyString()))
                 .willReturn(Optional.of(transaction));
 
-        given(accountRepository.findByAccountNumber(anyString()))
+        given(accountRepository.findByAccountNumberForUpdate(anyString()))
                 .willReturn(Optional.of(account));
 
         //when
@@ -467,19 +652,8 @@ class TransactionServiceTest {
     @Test
     void successQueryTransaction(){
         //given
-        AccountUser user = AccountUser.builder()
-                .name("KANA").build();
-        user.setId(12L);
-
-        Account account = Account.builder()
-                .accountUser(user)
-                .accountStatus(AccountStatus.IN_USE)
-                .balance(10000L)
-                .accountNumber("1000000012").build();
-        account.setId(1L);
-
-        Transaction transaction = Transaction.builder()
-                .account(account)
+        TransactionDto transaction = TransactionDto.builder()
+                .accountNumber("1000000012")
                 .transactedAt(LocalDateTime.now().minusYears(2))
                 .transactionType(USE)
                 .transactionResultType(S)
@@ -488,7 +662,9 @@ class TransactionServiceTest {
                 .balanceSnapshot(10000L)
                 .build();
 
-        given(transactionRepository.findByTransactionId(anyString()))
+        given(transactionIdFilter.mightContain(anyString()))
+                .willReturn(true);
+        given(transactionRepository.findDtoByTransactionId(anyString()))
                 .willReturn(Optional.of(transaction));
         //when
         TransactionDto transactionDto = transactionService
@@ -501,11 +677,47 @@ class TransactionServiceTest {
     }
 
 
+    @Test
+    void queryTransactionFromNearCache(){
+        //given
+        given(transactionIdFilter.mightContain(anyString()))
+                .willReturn(true);
+        given(transactionNearCache.get("transactionId"))
+                .willReturn(Optional.of(TransactionDto.builder()
+                        .transactionId("transactionId")
+                        .amount(1000L)
+                        .build()));
+
+        //when
+        TransactionDto transactionDto = transactionService.queryTransaction("transactionId");
+
+        //then
+        assertEquals(1000L, transactionDto.getAmount());
+        verify(transactionRepository, times(0)).findDtoByTransactionId(anyString());
+    }
+
+    @Test
+    void rejectUnknownTransactionIdWithoutQuery(){
+        //given
+        given(transactionIdFilter.mightContain(anyString()))
+                .willReturn(false);
+
+        //when
+        AccountException exception = assertThrows(AccountException.class,
+                () -> transactionService.queryTransaction("transactionId"));
+
+        //then
+        assertEquals(ErrorCode.TRANSACTION_NOT_FOUND, exception.getErrorCode());
+        verify(transactionRepository, times(0)).findDtoByTransactionId(anyString());
+    }
+
     @Test
     @DisplayName("Not exist transaction -> Can't query transaction")
     void FailedQueryTransaction(){
         //given
-        given(transactionRepository.findByTransactionId(anyString()))
+        given(transactionIdFilter.mightContain(anyString()))
+                .willReturn(true);
+        given(transactionRepository.findDtoByTransactionId(anyString()))
                 .willReturn(Optional.empty());
 
         //when
@@ -515,4 +727,70 @@ class TransactionServiceTest {
         //then
         assertEquals(ErrorCode.TRANSACTION_NOT_FOUND, exception.getErrorCode());
     }
+
+    @Test
+    void commitGroup(){
+        //given
+        AccountUser user = AccountUser.builder()
+                .name("KANA").build();
+        user.setId(12L);
+        Account account = Account.builder()
+                .accountUser(user)
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(10000L)
+                .accountNumber("1000000012").build();
+        given(accountRepository.findByAccountNumberForUpdate(anyString()))
+                .willReturn(Optional.of(account));
+        given(accountUserRepository.findById(12L))
+                .willReturn(Optional.of(user));
+        given(transactionRepository.saveAll(anyList()))
+                .willAnswer(invocation -> invocation.getArgument(0));
+        BalanceCommand first = BalanceCommand.use(12L, "1000000012", 3000L);
+        BalanceCommand exceed = BalanceCommand.use(12L, "1000000012", 8000L);
+        BalanceCommand second = BalanceCommand.use(12L, "1000000012", 2000L);
+
+        //when
+        Map<BalanceCommand, TransactionDto> results = transactionService.commitGroup(
+                "1000000012", Arrays.asList(first, exceed, second));
+
+        //then
+        assertEquals(2, results.size());
+        assertEquals(7000L, results.get(first).getBalanceSnapshot());
+        assertEquals(5000L, results.get(second).getBalanceSnapshot());
+        assertTrue(exceed.getFuture().isCompletedExceptionally());
+        assertEquals(5000L, account.getBalance());
+        verify(accountUserRepository, times(1)).findById(12L);
+    }
+
+    @Test
+    void commitGroupReportsCommandThatFailsUnexpectedly(){
+        //given
+        AccountUser user = AccountUser.builder()
+                .name("KANA").build();
+        user.setId(12L);
+        Account account = Account.builder()
+                .accountUser(user)
+                .accountStatus(AccountStatus.IN_USE)
+                .balance(10000L)
+                .accountNumber("1000000012").build();
+        given(accountRepository.findByAccountNumberForUpdate(anyString()))
+                .willReturn(Optional.of(account));
+        given(accountUserRepository.findById(12L))
+                .willReturn(Optional.of(user));
+        given(accountUserRepository.findById(13L))
+                .willThrow(new QueryTimeoutException("timeout"));
+        BalanceCommand first = BalanceCommand.use(12L, "1000000012", 3000L);
+        BalanceCommand broken = BalanceCommand.use(13L, "1000000012", 2000L);
+
+        //when
+        GroupCommandException exception = assertThrows(GroupCommandException.class,
+                () -> transactionService.commitGroup(
+                        "1000000012", Arrays.asList(first, broken)));
+
+        //then
+        assertSame(broken, exception.getCommand());
+        assertTrue(exception.getCause() instanceof QueryTimeoutException);
+        assertFalse(first.getFuture().isDone());
+        verify(transactionRepository, never()).saveAll(anyList());
+    }
 }
\ No newline at end of file
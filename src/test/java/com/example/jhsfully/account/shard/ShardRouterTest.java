@@ -0,0 +1,97 @@
+package com.example.jhsfully.account.shard;
+
+import com.example.jhsfully.account.exeption.AccountException;
+import com.example.jhsfully.account.type.BalanceMode;
+import com.example.jhsfully.account.type.ErrorCode;
+import com.example.jhsfully.account.type.ShardKeyType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardRouterTest {
+    private final ShardRouter shardRouter = new ShardRouter(3, BalanceMode.LOCK, 3, 0L);
+
+    @AfterEach
+    void tearDown() {
+        shardRouter.shutdown();
+    }
+
+    @Test
+    void allocateAccountNumbersWithinShard() {
+        for (int shard = 0; shard < 3; shard++) {
+            String first = shardRouter.firstAccountNumber(shard);
+            String second = shardRouter.nextAccountNumber(shard, first);
+
+            assertEquals(10, first.length());
+            assertEquals(shard, shardRouter.shardOfAccountNumber(first));
+            assertEquals(shard, shardRouter.shardOfAccountNumber(second));
+        }
+    }
+
+    @Test
+    void embedShardInTransactionId() {
+        String accountNumber = shardRouter.firstAccountNumber(2);
+
+        String transactionId = shardRouter.newTransactionId(accountNumber);
+
+        assertEquals(32, transactionId.length());
+        assertEquals(2, shardRouter.shardOf(ShardKeyType.TRANSACTION_ID, transactionId));
+    }
+
+    @Test
+    void singleShardKeepsExistingNumbers() {
+        ShardRouter single = new ShardRouter(1, BalanceMode.ENGINE, 1, 0L);
+
+        assertEquals("1000000000", single.firstAccountNumber(0));
+        assertEquals("1000000001", single.nextAccountNumber(0, "1000000000"));
+        assertEquals(0, single.shardOfTransactionId("ffffffffffffffffffffffffffffffff"));
+    }
+
+    @Test
+    void routeLegacyAccountsToFirstShard() {
+        //샤딩 전에 1000000000 ~ 1000000010을 발급했다.
+        ShardRouter legacy = new ShardRouter(3, BalanceMode.LOCK, 3, 1_000_000_010L);
+
+        assertTrue(legacy.hasLegacyRows());
+        assertEquals(0, legacy.shardOfAccountNumber("1000000004"));
+        assertEquals(0, legacy.shardOfAccountNumber("1000000010"));
+        assertEquals(1, legacy.shardOfAccountNumber("1000000012"));
+        for (int shard = 0; shard < 3; shard++) {
+            String first = legacy.firstAccountNumber(shard);
+
+            assertTrue(Long.parseLong(first) > 1_000_000_010L);
+            assertEquals(shard, legacy.shardOfAccountNumber(first));
+        }
+        //0번 샤드의 마지막 계좌가 샤딩 전 번호여도 다음 번호는 0번 샤드로 간다.
+        String next = legacy.nextAccountNumber(0, "1000000010");
+        assertEquals("1000000011", next);
+        assertEquals(0, legacy.shardOfAccountNumber(next));
+        assertEquals("1000000014", legacy.nextAccountNumber(0, next));
+        legacy.shutdown();
+    }
+
+    @Test
+    void fanOutRunsOnEveryShard() {
+        assertEquals(Arrays.asList(0, 1, 2), shardRouter.fanOut(shard -> ShardRouter.currentShard()));
+        assertEquals(0, ShardRouter.currentShard());
+    }
+
+    @Test
+    void fanOutRethrowsAccountException() {
+        AccountException exception = assertThrows(AccountException.class,
+                () -> shardRouter.fanOut(shard -> {
+                    throw new AccountException(ErrorCode.USER_NOT_FOUND);
+                }));
+
+        assertEquals(ErrorCode.USER_NOT_FOUND, exception.getErrorCode());
+    }
+
+    @Test
+    void rejectModeWithoutShardSupport() {
+        assertThrows(IllegalStateException.class,
+                () -> new ShardRouter(2, BalanceMode.ENGINE, 2, 0L));
+    }
+}